@@ -33,6 +33,12 @@ abstract class AbstractBandMatrix extends AbstractMatrix {
      */
     double[] data;
 
+    /**
+     * Factorization used by the solvers, and the modifications invalidating
+     * it
+     */
+    final FactorizationCache factorization = new FactorizationCache();
+
     /**
      * Number of upper and lower diagonals
      */
@@ -112,21 +118,52 @@ abstract class AbstractBandMatrix extends AbstractMatrix {
     }
 
     /**
-     * Returns the matrix contents
+     * Returns the matrix contents. As the caller may write to the array, this
+     * counts as a modification of the matrix
      */
     public double[] getData() {
+        factorization.modified();
+        return data;
+    }
+
+    /**
+     * Returns the matrix contents for reading only, keeping a cached
+     * factorization
+     */
+    public double[] getDataUnchecked() {
         return data;
     }
 
+    /**
+     * Discards the cached factorization. Needed after writes to an array
+     * obtained earlier from <code>getData</code>, or shared with another
+     * matrix or vector
+     */
+    public void invalidateFactorization() {
+        factorization.modified();
+    }
+
+    /**
+     * Enables or disables caching of the factorization computed by
+     * <code>solve</code>, which is off by default. Repeated solves with an
+     * unmodified matrix then only pay for the triangular solves. See
+     * {@link #invalidateFactorization()} for writes which are not noticed
+     */
+    public void setCacheFactorization(boolean cache) {
+        factorization.setEnabled(cache);
+    }
+
     @Override
     public void add(int row, int column, double value) {
         checkBand(row, column);
+        factorization.modified();
         data[getIndex(row, column)] += value;
     }
 
     @Override
     public void set(int row, int column, double value) {
         checkBand(row, column);
+        factorization.modified();
         data[getIndex(row, column)] = value;
     }
 
@@ -196,11 +233,12 @@ abstract class AbstractBandMatrix extends AbstractMatrix {
         if (Bb.ku != ku)
             throw new IllegalArgumentException("B.ku != ku");
 
-        double[] Bd = Bb.getData();
+        double[] Bd = Bb.data;
 
         if (Bd == data)
             return this;
 
+        factorization.modified();
         System.arraycopy(Bd, 0, data, 0, data.length);
 
         return this;
@@ -208,6 +246,7 @@ abstract class AbstractBandMatrix extends AbstractMatrix {
 
     @Override
     public Matrix zero() {
+        factorization.modified();
         Arrays.fill(data, 0);
         return this;
     }
@@ -32,6 +32,12 @@ abstract class AbstractPackMatrix extends AbstractMatrix {
      */
     double[] data;
 
+    /**
+     * Factorization used by the solvers, and the modifications invalidating
+     * it
+     */
+    final FactorizationCache factorization = new FactorizationCache();
+
     /**
      * Matrix is square, so this is either numRows or numColumns
      */
@@ -89,12 +95,41 @@ abstract class AbstractPackMatrix extends AbstractMatrix {
 
     /**
      * Returns the matrix contents. Ordering depends on the underlying storage
-     * assumptions
+     * assumptions. As the caller may write to the array, this counts as a
+     * modification of the matrix
      */
     public double[] getData() {
+        factorization.modified();
+        return data;
+    }
+
+    /**
+     * Returns the matrix contents for reading only, keeping a cached
+     * factorization
+     */
+    public double[] getDataUnchecked() {
         return data;
     }
 
+    /**
+     * Discards the cached factorization. Needed after writes to an array
+     * obtained earlier from <code>getData</code>, or shared with another
+     * matrix or vector
+     */
+    public void invalidateFactorization() {
+        factorization.modified();
+    }
+
+    /**
+     * Enables or disables caching of the factorization computed by
+     * <code>solve</code>, which is off by default. Repeated solves with an
+     * unmodified matrix then only pay for the triangular solves. See
+     * {@link #invalidateFactorization()} for writes which are not noticed
+     */
+    public void setCacheFactorization(boolean cache) {
+        factorization.setEnabled(cache);
+    }
+
     @Override
     public Matrix set(Matrix B) {
         if (!(B instanceof AbstractPackMatrix))
@@ -102,11 +137,12 @@ abstract class AbstractPackMatrix extends AbstractMatrix {
 
         checkSize(B);
 
-        double[] Bd = ((AbstractPackMatrix) B).getData();
+        double[] Bd = ((AbstractPackMatrix) B).data;
 
         if (Bd == data)
             return this;
 
+        factorization.modified();
         System.arraycopy(Bd, 0, data, 0, data.length);
 
         return this;
@@ -114,6 +150,7 @@ abstract class AbstractPackMatrix extends AbstractMatrix {
 
     @Override
     public Matrix zero() {
+        factorization.modified();
         Arrays.fill(data, 0);
         return this;
     }
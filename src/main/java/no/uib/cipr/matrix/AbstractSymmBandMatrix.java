@@ -144,6 +144,11 @@ abstract class AbstractSymmBandMatrix extends AbstractBandMatrix {
 
         checkSolve(B, X);
 
+        if (factorization.isEnabled()) {
+            X.set(B);
+            return factorizationCholesky().solve((DenseMatrix) X);
+        }
+
         double[] Xd = ((DenseMatrix) X).getData();
 
         X.set(B);
@@ -161,6 +166,24 @@ abstract class AbstractSymmBandMatrix extends AbstractBandMatrix {
         return X;
     }
 
+    /**
+     * Returns the cached Cholesky factorization, factoring again if this
+     * matrix has been modified
+     */
+    private BandCholesky factorizationCholesky() {
+        BandCholesky c = factorization.get(BandCholesky.class);
+        if (c == null) {
+            if (uplo == UpLo.Upper)
+                c = new BandCholesky(numRows, kd, true)
+                        .factor(new UpperSPDBandMatrix(this, kd));
+            else
+                c = new BandCholesky(numRows, kd, false)
+                        .factor(new LowerSPDBandMatrix(this, kd));
+            factorization.put(c);
+        }
+        return c;
+    }
+
     @Override
     public Matrix transpose() {
         return this;
@@ -67,7 +67,7 @@ abstract class AbstractSymmDenseMatrix extends AbstractDenseMatrix {
 
         checkMultAdd(B, C);
 
-        double[] Bd = ((DenseMatrix) B).getData(), Cd = ((DenseMatrix) C)
+        double[] Bd = ((DenseMatrix) B).data, Cd = ((DenseMatrix) C)
                 .getData();
 
         BLAS.getInstance().dsymm(Side.Left.netlib(), uplo.netlib(),
@@ -91,6 +91,7 @@ abstract class AbstractSymmDenseMatrix extends AbstractDenseMatrix {
             return super.rank1(alpha, x, y);
 
         checkRank1(x, y);
+        factorization.modified();
 
         double[] xd = ((DenseVector) x).getData();
 
@@ -106,6 +107,7 @@ abstract class AbstractSymmDenseMatrix extends AbstractDenseMatrix {
             return super.rank2(alpha, x, y);
 
         checkRank2(x, y);
+        factorization.modified();
 
         double[] xd = ((DenseVector) x).getData(), yd = ((DenseVector) y)
                 .getData();
@@ -143,6 +145,7 @@ abstract class AbstractSymmDenseMatrix extends AbstractDenseMatrix {
             return super.rank1(alpha, C);
 
         checkRank1(C);
+        factorization.modified();
 
         double[] Cd = ((DenseMatrix) C).getData();
 
@@ -159,6 +162,7 @@ abstract class AbstractSymmDenseMatrix extends AbstractDenseMatrix {
             return super.transRank1(alpha, C);
 
         checkTransRank1(C);
+        factorization.modified();
 
         double[] Cd = ((DenseMatrix) C).getData();
 
@@ -175,8 +179,9 @@ abstract class AbstractSymmDenseMatrix extends AbstractDenseMatrix {
             return super.rank2(alpha, B, C);
 
         checkRank2(B, C);
+        factorization.modified();
 
-        double[] Bd = ((DenseMatrix) B).getData(), Cd = ((DenseMatrix) C)
+        double[] Bd = ((DenseMatrix) B).data, Cd = ((DenseMatrix) C)
                 .getData();
 
         BLAS.getInstance().dsyr2k(uplo.netlib(),
@@ -193,8 +198,9 @@ abstract class AbstractSymmDenseMatrix extends AbstractDenseMatrix {
             return super.transRank2(alpha, B, C);
 
         checkTransRank2(B, C);
+        factorization.modified();
 
-        double[] Bd = ((DenseMatrix) B).getData(), Cd = ((DenseMatrix) C)
+        double[] Bd = ((DenseMatrix) B).data, Cd = ((DenseMatrix) C)
                 .getData();
 
         BLAS.getInstance().dsyr2k(uplo.netlib(), Transpose.Transpose.netlib(),
@@ -271,6 +277,11 @@ abstract class AbstractSymmDenseMatrix extends AbstractDenseMatrix {
 
         checkSolve(B, X);
 
+        if (factorization.isEnabled()) {
+            X.set(B);
+            return factorizationCholesky().solve((DenseMatrix) X);
+        }
+
         double[] Xd = ((DenseMatrix) X).getData();
 
         X.set(B);
@@ -288,6 +299,24 @@ abstract class AbstractSymmDenseMatrix extends AbstractDenseMatrix {
         return X;
     }
 
+    /**
+     * Returns the cached Cholesky factorization, factoring again if this
+     * matrix has been modified
+     */
+    private DenseCholesky factorizationCholesky() {
+        DenseCholesky c = factorization.get(DenseCholesky.class);
+        if (c == null) {
+            if (uplo == UpLo.Upper)
+                c = new DenseCholesky(numRows, true)
+                        .factor(new UpperSPDDenseMatrix(this));
+            else
+                c = new DenseCholesky(numRows, false)
+                        .factor(new LowerSPDDenseMatrix(this));
+            factorization.put(c);
+        }
+        return c;
+    }
+
     @Override
     public Matrix transpose() {
         return this;
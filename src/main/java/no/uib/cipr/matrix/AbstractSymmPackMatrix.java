@@ -86,6 +86,7 @@ abstract class AbstractSymmPackMatrix extends AbstractPackMatrix {
             return super.rank1(alpha, x, y);
 
         checkRank1(x, y);
+        factorization.modified();
 
         double[] xd = ((DenseVector) x).getData();
 
@@ -100,6 +101,7 @@ abstract class AbstractSymmPackMatrix extends AbstractPackMatrix {
             return super.rank2(alpha, x, y);
 
         checkRank2(x, y);
+        factorization.modified();
 
         double[] xd = ((DenseVector) x).getData(), yd = ((DenseVector) y)
                 .getData();
@@ -158,6 +160,11 @@ abstract class AbstractSymmPackMatrix extends AbstractPackMatrix {
 
         checkSolve(B, X);
 
+        if (factorization.isEnabled()) {
+            X.set(B);
+            return factorizationCholesky().solve((DenseMatrix) X);
+        }
+
         double[] Xd = ((DenseMatrix) X).getData();
 
         X.set(B);
@@ -174,6 +181,24 @@ abstract class AbstractSymmPackMatrix extends AbstractPackMatrix {
         return X;
     }
 
+    /**
+     * Returns the cached Cholesky factorization, factoring again if this
+     * matrix has been modified
+     */
+    private PackCholesky factorizationCholesky() {
+        PackCholesky c = factorization.get(PackCholesky.class);
+        if (c == null) {
+            if (uplo == UpLo.Upper)
+                c = new PackCholesky(numRows, true)
+                        .factor(new UpperSPDPackMatrix(this));
+            else
+                c = new PackCholesky(numRows, false)
+                        .factor(new LowerSPDPackMatrix(this));
+            factorization.put(c);
+        }
+        return c;
+    }
+
     @Override
     public Matrix transpose() {
         return this;
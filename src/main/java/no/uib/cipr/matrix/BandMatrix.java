@@ -163,6 +163,7 @@ public class BandMatrix extends AbstractBandMatrix {
 
     @Override
     public Matrix zero() {
+        factorization.modified();
         Arrays.fill(data, 0);
         return this;
     }
@@ -206,6 +207,16 @@ public class BandMatrix extends AbstractBandMatrix {
 
         checkSolve(B, X);
 
+        if (factorization.isEnabled()) {
+            BandLU lu = factorization.get(BandLU.class);
+            if (lu == null) {
+                lu = BandLU.factorize(this);
+                factorization.put(lu);
+            }
+            X.set(B);
+            return lu.solve((DenseMatrix) X);
+        }
+
         double[] Xd = ((DenseMatrix) X).getData();
 
         X.set(B);
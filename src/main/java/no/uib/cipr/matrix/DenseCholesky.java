@@ -22,10 +22,13 @@ package no.uib.cipr.matrix;
 
 import no.uib.cipr.matrix.Matrix.Norm;
 
+import com.github.fommil.netlib.BLAS;
 import com.github.fommil.netlib.LAPACK;
 import org.netlib.util.doubleW;
 import org.netlib.util.intW;
 
+import java.util.Arrays;
+
 /**
  * Dense Cholesky decomposition
  */
@@ -56,6 +59,32 @@ public class DenseCholesky {
      */
     private final boolean upper;
 
+    private int nativeThreshold = DenseMatrix.getNativeThreshold();
+
+    private int tileSize = TiledDenseMatrix.defaultFactorTileSize();
+
+    /**
+     * Refactor after this many updates, if positive
+     */
+    private int refactorInterval;
+
+    /**
+     * Updates since the last factorization
+     */
+    private int updates;
+
+    /**
+     * Copy of the factored matrix, with the updates applied. Only kept for
+     * refactoring
+     */
+    private AbstractDenseMatrix A;
+
+    /**
+     * Lends the work arrays of the condition estimate and the downdate
+     * instead, if not null
+     */
+    private final Workspace workspace;
+
     /**
      * Constructor for DenseCholesky
      * 
@@ -66,8 +95,27 @@ public class DenseCholesky {
      *            lower symmetrical matrix
      */
     public DenseCholesky(int n, boolean upper) {
+        this(n, upper, null);
+    }
+
+    /**
+     * Constructor for DenseCholesky, which borrows the work arrays of
+     * {@link #rcond} and {@link #downdate} from the given workspace. The
+     * factorization itself needs no work arrays
+     * 
+     * @param n
+     *            Matrix size
+     * @param upper
+     *            True for decomposing an upper symmetrical matrix, false for a
+     *            lower symmetrical matrix
+     * @param workspace
+     *            Workspace to use, or null to allocate the work arrays on each
+     *            call
+     */
+    public DenseCholesky(int n, boolean upper, Workspace workspace) {
         this.n = n;
         this.upper = upper;
+        this.workspace = workspace;
 
         if (upper)
             Cu = new UpperTriangDenseMatrix(n);
@@ -75,6 +123,57 @@ public class DenseCholesky {
             Cl = new LowerTriangDenseMatrix(n);
     }
 
+    /**
+     * Sets the largest matrix size which is factored and solved in pure Java.
+     * Larger matrices are handled by LAPACK. Defaults to
+     * {@link DenseMatrix#getNativeThreshold()}
+     */
+    public DenseCholesky setNativeThreshold(int nativeThreshold) {
+        this.nativeThreshold = nativeThreshold;
+        return this;
+    }
+
+    /**
+     * Sets the tile size of the task-parallel factorization (see
+     * {@link TiledCholesky}), which is used for matrices of more than two
+     * tiles when {@link Parallel#getThreads()} is more than one. Zero always
+     * factors with a single LAPACK call.
+     * <p>
+     * Each tile is factored and updated by a BLAS or LAPACK call on one of
+     * the {@link Parallel} threads. A multi-threaded native BLAS would start
+     * its own threads inside each of those, oversubscribing the cores, so
+     * the tiled path is only on by default with the pure Java BLAS (see
+     * {@link JavaBLAS#getInstance()}). The default is
+     * {@link TiledDenseMatrix#DEFAULT_TILE_SIZE} then, and zero with native
+     * BLAS. To tile on top of native BLAS, set its own thread count to one
+     * (e.g. <code>OMP_NUM_THREADS=1</code>) before setting a tile size.
+     * </p>
+     */
+    public DenseCholesky setTileSize(int tileSize) {
+        if (tileSize < 0)
+            throw new IllegalArgumentException("tileSize < 0");
+        this.tileSize = tileSize;
+        return this;
+    }
+
+    /**
+     * Makes the decomposition keep a copy of the factored matrix, apply the
+     * updates and downdates to it as well, and refactor it after the given
+     * number of them. This bounds the rounding errors accumulated by the
+     * updates at the cost of an occasional full factorization. Takes effect
+     * from the next call to <code>factor</code>
+     * 
+     * @param refactorInterval
+     *            Number of updates between refactorizations, or zero (the
+     *            default) for never refactoring
+     */
+    public DenseCholesky setRefactorInterval(int refactorInterval) {
+        if (refactorInterval < 0)
+            throw new IllegalArgumentException("refactorInterval < 0");
+        this.refactorInterval = refactorInterval;
+        return this;
+    }
+
     /**
      * Calculates a Cholesky decomposition
      * 
@@ -87,6 +186,24 @@ public class DenseCholesky {
                 .factor(new UpperSPDDenseMatrix(A));
     }
 
+    /**
+     * Calculates a Cholesky decomposition, copying the matrix into the given
+     * workspace instead of a new matrix
+     * 
+     * @param A
+     *            Matrix to decompose. Upper part used, and the matrix is not
+     *            modified
+     * @param workspace
+     *            Workspace to use
+     * @return The current decomposition
+     */
+    public static DenseCholesky factorize(Matrix A, Workspace workspace) {
+        if (!A.isSquare())
+            throw new IllegalArgumentException("!A.isSquare()");
+        return new DenseCholesky(A.numRows(), true, workspace)
+                .decompose(workspace.copy(A));
+    }
+
     /**
      * Calculates a Cholesky decomposition
      * 
@@ -99,6 +216,7 @@ public class DenseCholesky {
             throw new IllegalArgumentException(
                     "Cholesky decomposition constructed for upper matrices");
 
+        keep(A);
         return decompose(A);
     }
 
@@ -114,27 +232,43 @@ public class DenseCholesky {
             throw new IllegalArgumentException(
                     "Cholesky decomposition constructed for lower matrices");
 
+        keep(A);
         return decompose(A);
     }
 
+    private void keep(AbstractDenseMatrix A) {
+        updates = 0;
+        this.A = refactorInterval > 0 ? (AbstractDenseMatrix) A.copy() : null;
+    }
+
     private DenseCholesky decompose(AbstractDenseMatrix A) {
         if (n != A.numRows())
             throw new IllegalArgumentException("n != A.numRows()");
 
         notspd = false;
 
-        intW info = new intW(0);
-        if (upper)
-            LAPACK.getInstance().dpotrf(UpLo.Upper.netlib(), A.numRows(),
-                    A.getData(), Matrices.ld(A.numRows()), info);
-        else
-            LAPACK.getInstance().dpotrf(UpLo.Lower.netlib(), A.numRows(),
-                    A.getData(), Matrices.ld(A.numRows()), info);
-
-        if (info.val > 0)
-            notspd = true;
-        else if (info.val < 0)
-            throw new IllegalArgumentException();
+        if (tileSize > 0 && n > 2 * tileSize && Parallel.getThreads() > 1)
+            notspd = !TiledCholesky.factor(Tiles.of(A.getData(), n, n,
+                    tileSize), upper);
+        else if (n <= nativeThreshold) {
+            if (upper)
+                notspd = DenseKernels.potrf(n, A.getData(), 0) != 0;
+            else
+                notspd = DenseKernels.potrfLower(n, A.getData(), 0) != 0;
+        } else {
+            intW info = new intW(0);
+            if (upper)
+                LAPACK.getInstance().dpotrf(UpLo.Upper.netlib(), A.numRows(),
+                        A.getData(), Matrices.ld(A.numRows()), info);
+            else
+                LAPACK.getInstance().dpotrf(UpLo.Lower.netlib(), A.numRows(),
+                        A.getData(), Matrices.ld(A.numRows()), info);
+
+            if (info.val > 0)
+                notspd = true;
+            else if (info.val < 0)
+                throw new IllegalArgumentException();
+        }
 
         if (upper)
             Cu.set(A);
@@ -144,6 +278,105 @@ public class DenseCholesky {
         return this;
     }
 
+    /**
+     * Updates the decomposition to that of <code>A + x*x<sup>T</sup></code>
+     * in <code>O(n<sup>2</sup>)</code> operations, by a sequence of Givens
+     * rotations of the factor
+     * 
+     * @param x
+     *            Vector of the rank-1 update. Not modified
+     * @return The current decomposition
+     */
+    public DenseCholesky update(Vector x) {
+        double[] w = updateVector(x);
+        double[] C = upper ? Cu.getData() : Cl.getData();
+        int inc = upper ? n : 1;
+
+        // rotate the rows of [U; x^T], or the columns of [L x], to zero x
+        for (int k = 0; k < n; ++k) {
+            int kk = k + k * n;
+            new GivensRotation(C[kk], w[k]).apply(n - k, C, kk, inc, w, k, 1);
+            positive(C, k, inc);
+        }
+
+        return updated(1, x);
+    }
+
+    /**
+     * Updates the decomposition to that of <code>A - x*x<sup>T</sup></code>
+     * in <code>O(n<sup>2</sup>)</code> operations, by a triangular solve and
+     * a sequence of Givens rotations of the factor
+     * 
+     * @param x
+     *            Vector of the rank-1 downdate. Not modified
+     * @return The current decomposition
+     * @throws MatrixNotSPDException
+     *             If the downdated matrix is not positive definite, in which
+     *             case the decomposition is left unchanged
+     */
+    public DenseCholesky downdate(Vector x) throws MatrixNotSPDException {
+        double[] p = updateVector(x);
+        double[] C = upper ? Cu.getData() : Cl.getData();
+        int inc = upper ? n : 1;
+
+        // U^T p = x, or L p = x
+        BLAS blas = BLAS.getInstance();
+        blas.dtrsv(upper ? "U" : "L", upper ? "T" : "N", "N", n, C, n, p, 1);
+        double norm = blas.ddot(n, p, 1, p, 1);
+        if (norm >= 1)
+            throw new MatrixNotSPDException();
+
+        /*
+         * Rotations taking [p; sqrt(1 - p^T p)] to the last unit vector take
+         * [U; 0] to [U'; x^T], with U' the downdated factor
+         */
+        double[] alpha = { Math.sqrt(1 - norm) };
+        double[] w = workspace != null ? workspace.getDoubles(n)
+                : new double[n];
+        Arrays.fill(w, 0, n, 0);
+        for (int k = n - 1; k >= 0; --k) {
+            GivensRotation G = new GivensRotation(alpha[0], p[k]);
+            G.apply(1, alpha, 0, 1, p, k, 1);
+            G.apply(n - k, w, k, 1, C, k + k * n, inc);
+            positive(C, k, inc);
+        }
+
+        return updated(-1, x);
+    }
+
+    private double[] updateVector(Vector x) {
+        if (notspd)
+            throw new MatrixNotSPDException();
+        if (n != x.size())
+            throw new IllegalArgumentException("n != x.size()");
+        return new DenseVector(x).getData();
+    }
+
+    /**
+     * Flips the sign of the k'th row of U, or column of L, if its diagonal
+     * entry is negative
+     */
+    private void positive(double[] C, int k, int inc) {
+        int kk = k + k * n;
+        if (C[kk] < 0)
+            BLAS.getInstance().dscal(n - k, -1, C, kk, inc);
+    }
+
+    /**
+     * Applies an update to the kept matrix, and refactors it when due
+     */
+    private DenseCholesky updated(double alpha, Vector x) {
+        if (A == null)
+            return this;
+
+        A.rank1(alpha, x);
+        if (++updates >= refactorInterval) {
+            updates = 0;
+            decompose((AbstractDenseMatrix) A.copy());
+        }
+        return this;
+    }
+
     /**
      * Returns true if the matrix decomposed is symmetrical, positive definite
      */
@@ -182,6 +415,16 @@ public class DenseCholesky {
         if (n != B.numRows())
             throw new IllegalArgumentException("n != B.numRows()");
 
+        if (n <= nativeThreshold) {
+            if (upper)
+                DenseKernels.potrs(n, B.numColumns(), Cu.getData(), 0,
+                        B.getData(), 0);
+            else
+                DenseKernels.potrsLower(n, B.numColumns(), Cl.getData(), 0,
+                        B.getData(), 0);
+            return B;
+        }
+
         intW info = new intW(0);
         if (upper)
             LAPACK.getInstance().dpotrs(UpLo.Upper.netlib(), Cu.numRows(),
@@ -214,8 +457,9 @@ public class DenseCholesky {
 
         double anorm = A.norm(Norm.One);
 
-        double[] work = new double[3 * n];
-        int[] iwork = new int[n];
+        double[] work = workspace != null ? workspace.getDoubles(3 * n)
+                : new double[3 * n];
+        int[] iwork = workspace != null ? workspace.getInts(n) : new int[n];
 
         intW info = new intW(0);
         doubleW rcond = new doubleW(0);
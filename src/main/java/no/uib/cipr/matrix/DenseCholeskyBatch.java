@@ -0,0 +1,190 @@
+package no.uib.cipr.matrix;
+
+import com.github.fommil.netlib.LAPACK;
+import org.netlib.util.intW;
+
+/**
+ * Cholesky decompositions of a batch of small symmetric positive definite
+ * matrices of the same size, using the same strided batch layout as
+ * {@link DenseLUBatch}. Only the upper triangular part of each matrix is
+ * referenced, and on return holds the factor <code>U</code> of
+ * <code>A = U<sup>T</sup>U</code>.
+ */
+public class DenseCholeskyBatch {
+
+    /**
+     * Matrix size and number of matrices
+     */
+    private final int n, count;
+
+    /**
+     * Holds the Cholesky factors. This is the array last passed to
+     * {@link #factor(double[])}
+     */
+    private double[] Cu;
+
+    /**
+     * True for the matrices which were not SPD
+     */
+    private final boolean[] notspd;
+
+    private int nativeThreshold = DenseLUBatch.DEFAULT_NATIVE_THRESHOLD;
+
+    /**
+     * Constructor for DenseCholeskyBatch
+     *
+     * @param n
+     *            Size of each matrix
+     * @param count
+     *            Number of matrices
+     */
+    public DenseCholeskyBatch(int n, int count) {
+        if (n < 0 || count < 0)
+            throw new IllegalArgumentException("n < 0 || count < 0");
+        this.n = n;
+        this.count = count;
+        notspd = new boolean[count];
+    }
+
+    /**
+     * Calculates Cholesky decompositions of the given matrices
+     *
+     * @param n
+     *            Size of each matrix
+     * @param A
+     *            Matrices to decompose, in strided batch layout. Not modified
+     * @return The decompositions
+     */
+    public static DenseCholeskyBatch factorize(int n, double[] A) {
+        if (n == 0)
+            return new DenseCholeskyBatch(0, 0);
+        return new DenseCholeskyBatch(n, A.length / (n * n)).factor(A
+                .clone());
+    }
+
+    /**
+     * Sets the largest matrix size which is factored and solved in pure Java.
+     * Larger matrices are handled by LAPACK
+     */
+    public DenseCholeskyBatch setNativeThreshold(int nativeThreshold) {
+        this.nativeThreshold = nativeThreshold;
+        return this;
+    }
+
+    /**
+     * Calculates Cholesky decompositions of the given matrices
+     *
+     * @param A
+     *            Matrices to decompose, in strided batch layout. Overwritten
+     *            with the decompositions, and kept by reference until the next
+     *            call
+     * @return The current decompositions
+     */
+    public DenseCholeskyBatch factor(final double[] A) {
+        if (A.length != n * n * count)
+            throw new IllegalArgumentException("A.length != n * n * count");
+
+        Parallel.forRange(count, grain(), new Parallel.RangeTask() {
+            public void run(int from, int to) {
+                int nn = n * n;
+                if (n <= nativeThreshold)
+                    for (int k = from; k < to; ++k)
+                        notspd[k] = DenseKernels.potrf(n, A, k * nn) != 0;
+                else {
+                    intW info = new intW(0);
+                    for (int k = from; k < to; ++k) {
+                        info.val = 0;
+                        LAPACK.getInstance().dpotrf(UpLo.Upper.netlib(), n,
+                                A, k * nn, Matrices.ld(n), info);
+                        if (info.val < 0)
+                            throw new IllegalArgumentException();
+                        notspd[k] = info.val > 0;
+                    }
+                }
+            }
+        });
+
+        Cu = A;
+
+        return this;
+    }
+
+    private int grain() {
+        return Math.max(1, 16384 / Math.max(1, n * n * n));
+    }
+
+    /**
+     * Returns the number of matrices
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the decompositions in strided batch layout
+     */
+    public double[] getData() {
+        return Cu;
+    }
+
+    /**
+     * Returns true if matrix <code>k</code> is symmetrical, positive definite
+     */
+    public boolean isSPD(int k) {
+        return !notspd[k];
+    }
+
+    /**
+     * Returns true if every matrix in the batch is symmetrical, positive
+     * definite
+     */
+    public boolean isSPD() {
+        for (boolean s : notspd)
+            if (s)
+                return false;
+        return true;
+    }
+
+    /**
+     * Solves for <code>B</code>, overwriting it on return
+     *
+     * @param B
+     *            Right hand sides in strided batch layout, <code>nrhs</code>
+     *            columns per matrix
+     * @param nrhs
+     *            Number of right hand sides per matrix
+     */
+    public double[] solve(final double[] B, final int nrhs)
+            throws MatrixNotSPDException {
+        if (count > 0 && Cu == null)
+            throw new IllegalStateException("No matrices have been factored");
+        if (B.length != n * nrhs * count)
+            throw new IllegalArgumentException("B.length != n * nrhs * count");
+        for (int k = 0; k < count; ++k)
+            if (notspd[k])
+                throw new MatrixNotSPDException("Matrix " + k
+                        + " of the batch is not SPD");
+
+        Parallel.forRange(count, grain(), new Parallel.RangeTask() {
+            public void run(int from, int to) {
+                int nn = n * n, nb = n * nrhs;
+                if (n <= nativeThreshold)
+                    for (int k = from; k < to; ++k)
+                        DenseKernels.potrs(n, nrhs, Cu, k * nn, B, k * nb);
+                else {
+                    intW info = new intW(0);
+                    for (int k = from; k < to; ++k) {
+                        LAPACK.getInstance().dpotrs(UpLo.Upper.netlib(), n,
+                                nrhs, Cu, k * nn, Matrices.ld(n), B, k * nb,
+                                Matrices.ld(n), info);
+                        if (info.val < 0)
+                            throw new IllegalArgumentException();
+                    }
+                }
+            }
+        });
+
+        return B;
+    }
+
+}
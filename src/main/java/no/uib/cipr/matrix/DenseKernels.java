@@ -0,0 +1,839 @@
+package no.uib.cipr.matrix;
+
+/**
+ * Pure Java implementations of a few LAPACK kernels, operating on column major
+ * square matrices stored at an offset into an array. For small matrices these
+ * are faster than the native routines, as they avoid the JNI transition and
+ * argument checking. Results, including the 1-based pivot convention, match
+ * those of the corresponding LAPACK routines. The square LU and upper Cholesky
+ * kernels are fully unrolled for <code>n &lt;= 4</code>.
+ */
+final class DenseKernels {
+
+    private DenseKernels() {
+        // static utility
+    }
+
+    /**
+     * Partial pivot LU factorization of a square matrix, as
+     * <code>dgetrf</code>.
+     *
+     * @return <code>0</code> on success, or <code>k &gt; 0</code> if
+     *         <code>U(k, k)</code> is exactly zero
+     */
+    static int getrf(int n, double[] a, int off, int[] piv, int poff) {
+        switch (n) {
+        case 2:
+            return getrf2(a, off, piv, poff);
+        case 3:
+            return getrf3(a, off, piv, poff);
+        case 4:
+            return getrf4(a, off, piv, poff);
+        default:
+            return getrf(n, n, a, off, piv, poff);
+        }
+    }
+
+    /**
+     * Partial pivot LU factorization of an <code>m x n</code> matrix with
+     * leading dimension <code>m</code>, as <code>dgetrf</code>.
+     *
+     * @return <code>0</code> on success, or <code>k &gt; 0</code> if
+     *         <code>U(k, k)</code> is exactly zero
+     */
+    static int getrf(int m, int n, double[] a, int off, int[] piv, int poff) {
+        int info = 0;
+        for (int k = 0; k < Math.min(m, n); ++k) {
+            int kk = off + k * m;
+
+            // Find pivot
+            int p = k;
+            double max = Math.abs(a[kk + k]);
+            for (int i = k + 1; i < m; ++i) {
+                double v = Math.abs(a[kk + i]);
+                if (v > max) {
+                    max = v;
+                    p = i;
+                }
+            }
+            piv[poff + k] = p + 1;
+
+            if (a[kk + p] == 0) {
+                if (info == 0)
+                    info = k + 1;
+                continue;
+            }
+
+            // Interchange rows
+            if (p != k)
+                for (int j = 0, o = off; j < n; ++j, o += m) {
+                    double t = a[o + k];
+                    a[o + k] = a[o + p];
+                    a[o + p] = t;
+                }
+
+            // Compute multipliers
+            double inv = 1 / a[kk + k];
+            for (int i = k + 1; i < m; ++i)
+                a[kk + i] *= inv;
+
+            // Update trailing submatrix
+            for (int j = k + 1, o = off + (k + 1) * m; j < n; ++j, o += m) {
+                double akj = a[o + k];
+                if (akj != 0)
+                    for (int i = k + 1; i < m; ++i)
+                        a[o + i] -= a[kk + i] * akj;
+            }
+        }
+        return info;
+    }
+
+    /**
+     * Solves using an LU factorization from {@link #getrf}, as
+     * <code>dgetrs</code>. The <code>nrhs</code> right hand sides are stored
+     * contiguously from <code>boff</code>, and are overwritten
+     */
+    static void getrs(boolean trans, int n, int nrhs, double[] a, int off,
+            int[] piv, int poff, double[] b, int boff) {
+        if (!trans)
+            switch (n) {
+            case 2:
+                getrs2(nrhs, a, off, piv, poff, b, boff);
+                return;
+            case 3:
+                getrs3(nrhs, a, off, piv, poff, b, boff);
+                return;
+            case 4:
+                getrs4(nrhs, a, off, piv, poff, b, boff);
+                return;
+            }
+
+        for (int r = 0, bo = boff; r < nrhs; ++r, bo += n) {
+            if (!trans) {
+                // Apply the row interchanges
+                for (int k = 0; k < n; ++k) {
+                    int p = piv[poff + k] - 1;
+                    if (p != k) {
+                        double t = b[bo + k];
+                        b[bo + k] = b[bo + p];
+                        b[bo + p] = t;
+                    }
+                }
+
+                // L y = b, L has unit diagonal
+                for (int j = 0, o = off; j < n; ++j, o += n) {
+                    double bj = b[bo + j];
+                    if (bj != 0)
+                        for (int i = j + 1; i < n; ++i)
+                            b[bo + i] -= a[o + i] * bj;
+                }
+
+                // U x = y
+                for (int j = n - 1, o = off + j * n; j >= 0; --j, o -= n) {
+                    double bj = b[bo + j] /= a[o + j];
+                    if (bj != 0)
+                        for (int i = 0; i < j; ++i)
+                            b[bo + i] -= a[o + i] * bj;
+                }
+            } else {
+                // U' y = b
+                for (int j = 0, o = off; j < n; ++j, o += n) {
+                    double s = b[bo + j];
+                    for (int i = 0; i < j; ++i)
+                        s -= a[o + i] * b[bo + i];
+                    b[bo + j] = s / a[o + j];
+                }
+
+                // L' x = y
+                for (int j = n - 1, o = off + j * n; j >= 0; --j, o -= n) {
+                    double s = b[bo + j];
+                    for (int i = j + 1; i < n; ++i)
+                        s -= a[o + i] * b[bo + i];
+                    b[bo + j] = s;
+                }
+
+                // Undo the row interchanges
+                for (int k = n - 1; k >= 0; --k) {
+                    int p = piv[poff + k] - 1;
+                    if (p != k) {
+                        double t = b[bo + k];
+                        b[bo + k] = b[bo + p];
+                        b[bo + p] = t;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Upper Cholesky factorization <code>A = U'U</code>, as
+     * <code>dpotrf("U")</code>. Only the upper triangular part is referenced
+     *
+     * @return <code>0</code> on success, or <code>k &gt; 0</code> if the
+     *         leading minor of order <code>k</code> is not positive definite
+     */
+    static int potrf(int n, double[] a, int off) {
+        switch (n) {
+        case 2:
+            return potrf2(a, off);
+        case 3:
+            return potrf3(a, off);
+        case 4:
+            return potrf4(a, off);
+        }
+
+        for (int j = 0, oj = off; j < n; ++j, oj += n) {
+            double s = a[oj + j];
+            for (int k = 0; k < j; ++k)
+                s -= a[oj + k] * a[oj + k];
+            if (s <= 0 || Double.isNaN(s))
+                return j + 1;
+            double ujj = Math.sqrt(s);
+            a[oj + j] = ujj;
+
+            for (int i = j + 1, oi = oj + n; i < n; ++i, oi += n) {
+                double t = a[oi + j];
+                for (int k = 0; k < j; ++k)
+                    t -= a[oj + k] * a[oi + k];
+                a[oi + j] = t / ujj;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Solves using an upper Cholesky factorization from {@link #potrf}, as
+     * <code>dpotrs("U")</code>. The <code>nrhs</code> right hand sides are
+     * stored contiguously from <code>boff</code>, and are overwritten
+     */
+    static void potrs(int n, int nrhs, double[] a, int off, double[] b,
+            int boff) {
+        switch (n) {
+        case 2:
+            potrs2(nrhs, a, off, b, boff);
+            return;
+        case 3:
+            potrs3(nrhs, a, off, b, boff);
+            return;
+        case 4:
+            potrs4(nrhs, a, off, b, boff);
+            return;
+        }
+
+        for (int r = 0, bo = boff; r < nrhs; ++r, bo += n) {
+            // U' y = b
+            for (int j = 0, o = off; j < n; ++j, o += n) {
+                double s = b[bo + j];
+                for (int i = 0; i < j; ++i)
+                    s -= a[o + i] * b[bo + i];
+                b[bo + j] = s / a[o + j];
+            }
+
+            // U x = y
+            for (int j = n - 1, o = off + j * n; j >= 0; --j, o -= n) {
+                double bj = b[bo + j] /= a[o + j];
+                if (bj != 0)
+                    for (int i = 0; i < j; ++i)
+                        b[bo + i] -= a[o + i] * bj;
+            }
+        }
+    }
+
+    /**
+     * Lower Cholesky factorization <code>A = LL'</code>, as
+     * <code>dpotrf("L")</code>. Only the lower triangular part is referenced
+     *
+     * @return <code>0</code> on success, or <code>k &gt; 0</code> if the
+     *         leading minor of order <code>k</code> is not positive definite
+     */
+    static int potrfLower(int n, double[] a, int off) {
+        for (int j = 0, oj = off; j < n; ++j, oj += n) {
+            double s = a[oj + j];
+            for (int k = 0, ok = off; k < j; ++k, ok += n)
+                s -= a[ok + j] * a[ok + j];
+            if (s <= 0 || Double.isNaN(s))
+                return j + 1;
+            double ljj = Math.sqrt(s);
+            a[oj + j] = ljj;
+
+            // Column j below the diagonal, updated by the previous columns
+            for (int k = 0, ok = off; k < j; ++k, ok += n) {
+                double ljk = a[ok + j];
+                if (ljk != 0)
+                    for (int i = j + 1; i < n; ++i)
+                        a[oj + i] -= a[ok + i] * ljk;
+            }
+            double inv = 1 / ljj;
+            for (int i = j + 1; i < n; ++i)
+                a[oj + i] *= inv;
+        }
+        return 0;
+    }
+
+    /**
+     * Solves using a lower Cholesky factorization from {@link #potrfLower},
+     * as <code>dpotrs("L")</code>. The <code>nrhs</code> right hand sides are
+     * stored contiguously from <code>boff</code>, and are overwritten
+     */
+    static void potrsLower(int n, int nrhs, double[] a, int off, double[] b,
+            int boff) {
+        for (int r = 0, bo = boff; r < nrhs; ++r, bo += n) {
+            // L y = b
+            for (int j = 0, o = off; j < n; ++j, o += n) {
+                double bj = b[bo + j] /= a[o + j];
+                if (bj != 0)
+                    for (int i = j + 1; i < n; ++i)
+                        b[bo + i] -= a[o + i] * bj;
+            }
+
+            // L' x = y
+            for (int j = n - 1, o = off + j * n; j >= 0; --j, o -= n) {
+                double s = b[bo + j];
+                for (int i = j + 1; i < n; ++i)
+                    s -= a[o + i] * b[bo + i];
+                b[bo + j] = s / a[o + j];
+            }
+        }
+    }
+
+    /**
+     * <code>C = alpha * op(A) * op(B) + C</code>, as <code>dgemm</code> with
+     * <code>beta = 1</code>. The leading dimensions are the row counts of the
+     * stored matrices
+     */
+    static void gemm(boolean ta, boolean tb, int m, int n, int k,
+            double alpha, double[] a, double[] b, double[] c) {
+        int lda = ta ? k : m, ldb = tb ? n : k;
+        for (int j = 0; j < n; ++j) {
+            int oc = j * m;
+            if (!ta)
+                for (int l = 0; l < k; ++l) {
+                    double blj = alpha * (tb ? b[j + l * ldb] : b[l + j * ldb]);
+                    if (blj != 0)
+                        for (int i = 0, oa = l * lda; i < m; ++i)
+                            c[oc + i] += a[oa + i] * blj;
+                }
+            else
+                for (int i = 0; i < m; ++i) {
+                    double s = 0;
+                    for (int l = 0, oa = i * lda; l < k; ++l)
+                        s += a[oa + l] * (tb ? b[j + l * ldb] : b[l + j * ldb]);
+                    c[oc + i] += alpha * s;
+                }
+        }
+    }
+
+    /**
+     * <code>y = alpha * op(A) * x + y</code> for an <code>m x n</code> matrix
+     * with leading dimension <code>m</code>, as <code>dgemv</code> with
+     * <code>beta = 1</code>
+     */
+    static void gemv(boolean trans, int m, int n, double alpha, double[] a,
+            double[] x, double[] y) {
+        if (!trans)
+            for (int j = 0, o = 0; j < n; ++j, o += m) {
+                double xj = alpha * x[j];
+                if (xj != 0)
+                    for (int i = 0; i < m; ++i)
+                        y[i] += a[o + i] * xj;
+            }
+        else
+            for (int j = 0, o = 0; j < n; ++j, o += m) {
+                double s = 0;
+                for (int i = 0; i < m; ++i)
+                    s += a[o + i] * x[i];
+                y[j] += alpha * s;
+            }
+    }
+
+    /**
+     * <code>A = alpha * x * y' + A</code> for an <code>m x n</code> matrix
+     * with leading dimension <code>m</code>, as <code>dger</code>
+     */
+    static void ger(int m, int n, double alpha, double[] x, double[] y,
+            double[] a) {
+        for (int j = 0, o = 0; j < n; ++j, o += m) {
+            double yj = alpha * y[j];
+            if (yj != 0)
+                for (int i = 0; i < m; ++i)
+                    a[o + i] += x[i] * yj;
+        }
+    }
+
+    /*
+     * Fully unrolled kernels for n = 2, 3 and 4, used by the entry points
+     * above. They perform the same operations as the loops, with all indices
+     * constant, so the solution stays in registers
+     */
+
+    private static int getrf2(double[] a, int off, int[] piv, int poff) {
+        int info = 0, p;
+        double max, v, t, inv, akj;
+
+        // column 0
+        p = 0;
+        max = Math.abs(a[off]);
+        if ((v = Math.abs(a[off + 1])) > max) {
+            max = v;
+            p = 1;
+        }
+        piv[poff] = p + 1;
+        if (max == 0) {
+            if (info == 0)
+                info = 1;
+        } else {
+            if (p != 0) {
+                t = a[off];
+                a[off] = a[off + p];
+                a[off + p] = t;
+                t = a[off + 2];
+                a[off + 2] = a[off + 2 + p];
+                a[off + 2 + p] = t;
+            }
+            inv = 1 / a[off];
+            a[off + 1] *= inv;
+            akj = a[off + 2];
+            a[off + 3] -= a[off + 1] * akj;
+        }
+
+        // column 1
+        p = 1;
+        max = Math.abs(a[off + 3]);
+        piv[poff + 1] = p + 1;
+        if (max == 0) {
+            if (info == 0)
+                info = 2;
+        } else {
+        }
+        return info;
+    }
+
+    private static int getrf3(double[] a, int off, int[] piv, int poff) {
+        int info = 0, p;
+        double max, v, t, inv, akj;
+
+        // column 0
+        p = 0;
+        max = Math.abs(a[off]);
+        if ((v = Math.abs(a[off + 1])) > max) {
+            max = v;
+            p = 1;
+        }
+        if ((v = Math.abs(a[off + 2])) > max) {
+            max = v;
+            p = 2;
+        }
+        piv[poff] = p + 1;
+        if (max == 0) {
+            if (info == 0)
+                info = 1;
+        } else {
+            if (p != 0) {
+                t = a[off];
+                a[off] = a[off + p];
+                a[off + p] = t;
+                t = a[off + 3];
+                a[off + 3] = a[off + 3 + p];
+                a[off + 3 + p] = t;
+                t = a[off + 6];
+                a[off + 6] = a[off + 6 + p];
+                a[off + 6 + p] = t;
+            }
+            inv = 1 / a[off];
+            a[off + 1] *= inv;
+            a[off + 2] *= inv;
+            akj = a[off + 3];
+            a[off + 4] -= a[off + 1] * akj;
+            a[off + 5] -= a[off + 2] * akj;
+            akj = a[off + 6];
+            a[off + 7] -= a[off + 1] * akj;
+            a[off + 8] -= a[off + 2] * akj;
+        }
+
+        // column 1
+        p = 1;
+        max = Math.abs(a[off + 4]);
+        if ((v = Math.abs(a[off + 5])) > max) {
+            max = v;
+            p = 2;
+        }
+        piv[poff + 1] = p + 1;
+        if (max == 0) {
+            if (info == 0)
+                info = 2;
+        } else {
+            if (p != 1) {
+                t = a[off + 1];
+                a[off + 1] = a[off + p];
+                a[off + p] = t;
+                t = a[off + 4];
+                a[off + 4] = a[off + 3 + p];
+                a[off + 3 + p] = t;
+                t = a[off + 7];
+                a[off + 7] = a[off + 6 + p];
+                a[off + 6 + p] = t;
+            }
+            inv = 1 / a[off + 4];
+            a[off + 5] *= inv;
+            akj = a[off + 7];
+            a[off + 8] -= a[off + 5] * akj;
+        }
+
+        // column 2
+        p = 2;
+        max = Math.abs(a[off + 8]);
+        piv[poff + 2] = p + 1;
+        if (max == 0) {
+            if (info == 0)
+                info = 3;
+        } else {
+        }
+        return info;
+    }
+
+    private static int getrf4(double[] a, int off, int[] piv, int poff) {
+        int info = 0, p;
+        double max, v, t, inv, akj;
+
+        // column 0
+        p = 0;
+        max = Math.abs(a[off]);
+        if ((v = Math.abs(a[off + 1])) > max) {
+            max = v;
+            p = 1;
+        }
+        if ((v = Math.abs(a[off + 2])) > max) {
+            max = v;
+            p = 2;
+        }
+        if ((v = Math.abs(a[off + 3])) > max) {
+            max = v;
+            p = 3;
+        }
+        piv[poff] = p + 1;
+        if (max == 0) {
+            if (info == 0)
+                info = 1;
+        } else {
+            if (p != 0) {
+                t = a[off];
+                a[off] = a[off + p];
+                a[off + p] = t;
+                t = a[off + 4];
+                a[off + 4] = a[off + 4 + p];
+                a[off + 4 + p] = t;
+                t = a[off + 8];
+                a[off + 8] = a[off + 8 + p];
+                a[off + 8 + p] = t;
+                t = a[off + 12];
+                a[off + 12] = a[off + 12 + p];
+                a[off + 12 + p] = t;
+            }
+            inv = 1 / a[off];
+            a[off + 1] *= inv;
+            a[off + 2] *= inv;
+            a[off + 3] *= inv;
+            akj = a[off + 4];
+            a[off + 5] -= a[off + 1] * akj;
+            a[off + 6] -= a[off + 2] * akj;
+            a[off + 7] -= a[off + 3] * akj;
+            akj = a[off + 8];
+            a[off + 9] -= a[off + 1] * akj;
+            a[off + 10] -= a[off + 2] * akj;
+            a[off + 11] -= a[off + 3] * akj;
+            akj = a[off + 12];
+            a[off + 13] -= a[off + 1] * akj;
+            a[off + 14] -= a[off + 2] * akj;
+            a[off + 15] -= a[off + 3] * akj;
+        }
+
+        // column 1
+        p = 1;
+        max = Math.abs(a[off + 5]);
+        if ((v = Math.abs(a[off + 6])) > max) {
+            max = v;
+            p = 2;
+        }
+        if ((v = Math.abs(a[off + 7])) > max) {
+            max = v;
+            p = 3;
+        }
+        piv[poff + 1] = p + 1;
+        if (max == 0) {
+            if (info == 0)
+                info = 2;
+        } else {
+            if (p != 1) {
+                t = a[off + 1];
+                a[off + 1] = a[off + p];
+                a[off + p] = t;
+                t = a[off + 5];
+                a[off + 5] = a[off + 4 + p];
+                a[off + 4 + p] = t;
+                t = a[off + 9];
+                a[off + 9] = a[off + 8 + p];
+                a[off + 8 + p] = t;
+                t = a[off + 13];
+                a[off + 13] = a[off + 12 + p];
+                a[off + 12 + p] = t;
+            }
+            inv = 1 / a[off + 5];
+            a[off + 6] *= inv;
+            a[off + 7] *= inv;
+            akj = a[off + 9];
+            a[off + 10] -= a[off + 6] * akj;
+            a[off + 11] -= a[off + 7] * akj;
+            akj = a[off + 13];
+            a[off + 14] -= a[off + 6] * akj;
+            a[off + 15] -= a[off + 7] * akj;
+        }
+
+        // column 2
+        p = 2;
+        max = Math.abs(a[off + 10]);
+        if ((v = Math.abs(a[off + 11])) > max) {
+            max = v;
+            p = 3;
+        }
+        piv[poff + 2] = p + 1;
+        if (max == 0) {
+            if (info == 0)
+                info = 3;
+        } else {
+            if (p != 2) {
+                t = a[off + 2];
+                a[off + 2] = a[off + p];
+                a[off + p] = t;
+                t = a[off + 6];
+                a[off + 6] = a[off + 4 + p];
+                a[off + 4 + p] = t;
+                t = a[off + 10];
+                a[off + 10] = a[off + 8 + p];
+                a[off + 8 + p] = t;
+                t = a[off + 14];
+                a[off + 14] = a[off + 12 + p];
+                a[off + 12 + p] = t;
+            }
+            inv = 1 / a[off + 10];
+            a[off + 11] *= inv;
+            akj = a[off + 14];
+            a[off + 15] -= a[off + 11] * akj;
+        }
+
+        // column 3
+        p = 3;
+        max = Math.abs(a[off + 15]);
+        piv[poff + 3] = p + 1;
+        if (max == 0) {
+            if (info == 0)
+                info = 4;
+        } else {
+        }
+        return info;
+    }
+
+    private static void getrs2(int nrhs, double[] a, int off, int[] piv,
+            int poff, double[] b, int boff) {
+        int p;
+        double t;
+        for (int r = 0, bo = boff; r < nrhs; ++r, bo += 2) {
+            if ((p = piv[poff] - 1) != 0) {
+                t = b[bo];
+                b[bo] = b[bo + p];
+                b[bo + p] = t;
+            }
+            if ((p = piv[poff + 1] - 1) != 1) {
+                t = b[bo + 1];
+                b[bo + 1] = b[bo + p];
+                b[bo + p] = t;
+            }
+            double b0 = b[bo], b1 = b[bo + 1];
+            b1 = b1 - a[off + 1] * b0;
+            b1 = b1 / a[off + 3];
+            b0 = (b0 - a[off + 2] * b1) / a[off];
+            b[bo] = b0;
+            b[bo + 1] = b1;
+        }
+    }
+
+    private static void getrs3(int nrhs, double[] a, int off, int[] piv,
+            int poff, double[] b, int boff) {
+        int p;
+        double t;
+        for (int r = 0, bo = boff; r < nrhs; ++r, bo += 3) {
+            if ((p = piv[poff] - 1) != 0) {
+                t = b[bo];
+                b[bo] = b[bo + p];
+                b[bo + p] = t;
+            }
+            if ((p = piv[poff + 1] - 1) != 1) {
+                t = b[bo + 1];
+                b[bo + 1] = b[bo + p];
+                b[bo + p] = t;
+            }
+            if ((p = piv[poff + 2] - 1) != 2) {
+                t = b[bo + 2];
+                b[bo + 2] = b[bo + p];
+                b[bo + p] = t;
+            }
+            double b0 = b[bo], b1 = b[bo + 1], b2 = b[bo + 2];
+            b1 = b1 - a[off + 1] * b0;
+            b2 = b2 - a[off + 2] * b0 - a[off + 5] * b1;
+            b2 = b2 / a[off + 8];
+            b1 = (b1 - a[off + 7] * b2) / a[off + 4];
+            b0 = (b0 - a[off + 3] * b1 - a[off + 6] * b2) / a[off];
+            b[bo] = b0;
+            b[bo + 1] = b1;
+            b[bo + 2] = b2;
+        }
+    }
+
+    private static void getrs4(int nrhs, double[] a, int off, int[] piv,
+            int poff, double[] b, int boff) {
+        int p;
+        double t;
+        for (int r = 0, bo = boff; r < nrhs; ++r, bo += 4) {
+            if ((p = piv[poff] - 1) != 0) {
+                t = b[bo];
+                b[bo] = b[bo + p];
+                b[bo + p] = t;
+            }
+            if ((p = piv[poff + 1] - 1) != 1) {
+                t = b[bo + 1];
+                b[bo + 1] = b[bo + p];
+                b[bo + p] = t;
+            }
+            if ((p = piv[poff + 2] - 1) != 2) {
+                t = b[bo + 2];
+                b[bo + 2] = b[bo + p];
+                b[bo + p] = t;
+            }
+            if ((p = piv[poff + 3] - 1) != 3) {
+                t = b[bo + 3];
+                b[bo + 3] = b[bo + p];
+                b[bo + p] = t;
+            }
+            double b0 = b[bo], b1 = b[bo + 1], b2 = b[bo + 2], b3 = b[bo + 3];
+            b1 = b1 - a[off + 1] * b0;
+            b2 = b2 - a[off + 2] * b0 - a[off + 6] * b1;
+            b3 = b3 - a[off + 3] * b0 - a[off + 7] * b1 - a[off + 11] * b2;
+            b3 = b3 / a[off + 15];
+            b2 = (b2 - a[off + 14] * b3) / a[off + 10];
+            b1 = (b1 - a[off + 9] * b2 - a[off + 13] * b3) / a[off + 5];
+            b0 = (b0 - a[off + 4] * b1 - a[off + 8] * b2 - a[off + 12] * b3) / a[off];
+            b[bo] = b0;
+            b[bo + 1] = b1;
+            b[bo + 2] = b2;
+            b[bo + 3] = b3;
+        }
+    }
+
+    private static int potrf2(double[] a, int off) {
+        double s;
+        s = a[off];
+        if (s <= 0 || Double.isNaN(s))
+            return 1;
+        a[off] = s = Math.sqrt(s);
+        a[off + 2] = a[off + 2] / s;
+        s = a[off + 3] - a[off + 2] * a[off + 2];
+        if (s <= 0 || Double.isNaN(s))
+            return 2;
+        a[off + 3] = s = Math.sqrt(s);
+        return 0;
+    }
+
+    private static int potrf3(double[] a, int off) {
+        double s;
+        s = a[off];
+        if (s <= 0 || Double.isNaN(s))
+            return 1;
+        a[off] = s = Math.sqrt(s);
+        a[off + 3] = a[off + 3] / s;
+        a[off + 6] = a[off + 6] / s;
+        s = a[off + 4] - a[off + 3] * a[off + 3];
+        if (s <= 0 || Double.isNaN(s))
+            return 2;
+        a[off + 4] = s = Math.sqrt(s);
+        a[off + 7] = (a[off + 7] - a[off + 3] * a[off + 6]) / s;
+        s = a[off + 8] - a[off + 6] * a[off + 6] - a[off + 7] * a[off + 7];
+        if (s <= 0 || Double.isNaN(s))
+            return 3;
+        a[off + 8] = s = Math.sqrt(s);
+        return 0;
+    }
+
+    private static int potrf4(double[] a, int off) {
+        double s;
+        s = a[off];
+        if (s <= 0 || Double.isNaN(s))
+            return 1;
+        a[off] = s = Math.sqrt(s);
+        a[off + 4] = a[off + 4] / s;
+        a[off + 8] = a[off + 8] / s;
+        a[off + 12] = a[off + 12] / s;
+        s = a[off + 5] - a[off + 4] * a[off + 4];
+        if (s <= 0 || Double.isNaN(s))
+            return 2;
+        a[off + 5] = s = Math.sqrt(s);
+        a[off + 9] = (a[off + 9] - a[off + 4] * a[off + 8]) / s;
+        a[off + 13] = (a[off + 13] - a[off + 4] * a[off + 12]) / s;
+        s = a[off + 10] - a[off + 8] * a[off + 8] - a[off + 9] * a[off + 9];
+        if (s <= 0 || Double.isNaN(s))
+            return 3;
+        a[off + 10] = s = Math.sqrt(s);
+        a[off + 14] = (a[off + 14] - a[off + 8] * a[off + 12] - a[off + 9] * a[off + 13]) / s;
+        s = a[off + 15] - a[off + 12] * a[off + 12] - a[off + 13] * a[off + 13] - a[off + 14] * a[off + 14];
+        if (s <= 0 || Double.isNaN(s))
+            return 4;
+        a[off + 15] = s = Math.sqrt(s);
+        return 0;
+    }
+
+    private static void potrs2(int nrhs, double[] a, int off, double[] b,
+            int boff) {
+        for (int r = 0, bo = boff; r < nrhs; ++r, bo += 2) {
+            double b0 = b[bo], b1 = b[bo + 1];
+            b0 = b0 / a[off];
+            b1 = (b1 - a[off + 2] * b0) / a[off + 3];
+            b1 = b1 / a[off + 3];
+            b0 = (b0 - a[off + 2] * b1) / a[off];
+            b[bo] = b0;
+            b[bo + 1] = b1;
+        }
+    }
+
+    private static void potrs3(int nrhs, double[] a, int off, double[] b,
+            int boff) {
+        for (int r = 0, bo = boff; r < nrhs; ++r, bo += 3) {
+            double b0 = b[bo], b1 = b[bo + 1], b2 = b[bo + 2];
+            b0 = b0 / a[off];
+            b1 = (b1 - a[off + 3] * b0) / a[off + 4];
+            b2 = (b2 - a[off + 6] * b0 - a[off + 7] * b1) / a[off + 8];
+            b2 = b2 / a[off + 8];
+            b1 = (b1 - a[off + 7] * b2) / a[off + 4];
+            b0 = (b0 - a[off + 3] * b1 - a[off + 6] * b2) / a[off];
+            b[bo] = b0;
+            b[bo + 1] = b1;
+            b[bo + 2] = b2;
+        }
+    }
+
+    private static void potrs4(int nrhs, double[] a, int off, double[] b,
+            int boff) {
+        for (int r = 0, bo = boff; r < nrhs; ++r, bo += 4) {
+            double b0 = b[bo], b1 = b[bo + 1], b2 = b[bo + 2], b3 = b[bo + 3];
+            b0 = b0 / a[off];
+            b1 = (b1 - a[off + 4] * b0) / a[off + 5];
+            b2 = (b2 - a[off + 8] * b0 - a[off + 9] * b1) / a[off + 10];
+            b3 = (b3 - a[off + 12] * b0 - a[off + 13] * b1 - a[off + 14] * b2) / a[off + 15];
+            b3 = b3 / a[off + 15];
+            b2 = (b2 - a[off + 14] * b3) / a[off + 10];
+            b1 = (b1 - a[off + 9] * b2 - a[off + 13] * b3) / a[off + 5];
+            b0 = (b0 - a[off + 4] * b1 - a[off + 8] * b2 - a[off + 12] * b3) / a[off];
+            b[bo] = b0;
+            b[bo + 1] = b1;
+            b[bo + 2] = b2;
+            b[bo + 3] = b3;
+        }
+    }
+}
@@ -45,6 +45,15 @@ public class DenseLU {
      */
     private boolean singular;
 
+    private int nativeThreshold = DenseMatrix.getNativeThreshold();
+
+    private int tileSize = TiledDenseMatrix.defaultFactorTileSize();
+
+    /**
+     * Lends the work arrays of the condition estimate instead, if not null
+     */
+    private final Workspace workspace;
+
     /**
      * Constructor for DenseLU
      * 
@@ -54,8 +63,26 @@ public class DenseLU {
      *            Number of columns
      */
     public DenseLU(int m, int n) {
+        this(m, n, null);
+    }
+
+    /**
+     * Constructor for DenseLU, which borrows the work arrays of
+     * {@link #rcond} from the given workspace. The factorization itself needs
+     * no work arrays
+     * 
+     * @param m
+     *            Number of rows
+     * @param n
+     *            Number of columns
+     * @param workspace
+     *            Workspace to use, or null to allocate the work arrays on each
+     *            call
+     */
+    public DenseLU(int m, int n, Workspace workspace) {
         LU = new DenseMatrix(m, n);
         piv = new int[Math.min(m, n)];
+        this.workspace = workspace;
     }
 
     /**
@@ -70,6 +97,54 @@ public class DenseLU {
                 A));
     }
 
+    /**
+     * Creates an LU decomposition of the given matrix, copying it into the
+     * given workspace instead of a new matrix
+     * 
+     * @param A
+     *            Matrix to decompose. Not modified
+     * @param workspace
+     *            Workspace to use
+     * @return The current decomposition
+     */
+    public static DenseLU factorize(Matrix A, Workspace workspace) {
+        return new DenseLU(A.numRows(), A.numColumns(), workspace)
+                .factor(workspace.copy(A));
+    }
+
+    /**
+     * Sets the largest matrix dimension which is factored and solved in pure
+     * Java. Larger matrices are handled by LAPACK. Defaults to
+     * {@link DenseMatrix#getNativeThreshold()}
+     */
+    public DenseLU setNativeThreshold(int nativeThreshold) {
+        this.nativeThreshold = nativeThreshold;
+        return this;
+    }
+
+    /**
+     * Sets the tile size of the task-parallel factorization (see
+     * {@link TiledLU}), which is used for square matrices of more than two
+     * tiles when {@link Parallel#getThreads()} is more than one. Zero always
+     * factors with a single LAPACK call.
+     * <p>
+     * Each tile is factored and updated by a BLAS or LAPACK call on one of
+     * the {@link Parallel} threads. A multi-threaded native BLAS would start
+     * its own threads inside each of those, oversubscribing the cores, so
+     * the tiled path is only on by default with the pure Java BLAS (see
+     * {@link JavaBLAS#getInstance()}). The default is
+     * {@link TiledDenseMatrix#DEFAULT_TILE_SIZE} then, and zero with native
+     * BLAS. To tile on top of native BLAS, set its own thread count to one
+     * (e.g. <code>OMP_NUM_THREADS=1</code>) before setting a tile size.
+     * </p>
+     */
+    public DenseLU setTileSize(int tileSize) {
+        if (tileSize < 0)
+            throw new IllegalArgumentException("tileSize < 0");
+        this.tileSize = tileSize;
+        return this;
+    }
+
     /**
      * Creates an LU decomposition of the given matrix
      * 
@@ -80,6 +155,21 @@ public class DenseLU {
     public DenseLU factor(DenseMatrix A) {
         singular = false;
 
+        if (A.numRows() <= nativeThreshold && A.numColumns() <= nativeThreshold) {
+            singular = DenseKernels.getrf(A.numRows(), A.numColumns(),
+                    A.getData(), 0, piv, 0) != 0;
+            LU.set(A);
+            return this;
+        }
+
+        int n = A.numRows();
+        if (tileSize > 0 && A.isSquare() && n > 2 * tileSize
+                && Parallel.getThreads() > 1) {
+            singular = !TiledLU.factor(Tiles.of(A, tileSize), piv);
+            LU.set(A);
+            return this;
+        }
+
         intW info = new intW(0);
         LAPACK.getInstance().dgetrf(A.numRows(), A.numColumns(), A.getData(),
                 Matrices.ld(A.numRows()), piv, info);
@@ -146,9 +236,11 @@ public class DenseLU {
 
         intW info = new intW(0);
         doubleW rcond = new doubleW(0);
+        double[] work = workspace != null ? workspace.getDoubles(4 * n)
+                : new double[4 * n];
+        int[] iwork = workspace != null ? workspace.getInts(n) : new int[n];
         LAPACK.getInstance().dgecon(norm.netlib(), n, LU.getData(),
-                Matrices.ld(n), anorm, rcond, new double[4 * n], new int[n],
-                info);
+                Matrices.ld(n), anorm, rcond, work, iwork, info);
 
         if (info.val < 0)
             throw new IllegalArgumentException();
@@ -191,6 +283,12 @@ public class DenseLU {
         if (B.numRows() != LU.numRows())
             throw new IllegalArgumentException("B.numRows() != LU.numRows()");
 
+        if (LU.numRows() <= nativeThreshold) {
+            DenseKernels.getrs(trans == Transpose.Transpose, LU.numRows(),
+                    B.numColumns(), LU.getData(), 0, piv, 0, B.getData(), 0);
+            return B;
+        }
+
         intW info = new intW(0);
         LAPACK.getInstance().dgetrs(trans.netlib(), LU.numRows(),
                 B.numColumns(), LU.getData(), Matrices.ld(LU.numRows()), piv,
@@ -0,0 +1,241 @@
+package no.uib.cipr.matrix;
+
+import com.github.fommil.netlib.LAPACK;
+import org.netlib.util.intW;
+
+/**
+ * Partial pivot LU decompositions of a batch of small square matrices of the
+ * same size. The matrices are stored contiguously in a single array, each in
+ * column major order, with matrix <code>k</code> starting at offset
+ * <code>k * n * n</code>. Right hand sides use the same strided layout, with
+ * <code>nrhs</code> columns of length <code>n</code> per matrix.
+ * <p>
+ * This avoids the per-matrix object creation and workspace allocation of
+ * {@link DenseLU}. Matrices up to the native threshold (see
+ * {@link #setNativeThreshold(int)}) are factored by an inlined pure Java
+ * kernel, as the JNI transition dominates the cost for tiny problems; larger
+ * ones call LAPACK directly on the shared array. The batch is split over the
+ * threads of {@link Parallel}.
+ * </p>
+ */
+public class DenseLUBatch {
+
+    /**
+     * Default largest matrix size which is factored in pure Java
+     */
+    public static final int DEFAULT_NATIVE_THRESHOLD = 32;
+
+    /**
+     * Matrix size and number of matrices
+     */
+    private final int n, count;
+
+    /**
+     * Holds the LU factors. This is the array last passed to
+     * {@link #factor(double[])}
+     */
+    private double[] LU;
+
+    /**
+     * Row pivotations, <code>n</code> per matrix
+     */
+    private final int[] piv;
+
+    /**
+     * True for the matrices which were singular
+     */
+    private final boolean[] singular;
+
+    private int nativeThreshold = DEFAULT_NATIVE_THRESHOLD;
+
+    /**
+     * Constructor for DenseLUBatch
+     *
+     * @param n
+     *            Size of each matrix
+     * @param count
+     *            Number of matrices
+     */
+    public DenseLUBatch(int n, int count) {
+        if (n < 0 || count < 0)
+            throw new IllegalArgumentException("n < 0 || count < 0");
+        this.n = n;
+        this.count = count;
+        piv = new int[n * count];
+        singular = new boolean[count];
+    }
+
+    /**
+     * Creates LU decompositions of the given matrices
+     *
+     * @param n
+     *            Size of each matrix
+     * @param A
+     *            Matrices to decompose, in strided batch layout. Not modified
+     * @return The decompositions
+     */
+    public static DenseLUBatch factorize(int n, double[] A) {
+        if (n == 0)
+            return new DenseLUBatch(0, 0);
+        return new DenseLUBatch(n, A.length / (n * n)).factor(A.clone());
+    }
+
+    /**
+     * Sets the largest matrix size which is factored and solved in pure Java.
+     * Larger matrices are handled by LAPACK
+     */
+    public DenseLUBatch setNativeThreshold(int nativeThreshold) {
+        this.nativeThreshold = nativeThreshold;
+        return this;
+    }
+
+    /**
+     * Creates LU decompositions of the given matrices
+     *
+     * @param A
+     *            Matrices to decompose, in strided batch layout. Overwritten
+     *            with the decompositions, and kept by reference until the next
+     *            call
+     * @return The current decompositions
+     */
+    public DenseLUBatch factor(final double[] A) {
+        if (A.length != n * n * count)
+            throw new IllegalArgumentException("A.length != n * n * count");
+
+        Parallel.forRange(count, grain(), new Parallel.RangeTask() {
+            public void run(int from, int to) {
+                int nn = n * n;
+                if (n <= nativeThreshold)
+                    for (int k = from; k < to; ++k)
+                        singular[k] = DenseKernels.getrf(n, A, k * nn, piv, k
+                                * n) != 0;
+                else {
+                    intW info = new intW(0);
+                    for (int k = from; k < to; ++k) {
+                        info.val = 0;
+                        LAPACK.getInstance().dgetrf(n, n, A, k * nn,
+                                Matrices.ld(n), piv, k * n, info);
+                        if (info.val < 0)
+                            throw new IllegalArgumentException();
+                        singular[k] = info.val > 0;
+                    }
+                }
+            }
+        });
+
+        LU = A;
+
+        return this;
+    }
+
+    /**
+     * Number of matrices small enough that it is worth handing them to a
+     * thread
+     */
+    private int grain() {
+        return Math.max(1, 16384 / Math.max(1, n * n * n));
+    }
+
+    /**
+     * Returns the number of matrices
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the decompositions in strided batch layout
+     */
+    public double[] getData() {
+        return LU;
+    }
+
+    /**
+     * Returns the row pivots, <code>n</code> per matrix
+     */
+    public int[] getPivots() {
+        return piv;
+    }
+
+    /**
+     * Checks matrix <code>k</code> for singularity
+     */
+    public boolean isSingular(int k) {
+        return singular[k];
+    }
+
+    /**
+     * Checks if any matrix in the batch is singular
+     */
+    public boolean isSingular() {
+        for (boolean s : singular)
+            if (s)
+                return true;
+        return false;
+    }
+
+    /**
+     * Computes <code>A<sub>k</sub>\B<sub>k</sub></code> for every matrix in the
+     * batch, overwriting <code>B</code>
+     *
+     * @param B
+     *            Right hand sides in strided batch layout, <code>nrhs</code>
+     *            columns per matrix
+     * @param nrhs
+     *            Number of right hand sides per matrix
+     */
+    public double[] solve(double[] B, int nrhs)
+            throws MatrixSingularException {
+        return solve(B, nrhs, Transpose.NoTranspose);
+    }
+
+    /**
+     * Computes <code>A<sub>k</sub><sup>T</sup>\B<sub>k</sub></code> for every
+     * matrix in the batch, overwriting <code>B</code>
+     *
+     * @param B
+     *            Right hand sides in strided batch layout, <code>nrhs</code>
+     *            columns per matrix
+     * @param nrhs
+     *            Number of right hand sides per matrix
+     */
+    public double[] transSolve(double[] B, int nrhs)
+            throws MatrixSingularException {
+        return solve(B, nrhs, Transpose.Transpose);
+    }
+
+    private double[] solve(final double[] B, final int nrhs,
+            final Transpose trans) throws MatrixSingularException {
+        if (count > 0 && LU == null)
+            throw new IllegalStateException("No matrices have been factored");
+        if (B.length != n * nrhs * count)
+            throw new IllegalArgumentException("B.length != n * nrhs * count");
+        for (int k = 0; k < count; ++k)
+            if (singular[k])
+                throw new MatrixSingularException("Matrix " + k
+                        + " of the batch is singular");
+
+        Parallel.forRange(count, grain(), new Parallel.RangeTask() {
+            public void run(int from, int to) {
+                int nn = n * n, nb = n * nrhs;
+                if (n <= nativeThreshold)
+                    for (int k = from; k < to; ++k)
+                        DenseKernels.getrs(trans == Transpose.Transpose, n,
+                                nrhs, LU, k * nn, piv, k * n, B, k * nb);
+                else {
+                    intW info = new intW(0);
+                    for (int k = from; k < to; ++k) {
+                        LAPACK.getInstance().dgetrs(trans.netlib(), n, nrhs,
+                                LU, k * nn, Matrices.ld(n), piv, k * n, B,
+                                k * nb, Matrices.ld(n), info);
+                        if (info.val < 0)
+                            throw new IllegalArgumentException();
+                    }
+                }
+            }
+        });
+
+        return B;
+    }
+
+}
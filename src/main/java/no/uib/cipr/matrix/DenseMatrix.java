@@ -86,9 +86,93 @@ import org.netlib.util.intW;
  * </tr>
  * </table>
  * </p>
+ * <p>
+ * Products, rank-1 updates and square solves where no dimension exceeds the
+ * product threshold (see {@link #setProductThreshold(int)}) or the native
+ * threshold (see {@link #setNativeThreshold(int)}) are computed by inlined
+ * Java loops, as for such small matrices the JNI transition and argument
+ * checking of BLAS and LAPACK cost more than the arithmetic.
+ * </p>
+ * <p>
+ * The views returned by {@link #getSubMatrix}, {@link #getColumn} and
+ * {@link #getRow} write straight to the array of this matrix, and count their
+ * writes as modifications of it, so that a factorization cached by
+ * {@link #setCacheFactorization(boolean)} is computed again after them.
+ * </p>
  */
 public class DenseMatrix extends AbstractDenseMatrix {
 
+    /**
+     * Default largest dimension of matrix products computed in pure Java.
+     * Timed on one core for square matrices of every size up to 16, against
+     * {@link JavaBLAS}, which computes the products when no native BLAS is
+     * loaded, the Java loops were faster up to 6, about even at 7 and slower
+     * from 8 on. The JNI overhead of native BLAS has not been measured, and
+     * would move the crossover up
+     */
+    public static final int DEFAULT_PRODUCT_THRESHOLD = 6;
+
+    /**
+     * Default largest dimension of rank-1 updates, matrix-vector products and
+     * solves computed in pure Java. <code>DenseKernelsTest.main</code>,
+     * against the F2J backend, had Java at least as fast for rank-1 updates at
+     * every size, for Cholesky factorizations up to about 22, and for LU
+     * factorizations and solves up to beyond 48. The default stays below all
+     * of these, as the crossovers against native LAPACK have not been
+     * measured
+     */
+    public static final int DEFAULT_NATIVE_THRESHOLD = 10;
+
+    private static volatile int nativeThreshold = DEFAULT_NATIVE_THRESHOLD;
+
+    private static volatile int productThreshold = DEFAULT_PRODUCT_THRESHOLD;
+
+    /**
+     * Sets the largest dimension for which rank-1 updates, matrix-vector
+     * products and solves bypass BLAS and LAPACK. Zero always uses the native
+     * routines
+     */
+    public static void setNativeThreshold(int threshold) {
+        if (threshold < 0)
+            throw new IllegalArgumentException("threshold < 0");
+        nativeThreshold = threshold;
+    }
+
+    /**
+     * Returns the largest dimension for which rank-1 updates, matrix-vector
+     * products and solves bypass BLAS and LAPACK
+     */
+    public static int getNativeThreshold() {
+        return nativeThreshold;
+    }
+
+    /**
+     * Sets the largest dimension for which matrix products bypass BLAS. Zero
+     * always uses BLAS
+     */
+    public static void setProductThreshold(int threshold) {
+        if (threshold < 0)
+            throw new IllegalArgumentException("threshold < 0");
+        productThreshold = threshold;
+    }
+
+    /**
+     * Returns the largest dimension for which matrix products bypass BLAS
+     */
+    public static int getProductThreshold() {
+        return productThreshold;
+    }
+
+    private static boolean small(int m, int n) {
+        int t = nativeThreshold;
+        return m <= t && n <= t;
+    }
+
+    private static boolean smallProduct(int m, int n, int k) {
+        int t = productThreshold;
+        return m <= t && n <= t && k <= t;
+    }
+
     /**
      * Constructor for DenseMatrix
      * 
@@ -296,17 +380,72 @@ public class DenseMatrix extends AbstractDenseMatrix {
             set(e.row(), e.column(), e.get());
     }
 
+    /**
+     * Returns a view of a block of this matrix, sharing its storage. Products
+     * with the view pass this matrix' array to BLAS, with an offset and the
+     * leading dimension of this matrix, instead of copying the block. Writes
+     * through it count as modifications of this matrix
+     *
+     * @param row
+     *            First row of the block
+     * @param column
+     *            First column of the block
+     * @param numRows
+     *            Number of rows of the block
+     * @param numColumns
+     *            Number of columns of the block
+     */
+    public DenseMatrixSub getSubMatrix(int row, int column, int numRows,
+            int numColumns) {
+        return new DenseMatrixSub(this, row, column, numRows, numColumns);
+    }
+
+    /**
+     * Returns a view of column <code>j</code>, sharing the storage of this
+     * matrix. Writes through it count as modifications of this matrix
+     */
+    public DenseVectorSub getColumn(int j) {
+        check(0, j);
+        return new DenseVectorSub(data, j * numRows, 1, numRows, this);
+    }
+
+    /**
+     * Returns a view of row <code>i</code>, sharing the storage of this
+     * matrix. Writes through it count as modifications of this matrix
+     */
+    public DenseVectorSub getRow(int i) {
+        check(i, 0);
+        return new DenseVectorSub(data, i, Math.max(1, numRows),
+                numColumns, this);
+    }
+
+    /**
+     * This matrix as a view, for products with other views
+     */
+    private DenseMatrixSub view() {
+        return new DenseMatrixSub(data, 0, Math.max(1, numRows), numRows,
+                numColumns, this);
+    }
+
     @Override
     public Matrix multAdd(double alpha, Matrix B, Matrix C) {
+        if (B instanceof DenseMatrixSub || C instanceof DenseMatrixSub)
+            return view().multAdd(alpha, B, C);
         if (!(B instanceof DenseMatrix) || !(C instanceof DenseMatrix))
             return super.multAdd(alpha, B, C);
 
         checkMultAdd(B, C);
 
-        double[] Bd = ((DenseMatrix) B).getData(), Cd = ((DenseMatrix) C)
+        double[] Bd = ((DenseMatrix) B).data, Cd = ((DenseMatrix) C)
                 .getData();
 
-        BLAS.getInstance().dgemm(Transpose.NoTranspose.netlib(),
+        if (smallProduct(C.numRows(), C.numColumns(), numColumns)) {
+            DenseKernels.gemm(false, false, C.numRows(), C.numColumns(),
+                    numColumns, alpha, data, Bd, Cd);
+            return C;
+        }
+
+        JavaBLAS.getInstance().dgemm(Transpose.NoTranspose.netlib(),
                 Transpose.NoTranspose.netlib(), C.numRows(), C.numColumns(),
                 numColumns, alpha, data, Math.max(1, numRows), Bd,
                 Math.max(1, B.numRows()), 1, Cd, Math.max(1, C.numRows()));
@@ -316,15 +455,23 @@ public class DenseMatrix extends AbstractDenseMatrix {
 
     @Override
     public Matrix transAmultAdd(double alpha, Matrix B, Matrix C) {
+        if (B instanceof DenseMatrixSub || C instanceof DenseMatrixSub)
+            return view().transAmultAdd(alpha, B, C);
         if (!(B instanceof DenseMatrix) || !(C instanceof DenseMatrix))
             return super.transAmultAdd(alpha, B, C);
 
         checkTransAmultAdd(B, C);
 
-        double[] Bd = ((DenseMatrix) B).getData(), Cd = ((DenseMatrix) C)
+        double[] Bd = ((DenseMatrix) B).data, Cd = ((DenseMatrix) C)
                 .getData();
 
-        BLAS.getInstance().dgemm(Transpose.Transpose.netlib(),
+        if (smallProduct(C.numRows(), C.numColumns(), numRows)) {
+            DenseKernels.gemm(true, false, C.numRows(), C.numColumns(),
+                    numRows, alpha, data, Bd, Cd);
+            return C;
+        }
+
+        JavaBLAS.getInstance().dgemm(Transpose.Transpose.netlib(),
                 Transpose.NoTranspose.netlib(), C.numRows(), C.numColumns(),
                 numRows, alpha, data, Math.max(1, numRows), Bd,
                 Math.max(1, B.numRows()), 1, Cd, Math.max(1, C.numRows()));
@@ -334,15 +481,23 @@ public class DenseMatrix extends AbstractDenseMatrix {
 
     @Override
     public Matrix transBmultAdd(double alpha, Matrix B, Matrix C) {
+        if (B instanceof DenseMatrixSub || C instanceof DenseMatrixSub)
+            return view().transBmultAdd(alpha, B, C);
         if (!(B instanceof DenseMatrix) || !(C instanceof DenseMatrix))
             return super.transBmultAdd(alpha, B, C);
 
         checkTransBmultAdd(B, C);
 
-        double[] Bd = ((DenseMatrix) B).getData(), Cd = ((DenseMatrix) C)
+        double[] Bd = ((DenseMatrix) B).data, Cd = ((DenseMatrix) C)
                 .getData();
 
-        BLAS.getInstance().dgemm(Transpose.NoTranspose.netlib(),
+        if (smallProduct(C.numRows(), C.numColumns(), numColumns)) {
+            DenseKernels.gemm(false, true, C.numRows(), C.numColumns(),
+                    numColumns, alpha, data, Bd, Cd);
+            return C;
+        }
+
+        JavaBLAS.getInstance().dgemm(Transpose.NoTranspose.netlib(),
                 Transpose.Transpose.netlib(), C.numRows(), C.numColumns(),
                 numColumns, alpha, data, Math.max(1, numRows), Bd,
                 Math.max(1, B.numRows()), 1, Cd, Math.max(1, C.numRows()));
@@ -352,15 +507,23 @@ public class DenseMatrix extends AbstractDenseMatrix {
 
     @Override
     public Matrix transABmultAdd(double alpha, Matrix B, Matrix C) {
+        if (B instanceof DenseMatrixSub || C instanceof DenseMatrixSub)
+            return view().transABmultAdd(alpha, B, C);
         if (!(B instanceof DenseMatrix) || !(C instanceof DenseMatrix))
             return super.transABmultAdd(alpha, B, C);
 
         checkTransABmultAdd(B, C);
 
-        double[] Bd = ((DenseMatrix) B).getData(), Cd = ((DenseMatrix) C)
+        double[] Bd = ((DenseMatrix) B).data, Cd = ((DenseMatrix) C)
                 .getData();
 
-        BLAS.getInstance().dgemm(Transpose.Transpose.netlib(),
+        if (smallProduct(C.numRows(), C.numColumns(), numRows)) {
+            DenseKernels.gemm(true, true, C.numRows(), C.numColumns(),
+                    numRows, alpha, data, Bd, Cd);
+            return C;
+        }
+
+        JavaBLAS.getInstance().dgemm(Transpose.Transpose.netlib(),
                 Transpose.Transpose.netlib(), C.numRows(), C.numColumns(),
                 numRows, alpha, data, Math.max(1, numRows), Bd,
                 Math.max(1, B.numRows()), 1, Cd, Math.max(1, C.numRows()));
@@ -374,10 +537,16 @@ public class DenseMatrix extends AbstractDenseMatrix {
             return super.rank1(alpha, x, y);
 
         checkRank1(x, y);
+        factorization.modified();
 
         double[] xd = ((DenseVector) x).getData(), yd = ((DenseVector) y)
                 .getData();
 
+        if (small(numRows, numColumns)) {
+            DenseKernels.ger(numRows, numColumns, alpha, xd, yd, data);
+            return this;
+        }
+
         BLAS.getInstance().dger(numRows, numColumns, alpha, xd, 1, yd, 1, data,
                 Math.max(1, numRows));
 
@@ -386,6 +555,8 @@ public class DenseMatrix extends AbstractDenseMatrix {
 
     @Override
     public Vector multAdd(double alpha, Vector x, Vector y) {
+        if (x instanceof DenseVectorSub || y instanceof DenseVectorSub)
+            return view().multAdd(alpha, x, y);
         if (!(x instanceof DenseVector) || !(y instanceof DenseVector))
             return super.multAdd(alpha, x, y);
 
@@ -394,7 +565,12 @@ public class DenseMatrix extends AbstractDenseMatrix {
         double[] xd = ((DenseVector) x).getData(), yd = ((DenseVector) y)
                 .getData();
 
-        BLAS.getInstance().dgemv(Transpose.NoTranspose.netlib(), numRows,
+        if (small(numRows, numColumns)) {
+            DenseKernels.gemv(false, numRows, numColumns, alpha, data, xd, yd);
+            return y;
+        }
+
+        JavaBLAS.getInstance().dgemv(Transpose.NoTranspose.netlib(), numRows,
                 numColumns, alpha, data, Math.max(numRows, 1), xd, 1, 1, yd, 1);
 
         return y;
@@ -402,6 +578,8 @@ public class DenseMatrix extends AbstractDenseMatrix {
 
     @Override
     public Vector transMultAdd(double alpha, Vector x, Vector y) {
+        if (x instanceof DenseVectorSub || y instanceof DenseVectorSub)
+            return view().transMultAdd(alpha, x, y);
         if (!(x instanceof DenseVector) || !(y instanceof DenseVector))
             return super.transMultAdd(alpha, x, y);
 
@@ -410,7 +588,12 @@ public class DenseMatrix extends AbstractDenseMatrix {
         double[] xd = ((DenseVector) x).getData(), yd = ((DenseVector) y)
                 .getData();
 
-        BLAS.getInstance().dgemv(Transpose.Transpose.netlib(), numRows,
+        if (small(numRows, numColumns)) {
+            DenseKernels.gemv(true, numRows, numColumns, alpha, data, xd, yd);
+            return y;
+        }
+
+        JavaBLAS.getInstance().dgemv(Transpose.Transpose.netlib(), numRows,
                 numColumns, alpha, data, Math.max(numRows, 1), xd, 1, 1, yd, 1);
 
         return y;
@@ -457,9 +640,29 @@ public class DenseMatrix extends AbstractDenseMatrix {
                     "X.numColumns() != B.numColumns() (" + X.numColumns()
                             + " != " + B.numColumns() + ")");
 
+        // the cached factors solve in place, so other X take the uncached
+        // path as before
+        if (factorization.isEnabled() && isSquare() && X instanceof DenseMatrix) {
+            X.set(B);
+            return factorizationLU().transSolve((DenseMatrix) X);
+        }
+
         return QRsolve(B, X, Transpose.Transpose);
     }
 
+    /**
+     * Returns the cached LU factorization, factoring again if this matrix
+     * has been modified
+     */
+    private DenseLU factorizationLU() {
+        DenseLU lu = factorization.get(DenseLU.class);
+        if (lu == null) {
+            lu = DenseLU.factorize(this);
+            factorization.put(lu);
+        }
+        return lu;
+    }
+
     @Override
     public Vector transSolve(Vector b, Vector x) {
         DenseMatrix B = new DenseMatrix(b, false), X = new DenseMatrix(x, false);
@@ -471,12 +674,26 @@ public class DenseMatrix extends AbstractDenseMatrix {
         if (!(X instanceof DenseMatrix))
             throw new UnsupportedOperationException("X must be a DenseMatrix");
 
+        if (factorization.isEnabled()) {
+            X.set(B);
+            return factorizationLU().solve((DenseMatrix) X);
+        }
+
         double[] Xd = ((DenseMatrix) X).getData();
 
         X.set(B);
 
         int[] piv = new int[numRows];
 
+        if (small(numRows, numColumns)) {
+            double[] LU = data.clone();
+            if (DenseKernels.getrf(numRows, LU, 0, piv, 0) != 0)
+                throw new MatrixSingularException();
+            DenseKernels.getrs(false, numRows, B.numColumns(), LU, 0, piv, 0,
+                    Xd, 0);
+            return X;
+        }
+
         intW info = new intW(0);
         LAPACK.getInstance().dgesv(numRows, B.numColumns(), data.clone(),
                 Matrices.ld(numRows), piv, Xd, Matrices.ld(numRows), info);
@@ -0,0 +1,362 @@
+package no.uib.cipr.matrix;
+
+import java.util.Arrays;
+
+/**
+ * Dense submatrix, sharing the storage of the matrix it is taken from. Entry
+ * <code>(i, j)</code> is <code>data[offset + i + j * ld]</code>, so that a
+ * block of a {@link DenseMatrix} is addressed as in BLAS, by an offset and a
+ * leading dimension.
+ * <p>
+ * Products with dense matrices and vectors, or with other views, pass the
+ * array, offset and leading dimension straight to <code>dgemm</code> and
+ * <code>dgemv</code>, and {@link #solveTriangular} to <code>dtrsm</code>,
+ * so block algorithms need not copy their blocks. Rows and columns are
+ * {@link DenseVectorSub} views.
+ * </p>
+ * <p>
+ * A view of a {@link DenseMatrix} counts its writes as modifications of that
+ * matrix, so that a factorization it has cached is not used afterwards.
+ * </p>
+ */
+public class DenseMatrixSub extends AbstractMatrix {
+
+    private final double[] data;
+
+    private final int offset, ld;
+
+    /**
+     * Matrix whose storage this is a view of, or null
+     */
+    private final DenseMatrix parent;
+
+    /**
+     * Constructor for DenseMatrixSub
+     *
+     * @param A
+     *            Matrix to take the view of
+     * @param row
+     *            First row of the view in <code>A</code>
+     * @param column
+     *            First column of the view in <code>A</code>
+     * @param numRows
+     *            Number of rows
+     * @param numColumns
+     *            Number of columns
+     */
+    public DenseMatrixSub(DenseMatrix A, int row, int column, int numRows,
+            int numColumns) {
+        this(A.data, row + column * A.numRows(), Math.max(1, A.numRows()),
+                numRows, numColumns, A);
+        if (row < 0 || column < 0 || row + numRows > A.numRows()
+                || column + numColumns > A.numColumns())
+            throw new IndexOutOfBoundsException("View out of bounds");
+    }
+
+    /**
+     * Constructor for DenseMatrixSub
+     *
+     * @param data
+     *            Column major array holding the entries
+     * @param offset
+     *            Index in <code>data</code> of the first entry
+     * @param ld
+     *            Leading dimension, the distance in <code>data</code> between
+     *            successive columns
+     * @param numRows
+     *            Number of rows
+     * @param numColumns
+     *            Number of columns
+     */
+    public DenseMatrixSub(double[] data, int offset, int ld, int numRows,
+            int numColumns) {
+        this(data, offset, ld, numRows, numColumns, null);
+    }
+
+    DenseMatrixSub(double[] data, int offset, int ld, int numRows,
+            int numColumns, DenseMatrix parent) {
+        super(numRows, numColumns);
+        if (offset < 0)
+            throw new IllegalArgumentException("offset < 0");
+        if (ld < Math.max(1, numRows))
+            throw new IllegalArgumentException("ld < numRows");
+        long last = offset + numRows - 1 + (long) (numColumns - 1) * ld;
+        if (numRows > 0 && numColumns > 0 && last >= data.length)
+            throw new IllegalArgumentException("View exceeds the array");
+        this.data = data;
+        this.offset = offset;
+        this.ld = ld;
+        this.parent = parent;
+    }
+
+    /**
+     * Counts a write through this view as a modification of the matrix it
+     * is taken from
+     */
+    void modified() {
+        if (parent != null)
+            parent.factorization.modified();
+    }
+
+    /**
+     * Returns a view of a dense matrix, or <code>null</code> if the matrix
+     * is not dense
+     */
+    static DenseMatrixSub view(Matrix A) {
+        if (A instanceof DenseMatrixSub)
+            return (DenseMatrixSub) A;
+        if (A instanceof DenseMatrix)
+            return new DenseMatrixSub(((DenseMatrix) A).data, 0, Math.max(1,
+                    A.numRows()), A.numRows(), A.numColumns(), (DenseMatrix) A);
+        return null;
+    }
+
+    /**
+     * Returns the array holding the entries. As the caller may write to it,
+     * this counts as a modification of the matrix the view is taken from
+     */
+    public double[] getData() {
+        modified();
+        return data;
+    }
+
+    /**
+     * Returns the index in the array of the first entry
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Returns the leading dimension, the distance in the array between
+     * successive columns
+     */
+    public int getLeadingDimension() {
+        return ld;
+    }
+
+    /**
+     * Returns a view of a block of this matrix
+     *
+     * @param row
+     *            First row of the block
+     * @param column
+     *            First column of the block
+     * @param numRows
+     *            Number of rows of the block
+     * @param numColumns
+     *            Number of columns of the block
+     */
+    public DenseMatrixSub getSubMatrix(int row, int column, int numRows,
+            int numColumns) {
+        if (row < 0 || column < 0 || row + numRows > this.numRows
+                || column + numColumns > this.numColumns)
+            throw new IndexOutOfBoundsException("View out of bounds");
+        return new DenseMatrixSub(data, offset + row + column * ld, ld,
+                numRows, numColumns, parent);
+    }
+
+    /**
+     * Returns a view of column <code>j</code>
+     */
+    public DenseVectorSub getColumn(int j) {
+        check(0, j);
+        return new DenseVectorSub(data, offset + j * ld, 1, numRows, parent);
+    }
+
+    /**
+     * Returns a view of row <code>i</code>
+     */
+    public DenseVectorSub getRow(int i) {
+        check(i, 0);
+        return new DenseVectorSub(data, offset + i, ld, numColumns, parent);
+    }
+
+    @Override
+    public double get(int row, int column) {
+        check(row, column);
+        return data[offset + row + column * ld];
+    }
+
+    @Override
+    public void set(int row, int column, double value) {
+        check(row, column);
+        modified();
+        data[offset + row + column * ld] = value;
+    }
+
+    @Override
+    public void add(int row, int column, double value) {
+        check(row, column);
+        modified();
+        data[offset + row + column * ld] += value;
+    }
+
+    @Override
+    public DenseMatrix copy() {
+        DenseMatrix A = new DenseMatrix(numRows, numColumns);
+        double[] Ad = A.getData();
+        for (int j = 0; j < numColumns; ++j)
+            System.arraycopy(data, offset + j * ld, Ad, j * numRows, numRows);
+        return A;
+    }
+
+    @Override
+    public DenseMatrixSub zero() {
+        modified();
+        for (int j = 0; j < numColumns; ++j)
+            Arrays.fill(data, offset + j * ld, offset + j * ld + numRows, 0);
+        return this;
+    }
+
+    @Override
+    public Matrix set(Matrix B) {
+        DenseMatrixSub b = view(B);
+        if (b == null)
+            return super.set(B);
+
+        checkSize(B);
+
+        if (b.data == data && b.offset == offset && b.ld == ld)
+            return this;
+
+        modified();
+        for (int j = 0; j < numColumns; ++j)
+            System.arraycopy(b.data, b.offset + j * b.ld, data, offset + j
+                    * ld, numRows);
+
+        return this;
+    }
+
+    @Override
+    public Matrix multAdd(double alpha, Matrix B, Matrix C) {
+        DenseMatrixSub b = view(B), c = view(C);
+        if (b == null || c == null)
+            return super.multAdd(alpha, B, C);
+
+        checkMultAdd(B, C);
+        gemm(Transpose.NoTranspose, Transpose.NoTranspose, numColumns, alpha,
+                b, c);
+        return C;
+    }
+
+    @Override
+    public Matrix transAmultAdd(double alpha, Matrix B, Matrix C) {
+        DenseMatrixSub b = view(B), c = view(C);
+        if (b == null || c == null)
+            return super.transAmultAdd(alpha, B, C);
+
+        checkTransAmultAdd(B, C);
+        gemm(Transpose.Transpose, Transpose.NoTranspose, numRows, alpha, b, c);
+        return C;
+    }
+
+    @Override
+    public Matrix transBmultAdd(double alpha, Matrix B, Matrix C) {
+        DenseMatrixSub b = view(B), c = view(C);
+        if (b == null || c == null)
+            return super.transBmultAdd(alpha, B, C);
+
+        checkTransBmultAdd(B, C);
+        gemm(Transpose.NoTranspose, Transpose.Transpose, numColumns, alpha, b,
+                c);
+        return C;
+    }
+
+    @Override
+    public Matrix transABmultAdd(double alpha, Matrix B, Matrix C) {
+        DenseMatrixSub b = view(B), c = view(C);
+        if (b == null || c == null)
+            return super.transABmultAdd(alpha, B, C);
+
+        checkTransABmultAdd(B, C);
+        gemm(Transpose.Transpose, Transpose.Transpose, numRows, alpha, b, c);
+        return C;
+    }
+
+    /**
+     * C = alpha op(this) op(B) + C, with k the inner dimension
+     */
+    private void gemm(Transpose transA, Transpose transB, int k, double alpha,
+            DenseMatrixSub B, DenseMatrixSub C) {
+        if (C.numRows == 0 || C.numColumns == 0)
+            return;
+        C.modified();
+        JavaBLAS.getInstance().dgemm(transA.netlib(), transB.netlib(),
+                C.numRows, C.numColumns, k, alpha, data, offset, ld, B.data,
+                B.offset, B.ld, 1, C.data, C.offset, C.ld);
+    }
+
+    @Override
+    public Vector multAdd(double alpha, Vector x, Vector y) {
+        DenseVectorSub u = DenseVectorSub.view(x), v = DenseVectorSub.view(y);
+        if (u == null || v == null)
+            return super.multAdd(alpha, x, y);
+
+        checkMultAdd(x, y);
+        gemv(Transpose.NoTranspose, alpha, u, v);
+        return y;
+    }
+
+    @Override
+    public Vector transMultAdd(double alpha, Vector x, Vector y) {
+        DenseVectorSub u = DenseVectorSub.view(x), v = DenseVectorSub.view(y);
+        if (u == null || v == null)
+            return super.transMultAdd(alpha, x, y);
+
+        checkTransMultAdd(x, y);
+        gemv(Transpose.Transpose, alpha, u, v);
+        return y;
+    }
+
+    private void gemv(Transpose trans, double alpha, DenseVectorSub x,
+            DenseVectorSub y) {
+        if (numRows == 0 || numColumns == 0)
+            return;
+        // x is only read, and y.getData() counts the write to y
+        JavaBLAS.getInstance().dgemv(trans.netlib(), numRows, numColumns,
+                alpha, data, offset, ld, x.data(), x.getOffset(),
+                x.getStride(), 1, y.getData(), y.getOffset(), y.getStride());
+    }
+
+    /**
+     * Solves a triangular system in place with <code>dtrsm</code>, using
+     * only the upper or the lower triangle of this square matrix
+     *
+     * @param upper
+     *            True to use the upper triangle, else the lower
+     * @param transpose
+     *            True to solve with the transpose of the triangle
+     * @param unitDiagonal
+     *            True to take the diagonal as ones
+     * @param B
+     *            Dense matrix or view holding the right hand sides, which are
+     *            overwritten by the solution
+     * @return B
+     */
+    public Matrix solveTriangular(boolean upper, boolean transpose,
+            boolean unitDiagonal, Matrix B) {
+        if (!isSquare())
+            throw new IllegalArgumentException("!A.isSquare()");
+        if (numRows != B.numRows())
+            throw new IllegalArgumentException("numRows != B.numRows() ("
+                    + numRows + " != " + B.numRows() + ")");
+        DenseMatrixSub b = view(B);
+        if (b == null)
+            throw new IllegalArgumentException("B must be dense");
+
+        if (numRows == 0 || B.numColumns() == 0)
+            return B;
+        b.modified();
+
+        UpLo uplo = upper ? UpLo.Upper : UpLo.Lower;
+        Transpose trans = transpose ? Transpose.Transpose
+                : Transpose.NoTranspose;
+        Diag diag = unitDiagonal ? Diag.Unit : Diag.NonUnit;
+        JavaBLAS.getInstance().dtrsm(Side.Left.netlib(), uplo.netlib(),
+                trans.netlib(), diag.netlib(), numRows, B.numColumns(), 1,
+                data, offset, ld, b.data, b.offset, b.ld);
+        return B;
+    }
+
+}
@@ -32,6 +32,12 @@ import no.uib.cipr.matrix.io.VectorInfo.VectorField;
 /**
  * Dense vector. Stored by a <code>double[]</code> array of the same length as
  * the vector itself.
+ * <p>
+ * Scaling, additions, dot products and norms with other dense vectors are
+ * unrolled pure Java loops, split over the {@link Parallel} threads for long
+ * vectors. The Euclidean norm is scaled against overflow and underflow when
+ * needed.
+ * </p>
  */
 public class DenseVector extends AbstractVector implements Serializable {
 
@@ -194,8 +200,7 @@ public class DenseVector extends AbstractVector implements Serializable {
 
     @Override
     public DenseVector scale(double alpha) {
-        for (int i = 0; i < size; ++i)
-            data[i] *= alpha;
+        VectorKernels.scal(size, alpha, data);
         return this;
     }
 
@@ -222,10 +227,7 @@ public class DenseVector extends AbstractVector implements Serializable {
         if (alpha == 0)
             return zero();
 
-        double[] yd = ((DenseVector) y).getData();
-
-        for (int i = 0; i < size; ++i)
-            data[i] = alpha * yd[i];
+        VectorKernels.axpby(size, alpha, ((DenseVector) y).getData(), 0, data);
 
         return this;
     }
@@ -237,10 +239,7 @@ public class DenseVector extends AbstractVector implements Serializable {
 
         checkSize(y);
 
-        double[] yd = ((DenseVector) y).getData();
-
-        for (int i = 0; i < size; i++)
-            data[i] += yd[i];
+        VectorKernels.axpy(size, 1, ((DenseVector) y).getData(), data);
 
         return this;
     }
@@ -255,10 +254,31 @@ public class DenseVector extends AbstractVector implements Serializable {
         if (alpha == 0)
             return this;
 
-        double[] yd = ((DenseVector) y).getData();
+        VectorKernels.axpy(size, alpha, ((DenseVector) y).getData(), data);
+
+        return this;
+    }
 
-        for (int i = 0; i < size; i++)
-            data[i] += alpha * yd[i];
+    /**
+     * <code>x = beta * x + alpha * y</code>, in one pass over the vectors
+     * when <code>y</code> is dense. If <code>beta</code> is zero,
+     * <code>x</code> is not read
+     *
+     * @return x
+     */
+    public DenseVector scaleAdd(double beta, double alpha, Vector y) {
+        if (!(y instanceof DenseVector)) {
+            if (beta == 0)
+                set(alpha, y);
+            else
+                scale(beta).add(alpha, y);
+            return this;
+        }
+
+        checkSize(y);
+
+        VectorKernels.axpby(size, alpha, ((DenseVector) y).getData(), beta,
+                data);
 
         return this;
     }
@@ -270,51 +290,27 @@ public class DenseVector extends AbstractVector implements Serializable {
 
         checkSize(y);
 
-        double[] yd = ((DenseVector) y).getData();
-
-        double dot = 0.;
-        for (int i = 0; i < size; ++i)
-            dot += data[i] * yd[i];
-        return dot;
+        return VectorKernels.dot(size, data, ((DenseVector) y).getData());
     }
 
     @Override
     protected double norm1() {
-        double sum = 0;
-        for (int i = 0; i < size; ++i)
-            sum += Math.abs(data[i]);
-        return sum;
+        return VectorKernels.asum(size, data);
     }
 
     @Override
     protected double norm2() {
-        double norm = 0;
-        for (int i = 0; i < size; ++i)
-            norm += data[i] * data[i];
-        return Math.sqrt(norm);
+        return VectorKernels.nrm2(size, data);
     }
 
     @Override
     protected double norm2_robust() {
-        double scale = 0, ssq = 1;
-        for (int i = 0; i < size; ++i)
-            if (data[i] != 0) {
-                double absxi = Math.abs(data[i]);
-                if (scale < absxi) {
-                    ssq = 1 + ssq * (scale / absxi) * (scale / absxi);
-                    scale = absxi;
-                } else
-                    ssq += (absxi / scale) * (absxi / scale);
-            }
-        return scale * Math.sqrt(ssq);
+        return VectorKernels.nrm2(size, data);
     }
 
     @Override
     protected double normInf() {
-        double max = 0;
-        for (int i = 0; i < size; ++i)
-            max = Math.max(Math.abs(data[i]), max);
-        return max;
+        return VectorKernels.amax(size, data);
     }
 
     /**
@@ -1,47 +1,246 @@
 package no.uib.cipr.matrix;
 
-import java.util.Arrays;
-
 /**
  * Wraps a DenseVector, allowing easy access to a sub array of the original
  * without taking copies.
- * <p/>
+ * <p>
  * It should be possible to utilise BLAS / LAPACK in various matrix classes.
  * However, as it would be a mammoth task, it will be done on an as-needed
  * basis.
- * 
+ * </p>
+ * <p>
+ * The entries may also be strided through any array, so that a row or a
+ * column of a {@link DenseMatrix} or a {@link DenseMatrixSub} is a vector
+ * sharing its storage. Entry <code>i</code> is
+ * <code>data[offset + i * stride]</code>, and the array, offset and stride
+ * can be passed straight to BLAS. Writes through a row or a column of a
+ * {@link DenseMatrix} count as modifications of that matrix, so that a
+ * factorization it has cached is not used afterwards.
+ * </p>
+ *
  * @author Sam Halliday
  */
 public class DenseVectorSub extends AbstractVector {
 
-    private DenseVector wrapped;
-    private int offset;
+    private final double[] data;
+    private final int offset, stride;
+
+    /**
+     * Matrix whose storage this is a view of, or null
+     */
+    private final DenseMatrix parent;
 
     public DenseVectorSub(DenseVector wrapped, int offset, int size) {
         super(size);
         if (offset + size > wrapped.size)
             throw new IllegalArgumentException(offset + "+" + size + ">"
                     + wrapped.size);
+        this.data = wrapped.getData();
+        this.offset = offset;
+        this.stride = 1;
+        this.parent = null;
+    }
+
+    /**
+     * Constructor for DenseVectorSub
+     *
+     * @param data
+     *            Array holding the entries
+     * @param offset
+     *            Index in <code>data</code> of the first entry
+     * @param stride
+     *            Distance in <code>data</code> between successive entries
+     * @param size
+     *            Size of the vector
+     */
+    public DenseVectorSub(double[] data, int offset, int stride, int size) {
+        this(data, offset, stride, size, null);
+    }
+
+    DenseVectorSub(double[] data, int offset, int stride, int size,
+            DenseMatrix parent) {
+        super(size);
+        if (offset < 0)
+            throw new IllegalArgumentException("offset < 0");
+        if (stride < 1)
+            throw new IllegalArgumentException("stride < 1");
+        if (size > 0 && offset + (long) (size - 1) * stride >= data.length)
+            throw new IllegalArgumentException(offset + "+" + (size - 1)
+                    + "*" + stride + ">=" + data.length);
+        this.data = data;
         this.offset = offset;
-        this.wrapped = wrapped;
+        this.stride = stride;
+        this.parent = parent;
+    }
+
+    /**
+     * Counts a write through this view as a modification of the matrix it
+     * is taken from
+     */
+    void modified() {
+        if (parent != null)
+            parent.factorization.modified();
+    }
+
+    /**
+     * The array holding the entries, for reading only
+     */
+    double[] data() {
+        return data;
+    }
+
+    /**
+     * Returns a view of a dense vector, or <code>null</code> if the vector
+     * is not dense
+     */
+    static DenseVectorSub view(Vector x) {
+        if (x instanceof DenseVectorSub)
+            return (DenseVectorSub) x;
+        if (x instanceof DenseVector)
+            return new DenseVectorSub(((DenseVector) x).getData(), 0, 1,
+                    x.size());
+        return null;
+    }
+
+    /**
+     * Returns the array holding the entries. As the caller may write to it,
+     * this counts as a modification of the matrix the view is taken from
+     */
+    public double[] getData() {
+        modified();
+        return data;
+    }
+
+    /**
+     * Returns the index in the array of the first entry
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Returns the distance in the array between successive entries
+     */
+    public int getStride() {
+        return stride;
     }
 
     @Override
     public double get(int index) {
         check(index);
-        return wrapped.get(offset + index);
+        return data[offset + index * stride];
     }
 
     @Override
     public void set(int index, double value) {
         check(index);
-        wrapped.set(offset + index, value);
+        modified();
+        data[offset + index * stride] = value;
+    }
+
+    @Override
+    public void add(int index, double value) {
+        check(index);
+        modified();
+        data[offset + index * stride] += value;
     }
 
     @Override
     public DenseVector copy() {
-        double[] data = Arrays.copyOfRange(wrapped.getData(), offset, offset
-                + size);
-        return new DenseVector(data, false);
+        double[] copy = new double[size];
+        for (int i = 0, k = offset; i < size; ++i, k += stride)
+            copy[i] = data[k];
+        return new DenseVector(copy, false);
+    }
+
+    @Override
+    public DenseVectorSub zero() {
+        modified();
+        for (int i = 0, k = offset; i < size; ++i, k += stride)
+            data[k] = 0;
+        return this;
+    }
+
+    @Override
+    public DenseVectorSub scale(double alpha) {
+        modified();
+        for (int i = 0, k = offset; i < size; ++i, k += stride)
+            data[k] *= alpha;
+        return this;
+    }
+
+    @Override
+    public Vector set(double alpha, Vector y) {
+        DenseVectorSub v = view(y);
+        if (v == null)
+            return super.set(alpha, y);
+
+        checkSize(y);
+
+        modified();
+        int l = v.offset;
+        for (int i = 0, k = offset; i < size; ++i, k += stride, l += v.stride)
+            data[k] = alpha * v.data[l];
+
+        return this;
     }
+
+    @Override
+    public Vector add(double alpha, Vector y) {
+        DenseVectorSub v = view(y);
+        if (v == null)
+            return super.add(alpha, y);
+
+        checkSize(y);
+
+        if (alpha == 0)
+            return this;
+
+        modified();
+        int l = v.offset;
+        for (int i = 0, k = offset; i < size; ++i, k += stride, l += v.stride)
+            data[k] += alpha * v.data[l];
+
+        return this;
+    }
+
+    @Override
+    public double dot(Vector y) {
+        DenseVectorSub v = view(y);
+        if (v == null)
+            return super.dot(y);
+
+        checkSize(y);
+
+        double dot = 0;
+        int l = v.offset;
+        for (int i = 0, k = offset; i < size; ++i, k += stride, l += v.stride)
+            dot += data[k] * v.data[l];
+        return dot;
+    }
+
+    @Override
+    protected double norm1() {
+        double sum = 0;
+        for (int i = 0, k = offset; i < size; ++i, k += stride)
+            sum += Math.abs(data[k]);
+        return sum;
+    }
+
+    @Override
+    protected double norm2() {
+        double norm = 0;
+        for (int i = 0, k = offset; i < size; ++i, k += stride)
+            norm += data[k] * data[k];
+        return Math.sqrt(norm);
+    }
+
+    @Override
+    protected double normInf() {
+        double max = 0;
+        for (int i = 0, k = offset; i < size; ++i, k += stride)
+            max = Math.max(Math.abs(data[k]), max);
+        return max;
+    }
+
 }
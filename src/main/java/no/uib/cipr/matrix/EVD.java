@@ -33,6 +33,16 @@ public class EVD {
      */
     private final double[] work;
 
+    /**
+     * Length of the work array
+     */
+    private final int lwork;
+
+    /**
+     * Lends the work array instead, if not null
+     */
+    private final Workspace workspace;
+
     /**
      * Size of the matrix
      */
@@ -75,7 +85,25 @@ public class EVD {
      *            Whether to compute the right eigenvectors or not
      */
     public EVD(int n, boolean left, boolean right) {
+        this(n, left, right, null);
+    }
+
+    /**
+     * Creates an empty eigenvalue decomposition which borrows its work array
+     * from the given workspace on each factorization
+     * 
+     * @param n
+     *            Size of the matrix
+     * @param left
+     *            Whether to compute the left eigenvectors or not
+     * @param right
+     *            Whether to compute the right eigenvectors or not
+     * @param workspace
+     *            Workspace to use, or null to allocate the work array once
+     */
+    public EVD(int n, boolean left, boolean right, Workspace workspace) {
         this.n = n;
+        this.workspace = workspace;
         this.jobLeft = left ? JobEig.All : JobEig.Eigenvalues;
         this.jobRight = right ? JobEig.All : JobEig.Eigenvalues;
 
@@ -102,7 +130,7 @@ public class EVD {
                 worksize, -1, info);
 
         // Allocate workspace
-        int lwork = 0;
+        int lwork;
         if (info.val != 0) {
             if (jobLeft == JobEig.All || jobRight == JobEig.All)
                 lwork = 4 * n;
@@ -111,8 +139,8 @@ public class EVD {
         } else
             lwork = (int) worksize[0];
 
-        lwork = Math.max(1, lwork);
-        work = new double[lwork];
+        this.lwork = Math.max(1, lwork);
+        work = workspace == null ? new double[this.lwork] : null;
     }
 
     /**
@@ -128,6 +156,24 @@ public class EVD {
         return new EVD(A.numRows()).factor(new DenseMatrix(A));
     }
 
+    /**
+     * Convenience method for computing the complete eigenvalue decomposition of
+     * the given matrix, copying the matrix into the given workspace instead of
+     * a new matrix, and borrowing the work array from it
+     * 
+     * @param A
+     *            Matrix to factorize. Not modified
+     * @param workspace
+     *            Workspace to use
+     * @return Newly allocated decomposition
+     * @throws NotConvergedException
+     */
+    public static EVD factorize(Matrix A, Workspace workspace)
+            throws NotConvergedException {
+        return new EVD(A.numRows(), true, true, workspace).factor(workspace
+                .copy(A));
+    }
+
     /**
      * Computes the eigenvalue decomposition of the given matrix
      * 
@@ -142,13 +188,16 @@ public class EVD {
         else if (A.numRows() != n)
             throw new IllegalArgumentException("A.numRows() != n");
 
+        double[] work = workspace != null ? workspace.getDoubles(lwork)
+                : this.work;
+
         intW info = new intW(0);
         LAPACK.getInstance().dgeev(jobLeft.netlib(), jobRight.netlib(), n,
                 A.getData(), Matrices.ld(n), Wr, Wi,
                 jobLeft == JobEig.All ? Vl.getData() : new double[0],
                 Matrices.ld(n),
                 jobRight == JobEig.All ? Vr.getData() : new double[0],
-                Matrices.ld(n), work, work.length, info);
+                Matrices.ld(n), work, lwork, info);
 
         if (info.val > 0)
             throw new NotConvergedException(
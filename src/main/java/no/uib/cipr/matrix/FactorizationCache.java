@@ -0,0 +1,66 @@
+package no.uib.cipr.matrix;
+
+/**
+ * Factorization kept by a matrix for repeated solves, off by default. The
+ * matrix reports its modifications through {@link #modified()}: calls to
+ * its mutators, and to <code>getData</code> as the caller may write to the
+ * array. Code which only reads the entries uses <code>data</code> or
+ * <code>getDataUnchecked</code> instead. A factorization is only handed out
+ * while no modification has been reported since it was computed. Later
+ * writes to an array obtained before, or shared with other matrices or
+ * vectors, are not noticed, and need a call to
+ * <code>invalidateFactorization</code>
+ */
+final class FactorizationCache {
+
+    private boolean enabled;
+
+    /**
+     * Number of modifications of the matrix, and its value when the
+     * factorization was computed
+     */
+    private int modCount, factored;
+
+    private Object factorization;
+
+    /**
+     * Counts a modification of the matrix
+     */
+    void modified() {
+        modCount++;
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables caching, dropping any cached factorization
+     */
+    void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        factorization = null;
+    }
+
+    /**
+     * Returns the cached factorization, or null if there is none of the given
+     * type, or if the matrix has been modified since
+     */
+    <T> T get(Class<T> type) {
+        if (factored == modCount && type.isInstance(factorization))
+            return type.cast(factorization);
+        return null;
+    }
+
+    /**
+     * Caches a factorization of the matrix as it is now
+     *
+     * @return factorization
+     */
+    <T> T put(T factorization) {
+        this.factorization = factorization;
+        factored = modCount;
+        return factorization;
+    }
+
+}
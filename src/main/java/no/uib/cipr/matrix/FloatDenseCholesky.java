@@ -0,0 +1,122 @@
+package no.uib.cipr.matrix;
+
+import com.github.fommil.netlib.LAPACK;
+import org.netlib.util.intW;
+
+/**
+ * Single precision dense Cholesky decomposition, computed by
+ * <code>spotrf</code>. Only the upper triangular part of the matrix is
+ * referenced. Like {@link FloatDenseLU}, it is meant as a cheap approximate
+ * inverse for mixed precision iterative refinement.
+ */
+public class FloatDenseCholesky {
+
+    /**
+     * Matrix dimension
+     */
+    private final int n;
+
+    /**
+     * Upper triangular Cholesky factor. The strictly lower part is unused.
+     * This is the matrix last passed to {@link #factor(FloatDenseMatrix)}, so
+     * no extra copy is made
+     */
+    private FloatDenseMatrix Cu;
+
+    /**
+     * If the matrix is SPD or not
+     */
+    private boolean notspd;
+
+    /**
+     * Constructor for FloatDenseCholesky
+     *
+     * @param n
+     *            Matrix size
+     */
+    public FloatDenseCholesky(int n) {
+        this.n = n;
+    }
+
+    /**
+     * Calculates a Cholesky decomposition
+     *
+     * @param A
+     *            Matrix to decompose. Not modified
+     * @return The current decomposition
+     */
+    public static FloatDenseCholesky factorize(Matrix A) {
+        return new FloatDenseCholesky(A.numRows())
+                .factor(new FloatDenseMatrix(A));
+    }
+
+    /**
+     * Calculates a Cholesky decomposition
+     *
+     * @param A
+     *            Matrix to decompose, only its upper triangular part is used.
+     *            Overwritten on return, and kept by reference until the next
+     *            call
+     * @return The current decomposition
+     */
+    public FloatDenseCholesky factor(FloatDenseMatrix A) {
+        if (n != A.numRows())
+            throw new IllegalArgumentException("n != A.numRows()");
+        if (!A.isSquare())
+            throw new IllegalArgumentException("!A.isSquare()");
+
+        notspd = false;
+
+        intW info = new intW(0);
+        LAPACK.getInstance().spotrf(UpLo.Upper.netlib(), n, A.getData(),
+                Matrices.ld(n), info);
+
+        if (info.val > 0)
+            notspd = true;
+        else if (info.val < 0)
+            throw new IllegalArgumentException();
+
+        Cu = A;
+
+        return this;
+    }
+
+    /**
+     * Returns true if the matrix decomposed is symmetrical, positive definite
+     */
+    public boolean isSPD() {
+        return !notspd;
+    }
+
+    /**
+     * Returns the decomposition matrix. Only its upper triangular part holds
+     * the factor
+     */
+    public FloatDenseMatrix getU() {
+        return Cu;
+    }
+
+    /**
+     * Solves for <code>B</code>, overwriting it on return
+     */
+    public FloatDenseMatrix solve(FloatDenseMatrix B)
+            throws MatrixNotSPDException {
+        if (Cu == null)
+            throw new IllegalStateException("No matrix has been factored");
+        if (notspd)
+            throw new MatrixNotSPDException();
+        if (n != B.numRows())
+            throw new IllegalArgumentException("n != B.numRows()");
+
+        intW info = new intW(0);
+        LAPACK.getInstance().spotrs(UpLo.Upper.netlib(), n, B.numColumns(),
+                Cu.getData(), Matrices.ld(n), B.getData(), Matrices.ld(n),
+                info);
+
+        if (info.val < 0)
+            throw new IllegalArgumentException();
+
+        return B;
+    }
+
+}
@@ -0,0 +1,148 @@
+package no.uib.cipr.matrix;
+
+import com.github.fommil.netlib.LAPACK;
+import org.netlib.util.intW;
+
+/**
+ * Single precision dense partial pivot LU decomposition:
+ * {@code A = P * L * U}. Computed by <code>sgetrf</code>, it costs half the
+ * memory of a {@link DenseLU} and, on most BLAS implementations, runs up to
+ * twice as fast. The factors are only accurate to single precision, so they
+ * are typically used as the approximate inverse in a mixed precision iterative
+ * refinement, where residuals are computed in double precision.
+ */
+public class FloatDenseLU {
+
+    /**
+     * Holds the LU factors. This is the matrix last passed to
+     * {@link #factor(FloatDenseMatrix)}, so no extra copy is made
+     */
+    private FloatDenseMatrix LU;
+
+    /**
+     * Matrix dimensions
+     */
+    private final int m, n;
+
+    /**
+     * Row pivotations
+     */
+    private final int[] piv;
+
+    /**
+     * True if the matrix was singular
+     */
+    private boolean singular;
+
+    /**
+     * Constructor for FloatDenseLU
+     *
+     * @param m
+     *            Number of rows
+     * @param n
+     *            Number of columns
+     */
+    public FloatDenseLU(int m, int n) {
+        this.m = m;
+        this.n = n;
+        piv = new int[Math.min(m, n)];
+    }
+
+    /**
+     * Creates an LU decomposition of the given matrix
+     *
+     * @param A
+     *            Matrix to decompose. Not modified
+     * @return The current decomposition
+     */
+    public static FloatDenseLU factorize(Matrix A) {
+        return new FloatDenseLU(A.numRows(), A.numColumns())
+                .factor(new FloatDenseMatrix(A));
+    }
+
+    /**
+     * Creates an LU decomposition of the given matrix
+     *
+     * @param A
+     *            Matrix to decompose. Overwritten with the decomposition,
+     *            and kept by reference until the next call
+     * @return The current decomposition
+     */
+    public FloatDenseLU factor(FloatDenseMatrix A) {
+        if (A.numRows() != m || A.numColumns() != n)
+            throw new IllegalArgumentException("A is not " + m + " x " + n);
+
+        singular = false;
+
+        intW info = new intW(0);
+        LAPACK.getInstance().sgetrf(A.numRows(), A.numColumns(), A.getData(),
+                Matrices.ld(A.numRows()), piv, info);
+
+        if (info.val > 0)
+            singular = true;
+        else if (info.val < 0)
+            throw new IllegalArgumentException();
+
+        LU = A;
+
+        return this;
+    }
+
+    /**
+     * Returns the decomposition matrix
+     */
+    public FloatDenseMatrix getLU() {
+        return LU;
+    }
+
+    /**
+     * Returns the row pivots
+     */
+    public int[] getPivots() {
+        return piv;
+    }
+
+    /**
+     * Checks for singularity
+     */
+    public boolean isSingular() {
+        return singular;
+    }
+
+    /**
+     * Computes <code>A\B</code>, overwriting <code>B</code>
+     */
+    public FloatDenseMatrix solve(FloatDenseMatrix B)
+            throws MatrixSingularException {
+        return solve(B, Transpose.NoTranspose);
+    }
+
+    /**
+     * Computes <code>A<sup>T</sup>\B</code>, overwriting <code>B</code>
+     */
+    public FloatDenseMatrix transSolve(FloatDenseMatrix B)
+            throws MatrixSingularException {
+        return solve(B, Transpose.Transpose);
+    }
+
+    private FloatDenseMatrix solve(FloatDenseMatrix B, Transpose trans)
+            throws MatrixSingularException {
+        if (LU == null)
+            throw new IllegalStateException("No matrix has been factored");
+        if (singular)
+            throw new MatrixSingularException();
+        if (B.numRows() != LU.numRows())
+            throw new IllegalArgumentException("B.numRows() != LU.numRows()");
+
+        intW info = new intW(0);
+        LAPACK.getInstance().sgetrs(trans.netlib(), LU.numRows(),
+                B.numColumns(), LU.getData(), Matrices.ld(LU.numRows()), piv,
+                B.getData(), Matrices.ld(LU.numRows()), info);
+
+        if (info.val < 0)
+            throw new IllegalArgumentException();
+
+        return B;
+    }
+
+}
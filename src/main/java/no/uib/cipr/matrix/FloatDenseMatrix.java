@@ -0,0 +1,323 @@
+package no.uib.cipr.matrix;
+
+import java.util.Arrays;
+
+import com.github.fommil.netlib.BLAS;
+
+/**
+ * Single precision dense matrix. Has the same column major layout as
+ * {@link DenseMatrix}, but is stored in a <code>float[]</code> array, halving
+ * the memory footprint and memory traffic of algebraic operations.
+ * <p>
+ * Products where all operands are single precision (
+ * <code>FloatDenseMatrix</code> and <code>FloatDenseVector</code>) are
+ * delegated to the BLAS <code>sgemm</code>, <code>sgemv</code> and
+ * <code>sger</code> routines. Products with double precision dense vectors
+ * widen the matrix entries on the fly and accumulate in double precision.
+ * </p>
+ */
+public class FloatDenseMatrix extends AbstractMatrix {
+
+    /**
+     * Matrix contents
+     */
+    float[] data;
+
+    /**
+     * Constructor for FloatDenseMatrix
+     *
+     * @param numRows
+     *            Number of rows
+     * @param numColumns
+     *            Number of columns
+     */
+    public FloatDenseMatrix(int numRows, int numColumns) {
+        super(numRows, numColumns);
+
+        final long size = (long) numRows * numColumns;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(
+                    "Matrix of "
+                            + numRows
+                            + " x "
+                            + numColumns
+                            + " = "
+                            + size
+                            + " elements is too large to be allocated using a single Java array.");
+        }
+
+        data = new float[numRows * numColumns];
+    }
+
+    /**
+     * Constructor for FloatDenseMatrix
+     *
+     * @param A
+     *            Matrix to copy. A deep copy is made, and the entries are
+     *            rounded to single precision
+     */
+    public FloatDenseMatrix(Matrix A) {
+        this(A, true);
+    }
+
+    /**
+     * Constructor for FloatDenseMatrix
+     *
+     * @param A
+     *            Matrix to copy contents from
+     * @param deep
+     *            If true, <code>A</code> is copied, else a shallow copy is made
+     *            and the matrices share underlying storage. For this,
+     *            <code>A</code> must be a <code>FloatDenseMatrix</code>
+     */
+    public FloatDenseMatrix(Matrix A, boolean deep) {
+        super(A);
+
+        if (deep) {
+            data = new float[numRows * numColumns];
+            set(A);
+        } else
+            data = ((FloatDenseMatrix) A).getData();
+    }
+
+    /**
+     * @param numRows
+     * @param numColumns
+     * @param values
+     *            column major contents
+     * @param deep
+     *            if true the array will be cloned, if false the array is used
+     *            directly.
+     */
+    public FloatDenseMatrix(int numRows, int numColumns, float[] values,
+            boolean deep) {
+        super(numRows, numColumns);
+        if (numRows * numColumns != values.length)
+            throw new IllegalArgumentException("dimensions do not match");
+        if (deep)
+            this.data = values.clone();
+        else
+            this.data = values;
+    }
+
+    /**
+     * Returns the matrix contents in column major order
+     */
+    public float[] getData() {
+        return data;
+    }
+
+    @Override
+    public FloatDenseMatrix copy() {
+        return new FloatDenseMatrix(this);
+    }
+
+    @Override
+    public void add(int row, int column, double value) {
+        data[getIndex(row, column)] += value;
+    }
+
+    @Override
+    public void set(int row, int column, double value) {
+        data[getIndex(row, column)] = (float) value;
+    }
+
+    @Override
+    public double get(int row, int column) {
+        return data[getIndex(row, column)];
+    }
+
+    /**
+     * Checks the row and column indices, and returns the linear data index
+     */
+    int getIndex(int row, int column) {
+        check(row, column);
+        return row + column * numRows;
+    }
+
+    @Override
+    public FloatDenseMatrix zero() {
+        Arrays.fill(data, 0);
+        return this;
+    }
+
+    @Override
+    public Matrix set(Matrix B) {
+        if (B instanceof FloatDenseMatrix) {
+            checkSize(B);
+            float[] Bd = ((FloatDenseMatrix) B).getData();
+            if (Bd != data)
+                System.arraycopy(Bd, 0, data, 0, data.length);
+            return this;
+        }
+        if (!(B instanceof DenseMatrix))
+            return super.set(B);
+
+        checkSize(B);
+
+        double[] Bd = ((DenseMatrix) B).data;
+        for (int i = 0; i < data.length; ++i)
+            data[i] = (float) Bd[i];
+
+        return this;
+    }
+
+    @Override
+    public Matrix multAdd(double alpha, Matrix B, Matrix C) {
+        if (!(B instanceof FloatDenseMatrix)
+                || !(C instanceof FloatDenseMatrix))
+            return super.multAdd(alpha, B, C);
+
+        checkMultAdd(B, C);
+
+        float[] Bd = ((FloatDenseMatrix) B).getData(), Cd = ((FloatDenseMatrix) C)
+                .getData();
+
+        BLAS.getInstance().sgemm(Transpose.NoTranspose.netlib(),
+                Transpose.NoTranspose.netlib(), C.numRows(), C.numColumns(),
+                numColumns, (float) alpha, data, Math.max(1, numRows), Bd,
+                Math.max(1, B.numRows()), 1, Cd, Math.max(1, C.numRows()));
+
+        return C;
+    }
+
+    @Override
+    public Matrix transAmultAdd(double alpha, Matrix B, Matrix C) {
+        if (!(B instanceof FloatDenseMatrix)
+                || !(C instanceof FloatDenseMatrix))
+            return super.transAmultAdd(alpha, B, C);
+
+        checkTransAmultAdd(B, C);
+
+        float[] Bd = ((FloatDenseMatrix) B).getData(), Cd = ((FloatDenseMatrix) C)
+                .getData();
+
+        BLAS.getInstance().sgemm(Transpose.Transpose.netlib(),
+                Transpose.NoTranspose.netlib(), C.numRows(), C.numColumns(),
+                numRows, (float) alpha, data, Math.max(1, numRows), Bd,
+                Math.max(1, B.numRows()), 1, Cd, Math.max(1, C.numRows()));
+
+        return C;
+    }
+
+    @Override
+    public Matrix transBmultAdd(double alpha, Matrix B, Matrix C) {
+        if (!(B instanceof FloatDenseMatrix)
+                || !(C instanceof FloatDenseMatrix))
+            return super.transBmultAdd(alpha, B, C);
+
+        checkTransBmultAdd(B, C);
+
+        float[] Bd = ((FloatDenseMatrix) B).getData(), Cd = ((FloatDenseMatrix) C)
+                .getData();
+
+        BLAS.getInstance().sgemm(Transpose.NoTranspose.netlib(),
+                Transpose.Transpose.netlib(), C.numRows(), C.numColumns(),
+                numColumns, (float) alpha, data, Math.max(1, numRows), Bd,
+                Math.max(1, B.numRows()), 1, Cd, Math.max(1, C.numRows()));
+
+        return C;
+    }
+
+    @Override
+    public Matrix transABmultAdd(double alpha, Matrix B, Matrix C) {
+        if (!(B instanceof FloatDenseMatrix)
+                || !(C instanceof FloatDenseMatrix))
+            return super.transABmultAdd(alpha, B, C);
+
+        checkTransABmultAdd(B, C);
+
+        float[] Bd = ((FloatDenseMatrix) B).getData(), Cd = ((FloatDenseMatrix) C)
+                .getData();
+
+        BLAS.getInstance().sgemm(Transpose.Transpose.netlib(),
+                Transpose.Transpose.netlib(), C.numRows(), C.numColumns(),
+                numRows, (float) alpha, data, Math.max(1, numRows), Bd,
+                Math.max(1, B.numRows()), 1, Cd, Math.max(1, C.numRows()));
+
+        return C;
+    }
+
+    @Override
+    public Matrix rank1(double alpha, Vector x, Vector y) {
+        if (!(x instanceof FloatDenseVector)
+                || !(y instanceof FloatDenseVector))
+            return super.rank1(alpha, x, y);
+
+        checkRank1(x, y);
+
+        float[] xd = ((FloatDenseVector) x).getData(), yd = ((FloatDenseVector) y)
+                .getData();
+
+        BLAS.getInstance().sger(numRows, numColumns, (float) alpha, xd, 1, yd,
+                1, data, Math.max(1, numRows));
+
+        return this;
+    }
+
+    @Override
+    public Vector multAdd(double alpha, Vector x, Vector y) {
+        if (x instanceof FloatDenseVector && y instanceof FloatDenseVector) {
+            checkMultAdd(x, y);
+
+            float[] xd = ((FloatDenseVector) x).getData(), yd = ((FloatDenseVector) y)
+                    .getData();
+
+            BLAS.getInstance().sgemv(Transpose.NoTranspose.netlib(), numRows,
+                    numColumns, (float) alpha, data, Math.max(numRows, 1), xd,
+                    1, 1, yd, 1);
+
+            return y;
+        }
+        if (!(x instanceof DenseVector) || !(y instanceof DenseVector))
+            return super.multAdd(alpha, x, y);
+
+        checkMultAdd(x, y);
+
+        double[] xd = ((DenseVector) x).getData(), yd = ((DenseVector) y)
+                .getData();
+
+        // Column oriented, so that the matrix is streamed in storage order
+        for (int j = 0; j < numColumns; ++j) {
+            double xj = alpha * xd[j];
+            if (xj != 0)
+                for (int i = 0, k = j * numRows; i < numRows; ++i, ++k)
+                    yd[i] += data[k] * xj;
+        }
+
+        return y;
+    }
+
+    @Override
+    public Vector transMultAdd(double alpha, Vector x, Vector y) {
+        if (x instanceof FloatDenseVector && y instanceof FloatDenseVector) {
+            checkTransMultAdd(x, y);
+
+            float[] xd = ((FloatDenseVector) x).getData(), yd = ((FloatDenseVector) y)
+                    .getData();
+
+            BLAS.getInstance().sgemv(Transpose.Transpose.netlib(), numRows,
+                    numColumns, (float) alpha, data, Math.max(numRows, 1), xd,
+                    1, 1, yd, 1);
+
+            return y;
+        }
+        if (!(x instanceof DenseVector) || !(y instanceof DenseVector))
+            return super.transMultAdd(alpha, x, y);
+
+        checkTransMultAdd(x, y);
+
+        double[] xd = ((DenseVector) x).getData(), yd = ((DenseVector) y)
+                .getData();
+
+        for (int j = 0; j < numColumns; ++j) {
+            double dot = 0;
+            for (int i = 0, k = j * numRows; i < numRows; ++i, ++k)
+                dot += data[k] * xd[i];
+            yd[j] += alpha * dot;
+        }
+
+        return y;
+    }
+
+}
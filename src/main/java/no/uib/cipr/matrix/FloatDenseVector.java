@@ -0,0 +1,277 @@
+package no.uib.cipr.matrix;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Single precision dense vector. Stored by a <code>float[]</code> array of the
+ * same length as the vector itself, halving the memory footprint of a
+ * {@link DenseVector}. Values are widened to <code>double</code> on access, and
+ * all reductions (dot products and norms) are accumulated in double precision.
+ */
+public class FloatDenseVector extends AbstractVector implements Serializable {
+
+    /** just the private data */
+    private static final long serialVersionUID = -3412651438736437425L;
+
+    /**
+     * Vector data
+     */
+    private final float[] data;
+
+    /**
+     * Constructor for FloatDenseVector
+     *
+     * @param size
+     *            Size of the vector
+     */
+    public FloatDenseVector(int size) {
+        super(size);
+        data = new float[size];
+    }
+
+    /**
+     * Constructor for FloatDenseVector
+     *
+     * @param x
+     *            Copies contents from this vector. A deep copy is made, and the
+     *            entries are rounded to single precision
+     */
+    public FloatDenseVector(Vector x) {
+        this(x, true);
+    }
+
+    /**
+     * Constructor for FloatDenseVector
+     *
+     * @param x
+     *            Copies contents from this vector
+     * @param deep
+     *            True for a deep copy. For a shallow copy, <code>x</code> must
+     *            be a <code>FloatDenseVector</code>
+     */
+    public FloatDenseVector(Vector x, boolean deep) {
+        super(x);
+
+        if (deep) {
+            data = new float[size];
+            set(x);
+        } else
+            data = ((FloatDenseVector) x).getData();
+    }
+
+    /**
+     * Constructor for FloatDenseVector
+     *
+     * @param x
+     *            Copies contents from this array
+     * @param deep
+     *            True for a deep copy. For a shallow copy, <code>x</code> is
+     *            aliased with the internal storage
+     */
+    public FloatDenseVector(float[] x, boolean deep) {
+        super(x.length);
+
+        if (deep)
+            data = x.clone();
+        else
+            data = x;
+    }
+
+    /**
+     * Constructor for FloatDenseVector
+     *
+     * @param x
+     *            Copies contents from this array in a deep copy
+     */
+    public FloatDenseVector(float[] x) {
+        this(x, true);
+    }
+
+    @Override
+    public void set(int index, double value) {
+        check(index);
+        data[index] = (float) value;
+    }
+
+    @Override
+    public void add(int index, double value) {
+        check(index);
+        data[index] += value;
+    }
+
+    @Override
+    public double get(int index) {
+        check(index);
+        return data[index];
+    }
+
+    @Override
+    public FloatDenseVector copy() {
+        return new FloatDenseVector(this);
+    }
+
+    @Override
+    public FloatDenseVector zero() {
+        Arrays.fill(data, 0);
+        return this;
+    }
+
+    @Override
+    public FloatDenseVector scale(double alpha) {
+        for (int i = 0; i < size; ++i)
+            data[i] *= alpha;
+        return this;
+    }
+
+    @Override
+    public Vector set(Vector y) {
+        if (y instanceof FloatDenseVector) {
+            checkSize(y);
+            System.arraycopy(((FloatDenseVector) y).getData(), 0, data, 0,
+                    size);
+            return this;
+        }
+        if (!(y instanceof DenseVector))
+            return super.set(y);
+
+        checkSize(y);
+
+        double[] yd = ((DenseVector) y).getData();
+        for (int i = 0; i < size; ++i)
+            data[i] = (float) yd[i];
+
+        return this;
+    }
+
+    @Override
+    public Vector set(double alpha, Vector y) {
+        if (y instanceof FloatDenseVector) {
+            checkSize(y);
+
+            if (alpha == 0)
+                return zero();
+
+            float[] yd = ((FloatDenseVector) y).getData();
+            for (int i = 0; i < size; ++i)
+                data[i] = (float) (alpha * yd[i]);
+
+            return this;
+        }
+        if (!(y instanceof DenseVector))
+            return super.set(alpha, y);
+
+        checkSize(y);
+
+        if (alpha == 0)
+            return zero();
+
+        double[] yd = ((DenseVector) y).getData();
+        for (int i = 0; i < size; ++i)
+            data[i] = (float) (alpha * yd[i]);
+
+        return this;
+    }
+
+    @Override
+    public Vector add(double alpha, Vector y) {
+        if (y instanceof FloatDenseVector) {
+            checkSize(y);
+
+            if (alpha == 0)
+                return this;
+
+            float[] yd = ((FloatDenseVector) y).getData();
+            for (int i = 0; i < size; i++)
+                data[i] += alpha * yd[i];
+
+            return this;
+        }
+        if (!(y instanceof DenseVector))
+            return super.add(alpha, y);
+
+        checkSize(y);
+
+        if (alpha == 0)
+            return this;
+
+        double[] yd = ((DenseVector) y).getData();
+        for (int i = 0; i < size; i++)
+            data[i] += alpha * yd[i];
+
+        return this;
+    }
+
+    @Override
+    public double dot(Vector y) {
+        if (y instanceof FloatDenseVector) {
+            checkSize(y);
+
+            float[] yd = ((FloatDenseVector) y).getData();
+
+            double dot = 0.;
+            for (int i = 0; i < size; ++i)
+                dot += (double) data[i] * yd[i];
+            return dot;
+        }
+        if (!(y instanceof DenseVector))
+            return super.dot(y);
+
+        checkSize(y);
+
+        double[] yd = ((DenseVector) y).getData();
+
+        double dot = 0.;
+        for (int i = 0; i < size; ++i)
+            dot += data[i] * yd[i];
+        return dot;
+    }
+
+    @Override
+    protected double norm1() {
+        double sum = 0;
+        for (int i = 0; i < size; ++i)
+            sum += Math.abs(data[i]);
+        return sum;
+    }
+
+    @Override
+    protected double norm2() {
+        double norm = 0;
+        for (int i = 0; i < size; ++i)
+            norm += (double) data[i] * data[i];
+        return Math.sqrt(norm);
+    }
+
+    @Override
+    protected double norm2_robust() {
+        double scale = 0, ssq = 1;
+        for (int i = 0; i < size; ++i)
+            if (data[i] != 0) {
+                double absxi = Math.abs(data[i]);
+                if (scale < absxi) {
+                    ssq = 1 + ssq * (scale / absxi) * (scale / absxi);
+                    scale = absxi;
+                } else
+                    ssq += (absxi / scale) * (absxi / scale);
+            }
+        return scale * Math.sqrt(ssq);
+    }
+
+    @Override
+    protected double normInf() {
+        double max = 0;
+        for (int i = 0; i < size; ++i)
+            max = Math.max(Math.abs(data[i]), max);
+        return max;
+    }
+
+    /**
+     * Returns the internal vector contents. The array indices correspond to the
+     * vector indices
+     */
+    public float[] getData() {
+        return data;
+    }
+
+}
@@ -20,6 +20,8 @@
 
 package no.uib.cipr.matrix;
 
+import com.github.fommil.netlib.BLAS;
+
 /**
  * Givens plane rotation
  */
@@ -91,4 +93,28 @@ public class GivensRotation {
         x.set(i1, temp);
     }
 
+    /**
+     * Applies the Givens rotation to two strided vectors held in arrays, as
+     * by the BLAS routine <code>drot</code>
+     * 
+     * @param n
+     *            Number of elements
+     * @param x
+     *            Array of the first vector
+     * @param xoff
+     *            Offset of the first element of the first vector
+     * @param incx
+     *            Stride of the first vector
+     * @param y
+     *            Array of the second vector
+     * @param yoff
+     *            Offset of the first element of the second vector
+     * @param incy
+     *            Stride of the second vector
+     */
+    public void apply(int n, double[] x, int xoff, int incx, double[] y,
+            int yoff, int incy) {
+        BLAS.getInstance().drot(n, x, xoff, incx, y, yoff, incy, c, s);
+    }
+
 }
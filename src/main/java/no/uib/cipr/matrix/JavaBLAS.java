@@ -0,0 +1,400 @@
+package no.uib.cipr.matrix;
+
+import com.github.fommil.netlib.BLAS;
+import com.github.fommil.netlib.F2jBLAS;
+
+/**
+ * Pure Java BLAS with cache blocked, register tiled and multi-threaded
+ * <code>dgemm</code> and <code>dgemv</code>. All other routines are inherited
+ * from the F2J reference implementation.
+ * <p>
+ * The F2J translation of the reference BLAS is a straightforward triple loop,
+ * which is an order of magnitude slower than native BLAS for level 3
+ * operations. When <code>netlib-java</code> could not load a native library
+ * and fell back to F2J, {@link #getInstance()} returns this implementation
+ * instead, and the dense matrix products of MTJ use it automatically. It can
+ * also be selected explicitly as the <code>netlib-java</code> backend with the
+ * system property
+ * <code>-Dcom.github.fommil.netlib.BLAS=no.uib.cipr.matrix.JavaBLAS</code>.
+ * Parallelism is controlled by {@link Parallel}.
+ * </p>
+ */
+public class JavaBLAS extends F2jBLAS {
+
+    /**
+     * Register tile size. The micro kernel computes a <code>4 x 4</code>
+     * block of <code>C</code>
+     */
+    private static final int MR = 4, NR = 4;
+
+    /**
+     * Cache block sizes: a packed <code>MC x KC</code> block of
+     * <code>A</code> should fit in L2, and a packed <code>KC x NC</code> block
+     * of <code>B</code> in L3
+     */
+    private static final int MC = 64, KC = 256, NC = 1024;
+
+    /**
+     * Minimum number of flops worth giving a thread
+     */
+    private static final int GRAIN = 1 << 18;
+
+    /**
+     * Packing buffers for <code>A</code> and <code>B</code> of each thread,
+     * grown on demand. At most <code>MC * KC</code> and
+     * <code>NC * KC</code> entries
+     */
+    private static final ThreadLocal<double[][]> packs = new ThreadLocal<double[][]>() {
+        @Override
+        protected double[][] initialValue() {
+            return new double[2][0];
+        }
+    };
+
+    /**
+     * Chooses the instance on first use. When this class is selected as the
+     * <code>netlib-java</code> backend, netlib loads it while building its own
+     * instance, so its static initialiser must not call
+     * <code>BLAS.getInstance()</code>
+     */
+    private static final class Holder {
+
+        static final BLAS INSTANCE = BLAS.getInstance().getClass() == F2jBLAS.class ? new JavaBLAS()
+                : BLAS.getInstance();
+
+    }
+
+    /**
+     * Returns the BLAS to use for dense products: the <code>netlib-java</code>
+     * instance, unless that is the F2J fallback, in which case this pure Java
+     * implementation is returned.
+     */
+    public static BLAS getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private static boolean transposed(String trans) {
+        char c = Character.toUpperCase(trans.charAt(0));
+        if (c == 'N')
+            return false;
+        if (c == 'T' || c == 'C')
+            return true;
+        throw new IllegalArgumentException("Illegal transpose " + trans);
+    }
+
+    @Override
+    public void dgemm(String transa, String transb, int m, int n, int k,
+            double alpha, double[] a, int lda, double[] b, int ldb,
+            double beta, double[] c, int Ldc) {
+        dgemm(transa, transb, m, n, k, alpha, a, 0, lda, b, 0, ldb, beta, c,
+                0, Ldc);
+    }
+
+    @Override
+    public void dgemm(String transa, String transb, final int m, final int n,
+            final int k, final double alpha, final double[] a,
+            final int offa, final int lda, final double[] b, final int offb,
+            final int ldb, double beta, final double[] c, final int offc,
+            final int ldc) {
+        final boolean ta = transposed(transa), tb = transposed(transb);
+        if (m < 0 || n < 0 || k < 0)
+            throw new IllegalArgumentException("m < 0 || n < 0 || k < 0");
+        if (m == 0 || n == 0)
+            return;
+
+        // C = beta * C
+        if (beta == 0)
+            for (int j = 0; j < n; ++j)
+                java.util.Arrays.fill(c, offc + j * ldc, offc + j * ldc + m, 0);
+        else if (beta != 1)
+            for (int j = 0; j < n; ++j)
+                for (int i = 0, o = offc + j * ldc; i < m; ++i, ++o)
+                    c[o] *= beta;
+
+        if (alpha == 0 || k == 0)
+            return;
+
+        // Split the larger dimension of C over the threads, in whole tiles
+        final boolean byColumns = n >= m;
+        int tiles = byColumns ? (n + NR - 1) / NR : (m + MR - 1) / MR;
+        long flopsPerTile = 2L * k * (byColumns ? NR * (long) m : MR
+                * (long) n);
+        int grain = (int) Math.max(1, GRAIN / flopsPerTile);
+
+        Parallel.forRange(tiles, grain, new Parallel.RangeTask() {
+            public void run(int from, int to) {
+                if (byColumns)
+                    gemm(ta, tb, 0, m, from * NR, Math.min(n, to * NR), k,
+                            alpha, a, offa, lda, b, offb, ldb, c, offc, ldc);
+                else
+                    gemm(ta, tb, from * MR, Math.min(m, to * MR), 0, n, k,
+                            alpha, a, offa, lda, b, offb, ldb, c, offc, ldc);
+            }
+        });
+    }
+
+    /**
+     * Computes <code>C(i0:i1, j0:j1) += alpha * op(A) * op(B)</code>
+     */
+    private static void gemm(boolean ta, boolean tb, int i0, int i1, int j0,
+            int j1, int k, double alpha, double[] a, int offa, int lda,
+            double[] b, int offb, int ldb, double[] c, int offc, int ldc) {
+        int kcMax = Math.min(KC, k);
+        double[] Ap = pack(0, roundUp(Math.min(MC, i1 - i0), MR) * kcMax);
+        double[] Bp = pack(1, roundUp(Math.min(NC, j1 - j0), NR) * kcMax);
+
+        for (int jc = j0; jc < j1; jc += NC) {
+            int nc = Math.min(NC, j1 - jc);
+            for (int pc = 0; pc < k; pc += KC) {
+                int kc = Math.min(KC, k - pc);
+                packB(tb, b, offb, ldb, pc, kc, jc, nc, Bp);
+                for (int ic = i0; ic < i1; ic += MC) {
+                    int mc = Math.min(MC, i1 - ic);
+                    packA(ta, alpha, a, offa, lda, ic, mc, pc, kc, Ap);
+                    for (int jr = 0; jr < nc; jr += NR)
+                        for (int ir = 0; ir < mc; ir += MR)
+                            kernel(kc, Ap, ir * kc, Bp, jr * kc, c, offc
+                                    + ic + ir + (jc + jr) * ldc, ldc,
+                                    Math.min(MR, mc - ir),
+                                    Math.min(NR, nc - jr));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns packing buffer <code>which</code> of the calling thread, with
+     * at least the given length
+     */
+    private static double[] pack(int which, int length) {
+        double[][] buffers = packs.get();
+        if (buffers[which].length < length)
+            buffers[which] = new double[length];
+        return buffers[which];
+    }
+
+    private static int roundUp(int x, int multiple) {
+        return (x + multiple - 1) / multiple * multiple;
+    }
+
+    /**
+     * Packs <code>alpha * op(A)(ic:ic+mc, pc:pc+kc)</code> into row panels of
+     * height <code>MR</code>, zero padded at the edge
+     */
+    private static void packA(boolean ta, double alpha, double[] a, int offa,
+            int lda, int ic, int mc, int pc, int kc, double[] Ap) {
+        for (int ir = 0; ir < mc; ir += MR) {
+            int mr = Math.min(MR, mc - ir), base = ir * kc;
+            for (int p = 0; p < kc; ++p) {
+                int dst = base + p * MR;
+                for (int r = 0; r < mr; ++r) {
+                    int i = ic + ir + r, l = pc + p;
+                    Ap[dst + r] = alpha
+                            * (ta ? a[offa + l + i * lda] : a[offa + i + l
+                                    * lda]);
+                }
+                for (int r = mr; r < MR; ++r)
+                    Ap[dst + r] = 0;
+            }
+        }
+    }
+
+    /**
+     * Packs <code>op(B)(pc:pc+kc, jc:jc+nc)</code> into column panels of
+     * width <code>NR</code>, zero padded at the edge
+     */
+    private static void packB(boolean tb, double[] b, int offb, int ldb,
+            int pc, int kc, int jc, int nc, double[] Bp) {
+        for (int jr = 0; jr < nc; jr += NR) {
+            int nr = Math.min(NR, nc - jr), base = jr * kc;
+            for (int p = 0; p < kc; ++p) {
+                int dst = base + p * NR;
+                for (int s = 0; s < nr; ++s) {
+                    int l = pc + p, j = jc + jr + s;
+                    Bp[dst + s] = tb ? b[offb + j + l * ldb] : b[offb + l + j
+                            * ldb];
+                }
+                for (int s = nr; s < NR; ++s)
+                    Bp[dst + s] = 0;
+            }
+        }
+    }
+
+    /**
+     * Multiplies a packed <code>MR x kc</code> panel with a packed
+     * <code>kc x NR</code> panel, adding the leading <code>mr x nr</code> part
+     * of the result to <code>C</code>
+     */
+    private static void kernel(int kc, double[] Ap, int ao, double[] Bp,
+            int bo, double[] c, int co, int ldc, int mr, int nr) {
+        double c00 = 0, c10 = 0, c20 = 0, c30 = 0;
+        double c01 = 0, c11 = 0, c21 = 0, c31 = 0;
+        double c02 = 0, c12 = 0, c22 = 0, c32 = 0;
+        double c03 = 0, c13 = 0, c23 = 0, c33 = 0;
+
+        for (int p = 0; p < kc; ++p, ao += MR, bo += NR) {
+            double a0 = Ap[ao], a1 = Ap[ao + 1], a2 = Ap[ao + 2], a3 = Ap[ao + 3];
+            double b0 = Bp[bo], b1 = Bp[bo + 1], b2 = Bp[bo + 2], b3 = Bp[bo + 3];
+            c00 += a0 * b0;
+            c10 += a1 * b0;
+            c20 += a2 * b0;
+            c30 += a3 * b0;
+            c01 += a0 * b1;
+            c11 += a1 * b1;
+            c21 += a2 * b1;
+            c31 += a3 * b1;
+            c02 += a0 * b2;
+            c12 += a1 * b2;
+            c22 += a2 * b2;
+            c32 += a3 * b2;
+            c03 += a0 * b3;
+            c13 += a1 * b3;
+            c23 += a2 * b3;
+            c33 += a3 * b3;
+        }
+
+        if (mr == MR && nr == NR) {
+            c[co] += c00;
+            c[co + 1] += c10;
+            c[co + 2] += c20;
+            c[co + 3] += c30;
+            co += ldc;
+            c[co] += c01;
+            c[co + 1] += c11;
+            c[co + 2] += c21;
+            c[co + 3] += c31;
+            co += ldc;
+            c[co] += c02;
+            c[co + 1] += c12;
+            c[co + 2] += c22;
+            c[co + 3] += c32;
+            co += ldc;
+            c[co] += c03;
+            c[co + 1] += c13;
+            c[co + 2] += c23;
+            c[co + 3] += c33;
+            return;
+        }
+
+        double[] t = {c00, c10, c20, c30, c01, c11, c21, c31, c02, c12, c22,
+                c32, c03, c13, c23, c33};
+        for (int s = 0; s < nr; ++s)
+            for (int r = 0; r < mr; ++r)
+                c[co + r + s * ldc] += t[r + s * MR];
+    }
+
+    @Override
+    public void dgemv(String trans, int m, int n, double alpha, double[] a,
+            int lda, double[] x, int incx, double beta, double[] y, int incy) {
+        dgemv(trans, m, n, alpha, a, 0, lda, x, 0, incx, beta, y, 0, incy);
+    }
+
+    @Override
+    public void dgemv(String trans, final int m, final int n,
+            final double alpha, final double[] a, final int offa,
+            final int lda, final double[] x, final int offx, int incx,
+            final double beta, final double[] y, final int offy, int incy) {
+        if (incx != 1 || incy != 1) {
+            super.dgemv(trans, m, n, alpha, a, offa, lda, x, offx, incx, beta,
+                    y, offy, incy);
+            return;
+        }
+        if (m < 0 || n < 0)
+            throw new IllegalArgumentException("m < 0 || n < 0");
+        if (m == 0 || n == 0)
+            return;
+
+        if (!transposed(trans)) {
+            Parallel.forRange(m, Math.max(256, GRAIN / (2 * n)),
+                    new Parallel.RangeTask() {
+                        public void run(int from, int to) {
+                            gemvN(from, to, n, alpha, a, offa, lda, x, offx,
+                                    beta, y, offy);
+                        }
+                    });
+        } else {
+            Parallel.forRange(n, Math.max(4, GRAIN / (2 * m)),
+                    new Parallel.RangeTask() {
+                        public void run(int from, int to) {
+                            gemvT(m, from, to, alpha, a, offa, lda, x, offx,
+                                    beta, y, offy);
+                        }
+                    });
+        }
+    }
+
+    /**
+     * <code>y(i0:i1) = alpha * A(i0:i1, :) * x + beta * y(i0:i1)</code>,
+     * streaming four columns at a time
+     */
+    private static void gemvN(int i0, int i1, int n, double alpha,
+            double[] a, int offa, int lda, double[] x, int offx, double beta,
+            double[] y, int offy) {
+        if (beta == 0)
+            java.util.Arrays.fill(y, offy + i0, offy + i1, 0);
+        else if (beta != 1)
+            for (int i = i0; i < i1; ++i)
+                y[offy + i] *= beta;
+
+        if (alpha == 0)
+            return;
+
+        int j = 0;
+        for (; j + 4 <= n; j += 4) {
+            double x0 = alpha * x[offx + j], x1 = alpha * x[offx + j + 1];
+            double x2 = alpha * x[offx + j + 2], x3 = alpha * x[offx + j + 3];
+            int o0 = offa + j * lda, o1 = o0 + lda, o2 = o1 + lda, o3 = o2
+                    + lda;
+            for (int i = i0; i < i1; ++i)
+                y[offy + i] += a[o0 + i] * x0 + a[o1 + i] * x1 + a[o2 + i]
+                        * x2 + a[o3 + i] * x3;
+        }
+        for (; j < n; ++j) {
+            double xj = alpha * x[offx + j];
+            int o = offa + j * lda;
+            for (int i = i0; i < i1; ++i)
+                y[offy + i] += a[o + i] * xj;
+        }
+    }
+
+    /**
+     * <code>y(j0:j1) = alpha * A(:, j0:j1)' * x + beta * y(j0:j1)</code>,
+     * with four independent dot products at a time
+     */
+    private static void gemvT(int m, int j0, int j1, double alpha,
+            double[] a, int offa, int lda, double[] x, int offx, double beta,
+            double[] y, int offy) {
+        int j = j0;
+        for (; j + 4 <= j1; j += 4) {
+            int o0 = offa + j * lda, o1 = o0 + lda, o2 = o1 + lda, o3 = o2
+                    + lda;
+            double d0 = 0, d1 = 0, d2 = 0, d3 = 0;
+            for (int i = 0; i < m; ++i) {
+                double xi = x[offx + i];
+                d0 += a[o0 + i] * xi;
+                d1 += a[o1 + i] * xi;
+                d2 += a[o2 + i] * xi;
+                d3 += a[o3 + i] * xi;
+            }
+            update(y, offy + j, alpha * d0, beta);
+            update(y, offy + j + 1, alpha * d1, beta);
+            update(y, offy + j + 2, alpha * d2, beta);
+            update(y, offy + j + 3, alpha * d3, beta);
+        }
+        for (; j < j1; ++j) {
+            int o = offa + j * lda;
+            double d = 0;
+            for (int i = 0; i < m; ++i)
+                d += a[o + i] * x[offx + i];
+            update(y, offy + j, alpha * d, beta);
+        }
+    }
+
+    private static void update(double[] y, int i, double value, double beta) {
+        if (beta == 0)
+            y[i] = value;
+        else
+            y[i] = beta * y[i] + value;
+    }
+
+}
@@ -140,6 +140,7 @@ public class LowerTriangPackMatrix extends AbstractTriangPackMatrix {
     public void add(int row, int column, double value) {
         if (column > row)
             throw new IllegalArgumentException("column > row");
+        factorization.modified();
         data[getIndex(row, column)] += value;
     }
 
@@ -147,6 +148,7 @@ public class LowerTriangPackMatrix extends AbstractTriangPackMatrix {
     public void set(int row, int column, double value) {
         if (column > row)
             throw new IllegalArgumentException("column > row");
+        factorization.modified();
         data[getIndex(row, column)] = value;
     }
 
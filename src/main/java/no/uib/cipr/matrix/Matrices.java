@@ -676,7 +676,15 @@ public final class Matrices {
                 A.set(columnI, columnI, diagonal);
     }
 
+    /**
+     * Returns a copy of column <code>j</code>. For a {@link DenseMatrix},
+     * {@link DenseMatrix#getColumn(int)} gives a view of the column instead
+     */
     public static DenseVector getColumn(Matrix m, int j) {
+        if (m instanceof DenseMatrix)
+            return ((DenseMatrix) m).getColumn(j).copy();
+        if (m instanceof DenseMatrixSub)
+            return ((DenseMatrixSub) m).getColumn(j).copy();
         DenseVector v = new DenseVector(m.numRows());
         for (int i = 0; i < v.size(); i++) {
             v.set(i, m.get(i, j));
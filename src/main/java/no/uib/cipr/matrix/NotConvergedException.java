@@ -45,7 +45,12 @@ public class NotConvergedException extends Exception {
         /**
          * The iterative process detected a breakdown
          */
-        Breakdown
+        Breakdown,
+
+        /**
+         * The iterative process stopped making progress
+         */
+        Stagnation
     }
 
     /**
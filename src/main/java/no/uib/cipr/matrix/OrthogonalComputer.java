@@ -20,15 +20,32 @@
 
 package no.uib.cipr.matrix;
 
+import org.netlib.util.intW;
+
 /**
- * Base class for the orthogonal matrix decompositions (QR, RQ, LQ, and QL)
+ * Base class for the orthogonal matrix decompositions (QR, RQ, LQ, and QL).
+ * The orthogonal factor is kept in the compact form of LAPACK, as a product of
+ * Householder reflectors. It is only formed explicitly when asked for by
+ * {@link #getQ()}, while {@link #applyQ(DenseMatrix)} and
+ * {@link #applyQTranspose(DenseMatrix)} multiply with the reflectors directly
  */
 abstract class OrthogonalComputer {
 
     /**
-     * The orthogonal matrix
+     * The orthogonal matrix, allocated and generated on demand
+     */
+    DenseMatrix Q;
+
+    /**
+     * The factored matrix, holding the Householder reflectors. The only
+     * <code>m x n</code> storage until {@link #getQ()} is called
+     */
+    final DenseMatrix H;
+
+    /**
+     * Whether Q is up to date with the reflectors
      */
-    final DenseMatrix Q;
+    private boolean generated = true;
 
     /**
      * Lower triangular factor. May not be present
@@ -48,7 +65,17 @@ abstract class OrthogonalComputer {
     /**
      * Work arrays
      */
-    double[] work, workGen;
+    double[] work, workGen, workApply = new double[1];
+
+    /**
+     * Lengths of the work arrays for the factorization and for generating Q
+     */
+    int lwork, lworkGen;
+
+    /**
+     * Lends the work arrays instead, if not null
+     */
+    final Workspace workspace;
 
     /**
      * Scales for the reflectors
@@ -65,15 +92,19 @@ abstract class OrthogonalComputer {
      * @param upper
      *            True for storing an upper triangular factor, false for a lower
      *            triangular factor
+     * @param workspace
+     *            Workspace to borrow the work arrays from, or null to allocate
+     *            them
      */
-    OrthogonalComputer(int m, int n, boolean upper) {
+    OrthogonalComputer(int m, int n, boolean upper, Workspace workspace) {
         this.m = m;
+        this.workspace = workspace;
         this.n = n;
         this.k = Math.min(m, n);
 
         tau = new double[k];
 
-        Q = new DenseMatrix(m, n);
+        H = new DenseMatrix(m, n);
         if (upper) {
             R = new UpperTriangDenseMatrix(Math.min(m, n));
             L = null;
@@ -83,6 +114,25 @@ abstract class OrthogonalComputer {
         }
     }
 
+    /**
+     * Allocates the work arrays of the lengths found by the subclass, unless
+     * they are borrowed from the workspace
+     */
+    void allocate() {
+        if (workspace == null) {
+            work = new double[lwork];
+            workGen = new double[lworkGen];
+        }
+    }
+
+    /**
+     * Returns the given work array, or a borrowed one of the given length if
+     * there is a workspace
+     */
+    double[] borrow(double[] work, int length) {
+        return workspace != null ? workspace.getDoubles(length) : work;
+    }
+
     /**
      * Computes an orthogonal decomposition
      * 
@@ -94,10 +144,108 @@ abstract class OrthogonalComputer {
     public abstract OrthogonalComputer factor(DenseMatrix A);
 
     /**
-     * Returns the orthogonal part of the factorization
+     * Keeps the reflectors of a new factorization, invalidating Q
+     */
+    void setReflectors(DenseMatrix A) {
+        H.set(A);
+        generated = false;
+    }
+
+    /**
+     * Overwrites <code>Q</code>, which holds the reflectors, with the explicit
+     * orthogonal matrix using <code>workGen</code>
+     */
+    abstract void generate(double[] Q, intW info);
+
+    /**
+     * Overwrites <code>C</code> with <code>Q*C</code> or
+     * <code>Q<sup>T</sup>*C</code>, using the reflectors and the given work
+     * array. A workspace query if <code>lwork</code> is -1
+     */
+    abstract void multiply(String trans, DenseMatrix C, double[] work,
+            int lwork, intW info);
+
+    /**
+     * Checks that a matrix to factor has the size of the decomposition
+     */
+    void checkSize(DenseMatrix A) {
+        if (H.numRows() != A.numRows())
+            throw new IllegalArgumentException("Q.numRows() != A.numRows()");
+        else if (H.numColumns() != A.numColumns())
+            throw new IllegalArgumentException(
+                    "Q.numColumns() != A.numColumns()");
+    }
+
+    /**
+     * Returns the orthogonal part of the factorization. It is allocated on
+     * the first call, and formed from the reflectors on the first call after
+     * a factorization
      */
     public DenseMatrix getQ() {
+        if (Q == null)
+            Q = new DenseMatrix(m, n);
+        if (!generated) {
+            Q.set(H);
+            intW info = new intW(0);
+            generate(Q.getData(), info);
+
+            if (info.val < 0)
+                throw new IllegalArgumentException();
+
+            generated = true;
+        }
         return Q;
     }
 
+    /**
+     * Computes <code>C = Q*C</code> without forming <code>Q</code>. The full
+     * orthogonal matrix of order <code>max(m, n)</code> is applied, of which
+     * {@link #getQ()} returns the leading <code>m</code> rows or columns
+     * 
+     * @param C
+     *            Matrix with <code>max(m, n)</code> rows. Overwritten on exit
+     * @return C
+     */
+    public DenseMatrix applyQ(DenseMatrix C) {
+        return apply("N", C);
+    }
+
+    /**
+     * Computes <code>C = Q<sup>T</sup>*C</code> without forming
+     * <code>Q</code>. The full orthogonal matrix of order
+     * <code>max(m, n)</code> is applied
+     * 
+     * @param C
+     *            Matrix with <code>max(m, n)</code> rows. Overwritten on exit
+     * @return C
+     */
+    public DenseMatrix applyQTranspose(DenseMatrix C) {
+        return apply("T", C);
+    }
+
+    private DenseMatrix apply(String trans, DenseMatrix C) {
+        if (C.numRows() != Math.max(m, n))
+            throw new IllegalArgumentException("C.numRows() != "
+                    + Math.max(m, n));
+
+        intW info = new intW(0);
+        double[] size = new double[1];
+        multiply(trans, C, size, -1, info);
+        int lwork = Math.max(1, info.val != 0 ? C.numColumns()
+                : (int) size[0]);
+        double[] work = workApply;
+        if (workspace != null)
+            work = workspace.getDoubles(lwork);
+        else if (workApply.length < lwork)
+            work = workApply = new double[lwork];
+
+        info.val = 0;
+        multiply(trans, C, work, work.length, info);
+
+        if (info.val < 0)
+            throw new IllegalArgumentException();
+
+        return C;
+    }
+
 }
@@ -0,0 +1,169 @@
+package no.uib.cipr.matrix;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared worker pool for the pure Java parallel kernels. Work is expressed as
+ * an index range which is split into contiguous chunks, one per thread, with
+ * the calling thread processing the first chunk itself.
+ * <p>
+ * The number of threads defaults to the number of available processors and
+ * can be changed with {@link #setThreads(int)}; a value of one disables
+ * parallelism altogether. Calls made from within a worker thread run
+ * sequentially, so nested parallel kernels can not deadlock the pool.
+ * </p>
+ */
+public final class Parallel {
+
+    /**
+     * A task over a half-open index range
+     */
+    public interface RangeTask {
+
+        /**
+         * Processes the indices <code>from</code> (inclusive) to
+         * <code>to</code> (exclusive)
+         */
+        void run(int from, int to);
+
+    }
+
+    private static volatile int threads = Runtime.getRuntime()
+            .availableProcessors();
+
+    private static ThreadPoolExecutor pool;
+
+    private static int poolSize;
+
+    private static final ThreadLocal<Boolean> worker = new ThreadLocal<Boolean>();
+
+    private Parallel() {
+        // static utility
+    }
+
+    /**
+     * Returns the number of threads used by parallel kernels
+     */
+    public static int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the number of threads used by parallel kernels. One disables
+     * parallel execution
+     */
+    public static void setThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads < 1");
+        Parallel.threads = threads;
+    }
+
+    /**
+     * Runs the task over <code>[0, n)</code>, splitting the range over the
+     * worker threads. Returns once all of the range has been processed.
+     *
+     * @param n
+     *            Length of the range
+     * @param grain
+     *            Smallest number of indices worth giving to a thread. If the
+     *            range is shorter than twice this, it is run sequentially on
+     *            the calling thread
+     * @param task
+     *            Task to run
+     */
+    public static void forRange(int n, int grain, final RangeTask task) {
+        int chunks = Math.min(threads, n / Math.max(1, grain));
+        if (chunks < 2 || worker.get() != null) {
+            if (n > 0)
+                task.run(0, n);
+            return;
+        }
+
+        ExecutorService executor = getPool(chunks - 1);
+        List<Future<?>> futures = new ArrayList<Future<?>>(chunks - 1);
+        int size = n / chunks, rest = n % chunks;
+        int from = size + (rest > 0 ? 1 : 0);
+        for (int c = 1; c < chunks; ++c) {
+            final int start = from, end = from + size + (c < rest ? 1 : 0);
+            futures.add(executor.submit(new Callable<Void>() {
+                public Void call() {
+                    task.run(start, end);
+                    return null;
+                }
+            }));
+            from = end;
+        }
+
+        // the calling thread takes the first chunk, as a worker, so that
+        // nested calls do not queue behind the other chunks
+        RuntimeException failure = null;
+        worker.set(Boolean.TRUE);
+        try {
+            task.run(0, size + (rest > 0 ? 1 : 0));
+        } catch (RuntimeException e) {
+            failure = e;
+        } finally {
+            worker.remove();
+        }
+
+        for (Future<?> f : futures)
+            try {
+                f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (failure == null)
+                    failure = new IllegalStateException(e);
+            } catch (ExecutionException e) {
+                if (failure == null)
+                    failure = e.getCause() instanceof RuntimeException
+                            ? (RuntimeException) e.getCause()
+                            : new IllegalStateException(e.getCause());
+            }
+
+        if (failure != null)
+            throw failure;
+    }
+
+    /**
+     * Returns the pool, with at least the given number of threads. The pool
+     * is grown in place rather than replaced, since other threads may be
+     * submitting to it, and a pool shut down under them would reject their
+     * tasks
+     */
+    private static synchronized ExecutorService getPool(int size) {
+        if (pool == null) {
+            poolSize = Math.max(size, threads - 1);
+            pool = new ThreadPoolExecutor(poolSize, poolSize, 0,
+                    TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                        private int count;
+
+                        public synchronized Thread newThread(final Runnable r) {
+                            Thread t = new Thread(new Runnable() {
+                                public void run() {
+                                    worker.set(Boolean.TRUE);
+                                    r.run();
+                                }
+                            }, "mtj-worker-" + ++count);
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+        } else if (poolSize < size) {
+            poolSize = Math.max(size, threads - 1);
+            pool.setMaximumPoolSize(poolSize);
+            pool.setCorePoolSize(poolSize);
+        }
+        return pool;
+    }
+
+}
@@ -81,6 +81,28 @@ public class PermutationMatrix extends AbstractMatrix {
         return this;
     }
 
+    @Override
+    public Vector multAdd(double alpha, Vector x, Vector y) {
+        checkMultAdd(x, y);
+        for (int i = 0; i < permutations.length; i++)
+            if (transposed)
+                y.add(permutations[i], alpha * x.get(i));
+            else
+                y.add(i, alpha * x.get(permutations[i]));
+        return y;
+    }
+
+    @Override
+    public Vector transMultAdd(double alpha, Vector x, Vector y) {
+        checkTransMultAdd(x, y);
+        for (int i = 0; i < permutations.length; i++)
+            if (transposed)
+                y.add(i, alpha * x.get(permutations[i]));
+            else
+                y.add(permutations[i], alpha * x.get(i));
+        return y;
+    }
+
     @Override
     public Matrix mult(Matrix B, Matrix C) {
         if (C instanceof DenseMatrix)
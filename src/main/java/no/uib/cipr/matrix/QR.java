@@ -38,7 +38,23 @@ public class QR extends OrthogonalComputer {
      *            Number of columns
      */
     public QR(int m, int n) {
-        super(m, n, true);
+        this(m, n, null);
+    }
+
+    /**
+     * Constructs an empty QR decomposition which borrows its work arrays
+     * from the given workspace on each factorization
+     * 
+     * @param m
+     *            Number of rows. Must be larger than or equal the number of
+     *            columns
+     * @param n
+     *            Number of columns
+     * @param workspace
+     *            Workspace to use, or null to allocate the work arrays once
+     */
+    public QR(int m, int n, Workspace workspace) {
+        super(m, n, true, workspace);
 
         if (n > m)
             throw new IllegalArgumentException("n > m");
@@ -47,34 +63,33 @@ public class QR extends OrthogonalComputer {
 
         // Query optimal workspace. First for computing the factorization
         {
-            work = new double[1];
+            double[] size = new double[1];
             intW info = new intW(0);
             LAPACK.getInstance().dgeqrf(m, n, new double[0], Matrices.ld(m),
-                    new double[0], work, -1, info);
+                    new double[0], size, -1, info);
 
             if (info.val != 0)
                 lwork = n;
             else
-                lwork = (int) work[0];
-            lwork = Math.max(1, lwork);
-            work = new double[lwork];
+                lwork = (int) size[0];
+            this.lwork = Math.max(1, lwork);
         }
 
         // Workspace needed for generating an explicit orthogonal matrix
         {
-            workGen = new double[1];
+            double[] size = new double[1];
             intW info = new intW(0);
             LAPACK.getInstance().dorgqr(m, n, k, new double[0], Matrices.ld(m),
-                    new double[0], workGen, -1, info);
+                    new double[0], size, -1, info);
 
             if (info.val != 0)
                 lwork = n;
             else
-                lwork = (int) workGen[0];
-            lwork = Math.max(1, lwork);
-            workGen = new double[lwork];
+                lwork = (int) size[0];
+            lworkGen = Math.max(1, lwork);
         }
 
+        allocate();
     }
 
     /**
@@ -88,15 +103,27 @@ public class QR extends OrthogonalComputer {
         return new QR(A.numRows(), A.numColumns()).factor(new DenseMatrix(A));
     }
 
+    /**
+     * Convenience method to compute a QR decomposition, copying the matrix
+     * into the given workspace instead of a new matrix, and borrowing the work
+     * arrays from it
+     * 
+     * @param A
+     *            Matrix to decompose. Not modified
+     * @param workspace
+     *            Workspace to use
+     * @return Newly allocated decomposition
+     */
+    public static QR factorize(Matrix A, Workspace workspace) {
+        return new QR(A.numRows(), A.numColumns(), workspace).factor(workspace
+                .copy(A));
+    }
+
     @Override
     public QR factor(DenseMatrix A) {
 
-        if (Q.numRows() != A.numRows())
-            throw new IllegalArgumentException("Q.numRows() != A.numRows()");
-        else if (Q.numColumns() != A.numColumns())
-            throw new IllegalArgumentException(
-                    "Q.numColumns() != A.numColumns()");
-        else if (R == null)
+        checkSize(A);
+        if (R == null)
             throw new IllegalArgumentException("R == null");
 
         /*
@@ -104,7 +131,7 @@ public class QR extends OrthogonalComputer {
          */
         intW info = new intW(0);
         LAPACK.getInstance().dgeqrf(m, n, A.getData(), Matrices.ld(m), tau,
-                work, work.length, info);
+                borrow(work, lwork), lwork, info);
 
         if (info.val < 0)
             throw new IllegalArgumentException();
@@ -114,19 +141,60 @@ public class QR extends OrthogonalComputer {
             if (e.row() <= e.column())
                 R.set(e.row(), e.column(), e.get());
 
-        /*
-         * Generate the orthogonal matrix
-         */
-        info.val = 0;
-        LAPACK.getInstance().dorgqr(m, n, k, A.getData(), Matrices.ld(m), tau,
-                workGen, workGen.length, info);
+        setReflectors(A);
 
-        if (info.val < 0)
-            throw new IllegalArgumentException();
+        return this;
+    }
 
-        Q.set(A);
+    @Override
+    void generate(double[] Q, intW info) {
+        LAPACK.getInstance().dorgqr(m, n, k, Q, Matrices.ld(m), tau, borrow(
+                workGen, lworkGen), lworkGen, info);
+    }
 
-        return this;
+    @Override
+    void multiply(String trans, DenseMatrix C, double[] work, int lwork,
+            intW info) {
+        LAPACK.getInstance().dormqr("L", trans, C.numRows(), C.numColumns(),
+                k, H.getData(), Matrices.ld(m), tau, C.getData(), Matrices
+                        .ld(C.numRows()), work, lwork, info);
+    }
+
+    /**
+     * Solves the least squares problem <code>min ||A*X - B||</code> for the
+     * factored matrix of full column rank, as <code>R*X =
+     * (Q<sup>T</sup>*B)(0:n, :)</code> using {@link #applyQTranspose}
+     * 
+     * @param B
+     *            Right hand sides, with <code>m</code> rows. Overwritten by
+     *            <code>Q<sup>T</sup>*B</code>, whose trailing
+     *            <code>m-n</code> rows hold the residual components
+     * @return X, newly allocated with <code>n</code> rows
+     * @throws MatrixSingularException
+     *             If <code>R</code> is exactly singular
+     */
+    public DenseMatrix solve(DenseMatrix B) throws MatrixSingularException {
+        if (B.numRows() != m)
+            throw new IllegalArgumentException("B.numRows() != m");
+        int nrhs = B.numColumns();
+        applyQTranspose(B);
+
+        DenseMatrix X = new DenseMatrix(n, nrhs);
+        double[] Bd = B.getData(), Xd = X.getData();
+        for (int j = 0; j < nrhs; ++j)
+            System.arraycopy(Bd, j * m, Xd, j * n, n);
+
+        // R is the upper triangle of the reflector array
+        intW info = new intW(0);
+        LAPACK.getInstance().dtrtrs("U", "N", "N", n, nrhs, H.getData(),
+                Matrices.ld(m), Xd, Matrices.ld(n), info);
+
+        if (info.val > 0)
+            throw new MatrixSingularException();
+        else if (info.val < 0)
+            throw new IllegalArgumentException();
+
+        return X;
     }
 
     /**
@@ -51,14 +51,26 @@ public class QRP {
      * Work array
      */
     double[] work;
+    /**
+     * Length of the work array
+     */
+    final int lwork;
+    /**
+     * Lends the work array instead, if not null
+     */
+    final Workspace workspace;
     /**
      * The factored matrix
      */
     final DenseMatrix Afact;
     /**
-     * The orthogonal matrix
+     * The orthogonal matrix, allocated and generated on demand
      */
-    final DenseMatrix Q;
+    DenseMatrix Q;
+    /**
+     * Whether Q is up to date with the reflectors in Afact
+     */
+    private boolean generated = true;
     /**
      * The general upper triangular matrix.
      */
@@ -73,18 +85,33 @@ public class QRP {
      *            the number of columns.
      */
     public QRP(int m, int n) {
+        this(m, n, null);
+    }
+
+    /**
+     * Constructs an empty QR decomposition which borrows its work array from
+     * the given workspace on each factorization
+     * 
+     * @param m
+     *            the number of rows.
+     * @param n
+     *            the number of columns.
+     * @param workspace
+     *            workspace to use, or null to allocate the work array once
+     */
+    public QRP(int m, int n, Workspace workspace) {
         this.m = m;
+        this.workspace = workspace;
         this.n = n;
         this.k = Math.min(m, n);
         this.rank = 0;
         jpvt = new int[n];
         tau = new double[k];
 
-        Q = new DenseMatrix(m, m);
         R = new DenseMatrix(m, n);
         Afact = new DenseMatrix(m, Math.max(m, n));
 
-        int lwork1, lwork2;
+        int lwork1, lwork2, lwork3;
         intW info = new intW(0);
         double[] dummy = new double[1];
         double[] ret = new double[1];
@@ -99,7 +126,12 @@ public class QRP {
         lapack.dorgqr(m, m, k, dummy, Matrices.ld(m), dummy, ret, -1, info);
         lwork2 = (info.val != 0) ? n : (int) ret[0];
 
-        work = new double[Math.max(lwork1, lwork2)];
+        // And for the pivoted factorization itself
+        lapack.dgeqp3(m, n, dummy, Matrices.ld(m), jpvt, dummy, ret, -1, info);
+        lwork3 = (info.val != 0) ? 3 * n + 1 : (int) ret[0];
+
+        lwork = Math.max(1, Math.max(lwork1, Math.max(lwork2, lwork3)));
+        work = workspace == null ? new double[lwork] : null;
     }
 
     /**
@@ -113,6 +145,20 @@ public class QRP {
         return new QRP(A.numRows(), A.numColumns()).factor(A);
     }
 
+    /**
+     * Convenience method to compute a QR decomposition, borrowing the work
+     * array from the given workspace
+     * 
+     * @param A
+     *            the matrix to decompose (not modified)
+     * @param workspace
+     *            workspace to use
+     * @return Newly allocated decomposition
+     */
+    public static QRP factorize(Matrix A, Workspace workspace) {
+        return new QRP(A.numRows(), A.numColumns(), workspace).factor(A);
+    }
+
     /**
      * Executes a QR factorization for the given matrix.
      * 
@@ -121,36 +167,33 @@ public class QRP {
      * @return the factorization object
      */
     public QRP factor(Matrix A) {
-        if (Q.numRows() != A.numRows())
+        if (m != A.numRows())
             throw new IllegalArgumentException("Q.numRows() != A.numRows()");
         else if (R.numColumns() != A.numColumns())
             throw new IllegalArgumentException(
                     "R.numColumns() != A.numColumns()");
 
         // copy A values in Afact
-        Afact.zero();
-        for (MatrixEntry e : A) {
-            Afact.set(e.row(), e.column(), e.get());
+        double[] Af = Afact.getData();
+        if (A instanceof DenseMatrix) {
+            System.arraycopy(((DenseMatrix) A).data, 0, Af, 0, m * n);
+            java.util.Arrays.fill(Af, m * n, Af.length, 0);
+        } else {
+            Afact.zero();
+            for (MatrixEntry e : A)
+                Afact.set(e.row(), e.column(), e.get());
         }
 
         intW info = new intW(0);
         LAPACK lapack = LAPACK.getInstance();
-
-        // the dgeqp3 work array is a different size than the dorgqr
-        // one (I'm not entirely convinced that we should be
-        // persisting the work arrays as fields).
-        double[] factorWorkOptimalSize = {0.0};
-        double[] factorWork;
-
-        lapack.dgeqp3(m, n, Afact.getData(), Matrices.ld(m), jpvt, tau,
-                factorWorkOptimalSize, -1, info);
-        factorWork = new double[(int) factorWorkOptimalSize[0]];
+        double[] work = workspace != null ? workspace.getDoubles(lwork)
+                : this.work;
 
         /*
-         * Calculate factorisation
+         * Calculate factorisation. All columns are free to be pivoted
          */
-        lapack.dgeqp3(m, n, Afact.getData(), Matrices.ld(m), jpvt, tau,
-                factorWork, factorWork.length, info);
+        java.util.Arrays.fill(jpvt, 0);
+        lapack.dgeqp3(m, n, Af, Matrices.ld(m), jpvt, tau, work, lwork, info);
 
         if (info.val < 0) {
             throw new IllegalArgumentException("DGEQP3 was " + info.val);
@@ -159,34 +202,22 @@ public class QRP {
         /*
          * Get R from Afact
          */
-        R.zero();
-        for (MatrixEntry e : Afact) {
-            if (e.row() <= e.column() && e.column() < R.numColumns()) {
-                R.set(e.row(), e.column(), e.get());
-            }
-        }
+        double[] Rd = R.getData();
+        java.util.Arrays.fill(Rd, 0);
+        for (int j = 0; j < n; ++j)
+            System.arraycopy(Af, j * m, Rd, j * m, Math.min(j + 1, m));
 
         /*
          * Calculate the rank based on a precision EPS
          */
         final double EPS = 1e-12;
         for (rank = 0; rank < k; rank++) {
-            if (Math.abs(R.get(rank, rank)) < EPS)
+            if (Math.abs(Rd[rank + rank * m]) < EPS)
                 break;
         }
 
-        /*
-         * Explicit the orthogonal matrix
-         */
-        lapack.dorgqr(m, m, k, Afact.getData(), Matrices.ld(m), tau, work,
-                work.length, info);
-        for (MatrixEntry e : Afact) {
-            if (e.column() < Q.numColumns())
-                Q.set(e.row(), e.column(), e.get());
-        }
-
-        if (info.val < 0)
-            throw new IllegalArgumentException();
+        // the orthogonal matrix is formed from the reflectors on demand
+        generated = false;
 
         // Adjust the permutation to zero offset
         for (int i = 0; i < jpvt.length; i++) {
@@ -204,12 +235,118 @@ public class QRP {
     }
 
     /**
-     * Returns the orthogonal matrix
+     * Returns the orthogonal matrix. It is allocated on the first call, and
+     * formed from the reflectors on the first call after a factorization
      */
     public DenseMatrix getQ() {
+        if (Q == null)
+            Q = new DenseMatrix(m, m);
+        if (!generated) {
+            double[] Qd = Q.getData();
+            System.arraycopy(Afact.getData(), 0, Qd, 0, m * k);
+            intW info = new intW(0);
+            double[] work = workspace != null ? workspace.getDoubles(lwork)
+                    : this.work;
+            LAPACK.getInstance().dorgqr(m, m, k, Qd, Matrices.ld(m), tau,
+                    work, lwork, info);
+
+            if (info.val < 0)
+                throw new IllegalArgumentException();
+
+            generated = true;
+        }
         return Q;
     }
 
+    /**
+     * Computes <code>C = Q*C</code> without forming <code>Q</code>
+     * 
+     * @param C
+     *            Matrix with <code>m</code> rows. Overwritten on exit
+     * @return C
+     */
+    public DenseMatrix applyQ(DenseMatrix C) {
+        return apply("N", C);
+    }
+
+    /**
+     * Computes <code>C = Q<sup>T</sup>*C</code> without forming
+     * <code>Q</code>
+     * 
+     * @param C
+     *            Matrix with <code>m</code> rows. Overwritten on exit
+     * @return C
+     */
+    public DenseMatrix applyQTranspose(DenseMatrix C) {
+        return apply("T", C);
+    }
+
+    private DenseMatrix apply(String trans, DenseMatrix C) {
+        if (C.numRows() != m)
+            throw new IllegalArgumentException("C.numRows() != m");
+        int nrhs = C.numColumns();
+
+        LAPACK lapack = LAPACK.getInstance();
+        intW info = new intW(0);
+        double[] ret = new double[1];
+        lapack.dormqr("L", trans, m, nrhs, k, Afact.getData(), Matrices.ld(m),
+                tau, C.getData(), Matrices.ld(m), ret, -1, info);
+        int lwork = Math.max(1, info.val != 0 ? nrhs : (int) ret[0]);
+        double[] work = workspace != null ? workspace.getDoubles(lwork)
+                : new double[lwork];
+
+        info.val = 0;
+        lapack.dormqr("L", trans, m, nrhs, k, Afact.getData(), Matrices.ld(m),
+                tau, C.getData(), Matrices.ld(m), work, lwork, info);
+
+        if (info.val < 0)
+            throw new IllegalArgumentException();
+
+        return C;
+    }
+
+    /**
+     * Computes the basic solution of the least squares problem
+     * <code>min ||A*X - B||</code>, using the leading <code>rank</code>
+     * columns of the pivoted factorization. The other components of the
+     * solution are zero
+     * 
+     * @param B
+     *            Right hand sides, with <code>m</code> rows. Overwritten by
+     *            <code>Q<sup>T</sup>*B</code>
+     * @return X, newly allocated with <code>n</code> rows
+     */
+    public DenseMatrix solve(DenseMatrix B) {
+        if (B.numRows() != m)
+            throw new IllegalArgumentException("B.numRows() != m");
+        int nrhs = B.numColumns();
+        applyQTranspose(B);
+
+        DenseMatrix X = new DenseMatrix(n, nrhs);
+        if (rank == 0)
+            return X;
+
+        // R11 * Y = (Q^T B)(0:rank, :)
+        DenseMatrix Y = new DenseMatrix(rank, nrhs);
+        double[] Bd = B.getData(), Yd = Y.getData();
+        for (int j = 0; j < nrhs; ++j)
+            System.arraycopy(Bd, j * m, Yd, j * rank, rank);
+
+        intW info = new intW(0);
+        LAPACK.getInstance().dtrtrs("U", "N", "N", rank, nrhs,
+                Afact.getData(), Matrices.ld(m), Yd, Matrices.ld(rank), info);
+
+        if (info.val < 0)
+            throw new IllegalArgumentException();
+
+        // undo the column pivoting
+        for (int j = 0; j < nrhs; ++j)
+            for (int i = 0; i < rank; ++i)
+                X.set(jpvt[i], j, Yd[i + j * rank]);
+
+        return X;
+    }
+
     /**
      * Returns the column pivoting vector. This function is cheaper than
      * {@link #getP()}.
@@ -38,7 +38,23 @@ public class RQ extends OrthogonalComputer {
      *            rows
      */
     public RQ(int m, int n) {
-        super(m, n, true);
+        this(m, n, null);
+    }
+
+    /**
+     * Constructs an empty RQ decomposition which borrows its work arrays
+     * from the given workspace on each factorization
+     * 
+     * @param m
+     *            Number of rows
+     * @param n
+     *            Number of columns. Must be larger than or equal the number of
+     *            rows
+     * @param workspace
+     *            Workspace to use, or null to allocate the work arrays once
+     */
+    public RQ(int m, int n, Workspace workspace) {
+        super(m, n, true, workspace);
 
         if (n < m)
             throw new IllegalArgumentException("n < m");
@@ -47,34 +63,33 @@ public class RQ extends OrthogonalComputer {
 
         // Query optimal workspace. First for computing the factorization
         {
-            work = new double[1];
+            double[] size = new double[1];
             intW info = new intW(0);
             LAPACK.getInstance().dgerqf(m, n, new double[0], Matrices.ld(m),
-                    new double[0], work, -1, info);
+                    new double[0], size, -1, info);
 
             if (info.val != 0)
                 lwork = m;
             else
-                lwork = (int) work[0];
-            lwork = Math.max(1, lwork);
-            work = new double[lwork];
+                lwork = (int) size[0];
+            this.lwork = Math.max(1, lwork);
         }
 
         // Workspace needed for generating an explicit orthogonal matrix
         {
-            workGen = new double[1];
+            double[] size = new double[1];
             intW info = new intW(0);
             LAPACK.getInstance().dorgrq(m, n, m, new double[0], Matrices.ld(m),
-                    new double[0], workGen, -1, info);
+                    new double[0], size, -1, info);
 
             if (info.val != 0)
                 lwork = m;
             else
-                lwork = (int) workGen[0];
-            lwork = Math.max(1, lwork);
-            workGen = new double[lwork];
+                lwork = (int) size[0];
+            lworkGen = Math.max(1, lwork);
         }
 
+        allocate();
     }
 
     /**
@@ -88,15 +103,27 @@ public class RQ extends OrthogonalComputer {
         return new RQ(A.numRows(), A.numColumns()).factor(new DenseMatrix(A));
     }
 
+    /**
+     * Convenience method to compute an RQ decomposition, copying the matrix
+     * into the given workspace instead of a new matrix, and borrowing the work
+     * arrays from it
+     * 
+     * @param A
+     *            Matrix to decompose. Not modified
+     * @param workspace
+     *            Workspace to use
+     * @return Newly allocated decomposition
+     */
+    public static RQ factorize(Matrix A, Workspace workspace) {
+        return new RQ(A.numRows(), A.numColumns(), workspace).factor(workspace
+                .copy(A));
+    }
+
     @Override
     public RQ factor(DenseMatrix A) {
 
-        if (Q.numRows() != A.numRows())
-            throw new IllegalArgumentException("Q.numRows() != A.numRows()");
-        else if (Q.numColumns() != A.numColumns())
-            throw new IllegalArgumentException(
-                    "Q.numColumns() != A.numColumns()");
-        else if (R == null)
+        checkSize(A);
+        if (R == null)
             throw new IllegalArgumentException("R == null");
 
         /*
@@ -104,7 +131,7 @@ public class RQ extends OrthogonalComputer {
          */
         intW info = new intW(0);
         LAPACK.getInstance().dgerqf(m, n, A.getData(), Matrices.ld(m), tau,
-                work, work.length, info);
+                borrow(work, lwork), lwork, info);
 
         if (info.val < 0)
             throw new IllegalArgumentException();
@@ -114,19 +141,23 @@ public class RQ extends OrthogonalComputer {
             if (e.column() >= (n - m) + e.row())
                 R.set(e.row(), e.column() - (n - m), e.get());
 
-        /*
-         * Generate the orthogonal matrix
-         */
-        info.val = 0;
-        LAPACK.getInstance().dorgrq(m, n, k, A.getData(), Matrices.ld(m), tau,
-                workGen, workGen.length, info);
+        setReflectors(A);
 
-        if (info.val < 0)
-            throw new IllegalArgumentException();
+        return this;
+    }
 
-        Q.set(A);
+    @Override
+    void generate(double[] Q, intW info) {
+        LAPACK.getInstance().dorgrq(m, n, k, Q, Matrices.ld(m), tau, borrow(
+                workGen, lworkGen), lworkGen, info);
+    }
 
-        return this;
+    @Override
+    void multiply(String trans, DenseMatrix C, double[] work, int lwork,
+            intW info) {
+        LAPACK.getInstance().dormrq("L", trans, C.numRows(), C.numColumns(),
+                k, H.getData(), Matrices.ld(m), tau, C.getData(), Matrices
+                        .ld(C.numRows()), work, lwork, info);
     }
 
     /**
@@ -0,0 +1,189 @@
+package no.uib.cipr.matrix;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Computes truncated singular value decompositions by random projection, as
+ * described by Halko, Martinsson and Tropp in <i>Finding structure with
+ * randomness</i>, SIAM Review 53(2), 2011.
+ * <p>
+ * The range of <code>A</code> is sampled by multiplying it with a Gaussian
+ * random matrix of <code>k + p</code> columns, where <code>p</code> is the
+ * oversampling, and the sample is refined by <code>q</code> power iterations,
+ * orthonormalising with {@link QR} in between. The small projected matrix is
+ * then decomposed by {@link SVD}. The matrix is only accessed by
+ * <code>A.mult(Matrix, Matrix)</code> and
+ * <code>A.transAmult(Matrix, Matrix)</code> with dense arguments of
+ * <code>k + p</code> columns, so any matrix with efficient products can be
+ * decomposed, such as a sparse {@link no.uib.cipr.matrix.sparse.CompRowMatrix}
+ * far too large for a full decomposition.
+ * </p>
+ * <p>
+ * The accuracy depends on the decay of the singular values beyond the
+ * <code>k</code>'th; slowly decaying spectra need more power iterations.
+ * </p>
+ */
+public class RandomizedSVD {
+
+    /**
+     * Number of singular triplets to compute
+     */
+    private final int k;
+
+    /**
+     * Oversampling and number of power iterations
+     */
+    private int p = 10, q = 2;
+
+    private Random random = new Random();
+
+    /**
+     * The singular values
+     */
+    private double[] S;
+
+    /**
+     * Singular vectors
+     */
+    private DenseMatrix U, Vt;
+
+    /**
+     * Creates an empty truncated SVD
+     *
+     * @param k
+     *            Number of singular values and vectors to compute
+     */
+    public RandomizedSVD(int k) {
+        if (k < 1)
+            throw new IllegalArgumentException("k < 1");
+        this.k = k;
+    }
+
+    /**
+     * Convenience method for computing a truncated SVD with the default
+     * oversampling and power iterations
+     *
+     * @param A
+     *            Matrix to decompose, not modified
+     * @param k
+     *            Number of singular values and vectors to compute
+     * @return Newly allocated factorization
+     * @throws NotConvergedException
+     */
+    public static RandomizedSVD factorize(Matrix A, int k)
+            throws NotConvergedException {
+        return new RandomizedSVD(k).factor(A);
+    }
+
+    /**
+     * Sets the number of extra samples of the range, 10 by default
+     */
+    public RandomizedSVD setOversampling(int p) {
+        if (p < 0)
+            throw new IllegalArgumentException("p < 0");
+        this.p = p;
+        return this;
+    }
+
+    /**
+     * Sets the number of power iterations, 2 by default
+     */
+    public RandomizedSVD setPowerIterations(int q) {
+        if (q < 0)
+            throw new IllegalArgumentException("q < 0");
+        this.q = q;
+        return this;
+    }
+
+    /**
+     * Sets the random number generator of the test matrix, for reproducible
+     * decompositions
+     */
+    public RandomizedSVD setRandom(Random random) {
+        this.random = random;
+        return this;
+    }
+
+    /**
+     * Computes the truncated SVD
+     *
+     * @param A
+     *            Matrix to decompose, not modified. At least <code>k</code>
+     *            rows and columns
+     * @return The current decomposition
+     * @throws NotConvergedException
+     */
+    public RandomizedSVD factor(Matrix A) throws NotConvergedException {
+        int m = A.numRows(), n = A.numColumns();
+        if (k > Math.min(m, n))
+            throw new IllegalArgumentException("k > min(A.numRows(), "
+                    + "A.numColumns())");
+        int l = Math.min(k + p, Math.min(m, n));
+
+        // sample the range, Y = A * Omega
+        DenseMatrix Omega = new DenseMatrix(n, l);
+        double[] od = Omega.getData();
+        for (int i = 0; i < od.length; ++i)
+            od[i] = random.nextGaussian();
+        DenseMatrix Y = new DenseMatrix(m, l), Z = new DenseMatrix(n, l);
+        QR qrm = new QR(m, l), qrn = new QR(n, l);
+        DenseMatrix Q = qrm.factor((DenseMatrix) A.mult(Omega, Y)).getQ();
+
+        // power iterations, Q = orth(A * orth(A' * Q))
+        for (int i = 0; i < q; ++i) {
+            DenseMatrix W = qrn.factor((DenseMatrix) A.transAmult(Q, Z))
+                    .getQ();
+            Q = qrm.factor((DenseMatrix) A.mult(W, Y)).getQ();
+        }
+
+        // B = Q' * A = R' * Q2' with A' * Q = Q2 * R
+        qrn.factor((DenseMatrix) A.transAmult(Q, Z));
+        DenseMatrix Q2 = qrn.getQ();
+        DenseMatrix Rt = new DenseMatrix(l, l);
+        qrn.getR().transpose(Rt);
+
+        SVD svd = new SVD(l, l).factor(Rt);
+
+        // U = Q * Ub(:, 1:k) and Vt = Vbt(1:k, :) * Q2'
+        DenseMatrix Ub = new DenseMatrix(l, k), Vbt = new DenseMatrix(k, l);
+        System.arraycopy(svd.getU().getData(), 0, Ub.getData(), 0, l * k);
+        for (int j = 0; j < l; ++j)
+            for (int i = 0; i < k; ++i)
+                Vbt.set(i, j, svd.getVt().get(i, j));
+
+        U = (DenseMatrix) Q.mult(Ub, new DenseMatrix(m, k));
+        Vt = (DenseMatrix) Vbt.transBmult(Q2, new DenseMatrix(k, n));
+        S = Arrays.copyOf(svd.getS(), k);
+
+        return this;
+    }
+
+    /**
+     * Returns the left singular vectors, column-wise
+     *
+     * @return Matrix of size m*k
+     */
+    public DenseMatrix getU() {
+        return U;
+    }
+
+    /**
+     * Returns the right singular vectors, row-wise
+     *
+     * @return Matrix of size k*n
+     */
+    public DenseMatrix getVt() {
+        return Vt;
+    }
+
+    /**
+     * Returns the singular values (stored in descending order)
+     *
+     * @return Array of size k
+     */
+    public double[] getS() {
+        return S;
+    }
+
+}
@@ -38,6 +38,16 @@ public class SVD {
      */
     private final int[] iwork;
 
+    /**
+     * Lengths of the work arrays
+     */
+    private final int lwork, liwork;
+
+    /**
+     * Lends the work arrays instead, if not null
+     */
+    private final Workspace workspace;
+
     /**
      * Matrix dimension
      */
@@ -87,9 +97,28 @@ public class SVD {
      *            singular values
      */
     public SVD(int m, int n, boolean vectors) {
+        this(m, n, vectors, null);
+    }
+
+    /**
+     * Creates an empty SVD which borrows its work arrays from the given
+     * workspace on each factorization
+     * 
+     * @param m
+     *            Number of rows
+     * @param n
+     *            Number of columns
+     * @param vectors
+     *            True to compute the singular vectors, false for just the
+     *            singular values
+     * @param workspace
+     *            Workspace to use, or null to allocate the work arrays once
+     */
+    public SVD(int m, int n, boolean vectors, Workspace workspace) {
         this.m = m;
         this.n = n;
         this.vectors = vectors;
+        this.workspace = workspace;
 
         // Allocate space for the decomposition
         S = new double[Math.min(m, n)];
@@ -102,7 +131,9 @@ public class SVD {
         job = vectors ? JobSVD.All : JobSVD.None;
 
         // Find workspace requirements
-        iwork = new int[8 * Math.min(m, n)];
+        liwork = 8 * Math.min(m, n);
+        int[] iwork = workspace != null ? workspace.getInts(liwork)
+                : new int[liwork];
 
         // Query optimal workspace
         double[] worksize = new double[1];
@@ -112,7 +143,7 @@ public class SVD {
                 new double[0], Matrices.ld(n), worksize, -1, iwork, info);
 
         // Allocate workspace
-        int lwork = -1;
+        int lwork;
         if (info.val != 0) {
             if (vectors)
                 lwork = 3
@@ -133,8 +164,14 @@ public class SVD {
         } else
             lwork = (int) worksize[0];
 
-        lwork = Math.max(lwork, 1);
-        work = new double[lwork];
+        this.lwork = Math.max(lwork, 1);
+        if (workspace == null) {
+            work = new double[this.lwork];
+            this.iwork = iwork;
+        } else {
+            work = null;
+            this.iwork = null;
+        }
     }
 
     /**
@@ -149,6 +186,24 @@ public class SVD {
         return new SVD(A.numRows(), A.numColumns()).factor(new DenseMatrix(A));
     }
 
+    /**
+     * Convenience method for computing a full SVD, copying the matrix into the
+     * given workspace instead of a new matrix, and borrowing the work arrays
+     * from it
+     * 
+     * @param A
+     *            Matrix to decompose, not modified
+     * @param workspace
+     *            Workspace to use
+     * @return Newly allocated factorization
+     * @throws NotConvergedException
+     */
+    public static SVD factorize(Matrix A, Workspace workspace)
+            throws NotConvergedException {
+        return new SVD(A.numRows(), A.numColumns(), true, workspace)
+                .factor(workspace.copy(A));
+    }
+
     /**
      * Computes an SVD
      * 
@@ -164,11 +219,18 @@ public class SVD {
         else if (A.numColumns() != n)
             throw new IllegalArgumentException("A.numColumns() != n");
 
+        double[] work = this.work;
+        int[] iwork = this.iwork;
+        if (workspace != null) {
+            work = workspace.getDoubles(lwork);
+            iwork = workspace.getInts(liwork);
+        }
+
         intW info = new intW(0);
         LAPACK.getInstance().dgesdd(job.netlib(), m, n, A.getData(),
                 Matrices.ld(m), S, vectors ? U.getData() : new double[0],
                 Matrices.ld(m), vectors ? Vt.getData() : new double[0],
-                Matrices.ld(n), work, work.length, iwork, info);
+                Matrices.ld(n), work, lwork, iwork, info);
 
         if (info.val > 0)
             throw new NotConvergedException(
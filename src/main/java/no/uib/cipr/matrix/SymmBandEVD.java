@@ -38,6 +38,16 @@ public class SymmBandEVD extends SymmEVD {
      */
     private final int[] iwork;
 
+    /**
+     * Lengths of the work arrays
+     */
+    private final int lwork, liwork;
+
+    /**
+     * Lends the work arrays instead, if not null
+     */
+    private final Workspace workspace;
+
     /**
      * Upper or lower part stored
      */
@@ -70,7 +80,28 @@ public class SymmBandEVD extends SymmEVD {
      *            eigenvalues
      */
     public SymmBandEVD(int n, boolean upper, boolean vectors) {
+        this(n, upper, vectors, null);
+    }
+
+    /**
+     * Sets up an eigenvalue decomposition for symmetrical, banded matrices,
+     * which borrows its work arrays from the given workspace on each
+     * factorization
+     * 
+     * @param n
+     *            Size of the matrix
+     * @param upper
+     *            True if the upper part of the matrix is stored, and false if
+     *            the lower part of the matrix is stored instead
+     * @param vectors
+     *            True to compute the eigenvectors, false for just the
+     *            eigenvalues
+     * @param workspace
+     *            Workspace to use, or null to allocate the work arrays once
+     */
+    public SymmBandEVD(int n, boolean upper, boolean vectors, Workspace workspace) {
         super(n, vectors);
+        this.workspace = workspace;
 
         uplo = upper ? UpLo.Upper : UpLo.Lower;
 
@@ -97,10 +128,15 @@ public class SymmBandEVD extends SymmEVD {
             liwork = iworksize[0];
         }
 
-        lwork = Math.max(1, lwork);
-        liwork = Math.max(1, liwork);
-        work = new double[lwork];
-        iwork = new int[liwork];
+        this.lwork = Math.max(1, lwork);
+        this.liwork = Math.max(1, liwork);
+        if (workspace == null) {
+            work = new double[this.lwork];
+            iwork = new int[this.liwork];
+        } else {
+            work = null;
+            iwork = null;
+        }
     }
 
     /**
@@ -121,6 +157,26 @@ public class SymmBandEVD extends SymmEVD {
                 .factor(new UpperSymmBandMatrix(A, kd));
     }
 
+    /**
+     * Convenience method for computing the full eigenvalue decomposition of the
+     * given matrix, borrowing the work arrays from the given workspace. The
+     * banded copy of the matrix is still allocated
+     * 
+     * @param A
+     *            Matrix to factorize. The upper triangular part is extracted,
+     *            and the matrix is not modified
+     * @param kd
+     *            Number of diagonals to extract
+     * @param workspace
+     *            Workspace to use
+     * @return Newly allocated decomposition
+     * @throws NotConvergedException
+     */
+    public static SymmBandEVD factorize(Matrix A, int kd, Workspace workspace)
+            throws NotConvergedException {
+        return new SymmBandEVD(A.numRows(), true, true, workspace).factor(new UpperSymmBandMatrix(A, kd));
+    }
+
     /**
      * Computes the eigenvalue decomposition of the given matrix
      * 
@@ -160,11 +216,18 @@ public class SymmBandEVD extends SymmEVD {
         if (A.numRows() != n)
             throw new IllegalArgumentException("A.numRows() != n");
 
+        double[] work = this.work;
+        int[] iwork = this.iwork;
+        if (workspace != null) {
+            work = workspace.getDoubles(lwork);
+            iwork = workspace.getInts(liwork);
+        }
+
         intW info = new intW(0);
         LAPACK.getInstance().dsbevd(job.netlib(), uplo.netlib(), n, kd, data,
                 Matrices.ld(kd + 1), w,
                 job == JobEig.All ? Z.getData() : new double[0],
-                Matrices.ld(n), work, work.length, iwork, iwork.length, info);
+                Matrices.ld(n), work, lwork, iwork, liwork, info);
 
         if (info.val > 0)
             throw new NotConvergedException(
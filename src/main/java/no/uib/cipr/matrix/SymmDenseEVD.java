@@ -38,6 +38,16 @@ public class SymmDenseEVD extends SymmEVD {
      */
     private final int[] iwork;
 
+    /**
+     * Lengths of the work arrays
+     */
+    private final int lwork, liwork;
+
+    /**
+     * Lends the work arrays instead, if not null
+     */
+    private final Workspace workspace;
+
     /**
      * Upper or lower part stored
      */
@@ -121,8 +131,32 @@ public class SymmDenseEVD extends SymmEVD {
      *            Absolute tolerance criteria
      */
     public SymmDenseEVD(int n, boolean upper, boolean vectors, double abstol) {
+        this(n, upper, vectors, abstol, null);
+    }
+
+    /**
+     * Sets up an eigenvalue decomposition for symmetrical, dense matrices,
+     * which borrows its work arrays from the given workspace on each
+     * factorization
+     * 
+     * @param n
+     *            Size of the matrix
+     * @param upper
+     *            True if the upper part of the matrix is stored, and false if
+     *            the lower part of the matrix is stored instead
+     * @param vectors
+     *            True to compute the eigenvectors, false for just the
+     *            eigenvalues
+     * @param abstol
+     *            Absolute tolerance criteria
+     * @param workspace
+     *            Workspace to use, or null to allocate the work arrays once
+     */
+    public SymmDenseEVD(int n, boolean upper, boolean vectors, double abstol,
+            Workspace workspace) {
         super(n, vectors);
         this.abstol = abstol;
+        this.workspace = workspace;
 
         uplo = upper ? UpLo.Upper : UpLo.Lower;
         range = JobEigRange.All;
@@ -138,7 +172,7 @@ public class SymmDenseEVD extends SymmEVD {
                 Matrices.ld(n), isuppz, worksize, -1, iworksize, -1, info);
 
         // Allocate workspace
-        int lwork = 0, liwork = 0;
+        int lwork, liwork;
         if (info.val != 0) {
             lwork = 26 * n;
             liwork = 10 * n;
@@ -147,10 +181,15 @@ public class SymmDenseEVD extends SymmEVD {
             liwork = iworksize[0];
         }
 
-        lwork = Math.max(1, lwork);
-        liwork = Math.max(1, liwork);
-        work = new double[lwork];
-        iwork = new int[liwork];
+        this.lwork = Math.max(1, lwork);
+        this.liwork = Math.max(1, liwork);
+        if (workspace == null) {
+            work = new double[this.lwork];
+            iwork = new int[this.liwork];
+        } else {
+            work = null;
+            iwork = null;
+        }
     }
 
     /**
@@ -168,6 +207,25 @@ public class SymmDenseEVD extends SymmEVD {
                 .factor(new UpperSymmDenseMatrix(A));
     }
 
+    /**
+     * Convenience method for computing the full eigenvalue decomposition of the
+     * given matrix, copying the matrix into the given workspace instead of a
+     * new matrix, and borrowing the work arrays from it
+     * 
+     * @param A
+     *            Matrix to factorize. Upper part extracted, and the matrix is
+     *            not modified
+     * @param workspace
+     *            Workspace to use
+     * @return Newly allocated decomposition
+     * @throws NotConvergedException
+     */
+    public static SymmDenseEVD factorize(Matrix A, Workspace workspace)
+            throws NotConvergedException {
+        return new SymmDenseEVD(A.numRows(), true, true, LAPACK.getInstance()
+                .dlamch("Safe minimum"), workspace).factor(workspace.copy(A));
+    }
+
     /**
      * Computes the eigenvalue decomposition of the given matrix
      * 
@@ -202,17 +260,41 @@ public class SymmDenseEVD extends SymmEVD {
         return factor(A, A.getData());
     }
 
+    /**
+     * Computes the eigenvalue decomposition of the given symmetrical matrix in
+     * place, reading only the part configured for, and skipping the copy into
+     * a symmetrical matrix
+     * 
+     * @param A
+     *            Matrix to factorize. Overwritten on return
+     * @return The current eigenvalue decomposition
+     * @throws NotConvergedException
+     */
+    public SymmDenseEVD factor(DenseMatrix A) throws NotConvergedException {
+        if (!A.isSquare())
+            throw new IllegalArgumentException("!A.isSquare()");
+
+        return factor(A, A.getData());
+    }
+
     private SymmDenseEVD factor(Matrix A, double[] data)
             throws NotConvergedException {
         if (A.numRows() != n)
             throw new IllegalArgumentException("A.numRows() != n");
 
+        double[] work = this.work;
+        int[] iwork = this.iwork;
+        if (workspace != null) {
+            work = workspace.getDoubles(lwork);
+            iwork = workspace.getInts(liwork);
+        }
+
         intW info = new intW(0);
         LAPACK.getInstance().dsyevr(job.netlib(), range.netlib(),
                 uplo.netlib(), n, data, Matrices.ld(n), 0, 0, 0, 0, abstol,
                 new intW(1), w,
                 job == JobEig.All ? Z.getData() : new double[0],
-                Matrices.ld(n), isuppz, work, work.length, iwork, iwork.length,
+                Matrices.ld(n), isuppz, work, lwork, iwork, liwork,
                 info);
 
         if (info.val > 0)
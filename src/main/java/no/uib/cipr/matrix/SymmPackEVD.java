@@ -38,6 +38,16 @@ public class SymmPackEVD extends SymmEVD {
      */
     private final int[] iwork;
 
+    /**
+     * Lengths of the work arrays
+     */
+    private final int lwork, liwork;
+
+    /**
+     * Lends the work arrays instead, if not null
+     */
+    private final Workspace workspace;
+
     /**
      * Upper or lower part stored
      */
@@ -70,7 +80,28 @@ public class SymmPackEVD extends SymmEVD {
      *            eigenvalues
      */
     public SymmPackEVD(int n, boolean upper, boolean vectors) {
+        this(n, upper, vectors, null);
+    }
+
+    /**
+     * Sets up an eigenvalue decomposition for symmetrical, packed matrices,
+     * which borrows its work arrays from the given workspace on each
+     * factorization
+     * 
+     * @param n
+     *            Size of the matrix
+     * @param upper
+     *            True if the upper part of the matrix is stored, and false if
+     *            the lower part of the matrix is stored instead
+     * @param vectors
+     *            True to compute the eigenvectors, false for just the
+     *            eigenvalues
+     * @param workspace
+     *            Workspace to use, or null to allocate the work arrays once
+     */
+    public SymmPackEVD(int n, boolean upper, boolean vectors, Workspace workspace) {
         super(n, vectors);
+        this.workspace = workspace;
 
         uplo = upper ? UpLo.Upper : UpLo.Lower;
 
@@ -97,10 +128,15 @@ public class SymmPackEVD extends SymmEVD {
             liwork = iworksize[0];
         }
 
-        lwork = Math.max(1, lwork);
-        liwork = Math.max(1, liwork);
-        work = new double[lwork];
-        iwork = new int[liwork];
+        this.lwork = Math.max(1, lwork);
+        this.liwork = Math.max(1, liwork);
+        if (workspace == null) {
+            work = new double[this.lwork];
+            iwork = new int[this.liwork];
+        } else {
+            work = null;
+            iwork = null;
+        }
     }
 
     /**
@@ -118,6 +154,24 @@ public class SymmPackEVD extends SymmEVD {
                 .factor(new UpperSymmPackMatrix(A));
     }
 
+    /**
+     * Convenience method for computing the full eigenvalue decomposition of the
+     * given matrix, borrowing the work arrays from the given workspace. The
+     * packed copy of the matrix is still allocated
+     * 
+     * @param A
+     *            Matrix to factorize. Upper part extracted, and the matrix is
+     *            not modified
+     * @param workspace
+     *            Workspace to use
+     * @return Newly allocated decomposition
+     * @throws NotConvergedException
+     */
+    public static SymmPackEVD factorize(Matrix A, Workspace workspace)
+            throws NotConvergedException {
+        return new SymmPackEVD(A.numRows(), true, true, workspace).factor(new UpperSymmPackMatrix(A));
+    }
+
     /**
      * Computes the eigenvalue decomposition of the given matrix
      * 
@@ -157,10 +211,17 @@ public class SymmPackEVD extends SymmEVD {
         if (A.numRows() != n)
             throw new IllegalArgumentException("A.numRows() != n");
 
+        double[] work = this.work;
+        int[] iwork = this.iwork;
+        if (workspace != null) {
+            work = workspace.getDoubles(lwork);
+            iwork = workspace.getInts(liwork);
+        }
+
         intW info = new intW(0);
         LAPACK.getInstance().dspevd(job.netlib(), uplo.netlib(), n, data, w,
                 job == JobEig.All ? Z.getData() : new double[0],
-                Matrices.ld(n), work, work.length, iwork, iwork.length, info);
+                Matrices.ld(n), work, lwork, iwork, liwork, info);
 
         if (info.val > 0)
             throw new NotConvergedException(
@@ -38,6 +38,16 @@ public class SymmTridiagEVD extends SymmEVD {
      */
     private final int[] iwork;
 
+    /**
+     * Lengths of the work arrays
+     */
+    private final int lwork, liwork;
+
+    /**
+     * Lends the work arrays instead, if not null
+     */
+    private final Workspace workspace;
+
     /**
      * Range of eigenvalues to compute
      */
@@ -104,8 +114,29 @@ public class SymmTridiagEVD extends SymmEVD {
      *            Absolute tolerance criteria
      */
     public SymmTridiagEVD(int n, boolean vectors, double abstol) {
+        this(n, vectors, abstol, null);
+    }
+
+    /**
+     * Sets up an eigenvalue decomposition for symmetrical, tridiagonal
+     * matrices, which borrows its work arrays from the given workspace on each
+     * factorization
+     * 
+     * @param n
+     *            Size of the matrix
+     * @param vectors
+     *            True to compute the eigenvectors, false for just the
+     *            eigenvalues
+     * @param abstol
+     *            Absolute tolerance criteria
+     * @param workspace
+     *            Workspace to use, or null to allocate the work arrays once
+     */
+    public SymmTridiagEVD(int n, boolean vectors, double abstol,
+            Workspace workspace) {
         super(n, vectors);
         this.abstol = abstol;
+        this.workspace = workspace;
 
         range = JobEigRange.All;
         isuppz = new int[2 * Math.max(1, n)];
@@ -129,10 +160,15 @@ public class SymmTridiagEVD extends SymmEVD {
             liwork = iworksize[0];
         }
 
-        lwork = Math.max(1, lwork);
-        liwork = Math.max(1, liwork);
-        work = new double[lwork];
-        iwork = new int[liwork];
+        this.lwork = Math.max(1, lwork);
+        this.liwork = Math.max(1, liwork);
+        if (workspace == null) {
+            work = new double[this.lwork];
+            iwork = new int[this.liwork];
+        } else {
+            work = null;
+            iwork = null;
+        }
     }
 
     /**
@@ -150,6 +186,26 @@ public class SymmTridiagEVD extends SymmEVD {
         return new SymmTridiagEVD(A.numRows()).factor(new SymmTridiagMatrix(A));
     }
 
+    /**
+     * Convenience method for computing the full eigenvalue decomposition of the
+     * given matrix, borrowing the work arrays from the given workspace. The
+     * tridiagonal copy of the matrix is still allocated
+     * 
+     * @param A
+     *            Matrix to factorize. Main diagonal and superdiagonal is
+     *            copied, and the matrix is not modified
+     * @param workspace
+     *            Workspace to use
+     * @return Newly allocated decomposition
+     * @throws NotConvergedException
+     */
+    public static SymmTridiagEVD factorize(Matrix A, Workspace workspace)
+            throws NotConvergedException {
+        return new SymmTridiagEVD(A.numRows(), true, LAPACK.getInstance()
+                .dlamch("Safe minimum"), workspace)
+                .factor(new SymmTridiagMatrix(A));
+    }
+
     /**
      * Computes the eigenvalue decomposition of the given matrix
      * 
@@ -163,12 +219,19 @@ public class SymmTridiagEVD extends SymmEVD {
         if (A.numRows() != n)
             throw new IllegalArgumentException("A.numRows() != n");
 
+        double[] work = this.work;
+        int[] iwork = this.iwork;
+        if (workspace != null) {
+            work = workspace.getDoubles(lwork);
+            iwork = workspace.getInts(liwork);
+        }
+
         intW info = new intW(0);
         LAPACK.getInstance().dstevr(job.netlib(), range.netlib(), n,
                 A.getDiagonal(), A.getOffDiagonal(), 0, 0, 0, 0, abstol,
                 new intW(1), w,
                 job == JobEig.All ? Z.getData() : new double[0],
-                Matrices.ld(n), isuppz, work, work.length, iwork, iwork.length,
+                Matrices.ld(n), isuppz, work, lwork, iwork, liwork,
                 info);
 
         if (info.val > 0)
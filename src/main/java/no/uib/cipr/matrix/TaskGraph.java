@@ -0,0 +1,187 @@
+package no.uib.cipr.matrix;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Graph of tasks over the tiles of a matrix, run in parallel as far as their
+ * dependencies allow. As in the superscalar schedulers of PLASMA, the
+ * dependencies are inferred from the order in which the tasks are added and
+ * the tiles they access: a task runs after the last earlier task writing any
+ * of its tiles, and a task writing a tile also runs after all earlier tasks
+ * reading it. Of the tasks which are ready, those marked as critical run
+ * first, and otherwise the earliest added. Marking the panel factorizations
+ * as critical lets the next panel start while the trailing update of the
+ * current step is still running.
+ */
+final class TaskGraph {
+
+    private static final class Node implements Comparable<Node> {
+
+        final Runnable task;
+
+        final int id;
+
+        final boolean critical;
+
+        final List<Node> successors = new ArrayList<Node>(4);
+
+        int pending;
+
+        Node(Runnable task, int id, boolean critical) {
+            this.task = task;
+            this.id = id;
+            this.critical = critical;
+        }
+
+        public int compareTo(Node o) {
+            if (critical != o.critical)
+                return critical ? -1 : 1;
+            return id < o.id ? -1 : (id == o.id ? 0 : 1);
+        }
+
+        void precedes(Node node) {
+            if (node == this || (!successors.isEmpty() && successors
+                    .get(successors.size() - 1) == node))
+                return;
+            successors.add(node);
+            node.pending++;
+        }
+
+    }
+
+    private final List<Node> nodes = new ArrayList<Node>();
+
+    private final Map<Object, Node> writers = new HashMap<Object, Node>();
+
+    private final Map<Object, List<Node>> readers = new HashMap<Object, List<Node>>();
+
+    /**
+     * Ready tasks, and the number not yet completed
+     */
+    private PriorityQueue<Node> ready;
+
+    private int remaining;
+
+    private RuntimeException failure;
+
+    /**
+     * Adds a task
+     *
+     * @param task
+     *            Task to run
+     * @param reads
+     *            Keys of the tiles it reads
+     * @param writes
+     *            Keys of the tiles it writes, and possibly reads
+     */
+    void add(Runnable task, Object[] reads, Object... writes) {
+        add(task, false, reads, writes);
+    }
+
+    /**
+     * Adds a task
+     *
+     * @param task
+     *            Task to run
+     * @param critical
+     *            True to run it before the other ready tasks
+     * @param reads
+     *            Keys of the tiles it reads
+     * @param writes
+     *            Keys of the tiles it writes, and possibly reads
+     */
+    void add(Runnable task, boolean critical, Object[] reads,
+            Object... writes) {
+        Node node = new Node(task, nodes.size(), critical);
+        nodes.add(node);
+
+        for (Object key : reads) {
+            Node writer = writers.get(key);
+            if (writer != null)
+                writer.precedes(node);
+            List<Node> list = readers.get(key);
+            if (list == null)
+                readers.put(key, list = new ArrayList<Node>());
+            list.add(node);
+        }
+
+        for (Object key : writes) {
+            Node writer = writers.get(key);
+            if (writer != null)
+                writer.precedes(node);
+            List<Node> list = readers.remove(key);
+            if (list != null)
+                for (Node reader : list)
+                    reader.precedes(node);
+            writers.put(key, node);
+        }
+    }
+
+    /**
+     * Runs all the tasks, on up to {@link Parallel#getThreads()} threads
+     * including the calling one. Returns once all have completed, or throws
+     * the first exception thrown by a task
+     */
+    void run() {
+        ready = new PriorityQueue<Node>();
+        for (Node node : nodes)
+            if (node.pending == 0)
+                ready.add(node);
+        remaining = nodes.size();
+        failure = null;
+
+        int threads = Math.min(Parallel.getThreads(), nodes.size());
+        Parallel.forRange(threads, 1, new Parallel.RangeTask() {
+            public void run(int from, int to) {
+                work();
+            }
+        });
+
+        if (failure != null)
+            throw failure;
+    }
+
+    private void work() {
+        while (true) {
+            Node node;
+            synchronized (this) {
+                while (ready.isEmpty() && remaining > 0 && failure == null)
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        failure = new IllegalStateException(e);
+                    }
+                if (remaining == 0 || failure != null) {
+                    notifyAll();
+                    return;
+                }
+                node = ready.poll();
+            }
+
+            try {
+                node.task.run();
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    if (failure == null)
+                        failure = e;
+                    notifyAll();
+                }
+                return;
+            }
+
+            synchronized (this) {
+                remaining--;
+                for (Node successor : node.successors)
+                    if (--successor.pending == 0)
+                        ready.add(successor);
+                notifyAll();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,248 @@
+package no.uib.cipr.matrix;
+
+import com.github.fommil.netlib.BLAS;
+import com.github.fommil.netlib.LAPACK;
+import org.netlib.util.intW;
+
+/**
+ * Cholesky decomposition of a {@link TiledDenseMatrix}, computed in place.
+ * <p>
+ * The right-looking tile algorithm of PLASMA is used. Step <code>k</code>
+ * factors the diagonal tile with <code>dpotrf</code>, solves for the tiles
+ * below it with <code>dtrsm</code>, and updates the trailing tiles with
+ * <code>dsyrk</code> and <code>dgemm</code>. Each of these is a task of a
+ * {@link TaskGraph}, so that the steps overlap as far as their tile
+ * dependencies allow. The factorization of the diagonal tile, the solves
+ * below it and the updates of the next tile column form the critical path,
+ * and are run first.
+ * </p>
+ */
+public class TiledCholesky {
+
+    /**
+     * The factored matrix, holding L in its lower triangle
+     */
+    private TiledDenseMatrix L;
+
+    /**
+     * If the matrix is SPD or not
+     */
+    private boolean notspd;
+
+    /**
+     * Calculates a Cholesky decomposition
+     *
+     * @param A
+     *            Symmetric matrix to decompose, of which only the lower
+     *            triangle is used. Overwritten by L
+     * @return The decomposition
+     */
+    public static TiledCholesky factorize(TiledDenseMatrix A) {
+        return new TiledCholesky().factor(A);
+    }
+
+    /**
+     * Calculates a Cholesky decomposition
+     *
+     * @param A
+     *            Symmetric matrix to decompose, of which only the lower
+     *            triangle is used. Overwritten by L, with the strict upper
+     *            triangle cleared
+     * @return The current decomposition
+     */
+    public TiledCholesky factor(TiledDenseMatrix A) {
+        if (!A.isSquare())
+            throw new IllegalArgumentException("!A.isSquare()");
+
+        Tiles tiles = A.tiles();
+        notspd = !factor(tiles, false);
+
+        // clear the upper triangle
+        for (int j = 0; j < tiles.nt; ++j)
+            for (int i = 0; i <= j; ++i) {
+                Tiles.Tile Aij = tiles.get(i, j);
+                for (int c = 0; c < tiles.columns(j); ++c)
+                    for (int r = 0; r < (i < j ? tiles.rows(i) : c); ++r)
+                        Aij.set(r, c, 0);
+                tiles.put(i, j, Aij);
+            }
+
+        L = A;
+        return this;
+    }
+
+    /**
+     * Factors the tiles of a symmetric positive definite matrix in place,
+     * using the lower or the upper triangle
+     *
+     * @return False if the matrix is not positive definite
+     */
+    static boolean factor(final Tiles A, final boolean upper) {
+        final boolean[] spd = { true };
+        final BLAS blas = JavaBLAS.getInstance();
+        TaskGraph graph = new TaskGraph();
+        Object[] none = {};
+
+        for (int k = 0; k < A.nt; ++k) {
+            final int kk = k;
+            final int nk = A.columns(k);
+
+            graph.add(new Runnable() {
+                public void run() {
+                    Tiles.Tile Akk = A.get(kk, kk);
+                    intW info = new intW(0);
+                    LAPACK.getInstance().dpotrf(upper ? "U" : "L", nk,
+                            Akk.data, Akk.offset, Akk.ld, info);
+                    if (info.val != 0)
+                        synchronized (spd) {
+                            spd[0] = false;
+                        }
+                    A.put(kk, kk, Akk);
+                }
+            }, true, none, A.key(k, k));
+
+            for (int i = k + 1; i < A.nt; ++i) {
+                final int ii = i;
+                final int ni = A.columns(i);
+
+                // L(i,k) = A(i,k) L(k,k)^-T, or U(k,i) = U(k,k)^-T A(k,i)
+                graph.add(new Runnable() {
+                    public void run() {
+                        Tiles.Tile Akk = A.get(kk, kk);
+                        if (upper) {
+                            Tiles.Tile Aki = A.get(kk, ii);
+                            blas.dtrsm("L", "U", "T", "N", nk, ni, 1,
+                                    Akk.data, Akk.offset, Akk.ld, Aki.data,
+                                    Aki.offset, Aki.ld);
+                            A.put(kk, ii, Aki);
+                        } else {
+                            Tiles.Tile Aik = A.get(ii, kk);
+                            blas.dtrsm("R", "L", "T", "N", ni, nk, 1,
+                                    Akk.data, Akk.offset, Akk.ld, Aik.data,
+                                    Aik.offset, Aik.ld);
+                            A.put(ii, kk, Aik);
+                        }
+                    }
+                }, true, new Object[] { A.key(k, k) }, upper ? A.key(k, i)
+                        : A.key(i, k));
+            }
+
+            for (int i = k + 1; i < A.nt; ++i) {
+                final int ii = i;
+                final int ni = A.columns(i);
+
+                // A(i,i) -= L(i,k) L(i,k)^T, or U(k,i)^T U(k,i)
+                graph.add(new Runnable() {
+                    public void run() {
+                        Tiles.Tile Aii = A.get(ii, ii);
+                        if (upper) {
+                            Tiles.Tile Uki = A.get(kk, ii);
+                            blas.dsyrk("U", "T", ni, nk, -1, Uki.data,
+                                    Uki.offset, Uki.ld, 1, Aii.data,
+                                    Aii.offset, Aii.ld);
+                        } else {
+                            Tiles.Tile Lik = A.get(ii, kk);
+                            blas.dsyrk("L", "N", ni, nk, -1, Lik.data,
+                                    Lik.offset, Lik.ld, 1, Aii.data,
+                                    Aii.offset, Aii.ld);
+                        }
+                        A.put(ii, ii, Aii);
+                    }
+                }, i == k + 1, new Object[] { upper ? A.key(k, i)
+                        : A.key(i, k) }, A.key(i, i));
+
+                for (int j = k + 1; j < i; ++j) {
+                    final int jj = j;
+                    final int nj = A.columns(j);
+
+                    // A(i,j) -= L(i,k) L(j,k)^T, or A(j,i) -= U(k,j)^T U(k,i)
+                    graph.add(new Runnable() {
+                        public void run() {
+                            if (upper) {
+                                Tiles.Tile Ukj = A.get(kk, jj), Uki = A.get(
+                                        kk, ii), Aji = A.get(jj, ii);
+                                blas.dgemm("T", "N", nj, ni, nk, -1,
+                                        Ukj.data, Ukj.offset, Ukj.ld,
+                                        Uki.data, Uki.offset, Uki.ld, 1,
+                                        Aji.data, Aji.offset, Aji.ld);
+                                A.put(jj, ii, Aji);
+                            } else {
+                                Tiles.Tile Lik = A.get(ii, kk), Ljk = A.get(
+                                        jj, kk), Aij = A.get(ii, jj);
+                                blas.dgemm("N", "T", ni, nj, nk, -1,
+                                        Lik.data, Lik.offset, Lik.ld,
+                                        Ljk.data, Ljk.offset, Ljk.ld, 1,
+                                        Aij.data, Aij.offset, Aij.ld);
+                                A.put(ii, jj, Aij);
+                            }
+                        }
+                    }, j == k + 1, upper ? new Object[] { A.key(k, j),
+                            A.key(k, i) }
+                            : new Object[] { A.key(i, k), A.key(j, k) },
+                            upper ? A.key(j, i) : A.key(i, j));
+                }
+            }
+        }
+
+        graph.run();
+        return spd[0];
+    }
+
+    /**
+     * Returns true if the matrix decomposed is symmetrical, positive definite
+     */
+    public boolean isSPD() {
+        return !notspd;
+    }
+
+    /**
+     * Returns the lower triangular factor, which is the factored matrix
+     */
+    public TiledDenseMatrix getL() {
+        return L;
+    }
+
+    /**
+     * Solves for <code>B</code>, overwriting it on return
+     */
+    public DenseMatrix solve(DenseMatrix B) throws MatrixNotSPDException {
+        if (notspd)
+            throw new MatrixNotSPDException();
+        if (L.numRows() != B.numRows())
+            throw new IllegalArgumentException("L.numRows() != B.numRows()");
+
+        Tiles tiles = L.tiles();
+        int nrhs = B.numColumns(), ldb = Math.max(1, B.numRows());
+        double[] Bd = B.getData();
+        BLAS blas = JavaBLAS.getInstance();
+
+        // L Y = B
+        for (int i = 0; i < tiles.mt; ++i) {
+            for (int j = 0; j < i; ++j) {
+                Tiles.Tile Lij = tiles.get(i, j);
+                blas.dgemm("N", "N", tiles.rows(i), nrhs, tiles.columns(j),
+                        -1, Lij.data, Lij.offset, Lij.ld, Bd, j * tiles.nb,
+                        ldb, 1, Bd, i * tiles.nb, ldb);
+            }
+            Tiles.Tile Lii = tiles.get(i, i);
+            blas.dtrsm("L", "L", "N", "N", tiles.rows(i), nrhs, 1, Lii.data,
+                    Lii.offset, Lii.ld, Bd, i * tiles.nb, ldb);
+        }
+
+        // L^T X = Y
+        for (int i = tiles.mt - 1; i >= 0; --i) {
+            for (int j = i + 1; j < tiles.mt; ++j) {
+                Tiles.Tile Lji = tiles.get(j, i);
+                blas.dgemm("T", "N", tiles.columns(i), nrhs, tiles.rows(j),
+                        -1, Lji.data, Lji.offset, Lji.ld, Bd, j * tiles.nb,
+                        ldb, 1, Bd, i * tiles.nb, ldb);
+            }
+            Tiles.Tile Lii = tiles.get(i, i);
+            blas.dtrsm("L", "L", "T", "N", tiles.rows(i), nrhs, 1, Lii.data,
+                    Lii.offset, Lii.ld, Bd, i * tiles.nb, ldb);
+        }
+
+        return B;
+    }
+
+}
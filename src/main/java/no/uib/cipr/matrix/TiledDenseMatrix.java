@@ -0,0 +1,370 @@
+package no.uib.cipr.matrix;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+/**
+ * Dense matrix stored as a grid of square tiles, each in its own column major
+ * array. Unlike {@link DenseMatrix}, whose single <code>double[]</code> limits
+ * it to <code>2<sup>31</sup>-1</code> entries, the size is only limited by
+ * memory. The tiles are either Java arrays, or direct buffers outside of the
+ * Java heap.
+ * <p>
+ * Products with other tiled matrices of the same tile size, and with dense
+ * vectors, run in parallel over the tiles of the result, each tile product
+ * being a BLAS <code>dgemm</code> or <code>dgemv</code>. Off-heap tiles are
+ * copied to the heap around each BLAS call, into arrays which each task
+ * reuses, and a task reads each tile column of the right factor only once for
+ * all the result tiles it computes in that column. {@link TiledCholesky} and
+ * {@link TiledLU} factor the matrix in place, tile by tile.
+ * </p>
+ */
+public class TiledDenseMatrix extends AbstractMatrix {
+
+    /**
+     * Default tile size, which makes a tile 512kB
+     */
+    public static final int DEFAULT_TILE_SIZE = 256;
+
+    /**
+     * Returns the default tile size of the task-parallel factorizations in
+     * {@link DenseLU} and {@link DenseCholesky}: {@link #DEFAULT_TILE_SIZE}
+     * with the pure Java BLAS, and zero with native BLAS, which is usually
+     * multi-threaded itself. Running its threads inside each of the
+     * {@link Parallel} threads would oversubscribe the cores
+     */
+    static int defaultFactorTileSize() {
+        return JavaBLAS.getInstance() instanceof JavaBLAS ? DEFAULT_TILE_SIZE
+                : 0;
+    }
+
+    /**
+     * Tile size, and the number of tile rows and columns
+     */
+    private final int nb, mt, nt;
+
+    /**
+     * Tile <code>i + j * mt</code>, either on the heap or off it
+     */
+    private final double[][] heap;
+
+    private final DoubleBuffer[] direct;
+
+    /**
+     * Constructor for TiledDenseMatrix, with the default tile size and the
+     * tiles on the heap
+     *
+     * @param numRows
+     *            Number of rows
+     * @param numColumns
+     *            Number of columns
+     */
+    public TiledDenseMatrix(int numRows, int numColumns) {
+        this(numRows, numColumns, DEFAULT_TILE_SIZE, false);
+    }
+
+    /**
+     * Constructor for TiledDenseMatrix
+     *
+     * @param numRows
+     *            Number of rows
+     * @param numColumns
+     *            Number of columns
+     * @param tileSize
+     *            Number of rows and columns of the tiles
+     * @param offHeap
+     *            True to store the tiles in direct buffers, outside of the
+     *            Java heap
+     */
+    public TiledDenseMatrix(int numRows, int numColumns, int tileSize,
+            boolean offHeap) {
+        super(numRows, numColumns);
+        if (tileSize < 1)
+            throw new IllegalArgumentException("tileSize < 1");
+
+        nb = tileSize;
+        mt = (numRows + nb - 1) / nb;
+        nt = (numColumns + nb - 1) / nb;
+
+        if (offHeap) {
+            heap = null;
+            direct = new DoubleBuffer[mt * nt];
+            for (int j = 0; j < nt; ++j)
+                for (int i = 0; i < mt; ++i)
+                    direct[i + j * mt] = ByteBuffer.allocateDirect(
+                            8 * rows(i) * columns(j)).order(
+                            ByteOrder.nativeOrder()).asDoubleBuffer();
+        } else {
+            direct = null;
+            heap = new double[mt * nt][];
+            for (int j = 0; j < nt; ++j)
+                for (int i = 0; i < mt; ++i)
+                    heap[i + j * mt] = new double[rows(i) * columns(j)];
+        }
+    }
+
+    /**
+     * Constructor for TiledDenseMatrix, with the default tile size and the
+     * tiles on the heap
+     *
+     * @param A
+     *            Matrix to copy
+     */
+    public TiledDenseMatrix(Matrix A) {
+        this(A, DEFAULT_TILE_SIZE, false);
+    }
+
+    /**
+     * Constructor for TiledDenseMatrix
+     *
+     * @param A
+     *            Matrix to copy
+     * @param tileSize
+     *            Number of rows and columns of the tiles
+     * @param offHeap
+     *            True to store the tiles in direct buffers, outside of the
+     *            Java heap
+     */
+    public TiledDenseMatrix(Matrix A, int tileSize, boolean offHeap) {
+        this(A.numRows(), A.numColumns(), tileSize, offHeap);
+        set(A);
+    }
+
+    /**
+     * Returns the number of rows and columns of the tiles
+     */
+    public int getTileSize() {
+        return nb;
+    }
+
+    /**
+     * Returns true if the tiles are stored outside of the Java heap
+     */
+    public boolean isOffHeap() {
+        return direct != null;
+    }
+
+    private int rows(int i) {
+        return Math.min(nb, numRows - i * nb);
+    }
+
+    private int columns(int j) {
+        return Math.min(nb, numColumns - j * nb);
+    }
+
+    /**
+     * Returns a view of the tiles for the tile algorithms
+     */
+    Tiles tiles() {
+        return new Tiles(numRows, numColumns, nb) {
+            @Override
+            Tile get(int i, int j) {
+                return get(i, j, heap != null ? null : new double[rows(i)
+                        * columns(j)]);
+            }
+
+            @Override
+            Tile get(int i, int j, double[] scratch) {
+                int t = i + j * mt;
+                if (heap != null)
+                    return new Tile(heap[t], 0, rows(i));
+                direct[t].duplicate().get(scratch, 0, rows(i) * columns(j));
+                return new Tile(scratch, 0, rows(i));
+            }
+
+            @Override
+            double[] scratch() {
+                return heap != null ? null : new double[nb * nb];
+            }
+
+            @Override
+            void put(int i, int j, Tile tile) {
+                if (direct != null) {
+                    DoubleBuffer buffer = direct[i + j * mt].duplicate();
+                    buffer.clear();
+                    buffer.put(tile.data, 0, rows(i) * columns(j));
+                }
+            }
+        };
+    }
+
+    @Override
+    public TiledDenseMatrix copy() {
+        return new TiledDenseMatrix(this, nb, isOffHeap());
+    }
+
+    @Override
+    public void add(int row, int column, double value) {
+        check(row, column);
+        int t = row / nb + column / nb * mt;
+        int k = row % nb + column % nb * rows(row / nb);
+        if (heap != null)
+            heap[t][k] += value;
+        else
+            direct[t].put(k, direct[t].get(k) + value);
+    }
+
+    @Override
+    public void set(int row, int column, double value) {
+        check(row, column);
+        int t = row / nb + column / nb * mt;
+        int k = row % nb + column % nb * rows(row / nb);
+        if (heap != null)
+            heap[t][k] = value;
+        else
+            direct[t].put(k, value);
+    }
+
+    @Override
+    public double get(int row, int column) {
+        check(row, column);
+        int t = row / nb + column / nb * mt;
+        int k = row % nb + column % nb * rows(row / nb);
+        return heap != null ? heap[t][k] : direct[t].get(k);
+    }
+
+    @Override
+    public TiledDenseMatrix zero() {
+        for (int t = 0; t < mt * nt; ++t)
+            if (heap != null)
+                Arrays.fill(heap[t], 0);
+            else
+                for (int k = 0; k < direct[t].capacity(); ++k)
+                    direct[t].put(k, 0);
+        return this;
+    }
+
+    @Override
+    public Matrix set(Matrix B) {
+        if (!(B instanceof TiledDenseMatrix)
+                || ((TiledDenseMatrix) B).nb != nb)
+            return super.set(B);
+
+        checkSize(B);
+        if (B == this)
+            return this;
+
+        Tiles from = ((TiledDenseMatrix) B).tiles(), to = tiles();
+        double[] fromScratch = from.scratch(), toScratch = to.scratch();
+        for (int j = 0; j < nt; ++j)
+            for (int i = 0; i < mt; ++i) {
+                Tiles.Tile a = from.get(i, j, fromScratch), b = to.get(i, j,
+                        toScratch);
+                System.arraycopy(a.data, 0, b.data, 0, rows(i) * columns(j));
+                to.put(i, j, b);
+            }
+
+        return this;
+    }
+
+    @Override
+    public Matrix multAdd(final double alpha, Matrix B, Matrix C) {
+        if (!(B instanceof TiledDenseMatrix)
+                || !(C instanceof TiledDenseMatrix)
+                || ((TiledDenseMatrix) B).nb != nb
+                || ((TiledDenseMatrix) C).nb != nb)
+            return super.multAdd(alpha, B, C);
+
+        checkMultAdd(B, C);
+        if (alpha == 0)
+            return C;
+
+        final Tiles a = tiles(), b = ((TiledDenseMatrix) B).tiles(), c = ((TiledDenseMatrix) C)
+                .tiles();
+
+        // each task owns a range of tiles of C, down its columns, and keeps
+        // the column panel of B for the current column
+        Parallel.forRange(c.mt * c.nt, 1, new Parallel.RangeTask() {
+            public void run(int from, int to) {
+                double[] aScratch = a.scratch(), cScratch = c.scratch();
+                Tiles.Tile[] Bj = new Tiles.Tile[a.nt];
+                double[][] bScratch = new double[a.nt][];
+                int panel = -1;
+                for (int t = from; t < to; ++t) {
+                    int i = t % c.mt, j = t / c.mt;
+                    if (j != panel) {
+                        for (int k = 0; k < a.nt; ++k) {
+                            if (bScratch[k] == null)
+                                bScratch[k] = b.scratch();
+                            Bj[k] = b.get(k, j, bScratch[k]);
+                        }
+                        panel = j;
+                    }
+                    Tiles.Tile Cij = c.get(i, j, cScratch);
+                    for (int k = 0; k < a.nt; ++k) {
+                        Tiles.Tile Aik = a.get(i, k, aScratch), Bkj = Bj[k];
+                        JavaBLAS.getInstance().dgemm("N", "N", c.rows(i),
+                                c.columns(j), a.columns(k), alpha, Aik.data,
+                                Aik.offset, Aik.ld, Bkj.data, Bkj.offset,
+                                Bkj.ld, 1, Cij.data, Cij.offset, Cij.ld);
+                    }
+                    c.put(i, j, Cij);
+                }
+            }
+        });
+
+        return C;
+    }
+
+    @Override
+    public Vector multAdd(final double alpha, Vector x, Vector y) {
+        if (!(x instanceof DenseVector) || !(y instanceof DenseVector))
+            return super.multAdd(alpha, x, y);
+
+        checkMultAdd(x, y);
+        if (alpha == 0)
+            return y;
+
+        final double[] xd = ((DenseVector) x).getData(), yd = ((DenseVector) y)
+                .getData();
+        final Tiles a = tiles();
+
+        // each task owns a block of y
+        Parallel.forRange(mt, 1, new Parallel.RangeTask() {
+            public void run(int from, int to) {
+                double[] scratch = a.scratch();
+                for (int i = from; i < to; ++i)
+                    for (int j = 0; j < nt; ++j) {
+                        Tiles.Tile Aij = a.get(i, j, scratch);
+                        JavaBLAS.getInstance().dgemv("N", rows(i),
+                                columns(j), alpha, Aij.data, Aij.offset,
+                                Aij.ld, xd, j * nb, 1, 1, yd, i * nb, 1);
+                    }
+            }
+        });
+
+        return y;
+    }
+
+    @Override
+    public Vector transMultAdd(final double alpha, Vector x, Vector y) {
+        if (!(x instanceof DenseVector) || !(y instanceof DenseVector))
+            return super.transMultAdd(alpha, x, y);
+
+        checkTransMultAdd(x, y);
+        if (alpha == 0)
+            return y;
+
+        final double[] xd = ((DenseVector) x).getData(), yd = ((DenseVector) y)
+                .getData();
+        final Tiles a = tiles();
+
+        Parallel.forRange(nt, 1, new Parallel.RangeTask() {
+            public void run(int from, int to) {
+                double[] scratch = a.scratch();
+                for (int j = from; j < to; ++j)
+                    for (int i = 0; i < mt; ++i) {
+                        Tiles.Tile Aij = a.get(i, j, scratch);
+                        JavaBLAS.getInstance().dgemv("T", rows(i),
+                                columns(j), alpha, Aij.data, Aij.offset,
+                                Aij.ld, xd, i * nb, 1, 1, yd, j * nb, 1);
+                    }
+            }
+        });
+
+        return y;
+    }
+
+}
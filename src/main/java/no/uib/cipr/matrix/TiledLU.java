@@ -0,0 +1,288 @@
+package no.uib.cipr.matrix;
+
+import com.github.fommil.netlib.BLAS;
+import com.github.fommil.netlib.LAPACK;
+import org.netlib.util.intW;
+
+/**
+ * LU decomposition with partial row pivoting of a square
+ * {@link TiledDenseMatrix}, computed in place.
+ * <p>
+ * This is the right-looking blocked algorithm of <code>dgetrf</code>, with
+ * each step split into tile tasks of a {@link TaskGraph}. Step <code>k</code>
+ * factors the tile column <code>k</code> as one panel with
+ * <code>dgetrf</code>, applies its row interchanges to the other tile columns,
+ * solves for the tiles of U to the right of the diagonal with
+ * <code>dtrsm</code>, and updates the trailing tiles with
+ * <code>dgemm</code>. The tasks leading to the panel of the next step are
+ * prioritised, so that it can start as soon as its tile column has been
+ * updated, overlapping with the rest of the update. The pivots are those of
+ * LAPACK.
+ * </p>
+ */
+public class TiledLU {
+
+    /**
+     * The factored matrix, holding L below the diagonal and U on and above it
+     */
+    private TiledDenseMatrix LU;
+
+    /**
+     * Row pivots, one-based as in LAPACK
+     */
+    private int[] piv;
+
+    /**
+     * True if the matrix was singular
+     */
+    private boolean singular;
+
+    /**
+     * Calculates an LU decomposition
+     *
+     * @param A
+     *            Square matrix to decompose. Overwritten by L and U
+     * @return The decomposition
+     */
+    public static TiledLU factorize(TiledDenseMatrix A) {
+        return new TiledLU().factor(A);
+    }
+
+    /**
+     * Calculates an LU decomposition
+     *
+     * @param A
+     *            Square matrix to decompose. Overwritten by L and U
+     * @return The current decomposition
+     */
+    public TiledLU factor(TiledDenseMatrix A) {
+        if (!A.isSquare())
+            throw new IllegalArgumentException("!A.isSquare()");
+
+        piv = new int[A.numRows()];
+        singular = !factor(A.tiles(), piv);
+        LU = A;
+        return this;
+    }
+
+    /**
+     * Factors the tiles of a square matrix in place
+     *
+     * @param piv
+     *            Receives the one-based row pivots
+     * @return False if the matrix is singular
+     */
+    static boolean factor(final Tiles A, final int[] piv) {
+        final boolean[] regular = { true };
+        final BLAS blas = JavaBLAS.getInstance();
+        TaskGraph graph = new TaskGraph();
+        int steps = Math.min(A.mt, A.nt);
+
+        for (int k = 0; k < steps; ++k) {
+            final int kk = k;
+            final int nk = A.columns(k);
+
+            // the panel task writes all of tile column k from the diagonal
+            Object[] panel = new Object[A.mt - k];
+            for (int i = k; i < A.mt; ++i)
+                panel[i - k] = A.key(i, k);
+
+            graph.add(new Runnable() {
+                public void run() {
+                    if (!factorPanel(A, kk, piv))
+                        synchronized (regular) {
+                            regular[0] = false;
+                        }
+                }
+            }, true, new Object[0], panel);
+
+            for (int j = 0; j < A.nt; ++j) {
+                if (j == k)
+                    continue;
+                final int jj = j;
+                final int nj = A.columns(j);
+
+                Object[] column = new Object[A.mt - k];
+                for (int i = k; i < A.mt; ++i)
+                    column[i - k] = A.key(i, j);
+
+                // interchange the rows of tile column j, and for the trailing
+                // columns, U(k,j) = L(k,k)^-1 A(k,j)
+                graph.add(new Runnable() {
+                    public void run() {
+                        swap(A, kk, jj, piv);
+                        if (jj > kk) {
+                            Tiles.Tile Lkk = A.get(kk, kk), Akj = A.get(kk,
+                                    jj);
+                            blas.dtrsm("L", "L", "N", "U", nk, nj, 1,
+                                    Lkk.data, Lkk.offset, Lkk.ld, Akj.data,
+                                    Akj.offset, Akj.ld);
+                            A.put(kk, jj, Akj);
+                        }
+                    }
+                }, j == k + 1, new Object[] { A.key(k, k) }, column);
+            }
+
+            for (int j = k + 1; j < A.nt; ++j)
+                for (int i = k + 1; i < A.mt; ++i) {
+                    final int ii = i, jj = j;
+
+                    // A(i,j) -= L(i,k) U(k,j)
+                    graph.add(new Runnable() {
+                        public void run() {
+                            Tiles.Tile Lik = A.get(ii, kk), Ukj = A.get(kk,
+                                    jj), Aij = A.get(ii, jj);
+                            blas.dgemm("N", "N", A.rows(ii), A.columns(jj),
+                                    nk, -1, Lik.data, Lik.offset, Lik.ld,
+                                    Ukj.data, Ukj.offset, Ukj.ld, 1,
+                                    Aij.data, Aij.offset, Aij.ld);
+                            A.put(ii, jj, Aij);
+                        }
+                    }, j == k + 1, new Object[] { A.key(i, k), A.key(k, j) },
+                            A.key(i, j));
+                }
+        }
+
+        graph.run();
+        return regular[0];
+    }
+
+    /**
+     * Factors tile column <code>k</code> from the diagonal down, gathered
+     * into one panel
+     */
+    private static boolean factorPanel(Tiles A, int k, int[] piv) {
+        int r0 = k * A.nb, rows = A.m - r0, nk = A.columns(k);
+        double[] panel = new double[rows * nk];
+        for (int i = k; i < A.mt; ++i) {
+            Tiles.Tile Aik = A.get(i, k);
+            for (int c = 0; c < nk; ++c)
+                System.arraycopy(Aik.data, Aik.offset + c * Aik.ld, panel,
+                        (i - k) * A.nb + c * rows, A.rows(i));
+        }
+
+        int[] ipiv = new int[Math.min(rows, nk)];
+        intW info = new intW(0);
+        LAPACK.getInstance().dgetrf(rows, nk, panel, Math.max(1, rows), ipiv,
+                info);
+        if (info.val < 0)
+            throw new IllegalArgumentException();
+
+        for (int i = 0; i < ipiv.length; ++i)
+            piv[r0 + i] = ipiv[i] + r0;
+
+        for (int i = k; i < A.mt; ++i) {
+            Tiles.Tile Aik = A.get(i, k);
+            for (int c = 0; c < nk; ++c)
+                System.arraycopy(panel, (i - k) * A.nb + c * rows, Aik.data,
+                        Aik.offset + c * Aik.ld, A.rows(i));
+            A.put(i, k, Aik);
+        }
+
+        return info.val == 0;
+    }
+
+    /**
+     * Applies the row interchanges of step <code>k</code> to tile column
+     * <code>j</code>
+     */
+    private static void swap(Tiles A, int k, int j, int[] piv) {
+        Tiles.Tile[] column = new Tiles.Tile[A.mt];
+        int r0 = k * A.nb, nj = A.columns(j);
+        for (int r = r0; r < r0 + A.columns(k); ++r) {
+            int p = piv[r] - 1;
+            if (p == r)
+                continue;
+            Tiles.Tile a = tile(A, column, r / A.nb, j), b = tile(A, column,
+                    p / A.nb, j);
+            int ra = r % A.nb, rb = p % A.nb;
+            for (int c = 0; c < nj; ++c) {
+                double t = a.get(ra, c);
+                a.set(ra, c, b.get(rb, c));
+                b.set(rb, c, t);
+            }
+        }
+        for (int i = 0; i < A.mt; ++i)
+            if (column[i] != null)
+                A.put(i, j, column[i]);
+    }
+
+    private static Tiles.Tile tile(Tiles A, Tiles.Tile[] column, int i, int j) {
+        if (column[i] == null)
+            column[i] = A.get(i, j);
+        return column[i];
+    }
+
+    /**
+     * Returns the factored matrix, holding the unit lower triangular factor
+     * below the diagonal and the upper triangular factor on and above it
+     */
+    public TiledDenseMatrix getLU() {
+        return LU;
+    }
+
+    /**
+     * Returns the row pivots, one-based as in LAPACK
+     */
+    public int[] getPivots() {
+        return piv;
+    }
+
+    /**
+     * Checks for singularity
+     */
+    public boolean isSingular() {
+        return singular;
+    }
+
+    /**
+     * Solves for <code>B</code>, overwriting it on return
+     */
+    public DenseMatrix solve(DenseMatrix B) throws MatrixSingularException {
+        if (singular)
+            throw new MatrixSingularException();
+        if (LU.numRows() != B.numRows())
+            throw new IllegalArgumentException("LU.numRows() != B.numRows()");
+
+        Tiles tiles = LU.tiles();
+        int nrhs = B.numColumns(), ldb = Math.max(1, B.numRows());
+        double[] Bd = B.getData();
+        BLAS blas = JavaBLAS.getInstance();
+
+        // P B
+        for (int r = 0; r < piv.length; ++r) {
+            int p = piv[r] - 1;
+            if (p != r)
+                blas.dswap(nrhs, Bd, r, ldb, Bd, p, ldb);
+        }
+
+        // L Y = P B
+        for (int i = 0; i < tiles.mt; ++i) {
+            for (int j = 0; j < i; ++j) {
+                Tiles.Tile Lij = tiles.get(i, j);
+                blas.dgemm("N", "N", tiles.rows(i), nrhs, tiles.columns(j),
+                        -1, Lij.data, Lij.offset, Lij.ld, Bd, j * tiles.nb,
+                        ldb, 1, Bd, i * tiles.nb, ldb);
+            }
+            Tiles.Tile Lii = tiles.get(i, i);
+            blas.dtrsm("L", "L", "N", "U", tiles.rows(i), nrhs, 1, Lii.data,
+                    Lii.offset, Lii.ld, Bd, i * tiles.nb, ldb);
+        }
+
+        // U X = Y
+        for (int i = tiles.mt - 1; i >= 0; --i) {
+            for (int j = i + 1; j < tiles.nt; ++j) {
+                Tiles.Tile Uij = tiles.get(i, j);
+                blas.dgemm("N", "N", tiles.rows(i), nrhs, tiles.columns(j),
+                        -1, Uij.data, Uij.offset, Uij.ld, Bd, j * tiles.nb,
+                        ldb, 1, Bd, i * tiles.nb, ldb);
+            }
+            Tiles.Tile Uii = tiles.get(i, i);
+            blas.dtrsm("L", "U", "N", "N", tiles.rows(i), nrhs, 1, Uii.data,
+                    Uii.offset, Uii.ld, Bd, i * tiles.nb, ldb);
+        }
+
+        return B;
+    }
+
+}
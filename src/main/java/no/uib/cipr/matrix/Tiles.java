@@ -0,0 +1,127 @@
+package no.uib.cipr.matrix;
+
+/**
+ * A matrix partitioned into square tiles, as seen by the tile algorithms.
+ * Tile <code>(i, j)</code> covers the rows from <code>i*nb</code> and the
+ * columns from <code>j*nb</code>, and is smaller than <code>nb</code> only
+ * along the last tile row and column.
+ */
+abstract class Tiles {
+
+    /**
+     * Matrix size, tile size, and the number of tile rows and columns
+     */
+    final int m, n, nb, mt, nt;
+
+    Tiles(int m, int n, int nb) {
+        if (nb < 1)
+            throw new IllegalArgumentException("nb < 1");
+        this.m = m;
+        this.n = n;
+        this.nb = nb;
+        mt = (m + nb - 1) / nb;
+        nt = (n + nb - 1) / nb;
+    }
+
+    /**
+     * The entries of a tile, column major from <code>data[offset]</code>
+     * with leading dimension <code>ld</code>
+     */
+    static final class Tile {
+
+        final double[] data;
+
+        final int offset, ld;
+
+        Tile(double[] data, int offset, int ld) {
+            this.data = data;
+            this.offset = offset;
+            this.ld = ld;
+        }
+
+        double get(int row, int column) {
+            return data[offset + row + column * ld];
+        }
+
+        void set(int row, int column, double value) {
+            data[offset + row + column * ld] = value;
+        }
+
+    }
+
+    /**
+     * Number of rows of the tiles in tile row <code>i</code>
+     */
+    int rows(int i) {
+        return Math.min(nb, m - i * nb);
+    }
+
+    /**
+     * Number of columns of the tiles in tile column <code>j</code>
+     */
+    int columns(int j) {
+        return Math.min(nb, n - j * nb);
+    }
+
+    /**
+     * Identifies tile <code>(i, j)</code> to a {@link TaskGraph}
+     */
+    Integer key(int i, int j) {
+        return i + j * mt;
+    }
+
+    /**
+     * Returns tile <code>(i, j)</code>. This may be a copy, in which case
+     * changes are only kept by {@link #put(int, int, Tile)}
+     */
+    abstract Tile get(int i, int j);
+
+    /**
+     * Returns tile <code>(i, j)</code> as {@link #get(int, int)}, but copies
+     * it, if it must be copied, into <code>scratch</code> rather than a new
+     * array. The scratch array comes from {@link #scratch()}
+     */
+    Tile get(int i, int j, double[] scratch) {
+        return get(i, j);
+    }
+
+    /**
+     * Returns an array large enough for any tile, to be reused by
+     * {@link #get(int, int, double[])}, or <code>null</code> if the tiles are
+     * not copied
+     */
+    double[] scratch() {
+        return null;
+    }
+
+    /**
+     * Stores tile <code>(i, j)</code> after it has been changed
+     */
+    abstract void put(int i, int j, Tile tile);
+
+    /**
+     * Tiles of a column major array, in place
+     */
+    static Tiles of(final double[] data, int m, int n, int nb) {
+        return new Tiles(m, n, nb) {
+            @Override
+            Tile get(int i, int j) {
+                return new Tile(data, i * nb + j * nb * this.m,
+                        Math.max(1, this.m));
+            }
+
+            @Override
+            void put(int i, int j, Tile tile) {
+                // in place
+            }
+        };
+    }
+
+    /**
+     * Tiles of a dense matrix, in place
+     */
+    static Tiles of(DenseMatrix A, int nb) {
+        return of(A.getData(), A.numRows(), A.numColumns(), nb);
+    }
+
+}
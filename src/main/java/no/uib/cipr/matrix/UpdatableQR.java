@@ -0,0 +1,292 @@
+package no.uib.cipr.matrix;
+
+import com.github.fommil.netlib.BLAS;
+import com.github.fommil.netlib.LAPACK;
+import org.netlib.util.intW;
+
+/**
+ * QR decomposition of a matrix with full column rank, which is updated as
+ * columns are appended or removed instead of being recomputed.
+ * <p>
+ * The thin factors <code>Q</code> and <code>R</code> are kept explicitly.
+ * Appending a column orthogonalises it against <code>Q</code> by classical
+ * Gram-Schmidt with one reorthogonalisation, and removing one restores the
+ * triangular form of <code>R</code> by Givens rotations, which are also
+ * applied to <code>Q</code>. Both are BLAS-2 operations, costing
+ * <code>O(mn)</code> rather than the <code>O(mn<sup>2</sup>)</code> of a new
+ * factorization. The columns themselves are kept as well, so that the
+ * decomposition can be recomputed periodically to bound the loss of
+ * orthogonality.
+ * </p>
+ */
+public class UpdatableQR {
+
+    /**
+     * Number of rows, and of columns
+     */
+    private final int m;
+
+    private int n;
+
+    /**
+     * Column capacity of the arrays, and leading dimension of R
+     */
+    private int capacity;
+
+    /**
+     * Columns of the factored matrix and of Q, and R, column major
+     */
+    private double[] A, Q, R;
+
+    /**
+     * Refactor after this many updates, if positive
+     */
+    private int refactorInterval;
+
+    /**
+     * Updates since the last factorization
+     */
+    private int updates;
+
+    /**
+     * Constructs an empty decomposition, of a matrix without columns
+     *
+     * @param m
+     *            Number of rows
+     */
+    public UpdatableQR(int m) {
+        if (m < 1)
+            throw new IllegalArgumentException("m < 1");
+        this.m = m;
+        ensureCapacity(Math.min(m, 4));
+    }
+
+    /**
+     * Sets the number of column updates after which the decomposition is
+     * recomputed from the columns, or zero (the default) for never
+     * recomputing it
+     */
+    public UpdatableQR setRefactorInterval(int refactorInterval) {
+        if (refactorInterval < 0)
+            throw new IllegalArgumentException("refactorInterval < 0");
+        this.refactorInterval = refactorInterval;
+        return this;
+    }
+
+    /**
+     * Computes the decomposition of the given matrix, replacing the current
+     * columns
+     *
+     * @param A
+     *            Matrix with <code>m</code> rows, and no more columns. Not
+     *            modified
+     * @return The current decomposition
+     */
+    public UpdatableQR factor(Matrix A) {
+        if (A.numRows() != m)
+            throw new IllegalArgumentException("A.numRows() != m");
+        if (A.numColumns() > m)
+            throw new IllegalArgumentException("A.numColumns() > m");
+
+        n = 0;
+        ensureCapacity(A.numColumns());
+        n = A.numColumns();
+        java.util.Arrays.fill(this.A, 0);
+        for (MatrixEntry e : A)
+            this.A[e.row() + e.column() * m] = e.get();
+
+        refactor();
+        return this;
+    }
+
+    /**
+     * Appends a column to the factored matrix
+     *
+     * @param a
+     *            The new last column. Not modified
+     * @return The current decomposition
+     * @throws MatrixSingularException
+     *             If the column is numerically in the span of the current
+     *             columns. The decomposition is then left unchanged
+     */
+    public UpdatableQR appendColumn(Vector a) throws MatrixSingularException {
+        if (a.size() != m)
+            throw new IllegalArgumentException("a.size() != m");
+        if (n == m)
+            throw new IllegalArgumentException("n == m");
+
+        double[] column = new DenseVector(a).getData(), q = column.clone();
+        double[] r = new double[n + 1];
+        double norm = BLAS.getInstance().dnrm2(m, q, 0, 1);
+
+        // twice is enough for the orthogonality of the new column
+        BLAS blas = JavaBLAS.getInstance();
+        double[] s = new double[Math.max(n, 1)];
+        for (int pass = 0; pass < 2 && n > 0; ++pass) {
+            blas.dgemv("T", m, n, 1, Q, 0, m, q, 0, 1, 0, s, 0, 1);
+            blas.dgemv("N", m, n, -1, Q, 0, m, s, 0, 1, 1, q, 0, 1);
+            for (int i = 0; i < n; ++i)
+                r[i] += s[i];
+        }
+
+        double rho = BLAS.getInstance().dnrm2(m, q, 0, 1);
+        if (rho <= 1e-12 * norm)
+            throw new MatrixSingularException(
+                    "column is linearly dependent on the others");
+        r[n] = rho;
+
+        ensureCapacity(n + 1);
+        System.arraycopy(column, 0, A, n * m, m);
+        for (int i = 0; i < m; ++i)
+            Q[i + n * m] = q[i] / rho;
+        System.arraycopy(r, 0, R, n * capacity, n + 1);
+        n++;
+
+        return updated();
+    }
+
+    /**
+     * Removes a column from the factored matrix, shifting the following
+     * columns to the left
+     *
+     * @param j
+     *            Index of the column to remove
+     * @return The current decomposition
+     */
+    public UpdatableQR removeColumn(int j) {
+        if (j < 0 || j >= n)
+            throw new IndexOutOfBoundsException("j = " + j + ", n = " + n);
+
+        System.arraycopy(A, (j + 1) * m, A, j * m, (n - j - 1) * m);
+        System.arraycopy(R, (j + 1) * capacity, R, j * capacity, (n - j - 1)
+                * capacity);
+        n--;
+
+        // R is now upper Hessenberg from column j onwards
+        for (int k = j; k < n; ++k) {
+            int kk = k + k * capacity;
+            GivensRotation G = new GivensRotation(R[kk], R[kk + 1]);
+            G.apply(n - k, R, kk, capacity, R, kk + 1, capacity);
+            R[kk + 1] = 0;
+            G.apply(m, Q, k * m, 1, Q, (k + 1) * m, 1);
+        }
+
+        // clear the stale last column of R
+        java.util.Arrays.fill(R, n * capacity, (n + 1) * capacity, 0);
+
+        return updated();
+    }
+
+    /**
+     * Solves the least squares problem <code>min ||A*X - B||</code> for the
+     * factored matrix, as <code>R*X = Q<sup>T</sup>*B</code>
+     *
+     * @param B
+     *            Right hand sides, with <code>m</code> rows. Not modified
+     * @return X, newly allocated with <code>n</code> rows
+     */
+    public DenseMatrix solve(DenseMatrix B) {
+        if (B.numRows() != m)
+            throw new IllegalArgumentException("B.numRows() != m");
+        int nrhs = B.numColumns();
+        DenseMatrix X = new DenseMatrix(n, nrhs);
+        if (n == 0)
+            return X;
+
+        JavaBLAS.getInstance().dgemm("T", "N", n, nrhs, m, 1, Q, 0, m,
+                B.data, 0, m, 0, X.getData(), 0, n);
+
+        intW info = new intW(0);
+        LAPACK.getInstance().dtrtrs("U", "N", "N", n, nrhs, R, capacity,
+                X.getData(), Matrices.ld(n), info);
+
+        if (info.val > 0)
+            throw new MatrixSingularException();
+        else if (info.val < 0)
+            throw new IllegalArgumentException();
+
+        return X;
+    }
+
+    /**
+     * Returns the number of columns currently factored
+     */
+    public int numColumns() {
+        return n;
+    }
+
+    /**
+     * Returns a copy of the orthogonal factor, with orthonormal columns
+     */
+    public DenseMatrix getQ() {
+        DenseMatrix Q = new DenseMatrix(m, n);
+        System.arraycopy(this.Q, 0, Q.getData(), 0, m * n);
+        return Q;
+    }
+
+    /**
+     * Returns a copy of the upper triangular factor
+     */
+    public UpperTriangDenseMatrix getR() {
+        UpperTriangDenseMatrix R = new UpperTriangDenseMatrix(n);
+        for (int j = 0; j < n; ++j)
+            for (int i = 0; i <= j; ++i)
+                R.set(i, j, this.R[i + j * capacity]);
+        return R;
+    }
+
+    /**
+     * Returns a copy of the factored matrix
+     */
+    public DenseMatrix getMatrix() {
+        DenseMatrix A = new DenseMatrix(m, n);
+        System.arraycopy(this.A, 0, A.getData(), 0, m * n);
+        return A;
+    }
+
+    private UpdatableQR updated() {
+        if (refactorInterval > 0 && ++updates >= refactorInterval)
+            refactor();
+        return this;
+    }
+
+    /**
+     * Recomputes the factors from the columns
+     */
+    private void refactor() {
+        updates = 0;
+        java.util.Arrays.fill(R, 0);
+        if (n == 0)
+            return;
+
+        QR qr = new QR(m, n).factor(getMatrix());
+        System.arraycopy(qr.getQ().getData(), 0, Q, 0, m * n);
+        UpperTriangDenseMatrix Rn = qr.getR();
+        for (int j = 0; j < n; ++j)
+            for (int i = 0; i <= j; ++i)
+                R[i + j * capacity] = Rn.get(i, j);
+    }
+
+    /**
+     * Grows the arrays to hold at least the given number of columns
+     */
+    private void ensureCapacity(int columns) {
+        if (A != null && columns <= capacity)
+            return;
+        int grown = Math.min(m, Math.max(columns, 2 * capacity));
+
+        double[] An = new double[m * grown], Qn = new double[m * grown];
+        double[] Rn = new double[grown * grown];
+        if (A != null) {
+            System.arraycopy(A, 0, An, 0, m * n);
+            System.arraycopy(Q, 0, Qn, 0, m * n);
+            for (int j = 0; j < n; ++j)
+                System.arraycopy(R, j * capacity, Rn, j * grown, j + 1);
+        }
+        A = An;
+        Q = Qn;
+        R = Rn;
+        capacity = grown;
+    }
+
+}
@@ -65,12 +65,14 @@ public class UpperSymmPackMatrix extends AbstractSymmPackMatrix {
 
     @Override
     public void add(int row, int column, double value) {
+        factorization.modified();
         if (row <= column)
             data[getIndex(row, column)] += value;
     }
 
     @Override
     public void set(int row, int column, double value) {
+        factorization.modified();
         if (row <= column)
             data[getIndex(row, column)] = value;
     }
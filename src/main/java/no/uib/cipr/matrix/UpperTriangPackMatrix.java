@@ -140,6 +140,7 @@ public class UpperTriangPackMatrix extends AbstractTriangPackMatrix {
     public void add(int row, int column, double value) {
         if (row > column)
             throw new IllegalArgumentException("row > column");
+        factorization.modified();
         data[getIndex(row, column)] += value;
     }
 
@@ -147,6 +148,7 @@ public class UpperTriangPackMatrix extends AbstractTriangPackMatrix {
     public void set(int row, int column, double value) {
         if (row > column)
             throw new IllegalArgumentException("row > column");
+        factorization.modified();
         data[getIndex(row, column)] = value;
     }
 
@@ -0,0 +1,278 @@
+package no.uib.cipr.matrix;
+
+/**
+ * Pure Java level 1 BLAS kernels on contiguous arrays, as used by
+ * {@link DenseVector}. The loops are unrolled four ways, with independent
+ * partial sums in the reductions, so that the JIT can keep several additions
+ * in flight. Vectors longer than <code>2 * GRAIN * BLOCK</code> entries are
+ * split over the {@link Parallel} threads.
+ * <p>
+ * Above the same length, the reductions always sum fixed blocks of
+ * <code>BLOCK</code> entries and then the block sums in order, whether or not
+ * the blocks are spread over threads, so their result does not depend on the
+ * number of threads.
+ * </p>
+ */
+final class VectorKernels {
+
+    /**
+     * Entries per block of the parallel reductions
+     */
+    static final int BLOCK = 1 << 12;
+
+    /**
+     * Smallest number of blocks given to a thread
+     */
+    static final int GRAIN = 8;
+
+    /**
+     * Sums of squares above this, and below infinity, are accurate without
+     * scaling
+     */
+    private static final double TINY = 1e-250;
+
+    private VectorKernels() {
+        // static utility
+    }
+
+    private static boolean blocked(int n) {
+        return n >= 2 * GRAIN * BLOCK;
+    }
+
+    private static boolean parallel(int n) {
+        return blocked(n) && Parallel.getThreads() > 1;
+    }
+
+    /**
+     * <code>y = alpha * x + y</code>
+     */
+    static void axpy(int n, final double alpha, final double[] x,
+            final double[] y) {
+        if (!parallel(n)) {
+            axpy(alpha, x, y, 0, n);
+            return;
+        }
+        Parallel.forRange(n, GRAIN * BLOCK, new Parallel.RangeTask() {
+            public void run(int from, int to) {
+                axpy(alpha, x, y, from, to);
+            }
+        });
+    }
+
+    private static void axpy(double alpha, double[] x, double[] y, int from,
+            int to) {
+        int i = from;
+        for (; i + 3 < to; i += 4) {
+            y[i] += alpha * x[i];
+            y[i + 1] += alpha * x[i + 1];
+            y[i + 2] += alpha * x[i + 2];
+            y[i + 3] += alpha * x[i + 3];
+        }
+        for (; i < to; ++i)
+            y[i] += alpha * x[i];
+    }
+
+    /**
+     * <code>y = alpha * x + beta * y</code>. If <code>beta</code> is zero,
+     * <code>y</code> is not read
+     */
+    static void axpby(int n, final double alpha, final double[] x,
+            final double beta, final double[] y) {
+        if (!parallel(n)) {
+            axpby(alpha, x, beta, y, 0, n);
+            return;
+        }
+        Parallel.forRange(n, GRAIN * BLOCK, new Parallel.RangeTask() {
+            public void run(int from, int to) {
+                axpby(alpha, x, beta, y, from, to);
+            }
+        });
+    }
+
+    private static void axpby(double alpha, double[] x, double beta,
+            double[] y, int from, int to) {
+        int i = from;
+        if (beta == 0) {
+            for (; i + 3 < to; i += 4) {
+                y[i] = alpha * x[i];
+                y[i + 1] = alpha * x[i + 1];
+                y[i + 2] = alpha * x[i + 2];
+                y[i + 3] = alpha * x[i + 3];
+            }
+            for (; i < to; ++i)
+                y[i] = alpha * x[i];
+            return;
+        }
+        for (; i + 3 < to; i += 4) {
+            y[i] = alpha * x[i] + beta * y[i];
+            y[i + 1] = alpha * x[i + 1] + beta * y[i + 1];
+            y[i + 2] = alpha * x[i + 2] + beta * y[i + 2];
+            y[i + 3] = alpha * x[i + 3] + beta * y[i + 3];
+        }
+        for (; i < to; ++i)
+            y[i] = alpha * x[i] + beta * y[i];
+    }
+
+    /**
+     * <code>x = alpha * x</code>
+     */
+    static void scal(int n, final double alpha, final double[] x) {
+        if (!parallel(n)) {
+            scal(alpha, x, 0, n);
+            return;
+        }
+        Parallel.forRange(n, GRAIN * BLOCK, new Parallel.RangeTask() {
+            public void run(int from, int to) {
+                scal(alpha, x, from, to);
+            }
+        });
+    }
+
+    private static void scal(double alpha, double[] x, int from, int to) {
+        int i = from;
+        for (; i + 3 < to; i += 4) {
+            x[i] *= alpha;
+            x[i + 1] *= alpha;
+            x[i + 2] *= alpha;
+            x[i + 3] *= alpha;
+        }
+        for (; i < to; ++i)
+            x[i] *= alpha;
+    }
+
+    /**
+     * Reductions over a range of the vectors
+     */
+    private static abstract class Reduction {
+
+        abstract double reduce(int from, int to);
+
+        /**
+         * Combines two partial results, by default their sum
+         */
+        double combine(double a, double b) {
+            return a + b;
+        }
+
+        double run(final int n) {
+            if (!blocked(n))
+                return reduce(0, n);
+
+            // the same blocks with one thread, which forRange then runs on
+            // the calling thread
+            int blocks = (n + BLOCK - 1) / BLOCK;
+            final double[] partial = new double[blocks];
+            Parallel.forRange(blocks, GRAIN, new Parallel.RangeTask() {
+                public void run(int from, int to) {
+                    for (int b = from; b < to; ++b)
+                        partial[b] = reduce(b * BLOCK, Math.min(n, (b + 1)
+                                * BLOCK));
+                }
+            });
+
+            double result = partial[0];
+            for (int b = 1; b < blocks; ++b)
+                result = combine(result, partial[b]);
+            return result;
+        }
+
+    }
+
+    /**
+     * Returns <code>x<sup>T</sup>y</code>
+     */
+    static double dot(int n, final double[] x, final double[] y) {
+        return new Reduction() {
+            @Override
+            double reduce(int from, int to) {
+                double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+                int i = from;
+                for (; i + 3 < to; i += 4) {
+                    s0 += x[i] * y[i];
+                    s1 += x[i + 1] * y[i + 1];
+                    s2 += x[i + 2] * y[i + 2];
+                    s3 += x[i + 3] * y[i + 3];
+                }
+                for (; i < to; ++i)
+                    s0 += x[i] * y[i];
+                return (s0 + s1) + (s2 + s3);
+            }
+        }.run(n);
+    }
+
+    /**
+     * Returns the sum of the absolute values
+     */
+    static double asum(int n, final double[] x) {
+        return new Reduction() {
+            @Override
+            double reduce(int from, int to) {
+                double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+                int i = from;
+                for (; i + 3 < to; i += 4) {
+                    s0 += Math.abs(x[i]);
+                    s1 += Math.abs(x[i + 1]);
+                    s2 += Math.abs(x[i + 2]);
+                    s3 += Math.abs(x[i + 3]);
+                }
+                for (; i < to; ++i)
+                    s0 += Math.abs(x[i]);
+                return (s0 + s1) + (s2 + s3);
+            }
+        }.run(n);
+    }
+
+    /**
+     * Returns the largest absolute value
+     */
+    static double amax(int n, final double[] x) {
+        return new Reduction() {
+            @Override
+            double reduce(int from, int to) {
+                double max = 0;
+                for (int i = from; i < to; ++i)
+                    max = Math.max(Math.abs(x[i]), max);
+                return max;
+            }
+
+            @Override
+            double combine(double a, double b) {
+                return Math.max(a, b);
+            }
+        }.run(n);
+    }
+
+    /**
+     * Returns the Euclidean norm. The squares are summed directly, and only
+     * if that overflows or underflows are the entries scaled by the largest
+     */
+    static double nrm2(int n, final double[] x) {
+        double ssq = dot(n, x, x);
+        if (ssq > TINY && ssq < Double.POSITIVE_INFINITY)
+            return Math.sqrt(ssq);
+
+        final double scale = amax(n, x);
+        if (scale == 0 || Double.isInfinite(scale) || Double.isNaN(scale))
+            return scale;
+
+        ssq = new Reduction() {
+            @Override
+            double reduce(int from, int to) {
+                double s0 = 0, s1 = 0;
+                int i = from;
+                for (; i + 1 < to; i += 2) {
+                    double a = x[i] / scale, b = x[i + 1] / scale;
+                    s0 += a * a;
+                    s1 += b * b;
+                }
+                for (; i < to; ++i) {
+                    double a = x[i] / scale;
+                    s0 += a * a;
+                }
+                return s0 + s1;
+            }
+        }.run(n);
+        return scale * Math.sqrt(ssq);
+    }
+
+}
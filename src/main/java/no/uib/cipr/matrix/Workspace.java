@@ -0,0 +1,87 @@
+package no.uib.cipr.matrix;
+
+/**
+ * Reusable scratch storage for the LAPACK based decompositions. Normally each
+ * decomposition allocates its own work arrays, and the static
+ * <code>factorize</code> methods copy their argument into a new matrix. When
+ * many small problems are decomposed, as in request serving, this garbage
+ * dominates. Decompositions created with a workspace instead borrow their
+ * work arrays from it for the duration of each factorization, and the
+ * <code>factorize(Matrix, Workspace)</code> methods copy into a scratch
+ * matrix of the workspace. Reusing one decomposition for many matrices of the
+ * same size, with its <code>factor</code> methods which overwrite their
+ * argument, avoids allocating the results as well.
+ * <p>
+ * Arrays only grow, so a workspace settles on the largest sizes requested. A
+ * workspace is not thread safe, and must only be used by one thread at a
+ * time; {@link #local()} gives one per thread. Decompositions sharing a
+ * workspace must not factor concurrently.
+ * </p>
+ */
+public class Workspace {
+
+    private static final ThreadLocal<Workspace> local = new ThreadLocal<Workspace>() {
+        @Override
+        protected Workspace initialValue() {
+            return new Workspace();
+        }
+    };
+
+    private double[] doubles = new double[0];
+
+    private int[] ints = new int[0];
+
+    /**
+     * Scratch matrix for copies of the matrix to decompose
+     */
+    private DenseMatrix matrix;
+
+    /**
+     * Returns the workspace of the calling thread
+     */
+    public static Workspace local() {
+        return local.get();
+    }
+
+    /**
+     * Returns a double array of at least the given length. Its contents are
+     * undefined, and the same array may be returned by later calls
+     */
+    public double[] getDoubles(int length) {
+        if (doubles.length < length)
+            doubles = new double[length];
+        return doubles;
+    }
+
+    /**
+     * Returns an integer array of at least the given length. Its contents are
+     * undefined, and the same array may be returned by later calls
+     */
+    public int[] getInts(int length) {
+        if (ints.length < length)
+            ints = new int[length];
+        return ints;
+    }
+
+    /**
+     * Returns a copy of the given matrix in a scratch matrix of the same size,
+     * which is reused by later calls for matrices of that size
+     */
+    public DenseMatrix copy(Matrix A) {
+        if (matrix == null || matrix.numRows() != A.numRows()
+                || matrix.numColumns() != A.numColumns())
+            matrix = new DenseMatrix(A.numRows(), A.numColumns());
+        matrix.set(A);
+        return matrix;
+    }
+
+    /**
+     * Releases the arrays held
+     */
+    public void clear() {
+        doubles = new double[0];
+        ints = new int[0];
+        matrix = null;
+    }
+
+}
@@ -0,0 +1,201 @@
+package no.uib.cipr.matrix.sparse;
+
+import com.github.fommil.netlib.ARPACK;
+import no.uib.cipr.matrix.DenseVector;
+
+/**
+ * Reverse communication shared by the ARPACK drivers. Selects the ARPACK
+ * mode from the problem set up, and applies the operators ARPACK asks for:
+ * <ul>
+ * <li>Mode 1: <code>Ax = &lambda;x</code>, with <code>OP = A</code></li>
+ * <li>Mode 2: <code>Ax = &lambda;Mx</code>, with
+ * <code>OP = M<sup>-1</sup>A</code>, for symmetric positive definite
+ * <code>M</code></li>
+ * <li>Mode 3: shift-invert, with
+ * <code>OP = (A - &sigma;M)<sup>-1</sup>M</code>, or
+ * <code>(A - &sigma;I)<sup>-1</sup></code> for standard problems. The
+ * eigenvalues nearest <code>&sigma;</code> are the largest in magnitude of
+ * <code>OP</code></li>
+ * </ul>
+ */
+public abstract class AbstractArpack {
+
+    final ARPACK arpack = ARPACK.getInstance();
+
+    /**
+     * The operator <code>A</code>, and its size
+     */
+    final LinearOperator op;
+
+    final int n;
+
+    /**
+     * Mass matrix <code>M</code> of generalized problems and its inverse, if
+     * set
+     */
+    private LinearOperator mass, massInverse;
+
+    /**
+     * Shift and the inverse of the shifted operator, if set
+     */
+    private LinearOperator shiftInverse;
+
+    double sigma;
+
+    /**
+     * Relative accuracy of the Ritz values
+     */
+    double tol = 0.0001;
+
+    /**
+     * Vectors reused by the reverse communication
+     */
+    private DenseVector in, out, t;
+
+    AbstractArpack(LinearOperator op) {
+        this.op = op;
+        this.n = op.size();
+    }
+
+    /**
+     * Solves the generalized problem <code>Ax = &lambda;Mx</code>
+     *
+     * @param M
+     *            Symmetric positive definite for the regular mode, and
+     *            symmetric positive semi-definite for the shift-invert mode
+     * @param inverse
+     *            Applies <code>M<sup>-1</sup></code>. Only needed when no
+     *            shift is set, and may then be null
+     */
+    public void setMass(LinearOperator M, LinearOperator inverse) {
+        if (M.size() != n)
+            throw new IllegalArgumentException("M.size() != " + n);
+        if (inverse != null && inverse.size() != n)
+            throw new IllegalArgumentException("inverse.size() != " + n);
+        this.mass = M;
+        this.massInverse = inverse;
+    }
+
+    /**
+     * Uses the shift-invert mode to find the eigenvalues nearest the shift.
+     * These are found with the <code>LM</code> preference, and the
+     * eigenvalues returned are those of the original problem
+     *
+     * @param sigma
+     *            The shift
+     * @param inverse
+     *            Applies <code>(A - &sigma;M)<sup>-1</sup></code>, or
+     *            <code>(A - &sigma;I)<sup>-1</sup></code> for standard
+     *            problems
+     */
+    public void setShiftInvert(double sigma, LinearOperator inverse) {
+        if (inverse.size() != n)
+            throw new IllegalArgumentException("inverse.size() != " + n);
+        this.sigma = sigma;
+        this.shiftInverse = inverse;
+    }
+
+    /**
+     * Sets the relative accuracy of the eigenvalues. ARPACK stops once the
+     * residual estimate of each Ritz pair is below this times the magnitude
+     * of its Ritz value, so the residuals of the eigenpairs returned are of
+     * that order. Defaults to <code>1e-4</code>
+     */
+    public void setTolerance(double tol) {
+        if (tol <= 0)
+            throw new IllegalArgumentException("tol <= 0");
+        this.tol = tol;
+    }
+
+    /**
+     * Returns the ARPACK mode, <code>iparam[6]</code>
+     */
+    int mode() {
+        if (shiftInverse != null)
+            return 3;
+        if (mass != null) {
+            if (massInverse == null)
+                throw new IllegalStateException(
+                        "The inverse of M is needed without a shift");
+            return 2;
+        }
+        return 1;
+    }
+
+    /**
+     * Returns <code>"G"</code> for generalized problems, else
+     * <code>"I"</code>
+     */
+    String bmat() {
+        return mass != null ? "G" : "I";
+    }
+
+    /**
+     * Responds to a reverse communication request of ARPACK. Operators from
+     * {@link LinearOperators#of(no.uib.cipr.matrix.Matrix)} work directly on
+     * <code>workd</code>, others on copies in reused vectors, so nothing is
+     * allocated per request
+     */
+    void apply(int ido, double[] workd, int[] ipntr) {
+        int x = ipntr[0] - 1, y = ipntr[1] - 1;
+
+        switch (ido) {
+        case 2:
+            apply(mass, workd, x, workd, y);
+            return;
+        case -1:
+        case 1:
+            break;
+        default:
+            throw new IllegalStateException("ido = " + ido);
+        }
+
+        switch (mode()) {
+        case 1:
+            apply(op, workd, x, workd, y);
+            return;
+        case 2:
+            // ARPACK wants Ax back in x
+            apply(op, workd, x, workd, y);
+            System.arraycopy(workd, y, workd, x, n);
+            apply(massInverse, workd, x, workd, y);
+            return;
+        default:
+            if (mass == null)
+                apply(shiftInverse, workd, x, workd, y);
+            else if (ido == 1)
+                // Mx is already available
+                apply(shiftInverse, workd, ipntr[2] - 1, workd, y);
+            else {
+                double[] t = scratch().getData();
+                apply(mass, workd, x, t, 0);
+                apply(shiftInverse, t, 0, workd, y);
+            }
+        }
+    }
+
+    /**
+     * <code>y = Op x</code> on array slices
+     */
+    private void apply(LinearOperator Op, double[] x, int xoff, double[] y,
+            int yoff) {
+        if (Op instanceof LinearOperators.ArrayOperator) {
+            ((LinearOperators.ArrayOperator) Op).apply(x, xoff, y, yoff);
+            return;
+        }
+        if (in == null) {
+            in = new DenseVector(n);
+            out = new DenseVector(n);
+        }
+        System.arraycopy(x, xoff, in.getData(), 0, n);
+        Op.apply(in, out);
+        System.arraycopy(out.getData(), 0, y, yoff, n);
+    }
+
+    private DenseVector scratch() {
+        if (t == null)
+            t = new DenseVector(n);
+        return t;
+    }
+
+}
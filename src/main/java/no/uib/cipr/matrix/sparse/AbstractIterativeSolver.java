@@ -20,8 +20,10 @@
 
 package no.uib.cipr.matrix.sparse;
 
+import no.uib.cipr.matrix.DenseVector;
 import no.uib.cipr.matrix.Matrix;
 import no.uib.cipr.matrix.Vector;
+import no.uib.cipr.matrix.Vector.Norm;
 
 /**
  * Partial implementation of an iterative solver
@@ -76,6 +78,58 @@ public abstract class AbstractIterativeSolver implements IterativeSolver {
             throw new IllegalArgumentException("b.size() != x.size()");
     }
 
+    /**
+     * Checks for convergence. If the 2-norm of the residual is known and the
+     * monitor uses the 2-norm, it is passed on, and the monitor does not need
+     * another pass over the residual to compute it
+     * 
+     * @param r
+     *            Residual-vector
+     * @param rnorm
+     *            2-norm of the residual, or NaN if not known
+     * @param x
+     *            State-vector
+     */
+    protected boolean converged(Vector r, double rnorm, Vector x)
+            throws IterativeSolverNotConvergedException {
+        if (!Double.isNaN(rnorm) && iter.getNormType() == Norm.Two)
+            return iter.converged(rnorm, x);
+        return iter.converged(r, x);
+    }
+
+    /**
+     * Sets <code>r = y + alpha * x</code>, computing the 2-norm of the result
+     * in the same pass for dense vectors. <code>r</code> may be
+     * <code>y</code>
+     * 
+     * @return The 2-norm of <code>r</code>, or NaN if not computed
+     */
+    protected static double addNorm(Vector y, double alpha, Vector x, Vector r) {
+        if (!(y instanceof DenseVector) || !(x instanceof DenseVector)
+                || !(r instanceof DenseVector)) {
+            if (r != y)
+                r.set(y);
+            r.add(alpha, x);
+            return Double.NaN;
+        }
+
+        double[] yd = ((DenseVector) y).getData(), xd = ((DenseVector) x)
+                .getData(), rd = ((DenseVector) r).getData();
+        if (yd.length != rd.length || xd.length != rd.length)
+            throw new IllegalArgumentException("Vector sizes differ");
+        double norm = 0;
+        for (int i = 0; i < rd.length; ++i) {
+            double ri = yd[i] + alpha * xd[i];
+            rd[i] = ri;
+            norm += ri * ri;
+        }
+
+        // the squares overflowed or underflowed, take the scaled norm
+        if (!(norm > 1e-250 && norm < Double.POSITIVE_INFINITY))
+            return r.norm(Norm.Two);
+        return Math.sqrt(norm);
+    }
+
     /**
      * Identity preconditioner which does nothing
      */
@@ -0,0 +1,251 @@
+package no.uib.cipr.matrix.sparse;
+
+import lombok.extern.java.Log;
+import no.uib.cipr.matrix.DenseMatrix;
+import no.uib.cipr.matrix.EVD;
+import no.uib.cipr.matrix.Matrix;
+import no.uib.cipr.matrix.NotConvergedException;
+import org.netlib.util.doubleW;
+import org.netlib.util.intW;
+
+/**
+ * Uses ARPACK to partially solve general, nonsymmetric, eigensystems. The
+ * counterpart of {@link ArpackSym}, with the same generalized and
+ * shift-invert modes. Only real shifts are supported.
+ * <p>
+ * Eigenvalues are complex, and are returned as by
+ * {@link no.uib.cipr.matrix.EVD}: the real and imaginary parts are in
+ * separate arrays, and complex conjugate pairs of eigenvalues come one after
+ * the other, with the eigenvector of the first given by two consecutive
+ * columns, <code>v(j) + i v(j+1)</code>.
+ * </p>
+ */
+@Log
+public class ArpackGen extends AbstractArpack {
+
+    public enum Ritz {
+        /**
+         * compute the NEV eigenvalues of largest magnitude.
+         */
+        LM,
+        /**
+         * compute the NEV eigenvalues of smallest magnitude.
+         */
+        SM,
+        /**
+         * compute the NEV eigenvalues of largest real part.
+         */
+        LR,
+        /**
+         * compute the NEV eigenvalues of smallest real part.
+         */
+        SR,
+        /**
+         * compute the NEV eigenvalues of largest imaginary part.
+         */
+        LI,
+        /**
+         * compute the NEV eigenvalues of smallest imaginary part.
+         */
+        SI
+    }
+
+    /**
+     * Real and imaginary parts of the eigenvalues, and the eigenvectors
+     */
+    private double[] Wr, Wi;
+
+    private DenseMatrix V;
+
+    public ArpackGen(Matrix matrix) {
+        super(LinearOperators.of(matrix));
+    }
+
+    /**
+     * Constructor for ArpackGen
+     *
+     * @param operator
+     *            Operator, which is only applied to vectors
+     */
+    public ArpackGen(LinearOperator operator) {
+        super(operator);
+    }
+
+    /**
+     * Solve the eigensystem for the number of eigenvalues requested. One more
+     * may be returned, as ARPACK keeps complex conjugate pairs together
+     *
+     * @param eigenvalues
+     *            At most the size of the matrix less two
+     * @param ritz
+     *            preference for solutions
+     * @return this
+     */
+    public ArpackGen solve(int eigenvalues, Ritz ritz) {
+        if (eigenvalues <= 0)
+            throw new IllegalArgumentException(eigenvalues + " <= 0");
+        if (eigenvalues >= n - 1)
+            throw new IllegalArgumentException(eigenvalues + " >= " + (n - 1));
+
+        intW nev = new intW(eigenvalues);
+        int ncv = Math.min(2 * eigenvalues + 1, n);
+
+        String bmat = bmat();
+        String which = ritz.name();
+        doubleW tol = new doubleW(this.tol);
+        intW info = new intW(0);
+        int[] iparam = new int[11];
+        iparam[0] = 1;
+        iparam[2] = 300;
+        iparam[6] = mode();
+        intW ido = new intW(0);
+
+        double[] resid = new double[n];
+        // Arnoldi basis vectors
+        double[] v = new double[n * ncv];
+        // Arnoldi reverse communication
+        double[] workd = new double[3 * n];
+        // private work array
+        double[] workl = new double[3 * ncv * ncv + 6 * ncv];
+        int[] ipntr = new int[14];
+
+        int i = 0;
+        while (true) {
+            i++;
+            arpack.dnaupd(ido, bmat, n, which, nev.val, tol, resid, ncv, v, n,
+                    iparam, ipntr, workd, workl, workl.length, info);
+            if (ido.val == 99)
+                break;
+            apply(ido.val, workd, ipntr);
+        }
+
+        ArpackGen.log.fine(i + " iterations for " + n);
+
+        if (info.val != 0)
+            throw new IllegalStateException("info = " + info.val);
+
+        // Hessenberg matrix of the Arnoldi factorization. ARPACK leaves
+        // garbage below the subdiagonal
+        DenseMatrix H = new DenseMatrix(ncv, ncv);
+        for (int j = 0; j < ncv; ++j)
+            for (int k = 0; k <= Math.min(j + 1, ncv - 1); ++k)
+                H.set(k, j, workl[ipntr[4] - 1 + j * ncv + k]);
+
+        // Ritz values only. With vectors, dneupd of the reference ARPACK
+        // can return wrong eigenpairs when reordering the Schur form
+        double[] dr = new double[nev.val + 1], di = new double[nev.val + 1];
+        double[] workev = new double[3 * ncv];
+        boolean[] select = new boolean[ncv];
+        arpack.dneupd(false, "A", select, dr, di, new double[n], n, sigma, 0,
+                workev, bmat, n, which, nev, tol.val, resid, ncv, v, n, iparam,
+                ipntr, workd, workl, workl.length, info);
+        if (info.val != 0)
+            throw new IllegalStateException("info = " + info.val);
+
+        int computed = Math.min(iparam[4], nev.val + 1);
+        ArpackGen.log.fine("computed " + computed + " eigenvalues");
+
+        Wr = java.util.Arrays.copyOf(dr, computed);
+        Wi = java.util.Arrays.copyOf(di, computed);
+        V = ritzVectors(H, v, computed);
+
+        return this;
+    }
+
+    /**
+     * Computes the Ritz vectors <code>x = V y</code> of the computed
+     * eigenvalues, from the eigenvectors <code>y</code> of the Hessenberg
+     * matrix
+     */
+    private DenseMatrix ritzVectors(DenseMatrix H, double[] v, int computed) {
+        int ncv = H.numRows();
+        EVD evd;
+        try {
+            evd = new EVD(ncv, false, true).factor(H);
+        } catch (NotConvergedException e) {
+            throw new IllegalStateException(e);
+        }
+        double[] hr = evd.getRealEigenvalues(), hi = evd
+                .getImaginaryEigenvalues();
+        double[] Y = evd.getRightEigenvectors().getData();
+
+        DenseMatrix X = new DenseMatrix(n, computed);
+        double[] Xd = X.getData();
+        for (int j = 0; j < computed; ++j) {
+            // complex conjugate pairs are stored with the positive one first
+            boolean pair = Wi[j] != 0 && j + 1 < computed
+                    && Wi[j + 1] == -Wi[j];
+            if (pair && Wi[j] < 0) {
+                Wi[j] = -Wi[j];
+                Wi[j + 1] = -Wi[j + 1];
+            }
+
+            // closest eigenvalue of H, transformed as by dneupd
+            int p = 0;
+            double best = Double.POSITIVE_INFINITY;
+            for (int k = 0; k < ncv; ++k) {
+                double re = hr[k], im = hi[k];
+                if (mode() == 3) {
+                    double t = re * re + im * im;
+                    re = sigma + re / t;
+                    im = -im / t;
+                }
+                double d = Math.hypot(re - Wr[j], im - Wi[j]);
+                if (d < best) {
+                    best = d;
+                    p = k;
+                }
+            }
+
+            // the real and imaginary parts of the eigenvector of H
+            int re = p, im = p + 1;
+            double sign = 1;
+            if (hi[p] < 0) {
+                re = p - 1;
+                im = p;
+                sign = -1;
+            }
+            gemv(v, Y, re * ncv, ncv, 1, Xd, j * n);
+            if (pair) {
+                gemv(v, Y, im * ncv, ncv, sign, Xd, (j + 1) * n);
+                ++j;
+            }
+        }
+        return X;
+    }
+
+    /**
+     * <code>x = alpha V y</code> for the first <code>ncv</code> Arnoldi
+     * vectors
+     */
+    private void gemv(double[] v, double[] y, int yoff, int ncv,
+            double alpha, double[] x, int xoff) {
+        for (int k = 0; k < ncv; ++k) {
+            double yk = alpha * y[yoff + k];
+            for (int i = 0; i < n; ++i)
+                x[xoff + i] += v[k * n + i] * yk;
+        }
+    }
+
+    /**
+     * Gets the real part of the eigenvalues
+     */
+    public double[] getRealEigenvalues() {
+        return Wr;
+    }
+
+    /**
+     * Gets the imaginary part of the eigenvalues
+     */
+    public double[] getImaginaryEigenvalues() {
+        return Wi;
+    }
+
+    /**
+     * Gets the eigenvectors, column-wise
+     */
+    public DenseMatrix getEigenvectors() {
+        return V;
+    }
+
+}
@@ -1,6 +1,5 @@
 package no.uib.cipr.matrix.sparse;
 
-import com.github.fommil.netlib.ARPACK;
 import lombok.extern.java.Log;
 import no.uib.cipr.matrix.*;
 import org.netlib.util.doubleW;
@@ -13,11 +12,16 @@ import java.util.TreeMap;
 /**
  * Uses ARPACK to partially solve symmetric eigensystems (ARPACK is designed to
  * compute a subset of eigenvalues/eigenvectors).
+ * <p>
+ * Besides the standard problem, generalized problems are solved by
+ * {@link #setMass(LinearOperator, LinearOperator)}, and the eigenvalues
+ * nearest a shift, such as the smallest of a stiffness matrix, by
+ * {@link #setShiftInvert(double, LinearOperator)}.
  * 
  * @author Sam Halliday
  */
 @Log
-public class ArpackSym {
+public class ArpackSym extends AbstractArpack {
 
     public enum Ritz {
         /**
@@ -42,24 +46,40 @@ public class ArpackSym {
         BE
     }
 
-    private final ARPACK arpack = ARPACK.getInstance();
-
-    private static final double TOL = 0.0001;
-
     private static final boolean EXPENSIVE_CHECKS = true;
 
-    private final Matrix matrix;
-
     public ArpackSym(Matrix matrix) {
-        if (!matrix.isSquare())
-            throw new IllegalArgumentException("matrix must be square");
-        if (EXPENSIVE_CHECKS)
+        this(matrix, EXPENSIVE_CHECKS);
+    }
+
+    /**
+     * Constructor for ArpackSym
+     * 
+     * @param matrix
+     *            Symmetric matrix
+     * @param checkSymmetry
+     *            Whether to check that the matrix is symmetric. The check
+     *            reads every entry twice, and can take longer than the solve
+     *            for large sparse matrices which are known to be symmetric
+     */
+    public ArpackSym(Matrix matrix, boolean checkSymmetry) {
+        super(LinearOperators.of(matrix));
+        if (checkSymmetry)
             for (MatrixEntry entry : matrix) {
                 if (entry.get() != matrix.get(entry.column(), entry.row()))
                     throw new IllegalArgumentException(
                             "matrix must be symmetric");
             }
-        this.matrix = matrix;
+    }
+
+    /**
+     * Constructor for ArpackSym
+     * 
+     * @param operator
+     *            Symmetric operator, which is only applied to vectors
+     */
+    public ArpackSym(LinearOperator operator) {
+        super(operator);
     }
 
     /**
@@ -77,23 +97,21 @@ public class ArpackSym {
     public Map<Double, DenseVectorSub> solve(int eigenvalues, Ritz ritz) {
         if (eigenvalues <= 0)
             throw new IllegalArgumentException(eigenvalues + " <= 0");
-        if (eigenvalues >= matrix.numColumns())
-            throw new IllegalArgumentException(eigenvalues + " >= "
-                    + (matrix.numColumns()));
+        if (eigenvalues >= n)
+            throw new IllegalArgumentException(eigenvalues + " >= " + n);
 
-        int n = matrix.numRows();
         intW nev = new intW(eigenvalues);
 
         int ncv = Math.min(2 * eigenvalues, n);
 
-        String bmat = "I";
+        String bmat = bmat();
         String which = ritz.name();
-        doubleW tol = new doubleW(TOL);
+        doubleW tol = new doubleW(this.tol);
         intW info = new intW(0);
         int[] iparam = new int[11];
         iparam[0] = 1;
         iparam[2] = 300;
-        iparam[6] = 1;
+        iparam[6] = mode();
         intW ido = new intW(0);
 
         // used for initial residual (if info != 0)
@@ -114,10 +132,7 @@ public class ArpackSym {
                     iparam, ipntr, workd, workl, workl.length, info);
             if (ido.val == 99)
                 break;
-            if (ido.val != -1 && ido.val != 1)
-                throw new IllegalStateException("ido = " + ido.val);
-            // could be refactored to handle the other types of mode
-            av(workd, ipntr[0] - 1, ipntr[1] - 1);
+            apply(ido.val, workd, ipntr);
         }
 
         ArpackSym.log.fine(i + " iterations for " + n);
@@ -129,7 +144,7 @@ public class ArpackSym {
         boolean[] select = new boolean[ncv];
         double[] z = java.util.Arrays.copyOfRange(v, 0, nev.val * n);
 
-        arpack.dseupd(true, "A", select, d, z, n, 0, bmat, n, which, nev, TOL,
+        arpack.dseupd(true, "A", select, d, z, n, sigma, bmat, n, which, nev, tol.val,
                 resid, ncv, v, n, iparam, ipntr, workd, workl, workl.length,
                 info);
         if (info.val != 0)
@@ -156,11 +171,4 @@ public class ArpackSym {
 
         return solution;
     }
-
-    private void av(double[] work, int input_offset, int output_offset) {
-        DenseVector w = new DenseVector(work, false);
-        Vector x = new DenseVectorSub(w, input_offset, matrix.numColumns());
-        Vector y = new DenseVectorSub(w, output_offset, matrix.numColumns());
-        matrix.mult(x, y);
-    }
 }
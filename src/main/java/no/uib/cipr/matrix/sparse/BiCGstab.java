@@ -67,11 +67,12 @@ public class BiCGstab extends AbstractIterativeSolver {
         checkSizes(A, b, x);
 
         double rho_1 = 1, rho_2 = 1, alpha = 1, beta = 1, omega = 1;
+        double rnorm = Double.NaN;
 
         A.multAdd(-1, x, r.set(b));
         rtilde.set(r);
 
-        for (iter.setFirst(); !iter.converged(r, x); iter.next()) {
+        for (iter.setFirst(); !converged(r, rnorm, x); iter.next()) {
             rho_1 = rtilde.dot(r);
 
             if (rho_1 == 0)
@@ -97,17 +98,17 @@ public class BiCGstab extends AbstractIterativeSolver {
             M.apply(p, phat);
             A.mult(phat, v);
             alpha = rho_1 / rtilde.dot(v);
-            s.set(r).add(-alpha, v);
+            double snorm = addNorm(r, -alpha, v, s);
 
             x.add(alpha, phat);
-            if (iter.converged(s, x))
+            if (converged(s, snorm, x))
                 return x;
 
             M.apply(s, shat);
             A.mult(shat, t);
             omega = t.dot(s) / t.dot(t);
             x.add(omega, shat);
-            r.set(s).add(-omega, t);
+            rnorm = addNorm(s, -omega, t, r);
 
             rho_2 = rho_1;
         }
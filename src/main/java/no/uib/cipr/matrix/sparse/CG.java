@@ -59,11 +59,11 @@ public class CG extends AbstractIterativeSolver {
             throws IterativeSolverNotConvergedException {
         checkSizes(A, b, x);
 
-        double alpha = 0, beta = 0, rho = 0, rho_1 = 0;
+        double alpha = 0, beta = 0, rho = 0, rho_1 = 0, rnorm = Double.NaN;
 
         A.multAdd(-1, x, r.set(b));
 
-        for (iter.setFirst(); !iter.converged(r, x); iter.next()) {
+        for (iter.setFirst(); !converged(r, rnorm, x); iter.next()) {
             M.apply(r, z);
             rho = r.dot(z);
 
@@ -78,7 +78,7 @@ public class CG extends AbstractIterativeSolver {
             alpha = rho / p.dot(q);
 
             x.add(alpha, p);
-            r.add(-alpha, q);
+            rnorm = addNorm(r, -alpha, q, r);
 
             rho_1 = rho;
         }
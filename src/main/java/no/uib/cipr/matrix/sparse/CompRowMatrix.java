@@ -273,6 +273,9 @@ public class CompRowMatrix extends AbstractMatrix {
     @Override
     public Matrix mult(Matrix B, Matrix C) {
         checkMultAdd(B, C);
+        if (B instanceof DenseMatrix && C instanceof DenseMatrix)
+            return multAdd(1, B, C.zero());
+
         C.zero();
 
         // optimised a little bit to avoid zeros in rows, but not to
@@ -291,6 +294,144 @@ public class CompRowMatrix extends AbstractMatrix {
         return C;
     }
 
+    /**
+     * Number of columns of a dense matrix product worth giving to a thread
+     */
+    private int grain() {
+        return Math.max(1, (1 << 16) / Math.max(1, rowPointer[numRows]));
+    }
+
+    @Override
+    public Matrix multAdd(double alpha, Matrix B, Matrix C) {
+        if (!(B instanceof DenseMatrix) || !(C instanceof DenseMatrix))
+            return super.multAdd(alpha, B, C);
+
+        checkMultAdd(B, C);
+        if (alpha != 0)
+            multAdd(alpha, (DenseMatrix) B, (DenseMatrix) C, 0,
+                    C.numColumns());
+        return C;
+    }
+
+    /**
+     * <code>C = alpha*A*B + C</code> with the columns of <code>C</code> split
+     * over the threads of {@link Parallel}. <code>multAdd</code> itself is
+     * sequential
+     *
+     * @return C
+     */
+    public DenseMatrix parallelMultAdd(final double alpha,
+            final DenseMatrix B, final DenseMatrix C) {
+        checkMultAdd(B, C);
+        if (alpha != 0)
+            Parallel.forRange(C.numColumns(), grain(),
+                    new Parallel.RangeTask() {
+                        public void run(int from, int to) {
+                            multAdd(alpha, B, C, from, to);
+                        }
+                    });
+        return C;
+    }
+
+    /**
+     * One sparse matrix-vector product per column of <code>C</code>, for the
+     * columns <code>from</code> to <code>to - 1</code>
+     */
+    private void multAdd(double alpha, DenseMatrix B, DenseMatrix C,
+            int from, int to) {
+        double[] Bd = B.getDataUnchecked(), Cd = C.getData();
+        int ldb = B.numRows();
+        for (int c = from; c < to; ++c) {
+            int b = c * ldb, o = c * numRows;
+            for (int i = 0; i < numRows; ++i) {
+                double dot = 0;
+                for (int j = rowPointer[i]; j < rowPointer[i + 1]; ++j)
+                    dot += data[j] * Bd[b + columnIndex[j]];
+                Cd[o + i] += alpha * dot;
+            }
+        }
+    }
+
+    @Override
+    public Matrix transAmultAdd(double alpha, Matrix B, Matrix C) {
+        if (!(B instanceof DenseMatrix) || !(C instanceof DenseMatrix))
+            return super.transAmultAdd(alpha, B, C);
+
+        checkTransAmultAdd(B, C);
+        if (alpha != 0)
+            transAmultAdd(alpha, (DenseMatrix) B, (DenseMatrix) C, 0,
+                    C.numColumns());
+        return C;
+    }
+
+    /**
+     * <code>C = alpha*A<sup>T</sup>*B + C</code> with the columns of
+     * <code>C</code> split over the threads of {@link Parallel}.
+     * <code>transAmultAdd</code> itself is sequential
+     *
+     * @return C
+     */
+    public DenseMatrix parallelTransAmultAdd(final double alpha,
+            final DenseMatrix B, final DenseMatrix C) {
+        checkTransAmultAdd(B, C);
+        if (alpha != 0)
+            Parallel.forRange(C.numColumns(), grain(),
+                    new Parallel.RangeTask() {
+                        public void run(int from, int to) {
+                            transAmultAdd(alpha, B, C, from, to);
+                        }
+                    });
+        return C;
+    }
+
+    /**
+     * Scatters into the columns <code>from</code> to <code>to - 1</code> of
+     * <code>C</code>, which are independent of each other
+     */
+    private void transAmultAdd(double alpha, DenseMatrix B, DenseMatrix C,
+            int from, int to) {
+        double[] Bd = B.getDataUnchecked(), Cd = C.getData();
+        int ldc = C.numRows();
+        for (int c = from; c < to; ++c) {
+            int b = c * numRows, o = c * ldc;
+            for (int i = 0; i < numRows; ++i) {
+                double bi = alpha * Bd[b + i];
+                if (bi == 0)
+                    continue;
+                for (int j = rowPointer[i]; j < rowPointer[i + 1]; ++j)
+                    Cd[o + columnIndex[j]] += data[j] * bi;
+            }
+        }
+    }
+
+    /**
+     * Number of rows of a sparse matrix-vector product worth giving to a
+     * thread
+     */
+    private int rowGrain() {
+        return (int) Math.max(1, (1L << 16) * numRows
+                / Math.max(1, rowPointer[numRows]));
+    }
+
+    /**
+     * <code>y = Ax</code> on the array slices starting at the given offsets,
+     * with the rows split over the worker threads. The slices must not
+     * overlap
+     */
+    void mult(final double[] x, final int xoff, final double[] y,
+            final int yoff) {
+        Parallel.forRange(numRows, rowGrain(), new Parallel.RangeTask() {
+            public void run(int from, int to) {
+                for (int i = from; i < to; ++i) {
+                    double dot = 0;
+                    for (int j = rowPointer[i]; j < rowPointer[i + 1]; ++j)
+                        dot += data[j] * x[xoff + columnIndex[j]];
+                    y[yoff + i] = dot;
+                }
+            }
+        });
+    }
+
     @Override
     public Vector mult(Vector x, Vector y) {
         // check dimensions
@@ -0,0 +1,66 @@
+package no.uib.cipr.matrix.sparse;
+
+import no.uib.cipr.matrix.FloatDenseCholesky;
+import no.uib.cipr.matrix.FloatDenseMatrix;
+import no.uib.cipr.matrix.Matrix;
+import no.uib.cipr.matrix.MatrixNotSPDException;
+import no.uib.cipr.matrix.Vector;
+
+/**
+ * Single precision dense Cholesky preconditioner for symmetric positive
+ * definite systems. The symmetric counterpart of {@link FloatLU}: the system
+ * matrix is rounded to single precision and factored by
+ * {@link FloatDenseCholesky}, which together with {@link IR} or {@link CG}
+ * gives mixed precision iterative refinement.
+ */
+public class FloatCholesky implements Preconditioner {
+
+    /**
+     * The factorization
+     */
+    private final FloatDenseCholesky chol;
+
+    /**
+     * Single precision copy of the system matrix, overwritten by the factor
+     */
+    private final FloatDenseMatrix F;
+
+    /**
+     * Single precision work vector, stored as a one-column matrix
+     */
+    private final FloatDenseMatrix w;
+
+    /**
+     * Constructor for FloatCholesky
+     *
+     * @param n
+     *            Problem size (number of rows)
+     */
+    public FloatCholesky(int n) {
+        chol = new FloatDenseCholesky(n);
+        F = new FloatDenseMatrix(n, n);
+        w = new FloatDenseMatrix(n, 1);
+    }
+
+    public Vector apply(Vector b, Vector x) {
+        FloatLU.round(b, w);
+        chol.solve(w);
+        return FloatLU.widen(w, x);
+    }
+
+    public Vector transApply(Vector b, Vector x) {
+        return apply(b, x);
+    }
+
+    public void setMatrix(Matrix A) {
+        if (A.numRows() != F.numRows())
+            throw new IllegalArgumentException(
+                    "Matrix size differs from preconditioner size");
+
+        F.set(A);
+        if (!chol.factor(F).isSPD())
+            throw new MatrixNotSPDException(
+                    "Matrix is not SPD in single precision");
+    }
+
+}
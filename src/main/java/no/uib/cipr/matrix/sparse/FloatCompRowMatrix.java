@@ -0,0 +1,445 @@
+package no.uib.cipr.matrix.sparse;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import no.uib.cipr.matrix.AbstractMatrix;
+import no.uib.cipr.matrix.DenseVector;
+import no.uib.cipr.matrix.FloatDenseVector;
+import no.uib.cipr.matrix.Matrix;
+import no.uib.cipr.matrix.MatrixEntry;
+import no.uib.cipr.matrix.Vector;
+
+/**
+ * Single precision compressed row storage (CRS) matrix. The layout is the same
+ * as {@link CompRowMatrix}, but the entries are held in a <code>float[]</code>
+ * array. For bandwidth bound kernels such as sparse matrix-vector products this
+ * cuts the memory traffic per nonzero from twelve to eight bytes, while all
+ * products are still accumulated in double precision.
+ * <p>
+ * Only use this class if the matrix structure (the location of nonzeros) is
+ * known and static (does not change).
+ * </p>
+ */
+public class FloatCompRowMatrix extends AbstractMatrix {
+
+    /**
+     * Matrix data
+     */
+    float[] data;
+
+    /**
+     * Column indices. These are kept sorted within each row.
+     */
+    int[] columnIndex;
+
+    /**
+     * Indices to the start of each row
+     */
+    int[] rowPointer;
+
+    /**
+     * Constructor for FloatCompRowMatrix
+     *
+     * @param A
+     *            Copies from this matrix
+     * @param deep
+     *            True if the copy is to be deep. If it is a shallow copy,
+     *            <code>A</code> must be a <code>FloatCompRowMatrix</code>
+     */
+    public FloatCompRowMatrix(Matrix A, boolean deep) {
+        super(A);
+        construct(A, deep);
+    }
+
+    /**
+     * Constructor for FloatCompRowMatrix
+     *
+     * @param A
+     *            Copies from this matrix. The copy will be deep, and the
+     *            entries are rounded to single precision
+     */
+    public FloatCompRowMatrix(Matrix A) {
+        this(A, true);
+    }
+
+    /**
+     * Constructor for FloatCompRowMatrix
+     *
+     * @param numRows
+     *            Number of rows
+     * @param numColumns
+     *            Number of columns
+     * @param nz
+     *            The nonzero column indices on each row
+     */
+    public FloatCompRowMatrix(int numRows, int numColumns, int[][] nz) {
+        super(numRows, numColumns);
+        construct(nz);
+    }
+
+    private void construct(int[][] nz) {
+        int nnz = 0;
+        for (int i = 0; i < nz.length; ++i)
+            nnz += nz[i].length;
+
+        rowPointer = new int[numRows + 1];
+        columnIndex = new int[nnz];
+        data = new float[nnz];
+
+        if (nz.length != numRows)
+            throw new IllegalArgumentException("nz.length != numRows");
+
+        for (int i = 1; i <= numRows; ++i) {
+            rowPointer[i] = rowPointer[i - 1] + nz[i - 1].length;
+
+            for (int j = rowPointer[i - 1], k = 0; j < rowPointer[i]; ++j, ++k) {
+                columnIndex[j] = nz[i - 1][k];
+                if (nz[i - 1][k] < 0 || nz[i - 1][k] >= numColumns)
+                    throw new IllegalArgumentException("nz[" + (i - 1) + "]["
+                            + k + "]=" + nz[i - 1][k]
+                            + ", which is not a valid column index");
+            }
+
+            java.util.Arrays.sort(columnIndex, rowPointer[i - 1],
+                    rowPointer[i]);
+        }
+    }
+
+    private void construct(Matrix A, boolean deep) {
+        if (deep) {
+            if (A instanceof FloatCompRowMatrix) {
+                FloatCompRowMatrix Ac = (FloatCompRowMatrix) A;
+                data = Ac.data.clone();
+                columnIndex = Ac.columnIndex.clone();
+                rowPointer = Ac.rowPointer.clone();
+            } else if (A instanceof CompRowMatrix) {
+                CompRowMatrix Ac = (CompRowMatrix) A;
+                columnIndex = Ac.getColumnIndices().clone();
+                rowPointer = Ac.getRowPointers().clone();
+                double[] Ad = Ac.getData();
+                data = new float[Ad.length];
+                for (int i = 0; i < Ad.length; ++i)
+                    data[i] = (float) Ad[i];
+            } else {
+
+                List<Set<Integer>> rnz = new ArrayList<Set<Integer>>(numRows);
+                for (int i = 0; i < numRows; ++i)
+                    rnz.add(new HashSet<Integer>());
+
+                for (MatrixEntry e : A)
+                    rnz.get(e.row()).add(e.column());
+
+                int[][] nz = new int[numRows][];
+                for (int i = 0; i < numRows; ++i) {
+                    nz[i] = new int[rnz.get(i).size()];
+                    int j = 0;
+                    for (Integer colind : rnz.get(i))
+                        nz[i][j++] = colind;
+                }
+
+                construct(nz);
+                set(A);
+
+            }
+        } else {
+            FloatCompRowMatrix Ac = (FloatCompRowMatrix) A;
+            columnIndex = Ac.getColumnIndices();
+            rowPointer = Ac.getRowPointers();
+            data = Ac.getData();
+        }
+    }
+
+    /**
+     * Returns the column indices
+     */
+    public int[] getColumnIndices() {
+        return columnIndex;
+    }
+
+    /**
+     * Returns the row pointers
+     */
+    public int[] getRowPointers() {
+        return rowPointer;
+    }
+
+    /**
+     * Returns the internal data storage
+     */
+    public float[] getData() {
+        return data;
+    }
+
+    @Override
+    public Vector mult(Vector x, Vector y) {
+        if (x instanceof FloatDenseVector && y instanceof FloatDenseVector) {
+            checkMultAdd(x, y);
+
+            float[] xd = ((FloatDenseVector) x).getData();
+            float[] yd = ((FloatDenseVector) y).getData();
+
+            for (int i = 0; i < numRows; ++i) {
+                double dot = 0;
+                for (int j = rowPointer[i]; j < rowPointer[i + 1]; j++)
+                    dot += (double) data[j] * xd[columnIndex[j]];
+                yd[i] = (float) dot;
+            }
+            return y;
+        }
+        if (!(x instanceof DenseVector) || !(y instanceof DenseVector))
+            return super.mult(x, y);
+
+        checkMultAdd(x, y);
+
+        double[] xd = ((DenseVector) x).getData();
+        double[] yd = ((DenseVector) y).getData();
+
+        for (int i = 0; i < numRows; ++i) {
+            double dot = 0;
+            for (int j = rowPointer[i]; j < rowPointer[i + 1]; j++)
+                dot += data[j] * xd[columnIndex[j]];
+            yd[i] = dot;
+        }
+        return y;
+    }
+
+    @Override
+    public Vector multAdd(double alpha, Vector x, Vector y) {
+        if (x instanceof FloatDenseVector && y instanceof FloatDenseVector) {
+            checkMultAdd(x, y);
+
+            float[] xd = ((FloatDenseVector) x).getData();
+            float[] yd = ((FloatDenseVector) y).getData();
+
+            for (int i = 0; i < numRows; ++i) {
+                double dot = 0;
+                for (int j = rowPointer[i]; j < rowPointer[i + 1]; ++j)
+                    dot += (double) data[j] * xd[columnIndex[j]];
+                yd[i] += alpha * dot;
+            }
+            return y;
+        }
+        if (!(x instanceof DenseVector) || !(y instanceof DenseVector))
+            return super.multAdd(alpha, x, y);
+
+        checkMultAdd(x, y);
+
+        double[] xd = ((DenseVector) x).getData();
+        double[] yd = ((DenseVector) y).getData();
+
+        for (int i = 0; i < numRows; ++i) {
+            double dot = 0;
+            for (int j = rowPointer[i]; j < rowPointer[i + 1]; ++j)
+                dot += data[j] * xd[columnIndex[j]];
+            yd[i] += alpha * dot;
+        }
+
+        return y;
+    }
+
+    @Override
+    public Vector transMultAdd(double alpha, Vector x, Vector y) {
+        if (x instanceof FloatDenseVector && y instanceof FloatDenseVector) {
+            checkTransMultAdd(x, y);
+
+            float[] xd = ((FloatDenseVector) x).getData();
+            float[] yd = ((FloatDenseVector) y).getData();
+
+            // each term is formed in double and scattered straight into y
+            for (int i = 0; i < numRows; ++i) {
+                double axi = alpha * xd[i];
+                if (axi != 0)
+                    for (int j = rowPointer[i]; j < rowPointer[i + 1]; ++j)
+                        yd[columnIndex[j]] += data[j] * axi;
+            }
+
+            return y;
+        }
+        if (!(x instanceof DenseVector) || !(y instanceof DenseVector))
+            return super.transMultAdd(alpha, x, y);
+
+        checkTransMultAdd(x, y);
+
+        double[] xd = ((DenseVector) x).getData();
+        double[] yd = ((DenseVector) y).getData();
+
+        for (int i = 0; i < numRows; ++i) {
+            double axi = alpha * xd[i];
+            if (axi != 0)
+                for (int j = rowPointer[i]; j < rowPointer[i + 1]; ++j)
+                    yd[columnIndex[j]] += data[j] * axi;
+        }
+
+        return y;
+    }
+
+    @Override
+    public void set(int row, int column, double value) {
+        check(row, column);
+
+        int index = getIndex(row, column);
+        data[index] = (float) value;
+    }
+
+    @Override
+    public void add(int row, int column, double value) {
+        check(row, column);
+
+        int index = getIndex(row, column);
+        data[index] += value;
+    }
+
+    @Override
+    public double get(int row, int column) {
+        check(row, column);
+
+        int index = java.util.Arrays.binarySearch(columnIndex,
+                rowPointer[row], rowPointer[row + 1], column);
+
+        if (index >= 0)
+            return data[index];
+        else
+            return 0;
+    }
+
+    /**
+     * Finds the insertion index
+     */
+    private int getIndex(int row, int column) {
+        int i = java.util.Arrays.binarySearch(columnIndex, rowPointer[row],
+                rowPointer[row + 1], column);
+
+        if (i >= 0)
+            return i;
+        else
+            throw new IndexOutOfBoundsException("Entry (" + (row + 1) + ", "
+                    + (column + 1) + ") is not in the matrix structure");
+    }
+
+    @Override
+    public FloatCompRowMatrix copy() {
+        return new FloatCompRowMatrix(this);
+    }
+
+    @Override
+    public Iterator<MatrixEntry> iterator() {
+        return new FloatCompRowMatrixIterator();
+    }
+
+    @Override
+    public FloatCompRowMatrix zero() {
+        java.util.Arrays.fill(data, 0);
+        return this;
+    }
+
+    @Override
+    public Matrix set(Matrix B) {
+        if (!(B instanceof FloatCompRowMatrix))
+            return super.set(B);
+
+        checkSize(B);
+
+        FloatCompRowMatrix Bc = (FloatCompRowMatrix) B;
+
+        // Reallocate matrix structure, if necessary
+        if (Bc.columnIndex.length != columnIndex.length
+                || Bc.rowPointer.length != rowPointer.length) {
+            data = new float[Bc.data.length];
+            columnIndex = new int[Bc.columnIndex.length];
+            rowPointer = new int[Bc.rowPointer.length];
+        }
+
+        System.arraycopy(Bc.data, 0, data, 0, data.length);
+        System.arraycopy(Bc.columnIndex, 0, columnIndex, 0, columnIndex.length);
+        System.arraycopy(Bc.rowPointer, 0, rowPointer, 0, rowPointer.length);
+
+        return this;
+    }
+
+    /**
+     * Iterator over a single precision compressed row matrix
+     */
+    private class FloatCompRowMatrixIterator implements Iterator<MatrixEntry> {
+
+        private int row, cursor;
+
+        private FloatCompRowMatrixEntry entry = new FloatCompRowMatrixEntry();
+
+        public FloatCompRowMatrixIterator() {
+            // Find first non-empty row
+            nextNonEmptyRow();
+        }
+
+        /**
+         * Locates the first non-empty row, starting at the current. After the
+         * new row has been found, the cursor is also updated
+         */
+        private void nextNonEmptyRow() {
+            while (row < numRows() && rowPointer[row] == rowPointer[row + 1])
+                row++;
+            cursor = rowPointer[row];
+        }
+
+        public boolean hasNext() {
+            return cursor < data.length;
+        }
+
+        public MatrixEntry next() {
+            entry.update(row, cursor);
+
+            // Next position is in the same row
+            if (cursor < rowPointer[row + 1] - 1)
+                cursor++;
+
+            // Next position is at the following (non-empty) row
+            else {
+                row++;
+                nextNonEmptyRow();
+            }
+
+            return entry;
+        }
+
+        public void remove() {
+            entry.set(0);
+        }
+
+    }
+
+    /**
+     * Entry of a single precision compressed row matrix
+     */
+    private class FloatCompRowMatrixEntry implements MatrixEntry {
+
+        private int row, cursor;
+
+        /**
+         * Updates the entry
+         */
+        public void update(int row, int cursor) {
+            this.row = row;
+            this.cursor = cursor;
+        }
+
+        public int row() {
+            return row;
+        }
+
+        public int column() {
+            return columnIndex[cursor];
+        }
+
+        public double get() {
+            return data[cursor];
+        }
+
+        public void set(double value) {
+            data[cursor] = (float) value;
+        }
+    }
+
+}
@@ -0,0 +1,107 @@
+package no.uib.cipr.matrix.sparse;
+
+import no.uib.cipr.matrix.DenseVector;
+import no.uib.cipr.matrix.FloatDenseLU;
+import no.uib.cipr.matrix.FloatDenseMatrix;
+import no.uib.cipr.matrix.Matrix;
+import no.uib.cipr.matrix.MatrixSingularException;
+import no.uib.cipr.matrix.Vector;
+
+/**
+ * Single precision dense LU preconditioner. The system matrix is rounded to
+ * single precision and factored by {@link FloatDenseLU}, so applying the
+ * preconditioner is a pair of single precision triangular solves.
+ * <p>
+ * Combined with {@link IR}, which computes the residual <code>b - Ax</code> in
+ * double precision with the original matrix, this gives mixed precision
+ * iterative refinement: the expensive <code>O(n<sup>3</sup>)</code>
+ * factorization runs at single precision speed and memory, while the solution
+ * still converges to double precision accuracy as long as the matrix is not
+ * too ill-conditioned for single precision (roughly
+ * <code>cond(A) &lt; 10<sup>6</sup></code>).
+ * </p>
+ */
+public class FloatLU implements Preconditioner {
+
+    /**
+     * The factorization
+     */
+    private final FloatDenseLU lu;
+
+    /**
+     * Single precision copy of the system matrix, overwritten by the factors
+     */
+    private final FloatDenseMatrix F;
+
+    /**
+     * Single precision work vector, stored as a one-column matrix
+     */
+    private final FloatDenseMatrix w;
+
+    /**
+     * Constructor for FloatLU
+     *
+     * @param n
+     *            Problem size (number of rows)
+     */
+    public FloatLU(int n) {
+        lu = new FloatDenseLU(n, n);
+        F = new FloatDenseMatrix(n, n);
+        w = new FloatDenseMatrix(n, 1);
+    }
+
+    public Vector apply(Vector b, Vector x) {
+        round(b, w);
+        lu.solve(w);
+        return widen(w, x);
+    }
+
+    public Vector transApply(Vector b, Vector x) {
+        round(b, w);
+        lu.transSolve(w);
+        return widen(w, x);
+    }
+
+    public void setMatrix(Matrix A) {
+        if (A.numRows() != F.numRows())
+            throw new IllegalArgumentException(
+                    "Matrix size differs from preconditioner size");
+
+        F.set(A);
+        if (lu.factor(F).isSingular())
+            throw new MatrixSingularException(
+                    "Matrix is singular in single precision");
+    }
+
+    /**
+     * Copies <code>b</code> into the single precision work vector
+     * <code>w</code>. Shared with {@link FloatCholesky}
+     */
+    static void round(Vector b, FloatDenseMatrix w) {
+        float[] wd = w.getData();
+        if (b instanceof DenseVector) {
+            double[] bd = ((DenseVector) b).getData();
+            for (int i = 0; i < wd.length; ++i)
+                wd[i] = (float) bd[i];
+        } else
+            for (int i = 0; i < wd.length; ++i)
+                wd[i] = (float) b.get(i);
+    }
+
+    /**
+     * Copies the single precision work vector <code>w</code> into
+     * <code>x</code>. Shared with {@link FloatCholesky}
+     */
+    static Vector widen(FloatDenseMatrix w, Vector x) {
+        float[] wd = w.getData();
+        if (x instanceof DenseVector) {
+            double[] xd = ((DenseVector) x).getData();
+            for (int i = 0; i < wd.length; ++i)
+                xd[i] = wd[i];
+        } else
+            for (int i = 0; i < wd.length; ++i)
+                x.set(i, wd[i]);
+        return x;
+    }
+
+}
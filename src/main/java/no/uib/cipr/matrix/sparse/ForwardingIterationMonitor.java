@@ -0,0 +1,77 @@
+package no.uib.cipr.matrix.sparse;
+
+import no.uib.cipr.matrix.Vector;
+import no.uib.cipr.matrix.Vector.Norm;
+
+/**
+ * Iteration monitor passing everything on to another monitor, for monitors
+ * which add checks to an existing one
+ */
+abstract class ForwardingIterationMonitor implements IterationMonitor {
+
+    /**
+     * Monitor deciding convergence
+     */
+    protected final IterationMonitor monitor;
+
+    ForwardingIterationMonitor(IterationMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    public void setFirst() {
+        monitor.setFirst();
+    }
+
+    public boolean isFirst() {
+        return monitor.isFirst();
+    }
+
+    public void next() {
+        monitor.next();
+    }
+
+    public int iterations() {
+        return monitor.iterations();
+    }
+
+    public double residual() {
+        return monitor.residual();
+    }
+
+    public boolean converged(Vector r, Vector x)
+            throws IterativeSolverNotConvergedException {
+        return monitor.converged(r, x);
+    }
+
+    public boolean converged(double r, Vector x)
+            throws IterativeSolverNotConvergedException {
+        return monitor.converged(r, x);
+    }
+
+    public boolean converged(double r)
+            throws IterativeSolverNotConvergedException {
+        return monitor.converged(r);
+    }
+
+    public boolean converged(Vector r)
+            throws IterativeSolverNotConvergedException {
+        return monitor.converged(r);
+    }
+
+    public void setIterationReporter(IterationReporter reporter) {
+        monitor.setIterationReporter(reporter);
+    }
+
+    public IterationReporter getIterationReporter() {
+        return monitor.getIterationReporter();
+    }
+
+    public void setNormType(Norm normType) {
+        monitor.setNormType(normType);
+    }
+
+    public Norm getNormType() {
+        return monitor.getNormType();
+    }
+
+}
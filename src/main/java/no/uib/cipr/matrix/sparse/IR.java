@@ -30,6 +30,12 @@ import no.uib.cipr.matrix.Vector;
  * Iterative Refinement. IR solves the unsymmetric linear system
  * <code>Ax = b</code> using Iterative Refinement (preconditioned Richardson
  * iteration).
+ * <p>
+ * With a single precision factorization as preconditioner, such as
+ * {@link FloatLU} or {@link FloatCholesky}, this is mixed precision iterative
+ * refinement: the residual is computed in double precision, while the
+ * correction is solved for in single precision.
+ * </p>
  * 
  * @author Templates
  */
@@ -0,0 +1,275 @@
+package no.uib.cipr.matrix.sparse;
+
+import lombok.extern.java.Log;
+import no.uib.cipr.matrix.DenseMatrix;
+import no.uib.cipr.matrix.DenseVector;
+import no.uib.cipr.matrix.DenseVectorSub;
+import no.uib.cipr.matrix.JavaBLAS;
+import no.uib.cipr.matrix.Matrix;
+import no.uib.cipr.matrix.NotConvergedException;
+import no.uib.cipr.matrix.QR;
+import no.uib.cipr.matrix.SymmDenseEVD;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Locally optimal block preconditioned conjugate gradient (LOBPCG) method for
+ * the extreme eigenvalues of a symmetric matrix, as described by Knyazev in
+ * <i>Toward the optimal preconditioned eigensolver</i>, SIAM J. Sci. Comput.
+ * 23(2), 2001. A pure Java alternative to {@link ArpackSym}, returning the
+ * eigenpairs in the same form.
+ * <p>
+ * Each iteration does a Rayleigh-Ritz projection onto the span of the
+ * current block of eigenvector approximations <code>X</code>, the
+ * preconditioned residuals <code>W</code> and the previous search directions
+ * <code>P</code>. The basis is orthonormalised with {@link QR} and the
+ * projected problem, of at most three times the block size, is solved by
+ * {@link SymmDenseEVD}. The matrix is only used through products with dense
+ * blocks, which for a {@link CompRowMatrix} go to
+ * {@link CompRowMatrix#parallelMultAdd}, and otherwise to
+ * <code>A.mult(Matrix, Matrix)</code>.
+ * </p>
+ * <p>
+ * A {@link Preconditioner} approximating <code>A<sup>-1</sup></code>, such
+ * as {@link AMG} or {@link ICC} for positive definite matrices, speeds up the
+ * search for the smallest eigenvalues considerably.
+ * </p>
+ */
+@Log
+public class LOBPCG {
+
+    /**
+     * Matrix to solve for, and its size
+     */
+    private final Matrix A;
+
+    private final int n;
+
+    private Preconditioner M;
+
+    private double tol = 1e-6;
+
+    private int maxIter = 2000;
+
+    private Random random = new Random();
+
+    /**
+     * Constructor for LOBPCG
+     *
+     * @param A
+     *            Symmetric matrix, not modified
+     */
+    public LOBPCG(Matrix A) {
+        if (!A.isSquare())
+            throw new IllegalArgumentException("!A.isSquare()");
+        this.A = A;
+        this.n = A.numRows();
+    }
+
+    /**
+     * Sets the preconditioner, which must have been set up for the matrix.
+     * None by default
+     */
+    public LOBPCG setPreconditioner(Preconditioner M) {
+        this.M = M;
+        return this;
+    }
+
+    /**
+     * Sets the tolerance on the residual norm of each eigenpair, relative to
+     * the magnitude of the eigenvalue, or absolute for eigenvalues smaller
+     * than one in magnitude. <code>1e-6</code> by default
+     */
+    public LOBPCG setTolerance(double tol) {
+        if (tol <= 0)
+            throw new IllegalArgumentException("tol <= 0");
+        this.tol = tol;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of iterations, 2000 by default. Without a
+     * preconditioner, the smallest eigenvalues of a 2D Laplacian on a 100 x
+     * 100 grid take about 800
+     */
+    public LOBPCG setMaxIterations(int maxIter) {
+        if (maxIter < 1)
+            throw new IllegalArgumentException("maxIter < 1");
+        this.maxIter = maxIter;
+        return this;
+    }
+
+    /**
+     * Sets the random number generator of the initial block, for
+     * reproducible iterations
+     */
+    public LOBPCG setRandom(Random random) {
+        this.random = random;
+        return this;
+    }
+
+    /**
+     * Solve the eigensystem for the number of eigenvalues requested.
+     *
+     * @param eigenvalues
+     *            Block size. At most a third of the size of the matrix
+     * @param ritz
+     *            preference for solutions, either <code>LA</code> or
+     *            <code>SA</code>
+     * @return a map from eigenvalues to corresponding eigenvectors, highest
+     *         eigenvalue first
+     */
+    public Map<Double, DenseVectorSub> solve(int eigenvalues,
+            ArpackSym.Ritz ritz) {
+        if (eigenvalues <= 0)
+            throw new IllegalArgumentException(eigenvalues + " <= 0");
+        if (3 * eigenvalues > n)
+            throw new IllegalArgumentException("3 * " + eigenvalues + " > "
+                    + n);
+        if (ritz != ArpackSym.Ritz.LA && ritz != ArpackSym.Ritz.SA)
+            throw new IllegalArgumentException(ritz + " is not supported");
+
+        // the largest eigenvalues are found as the smallest of -A
+        double sign = ritz == ArpackSym.Ritz.LA ? -1 : 1;
+        int m = eigenvalues;
+
+        DenseMatrix X = new DenseMatrix(n, m);
+        double[] Xd = X.getData();
+        for (int i = 0; i < Xd.length; ++i)
+            Xd[i] = random.nextGaussian();
+        X = new QR(n, m).factor(X).getQ();
+        DenseMatrix AX = product(X, sign);
+
+        double[] lambda = new double[m];
+        DenseMatrix P = null;
+        DenseMatrix R = new DenseMatrix(n, m), W = new DenseMatrix(n, m);
+        QR qr2 = new QR(n, 2 * m), qr3 = null;
+
+        for (int iter = 0;; ++iter) {
+            // Rayleigh-Ritz on the span of [X, W, P], or of X to start with
+            DenseMatrix S = X, AS = AX;
+            if (iter > 0) {
+                int s = P == null ? 2 * m : 3 * m;
+                S = new DenseMatrix(n, s);
+                double[] Sd = S.getData();
+                System.arraycopy(X.getData(), 0, Sd, 0, n * m);
+                System.arraycopy(W.getData(), 0, Sd, n * m, n * m);
+                if (P == null)
+                    S = qr2.factor(S).getQ();
+                else {
+                    System.arraycopy(P.getData(), 0, Sd, 2 * n * m, n * m);
+                    if (qr3 == null)
+                        qr3 = new QR(n, s);
+                    S = qr3.factor(S).getQ();
+                }
+                AS = product(S, sign);
+            }
+
+            int s = S.numColumns();
+            DenseMatrix G = (DenseMatrix) S.transAmult(AS, new DenseMatrix(s,
+                    s));
+            SymmDenseEVD evd;
+            try {
+                evd = new SymmDenseEVD(s, true, true).factor(G);
+            } catch (NotConvergedException e) {
+                throw new IllegalStateException(e);
+            }
+            System.arraycopy(evd.getEigenvalues(), 0, lambda, 0, m);
+            double[] C = evd.getEigenvectors().getData();
+
+            X = gemm(S, C, 0, s, m);
+            AX = gemm(AS, C, 0, s, m);
+            if (s > m)
+                // the part of the update from W and P
+                P = gemm(S, C, m, s, m);
+
+            // residuals R = AX - X diag(lambda)
+            double[] Rd = R.getData(), AXd = AX.getData();
+            Xd = X.getData();
+            int converged = 0;
+            for (int j = 0; j < m; ++j) {
+                double norm = 0;
+                for (int i = j * n; i < (j + 1) * n; ++i) {
+                    Rd[i] = AXd[i] - lambda[j] * Xd[i];
+                    norm += Rd[i] * Rd[i];
+                }
+                // absolute for eigenvalues below one, so that a zero
+                // eigenvalue converges
+                if (Math.sqrt(norm) <= tol * Math.max(Math.abs(lambda[j]), 1))
+                    converged++;
+            }
+
+            if (converged == m) {
+                LOBPCG.log.fine(iter + " iterations for " + n);
+                break;
+            }
+            if (iter == maxIter)
+                throw new IllegalStateException("not converged after "
+                        + maxIter + " iterations, " + converged + " of " + m
+                        + " eigenpairs converged");
+
+            precondition(R, W);
+        }
+
+        Map<Double, DenseVectorSub> solution = new TreeMap<Double, DenseVectorSub>(
+                new Comparator<Double>() {
+                    @Override
+                    public int compare(Double o1, Double o2) {
+                        // highest first
+                        return Double.compare(o2, o1);
+                    }
+                });
+        DenseVector eigenvectors = new DenseVector(X.getData(), false);
+        for (int j = 0; j < m; j++)
+            solution.put(sign * lambda[j], new DenseVectorSub(eigenvectors, j
+                    * n, n));
+
+        return solution;
+    }
+
+    /**
+     * Returns <code>sign * A * S</code>
+     */
+    private DenseMatrix product(DenseMatrix S, double sign) {
+        DenseMatrix AS = new DenseMatrix(n, S.numColumns());
+        if (A instanceof CompRowMatrix)
+            return ((CompRowMatrix) A).parallelMultAdd(sign, S, AS);
+        A.mult(S, AS);
+        if (sign != 1)
+            AS.scale(sign);
+        return AS;
+    }
+
+    /**
+     * Returns <code>S * C(from:to, 0:m)</code>, where <code>C</code> has
+     * leading dimension <code>ldc</code>
+     */
+    private DenseMatrix gemm(DenseMatrix S, double[] C, int from, int ldc,
+            int m) {
+        DenseMatrix Y = new DenseMatrix(n, m);
+        JavaBLAS.getInstance().dgemm("N", "N", n, m, ldc - from, 1,
+                S.getData(), from * n, n, C, from, ldc, 0, Y.getData(), 0, n);
+        return Y;
+    }
+
+    /**
+     * <code>W = M<sup>-1</sup> R</code>, column by column
+     */
+    private void precondition(DenseMatrix R, DenseMatrix W) {
+        if (M == null) {
+            System.arraycopy(R.getData(), 0, W.getData(), 0, n
+                    * R.numColumns());
+            return;
+        }
+        DenseVector r = new DenseVector(n), w = new DenseVector(n);
+        for (int j = 0; j < R.numColumns(); ++j) {
+            System.arraycopy(R.getData(), j * n, r.getData(), 0, n);
+            M.apply(r, w);
+            System.arraycopy(w.getData(), 0, W.getData(), j * n, n);
+        }
+    }
+
+}
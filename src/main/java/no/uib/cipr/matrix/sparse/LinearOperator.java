@@ -0,0 +1,29 @@
+package no.uib.cipr.matrix.sparse;
+
+import no.uib.cipr.matrix.Vector;
+
+/**
+ * Square linear operator given only by its action on vectors. This lets the
+ * eigensolvers work on operators which are never formed as a matrix, such as
+ * the inverse of a shifted matrix applied by a factorization or an iterative
+ * solver. {@link LinearOperators} adapts matrices and solvers.
+ */
+public interface LinearOperator {
+
+    /**
+     * Returns the number of rows and columns of the operator
+     */
+    int size();
+
+    /**
+     * Computes <code>y = Op x</code>
+     *
+     * @param x
+     *            Vector to apply the operator to. Not modified
+     * @param y
+     *            Result is stored here
+     * @return y
+     */
+    Vector apply(Vector x, Vector y);
+
+}
@@ -0,0 +1,216 @@
+package no.uib.cipr.matrix.sparse;
+
+import com.github.fommil.netlib.LAPACK;
+import no.uib.cipr.matrix.DenseLU;
+import no.uib.cipr.matrix.DenseMatrix;
+import no.uib.cipr.matrix.DenseVector;
+import no.uib.cipr.matrix.JavaBLAS;
+import no.uib.cipr.matrix.Matrix;
+import no.uib.cipr.matrix.MatrixSingularException;
+import no.uib.cipr.matrix.Vector;
+import org.netlib.util.intW;
+
+/**
+ * Adapts matrices, factorizations and iterative solvers to
+ * {@link LinearOperator}s. The inverses are what shift-invert eigensolvers
+ * need: factor <code>A - sigma M</code> once, and pass its inverse.
+ */
+public final class LinearOperators {
+
+    private LinearOperators() {
+        // static factories
+    }
+
+    /**
+     * Operator which can also be applied directly to slices of arrays, such
+     * as the reverse communication work array of ARPACK, without wrapping or
+     * copying them
+     */
+    static abstract class ArrayOperator implements LinearOperator {
+
+        /**
+         * <code>y = Op x</code> on the array slices starting at the given
+         * offsets. The slices must not overlap
+         */
+        abstract void apply(double[] x, int xoff, double[] y, int yoff);
+
+    }
+
+    /**
+     * Returns the operator <code>y = Ax</code>. The products of
+     * <code>CompRowMatrix</code> and <code>DenseMatrix</code> run in parallel,
+     * while <code>CompRowMatrix.mult</code> itself stays sequential
+     */
+    public static LinearOperator of(final Matrix A) {
+        if (!A.isSquare())
+            throw new IllegalArgumentException("!A.isSquare()");
+
+        if (A instanceof CompRowMatrix)
+            return new ArrayOperator() {
+                public int size() {
+                    return A.numRows();
+                }
+
+                public Vector apply(Vector x, Vector y) {
+                    if (!(x instanceof DenseVector)
+                            || !(y instanceof DenseVector))
+                        return A.mult(x, y);
+                    if (x.size() != A.numColumns())
+                        throw new IndexOutOfBoundsException(
+                                "x.size != A.numColumns (" + x.size() + " != "
+                                        + A.numColumns() + ")");
+                    if (y.size() != A.numRows())
+                        throw new IndexOutOfBoundsException(
+                                "y.size != A.numRows (" + y.size() + " != "
+                                        + A.numRows() + ")");
+                    apply(((DenseVector) x).getData(), 0,
+                            ((DenseVector) y).getData(), 0);
+                    return y;
+                }
+
+                void apply(double[] x, int xoff, double[] y, int yoff) {
+                    ((CompRowMatrix) A).mult(x, xoff, y, yoff);
+                }
+            };
+
+        if (A instanceof DenseMatrix)
+            return new ArrayOperator() {
+                public int size() {
+                    return A.numRows();
+                }
+
+                public Vector apply(Vector x, Vector y) {
+                    return A.mult(x, y);
+                }
+
+                void apply(double[] x, int xoff, double[] y, int yoff) {
+                    int n = A.numRows();
+                    JavaBLAS.getInstance().dgemv("N", n, n, 1,
+                            ((DenseMatrix) A).getDataUnchecked(), 0,
+                            Math.max(n, 1), x, xoff, 1, 0, y, yoff, 1);
+                }
+            };
+
+        return new LinearOperator() {
+            public int size() {
+                return A.numRows();
+            }
+
+            public Vector apply(Vector x, Vector y) {
+                return A.mult(x, y);
+            }
+        };
+    }
+
+    /**
+     * Returns the operator <code>y = A<sup>-1</sup>x</code>, applied by
+     * solving with the given iterative solver from a zero initial guess.
+     * Solves which fail to converge throw an
+     * <code>IllegalStateException</code>
+     */
+    public static LinearOperator inverse(final IterativeSolver solver,
+            final Matrix A) {
+        if (!A.isSquare())
+            throw new IllegalArgumentException("!A.isSquare()");
+        return new LinearOperator() {
+            public int size() {
+                return A.numRows();
+            }
+
+            public Vector apply(Vector x, Vector y) {
+                try {
+                    return solver.solve(A, x, y.zero());
+                } catch (IterativeSolverNotConvergedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns the operator <code>y = A<sup>-1</sup>x</code> of a factored
+     * sparse SPD matrix
+     */
+    public static LinearOperator inverse(final SparseCholesky A) {
+        final int n = A.getPermutation().length;
+        return new LinearOperator() {
+            public int size() {
+                return n;
+            }
+
+            public Vector apply(Vector x, Vector y) {
+                return A.solve(x, y);
+            }
+        };
+    }
+
+    /**
+     * Returns the operator <code>y = A<sup>-1</sup>x</code> of a factored
+     * sparse matrix
+     */
+    public static LinearOperator inverse(final SparseLU A) {
+        final int n = A.getRowPermutation().length;
+        return new LinearOperator() {
+            public int size() {
+                return n;
+            }
+
+            public Vector apply(Vector x, Vector y) {
+                return A.solve(x, y);
+            }
+        };
+    }
+
+    /**
+     * Returns the operator <code>y = A<sup>-1</sup>x</code> of a factored
+     * dense matrix. It solves in place with the factors of <code>A</code>,
+     * without allocating, so it must not be applied by several threads at
+     * once
+     */
+    public static LinearOperator inverse(final DenseLU A) {
+        final int n = A.getPivots().length;
+        // the triangular factors share the array of the decomposition
+        final double[] lu = A.getL().getDataUnchecked();
+        final int[] piv = A.getPivots();
+        final DenseVector w = new DenseVector(n);
+        final intW info = new intW(0);
+        final int ld = Math.max(1, n);
+        return new ArrayOperator() {
+            public int size() {
+                return n;
+            }
+
+            public Vector apply(Vector x, Vector y) {
+                if (x.size() != n)
+                    throw new IndexOutOfBoundsException("x.size != n ("
+                            + x.size() + " != " + n + ")");
+                if (y.size() != n)
+                    throw new IndexOutOfBoundsException("y.size != n ("
+                            + y.size() + " != " + n + ")");
+                if (x instanceof DenseVector && y instanceof DenseVector) {
+                    apply(((DenseVector) x).getData(), 0,
+                            ((DenseVector) y).getData(), 0);
+                    return y;
+                }
+                w.set(x);
+                solve(w.getData(), 0);
+                return y.set(w);
+            }
+
+            void apply(double[] x, int xoff, double[] y, int yoff) {
+                System.arraycopy(x, xoff, y, yoff, n);
+                solve(y, yoff);
+            }
+
+            private void solve(double[] b, int boff) {
+                if (A.isSingular())
+                    throw new MatrixSingularException();
+                LAPACK.getInstance().dgetrs("N", n, 1, lu, 0, ld, piv, 0, b,
+                        boff, ld, info);
+                if (info.val < 0)
+                    throw new IllegalArgumentException();
+            }
+        };
+    }
+
+}
@@ -4,6 +4,8 @@ import lombok.AllArgsConstructor;
 import lombok.ToString;
 import lombok.extern.java.Log;
 import no.uib.cipr.matrix.AbstractMatrix;
+import no.uib.cipr.matrix.DenseMatrix;
+import no.uib.cipr.matrix.DenseVector;
 import no.uib.cipr.matrix.Matrix;
 import no.uib.cipr.matrix.MatrixEntry;
 import no.uib.cipr.matrix.Vector;
@@ -13,22 +15,29 @@ import no.uib.cipr.matrix.io.MatrixVectorReader;
 
 import java.io.IOException;
 import java.util.Iterator;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * A Linked List (with shortcuts to important nodes) implementation of an
- * {@code n x m} Matrix with {@code z} elements that has a typical
- * {@code O(z / m)} insertion / lookup cost and an iterator that traverses
+ * {@code n x m} Matrix with {@code z} elements and an iterator that traverses
  * columns then rows: a good fit for unstructured sparse matrices. A secondary
  * link maintains fast transpose iteration.
  * <p/>
+ * The nodes of every row and column are also indexed by sorted arrays, so
+ * lookup costs {@code O(log k)} in a row or column of {@code k} elements.
+ * Products use a compressed row (or column) copy, built on first use and
+ * rebuilt after any modification, at {@code 12 bytes} per element.
+ * <p/>
  * However, memory requirements (
  * {@code 1 instance (8 bytes), 2 int (16 bytes), 2 ref (16 bytes), 1 double (8 bytes) = 48 bytes}
- * per matrix element, plus {@code 8 x numcol + 8 x numrow bytes}s for the
- * cache) are slightly higher than structured sparse matrix storage. Note that
- * on 32 bit JVMs, or on 64 bit JVMs with <a
+ * per matrix element, plus the row and column indices) are higher than
+ * structured sparse matrix storage. With <a
  * href="https://wikis.oracle.com/display/HotSpotInternals/CompressedOops"
- * >CompressedOops</a> enabled, references and ints only cost 4 bytes each,
- * bringing the cost to 28 bytes per element.
+ * >CompressedOops</a>, a node costs 36 bytes, the indices 8 to 16 bytes per
+ * element as their arrays grow by doubling, plus 8 bytes per row and column
+ * and 72 bytes (a 16 byte array header and a 56 byte {@code TreeSet} entry)
+ * per non-empty row and column.
  * 
  * @author Sam Halliday
  */
@@ -44,6 +53,37 @@ public class LinkedSparseMatrix extends AbstractMatrix {
         Node rowTail, colTail;
     }
 
+    // compressed row (or column) copy of the linkage, valid while the
+    // modification count of the linkage is unchanged
+    static class Compressed {
+        final int version;
+        final int[] ptr, idx;
+        final double[] val;
+
+        Compressed(int version, int lines, Node head, boolean byRow) {
+            this.version = version;
+            int nnz = 0;
+            ptr = new int[lines + 1];
+            for (Node node = head; node != null; node = next(node, byRow)) {
+                ptr[(byRow ? node.row : node.col) + 1]++;
+                nnz++;
+            }
+            for (int i = 0; i < lines; i++)
+                ptr[i + 1] += ptr[i];
+            idx = new int[nnz];
+            val = new double[nnz];
+            int k = 0;
+            for (Node node = head; node != null; node = next(node, byRow), k++) {
+                idx[k] = byRow ? node.col : node.row;
+                val[k] = node.val;
+            }
+        }
+
+        private static Node next(Node node, boolean byRow) {
+            return byRow ? node.rowTail : node.colTail;
+        }
+    }
+
     // there is a lot of duplicated code in this class between
     // row and col linkages, but subtle differences make it
     // extremely difficult to factor away.
@@ -51,78 +91,145 @@ public class LinkedSparseMatrix extends AbstractMatrix {
 
         final Node head = new Node(0, 0, 0, null, null);
 
-        Node[] rows = new Node[numRows], cols = new Node[numColumns];
+        // nodes of each row sorted by column, and of each column sorted by
+        // row. Lazily allocated and grown on demand.
+        Node[][] rows = new Node[numRows][], cols = new Node[numColumns][];
+
+        int[] rowSize = new int[numRows], colSize = new int[numColumns];
+
+        // rows and columns with at least one node, to find the end of the
+        // preceding non-empty row or column without scanning
+        final TreeSet<Integer> usedRows = new TreeSet<Integer>(),
+                usedCols = new TreeSet<Integer>();
+
+        // incremented on every modification, invalidating the snapshots
+        int version;
+
+        Compressed csr, csc;
+
+        Linked() {
+            // the head is permanent, which guarantees that every other
+            // node has a predecessor in both linkages
+            if (numRows > 0 && numColumns > 0) {
+                insert(rows, rowSize, usedRows, 0, 0, head);
+                insert(cols, colSize, usedCols, 0, 0, head);
+            }
+        }
 
         private boolean isHead(int row, int col) {
             return head.row == row && head.col == col;
         }
 
-        // true if node exists, it's row tail exists, and has this row/col
-        private boolean isNextByRow(Node node, int row, int col) {
-            return node != null && node.rowTail != null
-                    && node.rowTail.row == row && node.rowTail.col == col;
+        // index of the node at col in the row, else (-(insertion point) - 1)
+        private int searchRow(int row, int col) {
+            Node[] nodes = rows[row];
+            int lo = 0, hi = rowSize[row] - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int c = nodes[mid].col;
+                if (c < col)
+                    lo = mid + 1;
+                else if (c > col)
+                    hi = mid - 1;
+                else
+                    return mid;
+            }
+            return -(lo + 1);
+        }
+
+        // index of the node at row in the col, else (-(insertion point) - 1)
+        private int searchCol(int row, int col) {
+            Node[] nodes = cols[col];
+            int lo = 0, hi = colSize[col] - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int r = nodes[mid].row;
+                if (r < row)
+                    lo = mid + 1;
+                else if (r > row)
+                    hi = mid - 1;
+                else
+                    return mid;
+            }
+            return -(lo + 1);
+        }
+
+        private void insert(Node[][] lines, int[] size, Set<Integer> used,
+                int line, int index, Node node) {
+            Node[] nodes = lines[line];
+            int n = size[line];
+            if (nodes == null)
+                nodes = lines[line] = new Node[4];
+            else if (n == nodes.length)
+                nodes = lines[line] = java.util.Arrays.copyOf(nodes, 2 * n);
+            System.arraycopy(nodes, index, nodes, index + 1, n - index);
+            nodes[index] = node;
+            size[line] = n + 1;
+            if (n == 0)
+                used.add(line);
         }
 
-        // true if node exists, it's col tail exists, and has this row/col
-        private boolean isNextByCol(Node node, int row, int col) {
-            return node != null && node.colTail != null
-                    && node.colTail.col == col && node.colTail.row == row;
+        private void remove(Node[][] lines, int[] size, Set<Integer> used,
+                int line, int index) {
+            Node[] nodes = lines[line];
+            int n = --size[line];
+            System.arraycopy(nodes, index + 1, nodes, index, n - index);
+            nodes[n] = null;
+            if (n == 0) {
+                lines[line] = null;
+                used.remove(line);
+            }
         }
 
         public double get(int row, int col) {
-            if (isHead(row, col))
-                return head.val;
-            if (col <= row) {
-                Node node = findPreceedingByRow(row, col);
-                if (isNextByRow(node, row, col))
-                    return node.rowTail.val;
+            if (rowSize[row] <= colSize[col]) {
+                int i = searchRow(row, col);
+                return i >= 0 ? rows[row][i].val : 0;
             } else {
-                Node node = findPreceedingByCol(row, col);
-                if (isNextByCol(node, row, col))
-                    return node.colTail.val;
+                int i = searchCol(row, col);
+                return i >= 0 ? cols[col][i].val : 0;
             }
-            return 0;
+        }
+
+        // compressed row snapshot, rebuilt if the matrix has changed
+        Compressed csr() {
+            Compressed c = csr;
+            if (c == null || c.version != version)
+                csr = c = new Compressed(version, rows.length, head, true);
+            return c;
+        }
+
+        // compressed column snapshot, rebuilt if the matrix has changed
+        Compressed csc() {
+            Compressed c = csc;
+            if (c == null || c.version != version)
+                csc = c = new Compressed(version, cols.length, head, false);
+            return c;
         }
 
         public void set(int row, int col, double val) {
+            version++;
             if (val == 0) {
                 delete(row, col);
                 return;
             }
-            if (isHead(row, col))
-                head.val = val;
-            else {
-                Node prevRow = findPreceedingByRow(row, col);
-                if (isNextByRow(prevRow, row, col))
-                    prevRow.rowTail.val = val;
-                else {
-                    Node prevCol = findPreceedingByCol(row, col);
-                    Node nextCol = findNextByCol(row, col);
-                    prevRow.rowTail = new Node(row, col, val, prevRow.rowTail,
-                            nextCol);
-                    prevCol.colTail = prevRow.rowTail;
-                    updateCache(prevRow.rowTail);
-                }
-            }
-        }
-
-        private Node findNextByCol(int row, int col) {
-            Node cur = cachedByCol(col - 1);
-            while (cur != null) {
-                if (row < cur.row && col <= cur.col || col < cur.col)
-                    return cur;
-                cur = cur.colTail;
+            int ir = searchRow(row, col);
+            if (ir >= 0) {
+                rows[row][ir].val = val;
+                return;
             }
-            return cur;
-        }
-
-        private void updateCache(Node inserted) {
-            if (rows[inserted.row] == null
-                    || inserted.col > rows[inserted.row].col)
-                rows[inserted.row] = inserted;
-            if (cols[inserted.col] == null
-                    || inserted.row > cols[inserted.col].row)
-                cols[inserted.col] = inserted;
+            ir = -(ir + 1);
+            int ic = -(searchCol(row, col) + 1);
+
+            Node prevRow = preceedingByRow(row, ir);
+            Node prevCol = preceedingByCol(col, ic);
+            Node node = new Node(row, col, val, prevRow.rowTail,
+                    prevCol.colTail);
+            prevRow.rowTail = node;
+            prevCol.colTail = node;
+
+            insert(rows, rowSize, usedRows, row, ir, node);
+            insert(cols, colSize, usedCols, col, ic, node);
         }
 
         private void delete(int row, int col) {
@@ -130,77 +237,41 @@ public class LinkedSparseMatrix extends AbstractMatrix {
                 head.val = 0;
                 return;
             }
-            Node precRow = findPreceedingByRow(row, col);
-            Node precCol = findPreceedingByCol(row, col);
-            if (isNextByRow(precRow, row, col)) {
-                if (rows[row] == precRow.rowTail)
-                    rows[row] = precRow.row == row ? precRow : null;
-                precRow.rowTail = precRow.rowTail.rowTail;
-            }
-            if (isNextByCol(precCol, row, col)) {
-                if (cols[col] == precCol.colTail)
-                    cols[col] = precCol.col == col ? precCol : null;
-                precCol.colTail = precCol.colTail.colTail;
-            }
-        }
+            int ir = searchRow(row, col);
+            if (ir < 0)
+                return;
+            int ic = searchCol(row, col);
+            Node node = rows[row][ir];
 
-        // returns the node that either references this
-        // index, or should reference it if inserted.
-        Node findPreceedingByRow(int row, int col) {
-            Node last = cachedByRow(row - 1);
-            Node cur = last;
-            while (cur != null && cur.row <= row) {
-                if (cur.row == row && cur.col >= col)
-                    return last;
-                last = cur;
-                cur = cur.rowTail;
-            }
-            return last;
-        }
+            preceedingByRow(row, ir).rowTail = node.rowTail;
+            preceedingByCol(col, ic).colTail = node.colTail;
 
-        // helper for findPreceeding
-        private Node cachedByRow(int row) {
-            for (int i = row; i >= 0; i--)
-                if (rows[i] != null)
-                    return rows[i];
-            return head;
+            remove(rows, rowSize, usedRows, row, ir);
+            remove(cols, colSize, usedCols, col, ic);
         }
 
-        Node findPreceedingByCol(int row, int col) {
-            Node last = cachedByCol(col - 1);
-            Node cur = last;
-            while (cur != null && cur.col <= col) {
-                if (cur.col == col && cur.row >= row)
-                    return last;
-                last = cur;
-                cur = cur.colTail;
-            }
-            return last;
+        // the node that references position index of the row, or should
+        // reference a node inserted there
+        private Node preceedingByRow(int row, int index) {
+            if (index > 0)
+                return rows[row][index - 1];
+            int prev = usedRows.lower(row);
+            return rows[prev][rowSize[prev] - 1];
         }
 
-        private Node cachedByCol(int col) {
-            for (int i = col; i >= 0; i--)
-                if (cols[i] != null)
-                    return cols[i];
-            return head;
+        private Node preceedingByCol(int col, int index) {
+            if (index > 0)
+                return cols[col][index - 1];
+            int prev = usedCols.lower(col);
+            return cols[prev][colSize[prev] - 1];
         }
 
         Node startOfRow(int row) {
-            if (row == 0)
-                return head;
-            Node prec = findPreceedingByRow(row, 0);
-            if (prec.rowTail != null && prec.rowTail.row == row)
-                return prec.rowTail;
-            return null;
+            return rowSize[row] > 0 ? rows[row][0] : null;
         }
 
         Node startOfCol(int col) {
-            if (col == 0)
-                return head;
-            Node prec = findPreceedingByCol(0, col);
-            if (prec != null && prec.colTail != null && prec.colTail.col == col)
-                return prec.colTail;
-            return null;
+            return colSize[col] > 0 ? cols[col][0] : null;
         }
     }
 
@@ -357,11 +428,24 @@ public class LinkedSparseMatrix extends AbstractMatrix {
         checkMultAdd(x, y);
         if (alpha == 0)
             return y;
-        Node node = links.head;
-        while (node != null) {
-            y.add(node.row, alpha * node.val * x.get(node.col));
-            node = node.rowTail;
-        }
+        Compressed A = links.csr();
+        if (x instanceof DenseVector && y instanceof DenseVector) {
+            double[] xd = ((DenseVector) x).getData();
+            double[] yd = ((DenseVector) y).getData();
+            for (int i = 0; i < numRows; i++) {
+                double dot = 0;
+                for (int k = A.ptr[i]; k < A.ptr[i + 1]; k++)
+                    dot += A.val[k] * xd[A.idx[k]];
+                yd[i] += alpha * dot;
+            }
+        } else
+            for (int i = 0; i < numRows; i++) {
+                double dot = 0;
+                for (int k = A.ptr[i]; k < A.ptr[i + 1]; k++)
+                    dot += A.val[k] * x.get(A.idx[k]);
+                if (dot != 0)
+                    y.add(i, alpha * dot);
+            }
         return y;
     }
 
@@ -370,35 +454,54 @@ public class LinkedSparseMatrix extends AbstractMatrix {
         checkTransMultAdd(x, y);
         if (alpha == 0)
             return y;
-        Node node = links.head;
-        while (node != null) {
-            y.add(node.col, alpha * node.val * x.get(node.row));
-            node = node.colTail;
-        }
+        Compressed A = links.csc();
+        if (x instanceof DenseVector && y instanceof DenseVector) {
+            double[] xd = ((DenseVector) x).getData();
+            double[] yd = ((DenseVector) y).getData();
+            for (int j = 0; j < numColumns; j++) {
+                double dot = 0;
+                for (int k = A.ptr[j]; k < A.ptr[j + 1]; k++)
+                    dot += A.val[k] * xd[A.idx[k]];
+                yd[j] += alpha * dot;
+            }
+        } else
+            for (int j = 0; j < numColumns; j++) {
+                double dot = 0;
+                for (int k = A.ptr[j]; k < A.ptr[j + 1]; k++)
+                    dot += A.val[k] * x.get(A.idx[k]);
+                if (dot != 0)
+                    y.add(j, alpha * dot);
+            }
         return y;
     }
 
-    // TODO: optimise matrix mults based on RHS Matrix
-
     @Override
     public Matrix multAdd(double alpha, Matrix B, Matrix C) {
         checkMultAdd(B, C);
         if (alpha == 0)
             return C;
-        for (int i = 0; i < numRows; i++) {
-            Node row = links.startOfRow(i);
-            if (row != null)
-                for (int j = 0; j < B.numColumns(); j++) {
-                    Node node = row;
+        Compressed A = links.csr();
+        if (B instanceof DenseMatrix && C instanceof DenseMatrix) {
+            double[] Bd = ((DenseMatrix) B).getDataUnchecked();
+            double[] Cd = ((DenseMatrix) C).getData();
+            int ldb = B.numRows(), ldc = C.numRows();
+            for (int j = 0; j < B.numColumns(); j++)
+                for (int i = 0; i < numRows; i++) {
                     double v = 0;
-                    while (node != null && node.row == i) {
-                        v += (B.get(node.col, j) * node.val);
-                        node = node.rowTail;
-                    }
-                    if (v != 0)
-                        C.add(i, j, alpha * v);
+                    for (int k = A.ptr[i]; k < A.ptr[i + 1]; k++)
+                        v += A.val[k] * Bd[A.idx[k] + j * ldb];
+                    Cd[i + j * ldc] += alpha * v;
                 }
-        }
+        } else
+            for (int i = 0; i < numRows; i++)
+                if (A.ptr[i] < A.ptr[i + 1])
+                    for (int j = 0; j < B.numColumns(); j++) {
+                        double v = 0;
+                        for (int k = A.ptr[i]; k < A.ptr[i + 1]; k++)
+                            v += B.get(A.idx[k], j) * A.val[k];
+                        if (v != 0)
+                            C.add(i, j, alpha * v);
+                    }
         return C;
     }
 
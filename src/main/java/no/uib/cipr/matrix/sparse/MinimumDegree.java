@@ -0,0 +1,254 @@
+package no.uib.cipr.matrix.sparse;
+
+/**
+ * Approximate minimum degree ordering of a symmetric sparsity pattern.
+ * <p>
+ * Follows the quotient graph formulation of Amestoy, Davis and Duff: each
+ * eliminated node becomes an element standing for the clique it creates, so
+ * the ordering runs in space proportional to the pattern rather than the
+ * fill. Degrees are the approximate external degrees of AMD. Supervariable
+ * detection and aggressive absorption are not done, so orderings are
+ * somewhat slower to compute, but of comparable quality.
+ * </p>
+ * <p>
+ * Column orderings for unsymmetric factorizations are computed as in COLAMD:
+ * the rows of the matrix are taken as the initial elements, which orders the
+ * columns for the pattern of <code>A<sup>T</sup>A</code> without forming it.
+ * Dense rows are ignored.
+ * </p>
+ */
+final class MinimumDegree {
+
+    private MinimumDegree() {
+        // static utility
+    }
+
+    /**
+     * Computes a fill reducing ordering
+     *
+     * @param n
+     *            Number of nodes
+     * @param ptr
+     *            Start of the neighbours of each node in <code>idx</code>,
+     *            of length <code>n + 1</code>
+     * @param idx
+     *            Neighbours of each node. The pattern must be symmetric.
+     *            Self references are ignored
+     * @return <code>perm</code>, where <code>perm[k]</code> is the node
+     *         eliminated in step <code>k</code>
+     */
+    static int[] order(int n, int[] ptr, int[] idx) {
+        return order(n, ptr, idx, 0, null, null);
+    }
+
+    /**
+     * Computes a fill reducing column ordering for an unsymmetric
+     * factorization
+     *
+     * @param m
+     *            Number of rows
+     * @param n
+     *            Number of columns
+     * @param colptr
+     *            Start of each column in <code>rowidx</code>, of length
+     *            <code>n + 1</code>
+     * @param rowidx
+     *            Row indices of each column
+     * @return <code>q</code>, where <code>q[k]</code> is the column factored
+     *         in step <code>k</code>
+     */
+    static int[] orderColumns(int m, int n, int[] colptr, int[] rowidx) {
+        // Rows with more entries than this would make every column dense
+        int dense = (int) Math.max(16, 10 * Math.sqrt(n));
+
+        int[] eptr = new int[m + 1];
+        for (int k = 0; k < colptr[n]; ++k)
+            eptr[rowidx[k] + 1]++;
+        for (int i = 0; i < m; ++i)
+            eptr[i + 1] += eptr[i];
+        int[] eidx = new int[colptr[n]], pos = java.util.Arrays.copyOf(eptr,
+                m);
+        for (int j = 0; j < n; ++j)
+            for (int k = colptr[j]; k < colptr[j + 1]; ++k)
+                eidx[pos[rowidx[k]]++] = j;
+
+        // Drop the dense rows by compacting the row lists
+        int[] cptr = new int[m + 1];
+        int len = 0;
+        for (int i = 0; i < m; ++i) {
+            if (eptr[i + 1] - eptr[i] <= dense)
+                for (int k = eptr[i]; k < eptr[i + 1]; ++k)
+                    eidx[len++] = eidx[k];
+            cptr[i + 1] = len;
+        }
+
+        return order(n, null, null, m, cptr, eidx);
+    }
+
+    /**
+     * Orders <code>n</code> variables, given their neighbours as variables
+     * (if any) and <code>m</code> initial elements (cliques of variables)
+     */
+    private static int[] order(int n, int[] ptr, int[] idx, int m,
+            int[] eptr, int[] eidx) {
+        // Variable neighbours and adjacent elements of each node. The
+        // initial elements are numbered from n
+        int[][] adj = new int[n][], elems = new int[n][];
+        int[] adjLen = new int[n], elemLen = new int[n];
+        // Variables of each element
+        int[][] members = new int[n + m][];
+        boolean[] eliminated = new boolean[n], absorbed = new boolean[n + m];
+
+        int[] degree = new int[n];
+        long[] initial = new long[n];
+        for (int i = 0; i < n; ++i) {
+            adj[i] = new int[ptr == null ? 0 : ptr[i + 1] - ptr[i]];
+            if (ptr != null)
+                for (int k = ptr[i]; k < ptr[i + 1]; ++k)
+                    if (idx[k] != i)
+                        adj[i][adjLen[i]++] = idx[k];
+            elems[i] = new int[2];
+            initial[i] = adjLen[i];
+        }
+        for (int e = 0; e < m; ++e) {
+            members[n + e] = java.util.Arrays.copyOfRange(eidx, eptr[e],
+                    eptr[e + 1]);
+            for (int i : members[n + e]) {
+                if (elemLen[i] == elems[i].length)
+                    elems[i] = java.util.Arrays.copyOf(elems[i],
+                            2 * elemLen[i]);
+                elems[i][elemLen[i]++] = n + e;
+                initial[i] += members[n + e].length - 1;
+            }
+        }
+        for (int i = 0; i < n; ++i)
+            degree[i] = (int) Math.min(initial[i], Math.max(n - 1, 0));
+
+        // Degree lists
+        int[] head = new int[n], next = new int[n], prev = new int[n];
+        java.util.Arrays.fill(head, -1);
+        for (int i = 0; i < n; ++i)
+            link(head, next, prev, degree, i);
+
+        int[] mark = new int[n];
+        int tag = 0;
+        long[] w = new long[n + m];
+        long wflg = 1;
+
+        int[] perm = new int[n];
+        int[] Lp = new int[n];
+        int mindeg = 0;
+        for (int k = 0; k < n; ++k) {
+            // Node of least approximate degree
+            while (head[mindeg] == -1)
+                mindeg++;
+            int p = head[mindeg];
+            unlink(head, next, prev, degree, p);
+            perm[k] = p;
+            eliminated[p] = true;
+
+            // Variables of the new element: neighbours of p, and of the
+            // elements p is adjacent to, which are absorbed into it
+            tag++;
+            mark[p] = tag;
+            int len = 0;
+            for (int a = 0; a < adjLen[p]; ++a) {
+                int i = adj[p][a];
+                if (!eliminated[i] && mark[i] != tag) {
+                    mark[i] = tag;
+                    Lp[len++] = i;
+                }
+            }
+            for (int a = 0; a < elemLen[p]; ++a) {
+                int e = elems[p][a];
+                if (absorbed[e])
+                    continue;
+                for (int i : members[e])
+                    if (!eliminated[i] && mark[i] != tag) {
+                        mark[i] = tag;
+                        Lp[len++] = i;
+                    }
+                absorbed[e] = true;
+                members[e] = null;
+            }
+            members[p] = java.util.Arrays.copyOf(Lp, len);
+            adj[p] = null;
+            elems[p] = null;
+
+            // Update the neighbours of the new element. Every other element
+            // adjacent to them has |Le \ Lp| computed in w
+            for (int a = 0; a < len; ++a) {
+                int i = Lp[a];
+                unlink(head, next, prev, degree, i);
+
+                // Drop absorbed elements, add the new one
+                int c = 0;
+                for (int b = 0; b < elemLen[i]; ++b)
+                    if (!absorbed[elems[i][b]])
+                        elems[i][c++] = elems[i][b];
+                if (c == elems[i].length)
+                    elems[i] = java.util.Arrays.copyOf(elems[i], 2 * c + 2);
+                elems[i][c++] = p;
+                elemLen[i] = c;
+
+                // Neighbours now reached through the new element are pruned
+                c = 0;
+                for (int b = 0; b < adjLen[i]; ++b) {
+                    int j = adj[i][b];
+                    if (!eliminated[j] && mark[j] != tag)
+                        adj[i][c++] = j;
+                }
+                adjLen[i] = c;
+
+                for (int b = 0; b < elemLen[i]; ++b) {
+                    int e = elems[i][b];
+                    if (e == p)
+                        continue;
+                    if (w[e] < wflg)
+                        w[e] = wflg + members[e].length;
+                    w[e]--;
+                }
+            }
+
+            for (int a = 0; a < len; ++a) {
+                int i = Lp[a];
+                long d = adjLen[i] + len - 1;
+                for (int b = 0; b < elemLen[i]; ++b) {
+                    int e = elems[i][b];
+                    if (e != p)
+                        d += w[e] - wflg;
+                }
+                d = Math.min(d, degree[i] + (long) len);
+                d = Math.min(d, n - k - 2);
+                degree[i] = (int) Math.max(d, 0);
+                link(head, next, prev, degree, i);
+                mindeg = Math.min(mindeg, degree[i]);
+            }
+
+            wflg += n + 1;
+        }
+
+        return perm;
+    }
+
+    private static void link(int[] head, int[] next, int[] prev,
+            int[] degree, int i) {
+        int d = degree[i];
+        next[i] = head[d];
+        prev[i] = -1;
+        if (head[d] != -1)
+            prev[head[d]] = i;
+        head[d] = i;
+    }
+
+    private static void unlink(int[] head, int[] next, int[] prev,
+            int[] degree, int i) {
+        if (prev[i] != -1)
+            next[prev[i]] = next[i];
+        else
+            head[degree[i]] = next[i];
+        if (next[i] != -1)
+            prev[next[i]] = prev[i];
+    }
+
+}
@@ -0,0 +1,167 @@
+package no.uib.cipr.matrix.sparse;
+
+import no.uib.cipr.matrix.DenseVector;
+import no.uib.cipr.matrix.Matrix;
+import no.uib.cipr.matrix.Vector;
+
+/**
+ * Iterative solver working on a reordered copy of the matrix. Meshes numbered
+ * by their generator often make the gathers of a sparse matrix-vector product
+ * jump all over the vector; reordering for a small bandwidth, such as by
+ * {@link Reordering#reverseCuthillMcKee(CompRowMatrix)}, keeps them close to
+ * the diagonal and in cache.
+ * <p>
+ * The given solver works on <code>PAP<sup>T</sup></code> with permuted
+ * vectors, while callers keep the original numbering. The pattern is permuted
+ * once, and later solves only copy the values across, so the matrix may be
+ * modified between solves as long as its sparsity pattern is kept. A
+ * preconditioner must be set up for the permuted matrix, as given by
+ * {@link #getMatrix()}.
+ * </p>
+ */
+public class ReorderedSolver implements IterativeSolver {
+
+    private final IterativeSolver solver;
+
+    private final Reordering reordering;
+
+    private final int[] perm;
+
+    /**
+     * Original matrix, its reordered copy, and the position in the copy of
+     * each entry of the original
+     */
+    private CompRowMatrix A, PA;
+
+    private int[] map;
+
+    /**
+     * Permuted right hand side and solution
+     */
+    private final DenseVector pb, px;
+
+    /**
+     * Constructor for ReorderedSolver. Uses a reverse Cuthill-McKee ordering
+     * of the given matrix
+     *
+     * @param solver
+     *            Solver to use on the reordered system
+     * @param A
+     *            Matrix to be solved
+     */
+    public ReorderedSolver(IterativeSolver solver, CompRowMatrix A) {
+        this(solver, Reordering.reverseCuthillMcKee(A));
+        update(A);
+    }
+
+    /**
+     * Constructor for ReorderedSolver
+     *
+     * @param solver
+     *            Solver to use on the reordered system
+     * @param reordering
+     *            Ordering of the matrices to be solved
+     */
+    public ReorderedSolver(IterativeSolver solver, Reordering reordering) {
+        this.solver = solver;
+        this.reordering = reordering;
+        perm = reordering.getPermutation();
+        pb = new DenseVector(perm.length);
+        px = new DenseVector(perm.length);
+    }
+
+    /**
+     * Returns the ordering used
+     */
+    public Reordering getReordering() {
+        return reordering;
+    }
+
+    /**
+     * Returns the reordered copy of the last matrix solved or given on
+     * construction, for setting up preconditioners
+     */
+    public CompRowMatrix getMatrix() {
+        return PA;
+    }
+
+    /**
+     * Copies the values of the given matrix into the reordered copy,
+     * permuting its pattern if it has not been seen before
+     */
+    private void update(CompRowMatrix A) {
+        if (PA == null
+                || this.A.getRowPointers() != A.getRowPointers()
+                || this.A.getColumnIndices() != A.getColumnIndices()) {
+            PA = reordering.permute(A);
+            this.A = A;
+
+            int[] rowptr = A.getRowPointers(), colidx = A.getColumnIndices();
+            int[] prowptr = PA.getRowPointers(), pcolidx = PA
+                    .getColumnIndices();
+            int[] pinv = new int[perm.length];
+            for (int k = 0; k < perm.length; ++k)
+                pinv[perm[k]] = k;
+            map = new int[rowptr[perm.length]];
+            for (int r = 0; r < perm.length; ++r) {
+                int i = pinv[r];
+                for (int p = rowptr[r]; p < rowptr[r + 1]; ++p)
+                    map[p] = java.util.Arrays.binarySearch(pcolidx,
+                            prowptr[i], prowptr[i + 1], pinv[colidx[p]]);
+            }
+            return;
+        }
+
+        double[] data = A.getData(), pdata = PA.getData();
+        for (int p = 0; p < map.length; ++p)
+            pdata[map[p]] = data[p];
+    }
+
+    /**
+     * Solves the given problem in the reordered numbering
+     *
+     * @param A
+     *            Matrix of the problem. Must be a <code>CompRowMatrix</code>
+     */
+    public Vector solve(Matrix A, Vector b, Vector x)
+            throws IterativeSolverNotConvergedException {
+        if (!(A instanceof CompRowMatrix))
+            throw new IllegalArgumentException("A is not a CompRowMatrix");
+        if (b.size() != perm.length || x.size() != perm.length)
+            throw new IllegalArgumentException("Vectors are not of size "
+                    + perm.length);
+        update((CompRowMatrix) A);
+
+        double[] bd = pb.getData(), xd = px.getData();
+        for (int k = 0; k < perm.length; ++k) {
+            bd[k] = b.get(perm[k]);
+            xd[k] = x.get(perm[k]);
+        }
+
+        try {
+            solver.solve(PA, pb, px);
+        } finally {
+            for (int k = 0; k < perm.length; ++k)
+                x.set(perm[k], xd[k]);
+        }
+
+        return x;
+    }
+
+    public void setPreconditioner(Preconditioner M) {
+        solver.setPreconditioner(M);
+    }
+
+    public Preconditioner getPreconditioner() {
+        return solver.getPreconditioner();
+    }
+
+    public void setIterationMonitor(IterationMonitor iter) {
+        solver.setIterationMonitor(iter);
+    }
+
+    public IterationMonitor getIterationMonitor() {
+        return solver.getIterationMonitor();
+    }
+
+}
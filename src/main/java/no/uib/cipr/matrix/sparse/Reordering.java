@@ -0,0 +1,455 @@
+package no.uib.cipr.matrix.sparse;
+
+import no.uib.cipr.matrix.BandMatrix;
+import no.uib.cipr.matrix.Matrices;
+import no.uib.cipr.matrix.PermutationMatrix;
+import no.uib.cipr.matrix.UpperSPDBandMatrix;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Symmetric reordering <code>PAP<sup>T</sup></code> of a sparse matrix.
+ * <p>
+ * Orderings are computed from the pattern of <code>A + A<sup>T</sup></code>:
+ * <ul>
+ * <li>{@link #reverseCuthillMcKee(CompRowMatrix)} reduces the bandwidth and
+ * profile, which suits the band solvers
+ * <code>BandLU</code>/<code>BandCholesky</code>.</li>
+ * <li>{@link #approximateMinimumDegree(CompRowMatrix)} reduces the fill of a
+ * sparse factorization.</li>
+ * <li>{@link #nestedDissection(CompRowMatrix)} recursively splits the graph by
+ * level structure separators, ordering the separators last and small parts by
+ * minimum degree. On large two and three dimensional meshes it gives less fill
+ * than minimum degree, and independent subproblems.</li>
+ * </ul>
+ * </p>
+ */
+public class Reordering {
+
+    /**
+     * Parts smaller than this are not dissected any further
+     */
+    private static final int LEAF = 64;
+
+    /**
+     * <code>perm[k]</code> is the original index of row and column
+     * <code>k</code>
+     */
+    private final int[] perm, pinv;
+
+    /**
+     * Constructor for Reordering
+     *
+     * @param perm
+     *            Ordering, where <code>perm[k]</code> is the original index of
+     *            row and column <code>k</code> of the reordered matrix
+     */
+    public Reordering(int[] perm) {
+        this.perm = perm;
+        pinv = new int[perm.length];
+        java.util.Arrays.fill(pinv, -1);
+        for (int k = 0; k < perm.length; ++k) {
+            if (perm[k] < 0 || perm[k] >= perm.length || pinv[perm[k]] != -1)
+                throw new IllegalArgumentException("Not a permutation");
+            pinv[perm[k]] = k;
+        }
+    }
+
+    /**
+     * Reverse Cuthill-McKee ordering, started from a pseudo-peripheral node
+     * of each connected component
+     */
+    public static Reordering reverseCuthillMcKee(CompRowMatrix A) {
+        Graph g = new Graph(A);
+        int n = g.n;
+
+        // Nodes by increasing degree, to start each component from
+        int[] byDegree = new int[n], count = new int[n + 1];
+        for (int i = 0; i < n; ++i)
+            count[g.degree(i) + 1]++;
+        for (int d = 0; d < n; ++d)
+            count[d + 1] += count[d];
+        for (int i = 0; i < n; ++i)
+            byDegree[count[g.degree(i)]++] = i;
+
+        int[] order = new int[n];
+        boolean[] done = new boolean[n];
+        int len = 0;
+        for (int s = 0; s < n; ++s) {
+            if (done[byDegree[s]])
+                continue;
+            int root = g.peripheral(byDegree[s], 0);
+
+            // Breadth first, visiting neighbours by increasing degree
+            int head = len;
+            order[len++] = root;
+            done[root] = true;
+            while (head < len) {
+                int v = order[head++], first = len;
+                for (int p = g.ptr[v]; p < g.ptr[v + 1]; ++p) {
+                    int u = g.idx[p];
+                    if (!done[u]) {
+                        done[u] = true;
+                        int t = len++;
+                        for (; t > first
+                                && g.degree(order[t - 1]) > g.degree(u); --t)
+                            order[t] = order[t - 1];
+                        order[t] = u;
+                    }
+                }
+            }
+        }
+
+        for (int i = 0, j = n - 1; i < j; ++i, --j) {
+            int t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+        }
+        return new Reordering(order);
+    }
+
+    /**
+     * Approximate minimum degree ordering
+     */
+    public static Reordering approximateMinimumDegree(CompRowMatrix A) {
+        Graph g = new Graph(A);
+        return new Reordering(MinimumDegree.order(g.n, g.ptr, g.idx));
+    }
+
+    /**
+     * Nested dissection ordering
+     */
+    public static Reordering nestedDissection(CompRowMatrix A) {
+        Graph g = new Graph(A);
+        int n = g.n;
+        int[] order = new int[n], local = new int[n];
+        int labels = 1;
+
+        // Parts to order, each with its own label and the start of its range
+        // in the ordering
+        Deque<int[]> parts = new ArrayDeque<int[]>();
+        if (n > 0)
+            parts.push(new int[]{0, 0});
+        int[][] nodes = new int[1][];
+        nodes[0] = Matrices.index(0, n);
+
+        while (!parts.isEmpty()) {
+            int[] part = parts.pop();
+            int label = part[0], lo = part[1];
+            int[] set = nodes[label];
+            nodes[label] = null;
+
+            int levels = 0, reached = 0;
+            if (set.length > LEAF) {
+                levels = g.levels(g.peripheral(set[0], label), label);
+                reached = g.size;
+            }
+
+            if (set.length <= LEAF || reached == set.length && levels < 3) {
+                // Minimum degree on the induced subgraph
+                for (int i = 0; i < set.length; ++i)
+                    local[set[i]] = i;
+                int[] ptr = new int[set.length + 1];
+                int[] idx = new int[16];
+                for (int i = 0; i < set.length; ++i) {
+                    int v = set[i];
+                    ptr[i + 1] = ptr[i];
+                    for (int p = g.ptr[v]; p < g.ptr[v + 1]; ++p)
+                        if (g.label[g.idx[p]] == label) {
+                            if (ptr[i + 1] == idx.length)
+                                idx = java.util.Arrays.copyOf(idx,
+                                        2 * idx.length);
+                            idx[ptr[i + 1]++] = local[g.idx[p]];
+                        }
+                }
+                int[] md = MinimumDegree.order(set.length, ptr, idx);
+                for (int k = 0; k < set.length; ++k)
+                    order[lo + k] = set[md[k]];
+                continue;
+            }
+
+            // Split off a whole component, or else cut at the middle level,
+            // keeping in the separator only the nodes adjacent to the far side
+            int m = levels;
+            if (reached == set.length) {
+                int half = set.length / 2;
+                for (m = 1; m < levels - 2 && g.level[m + 1] <= half; ++m)
+                    ;
+            }
+
+            int[] first = new int[set.length], second = new int[set.length];
+            int[] sep = new int[set.length];
+            int nf = 0, ns = 0, nsep = 0;
+            for (int v : set) {
+                int l = g.depth(v);
+                if (l < 0 || l > m)
+                    second[ns++] = v;
+                else if (l < m)
+                    first[nf++] = v;
+                else {
+                    boolean cut = false;
+                    for (int p = g.ptr[v]; p < g.ptr[v + 1] && !cut; ++p)
+                        cut = g.label[g.idx[p]] == label
+                                && g.depth(g.idx[p]) == m + 1;
+                    if (cut)
+                        sep[nsep++] = v;
+                    else
+                        first[nf++] = v;
+                }
+            }
+
+            for (int k = 0; k < nsep; ++k) {
+                order[lo + nf + ns + k] = sep[k];
+                g.label[sep[k]] = -1;
+            }
+            if (labels + 2 > nodes.length)
+                nodes = java.util.Arrays.copyOf(nodes, 2 * nodes.length + 2);
+            if (ns > 0)
+                labels = push(parts, nodes, g.label, labels,
+                        java.util.Arrays.copyOf(second, ns), lo + nf);
+            if (nf > 0)
+                labels = push(parts, nodes, g.label, labels,
+                        java.util.Arrays.copyOf(first, nf), lo);
+        }
+
+        return new Reordering(order);
+    }
+
+    /**
+     * Labels a new part to be ordered from <code>lo</code>
+     *
+     * @return The next free label
+     */
+    private static int push(Deque<int[]> parts, int[][] nodes, int[] label,
+            int labels, int[] part, int lo) {
+        for (int v : part)
+            label[v] = labels;
+        nodes[labels] = part;
+        parts.push(new int[]{labels, lo});
+        return labels + 1;
+    }
+
+    /**
+     * Returns the ordering, where <code>perm[k]</code> is the original index
+     * of row and column <code>k</code> of the reordered matrix
+     */
+    public int[] getPermutation() {
+        return perm;
+    }
+
+    /**
+     * Returns <code>P</code>, so that <code>Px</code> is <code>x</code> in the
+     * new ordering, and <code>P<sup>T</sup>y</code> returns to the original
+     */
+    public PermutationMatrix getPermutationMatrix() {
+        return new PermutationMatrix(perm.clone());
+    }
+
+    private void check(CompRowMatrix A) {
+        if (A.numRows() != perm.length || A.numColumns() != perm.length)
+            throw new IllegalArgumentException("A is not " + perm.length
+                    + " x " + perm.length);
+    }
+
+    /**
+     * Returns the symmetrically permuted matrix <code>PAP<sup>T</sup></code>
+     */
+    public CompRowMatrix permute(CompRowMatrix A) {
+        check(A);
+        int n = perm.length;
+        int[] rowptr = A.getRowPointers(), colidx = A.getColumnIndices();
+        double[] data = A.getData();
+
+        int[][] nz = new int[n][];
+        for (int i = 0; i < n; ++i) {
+            int r = perm[i];
+            nz[i] = new int[rowptr[r + 1] - rowptr[r]];
+            for (int k = rowptr[r]; k < rowptr[r + 1]; ++k)
+                nz[i][k - rowptr[r]] = pinv[colidx[k]];
+        }
+
+        CompRowMatrix B = new CompRowMatrix(n, n, nz);
+        for (int i = 0; i < n; ++i) {
+            int r = perm[i];
+            for (int k = rowptr[r]; k < rowptr[r + 1]; ++k)
+                B.set(i, pinv[colidx[k]], data[k]);
+        }
+        return B;
+    }
+
+    /**
+     * Number of diagonals below the main diagonal of the permuted matrix
+     */
+    public int getNumSubDiagonals(CompRowMatrix A) {
+        return bandwidth(A, true);
+    }
+
+    /**
+     * Number of diagonals above the main diagonal of the permuted matrix
+     */
+    public int getNumSuperDiagonals(CompRowMatrix A) {
+        return bandwidth(A, false);
+    }
+
+    private int bandwidth(CompRowMatrix A, boolean lower) {
+        check(A);
+        int[] rowptr = A.getRowPointers(), colidx = A.getColumnIndices();
+        int k = 0;
+        for (int r = 0; r < perm.length; ++r)
+            for (int p = rowptr[r]; p < rowptr[r + 1]; ++p) {
+                int d = pinv[r] - pinv[colidx[p]];
+                k = Math.max(k, lower ? d : -d);
+            }
+        return k;
+    }
+
+    /**
+     * Returns the permuted matrix in band storage. Worthwhile when its
+     * bandwidth, as given by {@link #getNumSubDiagonals(CompRowMatrix)} and
+     * {@link #getNumSuperDiagonals(CompRowMatrix)}, is small
+     */
+    public BandMatrix toBandMatrix(CompRowMatrix A) {
+        CompRowMatrix B = permute(A);
+        return new BandMatrix(B, getNumSubDiagonals(A),
+                getNumSuperDiagonals(A));
+    }
+
+    /**
+     * Returns the permuted symmetric positive definite matrix in band
+     * storage. Only the upper triangular part of the permuted matrix is
+     * copied
+     */
+    public UpperSPDBandMatrix toUpperSPDBandMatrix(CompRowMatrix A) {
+        CompRowMatrix B = permute(A);
+        return new UpperSPDBandMatrix(B, Math.max(getNumSubDiagonals(A),
+                getNumSuperDiagonals(A)));
+    }
+
+    /**
+     * Symmetric adjacency structure without self loops, with breadth first
+     * level structures restricted to nodes of one label
+     */
+    private static class Graph {
+
+        final int n;
+
+        final int[] ptr, idx, label;
+
+        /**
+         * Nodes in breadth first order, the start of each level in it, and
+         * the level of each node when its stamp is current
+         */
+        final int[] queue, level, depth, stamp;
+
+        int size, tick;
+
+        Graph(CompRowMatrix A) {
+            if (!A.isSquare())
+                throw new IllegalArgumentException("!A.isSquare()");
+            n = A.numRows();
+            int[] rowptr = A.getRowPointers(), colidx = A.getColumnIndices();
+
+            int[] count = new int[n + 1];
+            for (int r = 0; r < n; ++r)
+                for (int p = rowptr[r]; p < rowptr[r + 1]; ++p)
+                    if (colidx[p] != r) {
+                        count[r + 1]++;
+                        count[colidx[p] + 1]++;
+                    }
+            for (int i = 0; i < n; ++i)
+                count[i + 1] += count[i];
+            int[] all = new int[count[n]], pos = java.util.Arrays.copyOf(
+                    count, n);
+            for (int r = 0; r < n; ++r)
+                for (int p = rowptr[r]; p < rowptr[r + 1]; ++p)
+                    if (colidx[p] != r) {
+                        all[pos[r]++] = colidx[p];
+                        all[pos[colidx[p]]++] = r;
+                    }
+
+            // Remove the duplicates of symmetric entries
+            ptr = new int[n + 1];
+            int len = 0;
+            for (int i = 0; i < n; ++i) {
+                java.util.Arrays.sort(all, count[i], count[i + 1]);
+                for (int p = count[i]; p < count[i + 1]; ++p)
+                    if (p == count[i] || all[p] != all[p - 1])
+                        all[len++] = all[p];
+                ptr[i + 1] = len;
+            }
+            idx = java.util.Arrays.copyOf(all, len);
+
+            label = new int[n];
+            queue = new int[n];
+            level = new int[n + 1];
+            depth = new int[n];
+            stamp = new int[n];
+        }
+
+        int degree(int i) {
+            return ptr[i + 1] - ptr[i];
+        }
+
+        /**
+         * Level of a node in the last level structure, or -1 if not reached
+         */
+        int depth(int i) {
+            return stamp[i] == tick ? depth[i] : -1;
+        }
+
+        /**
+         * Level structure rooted at the given node
+         *
+         * @return Number of levels
+         */
+        int levels(int root, int lab) {
+            tick++;
+            size = 0;
+            queue[size++] = root;
+            stamp[root] = tick;
+            depth[root] = 0;
+            int levels = 0, head = 0;
+            while (head < size) {
+                level[levels++] = head;
+                int end = size;
+                for (; head < end; ++head) {
+                    int v = queue[head];
+                    for (int p = ptr[v]; p < ptr[v + 1]; ++p) {
+                        int u = idx[p];
+                        if (stamp[u] != tick && label[u] == lab) {
+                            stamp[u] = tick;
+                            depth[u] = levels;
+                            queue[size++] = u;
+                        }
+                    }
+                }
+            }
+            level[levels] = size;
+            return levels;
+        }
+
+        /**
+         * Pseudo-peripheral node by the algorithm of Gibbs, Poole and
+         * Stockmeyer as modified by George and Liu. Leaves the level structure
+         * of the returned node
+         */
+        int peripheral(int start, int lab) {
+            int root = start, e = levels(root, lab);
+            while (true) {
+                int x = queue[level[e - 1]];
+                for (int p = level[e - 1]; p < level[e]; ++p)
+                    if (degree(queue[p]) < degree(x))
+                        x = queue[p];
+                int ex = levels(x, lab);
+                if (ex <= e) {
+                    levels(root, lab);
+                    return root;
+                }
+                root = x;
+                e = ex;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,588 @@
+package no.uib.cipr.matrix.sparse;
+
+import no.uib.cipr.matrix.AbstractMatrix;
+import no.uib.cipr.matrix.Matrix;
+import no.uib.cipr.matrix.MatrixEntry;
+import no.uib.cipr.matrix.Vector;
+import no.uib.cipr.matrix.VectorEntry;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Per-phase timings and counters of iterative solvers and preconditioners.
+ * <p>
+ * Metrics are collected by wrapping the objects to measure with the
+ * <code>instrument</code> methods, so solvers and preconditioners which are
+ * not wrapped run exactly as before, at no cost. For a full breakdown, wrap
+ * the solver, create it with a wrapped template vector so its work vectors
+ * are measured too, and wrap preconditioners before setting them up:
+ * </p>
+ *
+ * <pre>
+ * SolverMetrics metrics = new SolverMetrics();
+ * Preconditioner M = metrics.instrument(new ILU(A.copy()));
+ * M.setMatrix(A);
+ * IterativeSolver solver = metrics.instrument(new CG(metrics.instrument(x)));
+ * solver.setPreconditioner(M);
+ * solver.solve(A, b, x);
+ * Map&lt;Phase, Counters&gt; snapshot = metrics.snapshot();
+ * </pre>
+ * <p>
+ * Each phase records wall time, calls, estimated flops and memory traffic,
+ * and the bytes allocated by the calling thread where the JVM can tell.
+ * Flops and bytes of preconditioner applications are not known in general,
+ * and are not estimated. Phases do not overlap, except {@link Phase#SOLVE}
+ * which contains all the others recorded during a solve.
+ * </p>
+ */
+public class SolverMetrics {
+
+    /**
+     * Measured phases
+     */
+    public enum Phase {
+
+        /**
+         * Complete solves
+         */
+        SOLVE,
+
+        /**
+         * Matrix-vector products
+         */
+        SPMV,
+
+        /**
+         * Transpose matrix-vector products
+         */
+        TRANS_SPMV,
+
+        /**
+         * Preconditioner applications
+         */
+        PRECONDITIONER,
+
+        /**
+         * Transpose preconditioner applications
+         */
+        TRANS_PRECONDITIONER,
+
+        /**
+         * Preconditioner setup, such as incomplete factorizations
+         */
+        SETUP,
+
+        /**
+         * Dot products
+         */
+        DOT,
+
+        /**
+         * Vector norms
+         */
+        NORM,
+
+        /**
+         * Vector updates: copies, scalings and additions
+         */
+        UPDATE
+    }
+
+    /**
+     * Accumulated counters of a phase
+     */
+    public static class Counters {
+
+        private final long calls, nanos, flops, bytes, allocated;
+
+        Counters(long[] c) {
+            calls = c[0];
+            nanos = c[1];
+            flops = c[2];
+            bytes = c[3];
+            allocated = c[4];
+        }
+
+        /**
+         * Number of calls
+         */
+        public long getCalls() {
+            return calls;
+        }
+
+        /**
+         * Wall time in nanoseconds
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * Estimated floating point operations
+         */
+        public long getFlops() {
+            return flops;
+        }
+
+        /**
+         * Estimated bytes moved to and from memory
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Bytes allocated, or zero if not supported by the JVM
+         */
+        public long getAllocatedBytes() {
+            return allocated;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("calls=%d, ms=%.3f, flops=%d, bytes=%d, "
+                    + "allocated=%d", calls, nanos * 1e-6, flops, bytes,
+                    allocated);
+        }
+    }
+
+    /**
+     * Thread allocation counter, if available
+     */
+    private static final ThreadMXBean threads;
+
+    static {
+        ThreadMXBean t = null;
+        try {
+            t = ManagementFactory.getThreadMXBean();
+            if (!(t instanceof com.sun.management.ThreadMXBean)
+                    || !((com.sun.management.ThreadMXBean) t)
+                            .isThreadAllocatedMemorySupported())
+                t = null;
+        } catch (Throwable e) {
+            t = null;
+        }
+        threads = t;
+    }
+
+    private final long[][] counters = new long[Phase.values().length][5];
+
+    private static long allocated() {
+        if (threads == null)
+            return 0;
+        return ((com.sun.management.ThreadMXBean) threads)
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private synchronized void record(Phase phase, long start, long alloc,
+            long flops, long bytes) {
+        long[] c = counters[phase.ordinal()];
+        c[0]++;
+        c[1] += System.nanoTime() - start;
+        c[2] += flops;
+        c[3] += bytes;
+        c[4] += allocated() - alloc;
+    }
+
+    /**
+     * Returns the counters of every phase recorded so far
+     */
+    public synchronized Map<Phase, Counters> snapshot() {
+        Map<Phase, Counters> map = new EnumMap<Phase, Counters>(Phase.class);
+        for (Phase phase : Phase.values())
+            map.put(phase, new Counters(counters[phase.ordinal()]));
+        return Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Clears all counters
+     */
+    public synchronized void reset() {
+        for (long[] c : counters)
+            java.util.Arrays.fill(c, 0);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        for (Map.Entry<Phase, Counters> e : snapshot().entrySet())
+            out.append(e.getKey()).append(": ").append(e.getValue())
+                    .append('\n');
+        return out.toString();
+    }
+
+    /**
+     * Returns a solver which records its solves, and wraps the matrices,
+     * vectors and preconditioners it is given. The preconditioner of the
+     * solver is wrapped only during each solve, and the solver is otherwise
+     * left unchanged
+     */
+    public IterativeSolver instrument(IterativeSolver solver) {
+        return new MeteredSolver(solver);
+    }
+
+    /**
+     * Returns a preconditioner recording its setup and applications
+     */
+    public Preconditioner instrument(Preconditioner M) {
+        if (M instanceof MeteredPreconditioner
+                && ((MeteredPreconditioner) M).metrics() == this)
+            return M;
+        return new MeteredPreconditioner(M);
+    }
+
+    /**
+     * Returns a matrix recording its matrix-vector products
+     */
+    public Matrix instrument(Matrix A) {
+        if (A instanceof MeteredMatrix
+                && ((MeteredMatrix) A).metrics() == this)
+            return A;
+        return new MeteredMatrix(A);
+    }
+
+    /**
+     * Returns a vector recording its dot products, norms and updates. Copies
+     * of the vector are recorded as well
+     */
+    public Vector instrument(Vector x) {
+        if (x instanceof MeteredVector
+                && ((MeteredVector) x).metrics() == this)
+            return x;
+        return new MeteredVector(x);
+    }
+
+    private static Vector unwrap(Vector x) {
+        return x instanceof MeteredVector ? ((MeteredVector) x).x : x;
+    }
+
+    private class MeteredSolver implements IterativeSolver {
+
+        final IterativeSolver solver;
+
+        MeteredSolver(IterativeSolver solver) {
+            this.solver = solver;
+        }
+
+        /**
+         * The preconditioner is only instrumented for the duration of the
+         * solve, so that the wrapped solver is left as it was given
+         */
+        public Vector solve(Matrix A, Vector b, Vector x)
+                throws IterativeSolverNotConvergedException {
+            Preconditioner M = solver.getPreconditioner();
+            solver.setPreconditioner(instrument(M));
+            long start = System.nanoTime(), alloc = allocated();
+            try {
+                solver.solve(instrument(A), instrument(b), instrument(x));
+            } finally {
+                record(Phase.SOLVE, start, alloc, 0, 0);
+                solver.setPreconditioner(M);
+            }
+            return x;
+        }
+
+        public void setPreconditioner(Preconditioner M) {
+            solver.setPreconditioner(M);
+        }
+
+        public Preconditioner getPreconditioner() {
+            return solver.getPreconditioner();
+        }
+
+        public void setIterationMonitor(IterationMonitor iter) {
+            solver.setIterationMonitor(iter);
+        }
+
+        public IterationMonitor getIterationMonitor() {
+            return solver.getIterationMonitor();
+        }
+    }
+
+    private class MeteredPreconditioner implements Preconditioner {
+
+        final Preconditioner M;
+
+        MeteredPreconditioner(Preconditioner M) {
+            this.M = M;
+        }
+
+        SolverMetrics metrics() {
+            return SolverMetrics.this;
+        }
+
+        public Vector apply(Vector b, Vector x) {
+            long start = System.nanoTime(), alloc = allocated();
+            M.apply(unwrap(b), unwrap(x));
+            record(Phase.PRECONDITIONER, start, alloc, 0, 0);
+            return x;
+        }
+
+        public Vector transApply(Vector b, Vector x) {
+            long start = System.nanoTime(), alloc = allocated();
+            M.transApply(unwrap(b), unwrap(x));
+            record(Phase.TRANS_PRECONDITIONER, start, alloc, 0, 0);
+            return x;
+        }
+
+        public void setMatrix(Matrix A) {
+            long start = System.nanoTime(), alloc = allocated();
+            M.setMatrix(A instanceof MeteredMatrix ? ((MeteredMatrix) A).A
+                    : A);
+            record(Phase.SETUP, start, alloc, 0, 0);
+        }
+    }
+
+    private class MeteredMatrix extends AbstractMatrix {
+
+        final Matrix A;
+
+        /**
+         * Number of stored entries, or -1 until the first product
+         */
+        private long nnz = -1;
+
+        MeteredMatrix(Matrix A) {
+            super(A);
+            this.A = A;
+        }
+
+        /**
+         * Returns the number of stored entries, from the storage of the
+         * compressed formats, and otherwise counted once by iteration
+         */
+        private long nnz() {
+            if (nnz < 0) {
+                if (A instanceof CompRowMatrix)
+                    nnz = ((CompRowMatrix) A).getData().length;
+                else if (A instanceof CompColMatrix)
+                    nnz = ((CompColMatrix) A).getData().length;
+                else {
+                    long count = 0;
+                    Iterator<MatrixEntry> it = A.iterator();
+                    for (; it.hasNext(); it.next())
+                        count++;
+                    nnz = count;
+                }
+            }
+            return nnz;
+        }
+
+        /**
+         * Returns the start time of a matrix-vector product, having counted
+         * the entries first so that the count is not timed
+         */
+        private long start() {
+            nnz();
+            return System.nanoTime();
+        }
+
+        /**
+         * Records a matrix-vector product, with its estimated flops and bytes
+         */
+        private void record(Phase phase, long start, long alloc) {
+            long nnz = nnz();
+            SolverMetrics.this.record(phase, start, alloc, 2 * nnz, 12 * nnz
+                    + 8L * (numRows + numColumns) + 4L * numRows);
+        }
+
+        SolverMetrics metrics() {
+            return SolverMetrics.this;
+        }
+
+        @Override
+        public double get(int row, int column) {
+            return A.get(row, column);
+        }
+
+        @Override
+        public void set(int row, int column, double value) {
+            A.set(row, column, value);
+        }
+
+        @Override
+        public void add(int row, int column, double value) {
+            A.add(row, column, value);
+        }
+
+        @Override
+        public Iterator<MatrixEntry> iterator() {
+            return A.iterator();
+        }
+
+        @Override
+        public Matrix copy() {
+            return new MeteredMatrix(A.copy());
+        }
+
+        @Override
+        public Vector mult(Vector x, Vector y) {
+            long start = start(), alloc = allocated();
+            A.mult(unwrap(x), unwrap(y));
+            record(Phase.SPMV, start, alloc);
+            return y;
+        }
+
+        @Override
+        public Vector mult(double alpha, Vector x, Vector y) {
+            long start = start(), alloc = allocated();
+            A.mult(alpha, unwrap(x), unwrap(y));
+            record(Phase.SPMV, start, alloc);
+            return y;
+        }
+
+        @Override
+        public Vector multAdd(Vector x, Vector y) {
+            long start = start(), alloc = allocated();
+            A.multAdd(unwrap(x), unwrap(y));
+            record(Phase.SPMV, start, alloc);
+            return y;
+        }
+
+        @Override
+        public Vector multAdd(double alpha, Vector x, Vector y) {
+            long start = start(), alloc = allocated();
+            A.multAdd(alpha, unwrap(x), unwrap(y));
+            record(Phase.SPMV, start, alloc);
+            return y;
+        }
+
+        @Override
+        public Vector transMult(Vector x, Vector y) {
+            long start = start(), alloc = allocated();
+            A.transMult(unwrap(x), unwrap(y));
+            record(Phase.TRANS_SPMV, start, alloc);
+            return y;
+        }
+
+        @Override
+        public Vector transMult(double alpha, Vector x, Vector y) {
+            long start = start(), alloc = allocated();
+            A.transMult(alpha, unwrap(x), unwrap(y));
+            record(Phase.TRANS_SPMV, start, alloc);
+            return y;
+        }
+
+        @Override
+        public Vector transMultAdd(Vector x, Vector y) {
+            long start = start(), alloc = allocated();
+            A.transMultAdd(unwrap(x), unwrap(y));
+            record(Phase.TRANS_SPMV, start, alloc);
+            return y;
+        }
+
+        @Override
+        public Vector transMultAdd(double alpha, Vector x, Vector y) {
+            long start = start(), alloc = allocated();
+            A.transMultAdd(alpha, unwrap(x), unwrap(y));
+            record(Phase.TRANS_SPMV, start, alloc);
+            return y;
+        }
+    }
+
+    private class MeteredVector implements Vector {
+
+        private static final long serialVersionUID = 1L;
+
+        final Vector x;
+
+        MeteredVector(Vector x) {
+            this.x = x;
+        }
+
+        SolverMetrics metrics() {
+            return SolverMetrics.this;
+        }
+
+        public int size() {
+            return x.size();
+        }
+
+        public void set(int index, double value) {
+            x.set(index, value);
+        }
+
+        public void add(int index, double value) {
+            x.add(index, value);
+        }
+
+        public double get(int index) {
+            return x.get(index);
+        }
+
+        public Vector copy() {
+            return new MeteredVector(x.copy());
+        }
+
+        public Vector zero() {
+            long start = System.nanoTime(), alloc = allocated();
+            x.zero();
+            record(Phase.UPDATE, start, alloc, 0, 8L * x.size());
+            return this;
+        }
+
+        public Vector scale(double alpha) {
+            long start = System.nanoTime(), alloc = allocated();
+            x.scale(alpha);
+            record(Phase.UPDATE, start, alloc, x.size(), 16L * x.size());
+            return this;
+        }
+
+        public Vector set(Vector y) {
+            long start = System.nanoTime(), alloc = allocated();
+            x.set(unwrap(y));
+            record(Phase.UPDATE, start, alloc, 0, 16L * x.size());
+            return this;
+        }
+
+        public Vector set(double alpha, Vector y) {
+            long start = System.nanoTime(), alloc = allocated();
+            x.set(alpha, unwrap(y));
+            record(Phase.UPDATE, start, alloc, x.size(), 16L * x.size());
+            return this;
+        }
+
+        public Vector add(Vector y) {
+            long start = System.nanoTime(), alloc = allocated();
+            x.add(unwrap(y));
+            record(Phase.UPDATE, start, alloc, x.size(), 24L * x.size());
+            return this;
+        }
+
+        public Vector add(double alpha, Vector y) {
+            long start = System.nanoTime(), alloc = allocated();
+            x.add(alpha, unwrap(y));
+            record(Phase.UPDATE, start, alloc, 2L * x.size(), 24L * x.size());
+            return this;
+        }
+
+        public double dot(Vector y) {
+            long start = System.nanoTime(), alloc = allocated();
+            double d = x.dot(unwrap(y));
+            record(Phase.DOT, start, alloc, 2L * x.size(), 16L * x.size());
+            return d;
+        }
+
+        public double norm(Norm type) {
+            long start = System.nanoTime(), alloc = allocated();
+            double d = x.norm(type);
+            record(Phase.NORM, start, alloc, 2L * x.size(), 8L * x.size());
+            return d;
+        }
+
+        public Iterator<VectorEntry> iterator() {
+            return x.iterator();
+        }
+
+        @Override
+        public String toString() {
+            return x.toString();
+        }
+    }
+
+}
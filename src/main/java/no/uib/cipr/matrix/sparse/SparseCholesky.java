@@ -0,0 +1,549 @@
+package no.uib.cipr.matrix.sparse;
+
+import no.uib.cipr.matrix.DenseMatrix;
+import no.uib.cipr.matrix.DenseVector;
+import no.uib.cipr.matrix.JavaBLAS;
+import no.uib.cipr.matrix.Matrix;
+import no.uib.cipr.matrix.MatrixEntry;
+import no.uib.cipr.matrix.MatrixNotSPDException;
+import no.uib.cipr.matrix.Vector;
+
+import com.github.fommil.netlib.BLAS;
+import com.github.fommil.netlib.LAPACK;
+import org.netlib.util.intW;
+
+/**
+ * Sparse supernodal Cholesky decomposition <code>PAP<sup>T</sup> = LL<sup>T</sup></code>
+ * of a symmetric, positive definite matrix. Only the upper triangular part of
+ * the matrix is referenced.
+ * <p>
+ * Construction performs the symbolic analysis: a fill reducing ordering
+ * (approximate minimum degree unless one is given), the elimination tree and
+ * its postorder, the column counts of <code>L</code>, and the fundamental
+ * supernodes with their row structures. {@link #factor(Matrix)} then computes
+ * the numerical factor by a left-looking supernodal method, where every update
+ * and factorization of a supernode is a dense BLAS-3 or LAPACK call. Matrices
+ * with the same sparsity pattern can be factored repeatedly without repeating
+ * the analysis.
+ * </p>
+ */
+public class SparseCholesky {
+
+    /**
+     * Matrix size
+     */
+    private final int n;
+
+    /**
+     * Fill reducing ordering and its inverse. <code>perm[k]</code> is the
+     * original index of row and column <code>k</code> of the factor
+     */
+    private final int[] perm, pinv;
+
+    /**
+     * Number of supernodes, the supernode of each column, and the first
+     * column of each supernode
+     */
+    private int ns;
+
+    private int[] supernode, first;
+
+    /**
+     * Row structure of each supernode, sorted, in the permuted numbering
+     */
+    private int[] Sp, Si;
+
+    /**
+     * Dense column major storage of each supernode, starting at
+     * <code>Lp[s]</code>, with leading dimension the length of its structure
+     */
+    private int[] Lp;
+
+    private double[] Lx;
+
+    /**
+     * Number of nonzeros in the factor
+     */
+    private long nnz;
+
+    private boolean factored, notspd;
+
+    /**
+     * Analyses the sparsity pattern of the given matrix, using an approximate
+     * minimum degree ordering
+     *
+     * @param A
+     *            Symmetric matrix. Only the pattern of its upper triangular
+     *            part is used
+     */
+    public SparseCholesky(Matrix A) {
+        this(A, null);
+    }
+
+    /**
+     * Analyses the sparsity pattern of the given matrix
+     *
+     * @param A
+     *            Symmetric matrix. Only the pattern of its upper triangular
+     *            part is used
+     * @param perm
+     *            Ordering to use, where <code>perm[k]</code> is the index of
+     *            the <code>k</code>th pivot. If null, an approximate minimum
+     *            degree ordering is computed
+     */
+    public SparseCholesky(Matrix A, int[] perm) {
+        if (!A.isSquare())
+            throw new IllegalArgumentException("!A.isSquare()");
+        n = A.numRows();
+
+        // Off-diagonal upper triangular pattern as coordinates
+        int[] ri = new int[16], ci = new int[16];
+        int nz = 0;
+        for (MatrixEntry e : A)
+            if (e.row() < e.column()) {
+                if (nz == ri.length) {
+                    ri = java.util.Arrays.copyOf(ri, 2 * nz);
+                    ci = java.util.Arrays.copyOf(ci, 2 * nz);
+                }
+                ri[nz] = e.row();
+                ci[nz++] = e.column();
+            }
+
+        if (perm == null) {
+            int[][] sym = symmetric(n, ri, ci, nz);
+            perm = MinimumDegree.order(n, sym[0], sym[1]);
+        } else if (perm.length != n)
+            throw new IllegalArgumentException("perm.length != n");
+
+        int[] pinv = inverse(perm);
+
+        // Postorder the elimination tree, which leaves the fill unchanged
+        // but makes every supernode a contiguous range of columns
+        int[][] upper = permuted(n, ri, ci, nz, pinv);
+        int[] post = postorder(n, etree(n, upper[0], upper[1]));
+        int[] composed = new int[n];
+        for (int k = 0; k < n; ++k)
+            composed[k] = perm[post[k]];
+        this.perm = composed;
+        this.pinv = inverse(composed);
+
+        upper = permuted(n, ri, ci, nz, this.pinv);
+        analyse(upper[0], upper[1]);
+    }
+
+    /**
+     * Analyses and factors the given matrix, using an approximate minimum
+     * degree ordering
+     *
+     * @param A
+     *            Symmetric positive definite matrix. Only the upper
+     *            triangular part is referenced. Not modified
+     * @return The decomposition
+     */
+    public static SparseCholesky factorize(Matrix A) {
+        return new SparseCholesky(A).factor(A);
+    }
+
+    private static int[] inverse(int[] perm) {
+        int[] pinv = new int[perm.length];
+        java.util.Arrays.fill(pinv, -1);
+        for (int k = 0; k < perm.length; ++k) {
+            if (perm[k] < 0 || perm[k] >= perm.length || pinv[perm[k]] != -1)
+                throw new IllegalArgumentException("Not a permutation");
+            pinv[perm[k]] = k;
+        }
+        return pinv;
+    }
+
+    /**
+     * Both triangles of an upper triangular coordinate pattern, compressed
+     */
+    private static int[][] symmetric(int n, int[] ri, int[] ci, int nz) {
+        int[] ptr = new int[n + 1];
+        for (int k = 0; k < nz; ++k) {
+            ptr[ri[k] + 1]++;
+            ptr[ci[k] + 1]++;
+        }
+        for (int i = 0; i < n; ++i)
+            ptr[i + 1] += ptr[i];
+        int[] idx = new int[ptr[n]], pos = java.util.Arrays.copyOf(ptr, n);
+        for (int k = 0; k < nz; ++k) {
+            idx[pos[ri[k]]++] = ci[k];
+            idx[pos[ci[k]]++] = ri[k];
+        }
+        return new int[][]{ptr, idx};
+    }
+
+    /**
+     * Compressed columns of the permuted upper triangular pattern, without
+     * the diagonal
+     */
+    private static int[][] permuted(int n, int[] ri, int[] ci, int nz,
+            int[] pinv) {
+        int[] ptr = new int[n + 1];
+        for (int k = 0; k < nz; ++k)
+            ptr[Math.max(pinv[ri[k]], pinv[ci[k]]) + 1]++;
+        for (int i = 0; i < n; ++i)
+            ptr[i + 1] += ptr[i];
+        int[] idx = new int[ptr[n]], pos = java.util.Arrays.copyOf(ptr, n);
+        for (int k = 0; k < nz; ++k) {
+            int a = pinv[ri[k]], b = pinv[ci[k]];
+            idx[pos[Math.max(a, b)]++] = Math.min(a, b);
+        }
+        return new int[][]{ptr, idx};
+    }
+
+    /**
+     * Elimination tree from the columns of an upper triangular pattern
+     */
+    private static int[] etree(int n, int[] ptr, int[] idx) {
+        int[] parent = new int[n], ancestor = new int[n];
+        for (int k = 0; k < n; ++k) {
+            parent[k] = -1;
+            ancestor[k] = -1;
+            for (int p = ptr[k]; p < ptr[k + 1]; ++p) {
+                int i = idx[p];
+                while (i != -1 && i < k) {
+                    int next = ancestor[i];
+                    ancestor[i] = k;
+                    if (next == -1)
+                        parent[i] = k;
+                    i = next;
+                }
+            }
+        }
+        return parent;
+    }
+
+    /**
+     * Depth first postorder of a forest
+     */
+    private static int[] postorder(int n, int[] parent) {
+        int[] head = new int[n], next = new int[n], stack = new int[n], post = new int[n];
+        java.util.Arrays.fill(head, -1);
+        for (int j = n - 1; j >= 0; --j)
+            if (parent[j] != -1) {
+                next[j] = head[parent[j]];
+                head[parent[j]] = j;
+            }
+        int k = 0;
+        for (int j = 0; j < n; ++j) {
+            if (parent[j] != -1)
+                continue;
+            int top = 0;
+            stack[0] = j;
+            while (top >= 0) {
+                int p = stack[top], i = head[p];
+                if (i == -1) {
+                    top--;
+                    post[k++] = p;
+                } else {
+                    head[p] = next[i];
+                    stack[++top] = i;
+                }
+            }
+        }
+        return post;
+    }
+
+    /**
+     * Symbolic factorization of a postordered upper triangular pattern
+     */
+    private void analyse(int[] ptr, int[] idx) {
+        int[] parent = etree(n, ptr, idx);
+
+        // Column counts, from the row subtrees of the elimination tree
+        int[] count = new int[n], mark = new int[n], children = new int[n];
+        java.util.Arrays.fill(mark, -1);
+        for (int k = 0; k < n; ++k) {
+            mark[k] = k;
+            count[k]++;
+            for (int p = ptr[k]; p < ptr[k + 1]; ++p)
+                for (int j = idx[p]; mark[j] != k; j = parent[j]) {
+                    count[j]++;
+                    mark[j] = k;
+                }
+            if (parent[k] != -1)
+                children[parent[k]]++;
+        }
+
+        // Fundamental supernodes
+        supernode = new int[n];
+        int[] firstCol = new int[n + 1];
+        ns = 0;
+        for (int j = 0; j < n; ++j) {
+            if (j > 0 && parent[j - 1] == j && count[j - 1] == count[j] + 1
+                    && children[j] == 1)
+                supernode[j] = ns - 1;
+            else {
+                firstCol[ns] = j;
+                supernode[j] = ns++;
+            }
+        }
+        firstCol[ns] = n;
+        first = java.util.Arrays.copyOf(firstCol, ns + 1);
+
+        // Lower triangular columns of the pattern
+        int[] lptr = new int[n + 1];
+        for (int p = 0; p < ptr[n]; ++p)
+            lptr[idx[p] + 1]++;
+        for (int i = 0; i < n; ++i)
+            lptr[i + 1] += lptr[i];
+        int[] lidx = new int[ptr[n]], pos = java.util.Arrays.copyOf(lptr, n);
+        for (int k = 0; k < n; ++k)
+            for (int p = ptr[k]; p < ptr[k + 1]; ++p)
+                lidx[pos[idx[p]]++] = k;
+
+        // Supernodal children, by the parent of the last column
+        int[] childHead = new int[ns], childNext = new int[ns];
+        java.util.Arrays.fill(childHead, -1);
+        for (int s = ns - 1; s >= 0; --s) {
+            int par = parent[first[s + 1] - 1];
+            if (par != -1) {
+                childNext[s] = childHead[supernode[par]];
+                childHead[supernode[par]] = s;
+            }
+        }
+
+        // Row structures, children before parents
+        Sp = new int[ns + 1];
+        for (int s = 0; s < ns; ++s)
+            Sp[s + 1] = Sp[s] + count[first[s]];
+        Si = new int[Sp[ns]];
+        java.util.Arrays.fill(mark, -1);
+        for (int s = 0; s < ns; ++s) {
+            int f = first[s], l = first[s + 1], len = Sp[s];
+            for (int j = f; j < l; ++j)
+                Si[len++] = j;
+            int below = len;
+            for (int j = f; j < l; ++j)
+                for (int p = lptr[j]; p < lptr[j + 1]; ++p) {
+                    int r = lidx[p];
+                    if (r >= l && mark[r] != s) {
+                        mark[r] = s;
+                        Si[len++] = r;
+                    }
+                }
+            for (int c = childHead[s]; c != -1; c = childNext[c])
+                for (int p = Sp[c]; p < Sp[c + 1]; ++p) {
+                    int r = Si[p];
+                    if (r >= l && mark[r] != s) {
+                        mark[r] = s;
+                        Si[len++] = r;
+                    }
+                }
+            java.util.Arrays.sort(Si, below, len);
+            if (len != Sp[s + 1])
+                throw new IllegalStateException("Inconsistent column counts");
+        }
+
+        // Dense storage of the supernodes
+        Lp = new int[ns + 1];
+        long size = 0;
+        nnz = 0;
+        for (int s = 0; s < ns; ++s) {
+            long nr = Sp[s + 1] - Sp[s], nc = first[s + 1] - first[s];
+            size += nr * nc;
+            nnz += nc * nr - nc * (nc - 1) / 2;
+            if (size > Integer.MAX_VALUE - 8)
+                throw new IllegalArgumentException(
+                        "Factor too large for a Java array");
+            Lp[s + 1] = (int) size;
+        }
+        Lx = new double[(int) size];
+    }
+
+    /**
+     * Computes the numerical factorization
+     *
+     * @param A
+     *            Symmetric positive definite matrix with the sparsity pattern
+     *            given on construction, or a subset of it. Only the upper
+     *            triangular part is referenced. Not modified
+     * @return The decomposition
+     */
+    public SparseCholesky factor(Matrix A) {
+        if (A.numRows() != n || A.numColumns() != n)
+            throw new IllegalArgumentException("A is not " + n + " x " + n);
+
+        factored = false;
+        notspd = false;
+        java.util.Arrays.fill(Lx, 0);
+
+        // Scatter the matrix into the supernodes
+        for (MatrixEntry e : A) {
+            if (e.row() > e.column())
+                continue;
+            int a = pinv[e.row()], b = pinv[e.column()];
+            int r = Math.max(a, b), c = Math.min(a, b), s = supernode[c];
+            int p = java.util.Arrays.binarySearch(Si, Sp[s], Sp[s + 1], r);
+            if (p < 0)
+                throw new IllegalArgumentException("Entry (" + e.row() + ", "
+                        + e.column() + ") is not in the analysed pattern");
+            Lx[Lp[s] + p - Sp[s] + (c - first[s]) * (Sp[s + 1] - Sp[s])] += e
+                    .get();
+        }
+
+        // Supernodes waiting to update each supernode, and the next row of
+        // each which is still to be applied
+        int[] head = new int[ns], next = new int[ns], row = new int[ns];
+        java.util.Arrays.fill(head, -1);
+        int[] map = new int[n];
+        double[] W = new double[0];
+
+        BLAS blas = JavaBLAS.getInstance();
+        intW info = new intW(0);
+
+        for (int s = 0; s < ns; ++s) {
+            int f = first[s], l = first[s + 1], nc = l - f;
+            int nr = Sp[s + 1] - Sp[s], off = Lp[s];
+            for (int p = Sp[s]; p < Sp[s + 1]; ++p)
+                map[Si[p]] = p - Sp[s];
+
+            // Updates from descendants: L(s) -= Ld * Ld(s rows)'
+            for (int d = head[s]; d != -1;) {
+                int nextd = next[d];
+                int dnc = first[d + 1] - first[d], dnr = Sp[d + 1] - Sp[d];
+                int p = row[d], q = p;
+                while (q < dnr && Si[Sp[d] + q] < l)
+                    q++;
+                int m = dnr - p, k = q - p;
+                if (W.length < m * k)
+                    W = new double[m * k];
+                blas.dgemm("N", "T", m, k, dnc, 1, Lx, Lp[d] + p, dnr, Lx,
+                        Lp[d] + p, dnr, 0, W, 0, m);
+                for (int j = 0; j < k; ++j) {
+                    int col = (Si[Sp[d] + p + j] - f) * nr;
+                    for (int i = j; i < m; ++i)
+                        Lx[off + col + map[Si[Sp[d] + p + i]]] -= W[i + j * m];
+                }
+
+                row[d] = q;
+                if (q < dnr) {
+                    int t = supernode[Si[Sp[d] + q]];
+                    next[d] = head[t];
+                    head[t] = d;
+                }
+                d = nextd;
+            }
+
+            // Factor the diagonal block, and solve for the rows below it
+            LAPACK.getInstance().dpotrf("L", nc, Lx, off, nr, info);
+            if (info.val > 0) {
+                notspd = true;
+                return this;
+            } else if (info.val < 0)
+                throw new IllegalArgumentException();
+            if (nr > nc) {
+                BLAS.getInstance().dtrsm("R", "L", "T", "N", nr - nc, nc, 1,
+                        Lx, off, nr, Lx, off + nc, nr);
+                row[s] = nc;
+                int t = supernode[Si[Sp[s] + nc]];
+                next[s] = head[t];
+                head[t] = s;
+            }
+        }
+
+        factored = true;
+        return this;
+    }
+
+    /**
+     * Returns true if the matrix decomposed is symmetrical, positive definite
+     */
+    public boolean isSPD() {
+        return !notspd;
+    }
+
+    /**
+     * Returns the fill reducing ordering, where <code>perm[k]</code> is the
+     * original index of row and column <code>k</code> of the factor
+     */
+    public int[] getPermutation() {
+        return perm;
+    }
+
+    /**
+     * Returns the number of nonzeros in the factor <code>L</code>
+     */
+    public long getNonZeros() {
+        return nnz;
+    }
+
+    /**
+     * Returns the number of supernodes
+     */
+    public int getNumSupernodes() {
+        return ns;
+    }
+
+    /**
+     * Solves for <code>B</code>, overwriting it on return
+     */
+    public DenseMatrix solve(DenseMatrix B) throws MatrixNotSPDException {
+        if (notspd)
+            throw new MatrixNotSPDException();
+        if (!factored)
+            throw new IllegalStateException("No matrix has been factored");
+        if (B.numRows() != n)
+            throw new IllegalArgumentException("B.numRows() != n");
+
+        int nrhs = B.numColumns();
+        double[] Bd = B.getData(), X = new double[n * nrhs];
+        for (int c = 0; c < nrhs; ++c)
+            for (int k = 0; k < n; ++k)
+                X[k + c * n] = Bd[perm[k] + c * n];
+
+        int maxBelow = 0;
+        for (int s = 0; s < ns; ++s)
+            maxBelow = Math.max(maxBelow, Sp[s + 1] - Sp[s] - first[s + 1]
+                    + first[s]);
+        double[] T = new double[maxBelow * nrhs];
+        BLAS blas = BLAS.getInstance(), gemm = JavaBLAS.getInstance();
+
+        // L y = b
+        for (int s = 0; s < ns; ++s) {
+            int f = first[s], nc = first[s + 1] - f, nr = Sp[s + 1] - Sp[s];
+            int nb = nr - nc, off = Lp[s];
+            blas.dtrsm("L", "L", "N", "N", nc, nrhs, 1, Lx, off, nr, X, f, n);
+            if (nb > 0) {
+                gemm.dgemm("N", "N", nb, nrhs, nc, 1, Lx, off + nc, nr, X, f,
+                        n, 0, T, 0, nb);
+                for (int c = 0; c < nrhs; ++c)
+                    for (int i = 0; i < nb; ++i)
+                        X[Si[Sp[s] + nc + i] + c * n] -= T[i + c * nb];
+            }
+        }
+
+        // L' x = y
+        for (int s = ns - 1; s >= 0; --s) {
+            int f = first[s], nc = first[s + 1] - f, nr = Sp[s + 1] - Sp[s];
+            int nb = nr - nc, off = Lp[s];
+            if (nb > 0) {
+                for (int c = 0; c < nrhs; ++c)
+                    for (int i = 0; i < nb; ++i)
+                        T[i + c * nb] = X[Si[Sp[s] + nc + i] + c * n];
+                gemm.dgemm("T", "N", nc, nrhs, nb, -1, Lx, off + nc, nr, T, 0,
+                        nb, 1, X, f, n);
+            }
+            blas.dtrsm("L", "L", "T", "N", nc, nrhs, 1, Lx, off, nr, X, f, n);
+        }
+
+        for (int c = 0; c < nrhs; ++c)
+            for (int k = 0; k < n; ++k)
+                Bd[perm[k] + c * n] = X[k + c * n];
+        return B;
+    }
+
+    /**
+     * Solves <code>Ax = b</code>
+     *
+     * @return x
+     */
+    public Vector solve(Vector b, Vector x) throws MatrixNotSPDException {
+        DenseVector y = new DenseVector(b);
+        solve(new DenseMatrix(y, false));
+        return x.set(y);
+    }
+
+}
@@ -0,0 +1,503 @@
+package no.uib.cipr.matrix.sparse;
+
+import no.uib.cipr.matrix.DenseMatrix;
+import no.uib.cipr.matrix.DenseVector;
+import no.uib.cipr.matrix.Matrix;
+import no.uib.cipr.matrix.MatrixSingularException;
+import no.uib.cipr.matrix.Vector;
+
+/**
+ * Sparse LU decomposition <code>PAQ = LU</code> of a square matrix in
+ * compressed column storage, by the left-looking method of Gilbert and
+ * Peierls.
+ * <p>
+ * Construction performs the symbolic analysis: a fill reducing column
+ * ordering <code>Q</code> (COLAMD-like unless one is given). Each column of
+ * the factors is then computed by a sparse triangular solve with the columns
+ * of <code>L</code> already found, visiting only the nonzeros reached by a
+ * depth first search, so {@link #factor(CompColMatrix)} costs time
+ * proportional to the arithmetic done. Rows are chosen by threshold partial
+ * pivoting, which keeps the diagonal whenever it is large enough.
+ * </p>
+ * <p>
+ * Once a matrix has been factored, {@link #refactor(CompColMatrix)} factors
+ * another matrix of the same pattern with the pivots and factor patterns
+ * already found, without any search or pivoting. This is much cheaper, and
+ * suits sequences of matrices with slowly changing values.
+ * </p>
+ */
+public class SparseLU {
+
+    /**
+     * Matrix size
+     */
+    private final int n;
+
+    /**
+     * Pattern of the analysed matrix
+     */
+    private final int[] colptr, rowidx;
+
+    /**
+     * Column ordering, where <code>q[k]</code> is the column factored in step
+     * <code>k</code>
+     */
+    private final int[] q;
+
+    /**
+     * Row pivots, where <code>p[k]</code> is the row chosen in step
+     * <code>k</code>, and the inverse
+     */
+    private int[] p, pinv;
+
+    /**
+     * Columns of the unit lower triangular factor, without the diagonal, and
+     * of the strictly upper triangular part of <code>U</code>. Row indices
+     * are in the pivot numbering, and are ascending for <code>U</code>
+     */
+    private int[] Lp, Li, Up, Ui;
+
+    private double[] Lx, Ux;
+
+    /**
+     * Diagonal of <code>U</code>
+     */
+    private double[] Ud;
+
+    /**
+     * Pivoting threshold
+     */
+    private double tau = 0.1;
+
+    private boolean factored, singular;
+
+    /**
+     * True once the pivots and factor patterns are known
+     */
+    private boolean pivoted;
+
+    /**
+     * Analyses the sparsity pattern of the given matrix, using a COLAMD-like
+     * column ordering
+     *
+     * @param A
+     *            Square matrix. Only its pattern is used
+     */
+    public SparseLU(CompColMatrix A) {
+        this(A, null);
+    }
+
+    /**
+     * Analyses the sparsity pattern of the given matrix
+     *
+     * @param A
+     *            Square matrix. Only its pattern is used
+     * @param q
+     *            Column ordering to use, where <code>q[k]</code> is the
+     *            column factored in step <code>k</code>. If null, a
+     *            COLAMD-like ordering is computed
+     */
+    public SparseLU(CompColMatrix A, int[] q) {
+        if (!A.isSquare())
+            throw new IllegalArgumentException("!A.isSquare()");
+        n = A.numColumns();
+        colptr = A.getColumnPointers().clone();
+        rowidx = java.util.Arrays.copyOf(A.getRowIndices(), colptr[n]);
+
+        if (q == null)
+            q = MinimumDegree.orderColumns(n, n, colptr, rowidx);
+        else if (q.length != n)
+            throw new IllegalArgumentException("q.length != n");
+        boolean[] seen = new boolean[n];
+        for (int j : q) {
+            if (j < 0 || j >= n || seen[j])
+                throw new IllegalArgumentException("Not a permutation");
+            seen[j] = true;
+        }
+        this.q = q;
+    }
+
+    /**
+     * Analyses and factors the given matrix, using a COLAMD-like column
+     * ordering
+     *
+     * @param A
+     *            Square matrix. Converted to compressed column storage if
+     *            necessary. Not modified
+     * @return The decomposition
+     */
+    public static SparseLU factorize(Matrix A) {
+        CompColMatrix C = A instanceof CompColMatrix ? (CompColMatrix) A
+                : new CompColMatrix(A);
+        return new SparseLU(C).factor(C);
+    }
+
+    /**
+     * Sets the pivoting threshold. The diagonal entry of a column is chosen
+     * as pivot if its magnitude is at least <code>tau</code> times the
+     * largest candidate; otherwise the largest is. One gives plain partial
+     * pivoting, while smaller values preserve more of the ordering and give
+     * less fill. Default is 0.1
+     *
+     * @return this
+     */
+    public SparseLU setPivotThreshold(double tau) {
+        if (tau < 0 || tau > 1)
+            throw new IllegalArgumentException("tau must be in [0, 1]");
+        this.tau = tau;
+        return this;
+    }
+
+    private void checkPattern(CompColMatrix A) {
+        if (A.numRows() != n || A.numColumns() != n)
+            throw new IllegalArgumentException("A is not " + n + " x " + n);
+        int[] ptr = A.getColumnPointers(), idx = A.getRowIndices();
+        boolean same = java.util.Arrays.equals(ptr, colptr);
+        for (int k = 0; same && k < colptr[n]; ++k)
+            same = idx[k] == rowidx[k];
+        if (!same)
+            throw new IllegalArgumentException(
+                    "A does not have the analysed pattern");
+    }
+
+    /**
+     * Factors the given matrix, choosing the row pivots
+     *
+     * @param A
+     *            Matrix with the sparsity pattern given on construction. Not
+     *            modified
+     * @return The decomposition
+     */
+    public SparseLU factor(CompColMatrix A) {
+        checkPattern(A);
+        double[] data = A.getData();
+
+        factored = false;
+        singular = false;
+        pivoted = false;
+        p = new int[n];
+        pinv = new int[n];
+        java.util.Arrays.fill(pinv, -1);
+        Lp = new int[n + 1];
+        Up = new int[n + 1];
+        Ud = new double[n];
+        int cap = 2 * colptr[n] + n;
+        Li = new int[cap];
+        Lx = new double[cap];
+        Ui = new int[cap];
+        Ux = new double[cap];
+
+        // Dense work column indexed by original row, the reach of each
+        // column in topological order at xi[top..n), and the DFS stacks
+        double[] x = new double[n];
+        int[] xi = new int[n], stack = new int[n], pstack = new int[n];
+        int[] mark = new int[n];
+        java.util.Arrays.fill(mark, -1);
+
+        int lnz = 0, unz = 0;
+        for (int k = 0; k < n; ++k) {
+            int col = q[k];
+
+            // Rows reached from the column through the columns of L
+            int top = n;
+            for (int t = colptr[col]; t < colptr[col + 1]; ++t)
+                if (mark[rowidx[t]] != k)
+                    top = reach(rowidx[t], k, top, xi, stack, pstack, mark);
+
+            // Sparse triangular solve L x = A(:, col)
+            for (int t = top; t < n; ++t)
+                x[xi[t]] = 0;
+            for (int t = colptr[col]; t < colptr[col + 1]; ++t)
+                x[rowidx[t]] = data[t];
+            for (int t = top; t < n; ++t) {
+                int j = pinv[xi[t]];
+                if (j < 0)
+                    continue;
+                double xj = x[xi[t]];
+                for (int r = Lp[j]; r < Lp[j + 1]; ++r)
+                    x[Li[r]] -= Lx[r] * xj;
+            }
+
+            if (Math.max(lnz, unz) + n - top > Li.length) {
+                cap = 2 * Li.length + n;
+                Li = java.util.Arrays.copyOf(Li, cap);
+                Lx = java.util.Arrays.copyOf(Lx, cap);
+                Ui = java.util.Arrays.copyOf(Ui, cap);
+                Ux = java.util.Arrays.copyOf(Ux, cap);
+            }
+
+            // Pivotal rows go to U, the rest are pivot candidates
+            int ipiv = -1;
+            double max = -1;
+            for (int t = top; t < n; ++t) {
+                int i = xi[t];
+                if (pinv[i] >= 0) {
+                    Ui[unz] = pinv[i];
+                    Ux[unz++] = x[i];
+                } else if (Math.abs(x[i]) > max) {
+                    max = Math.abs(x[i]);
+                    ipiv = i;
+                }
+            }
+            if (pinv[col] < 0 && mark[col] == k
+                    && Math.abs(x[col]) >= tau * max)
+                ipiv = col;
+            if (ipiv == -1 || x[ipiv] == 0) {
+                singular = true;
+                return this;
+            }
+
+            double pivot = x[ipiv];
+            Ud[k] = pivot;
+            p[k] = ipiv;
+            pinv[ipiv] = k;
+            for (int t = top; t < n; ++t) {
+                int i = xi[t];
+                if (pinv[i] < 0) {
+                    Li[lnz] = i;
+                    Lx[lnz++] = x[i] / pivot;
+                }
+            }
+            Lp[k + 1] = lnz;
+            Up[k + 1] = unz;
+        }
+
+        // Renumber L by pivots, and sort the columns of U for refactoring
+        for (int t = 0; t < lnz; ++t)
+            Li[t] = pinv[Li[t]];
+        sortColumns(Up, Ui, Ux);
+
+        factored = pivoted = true;
+        return this;
+    }
+
+    /**
+     * Depth first search from row <code>i</code> through the columns of L,
+     * pushing rows on <code>xi</code> in postorder
+     */
+    private int reach(int i, int k, int top, int[] xi, int[] stack,
+            int[] pstack, int[] mark) {
+        int head = 0;
+        stack[0] = i;
+        while (head >= 0) {
+            int j = stack[head], jp = pinv[j];
+            if (mark[j] != k) {
+                mark[j] = k;
+                pstack[head] = jp < 0 ? 0 : Lp[jp];
+            }
+            boolean done = true;
+            int end = jp < 0 ? 0 : Lp[jp + 1];
+            for (int t = pstack[head]; t < end; ++t) {
+                int r = Li[t];
+                if (mark[r] == k)
+                    continue;
+                pstack[head] = t + 1;
+                stack[++head] = r;
+                done = false;
+                break;
+            }
+            if (done) {
+                head--;
+                xi[--top] = j;
+            }
+        }
+        return top;
+    }
+
+    private static void sortColumns(int[] ptr, int[] idx, double[] val) {
+        int n = ptr.length - 1;
+        for (int k = 0; k < n; ++k)
+            for (int a = ptr[k] + 1; a < ptr[k + 1]; ++a) {
+                int i = idx[a];
+                double v = val[a];
+                int b = a - 1;
+                for (; b >= ptr[k] && idx[b] > i; --b) {
+                    idx[b + 1] = idx[b];
+                    val[b + 1] = val[b];
+                }
+                idx[b + 1] = i;
+                val[b + 1] = v;
+            }
+    }
+
+    /**
+     * Factors the given matrix with the row pivots and factor patterns of the
+     * last {@link #factor(CompColMatrix)}. No pivoting is done, so this is
+     * only stable for matrices close to the one factored
+     *
+     * @param A
+     *            Matrix with the sparsity pattern given on construction. Not
+     *            modified
+     * @return The decomposition
+     */
+    public SparseLU refactor(CompColMatrix A) {
+        if (!pivoted)
+            throw new IllegalStateException("No matrix has been factored");
+        checkPattern(A);
+        double[] data = A.getData();
+
+        factored = false;
+        singular = false;
+        double[] x = new double[n];
+        for (int k = 0; k < n; ++k) {
+            int col = q[k];
+            for (int t = colptr[col]; t < colptr[col + 1]; ++t)
+                x[pinv[rowidx[t]]] = data[t];
+
+            // Rows of U in ascending order are a topological order
+            for (int t = Up[k]; t < Up[k + 1]; ++t) {
+                int j = Ui[t];
+                double xj = x[j];
+                Ux[t] = xj;
+                x[j] = 0;
+                for (int r = Lp[j]; r < Lp[j + 1]; ++r)
+                    x[Li[r]] -= Lx[r] * xj;
+            }
+
+            double pivot = x[k];
+            x[k] = 0;
+            if (pivot == 0) {
+                singular = true;
+                return this;
+            }
+            Ud[k] = pivot;
+            for (int r = Lp[k]; r < Lp[k + 1]; ++r) {
+                Lx[r] = x[Li[r]] / pivot;
+                x[Li[r]] = 0;
+            }
+        }
+
+        factored = true;
+        return this;
+    }
+
+    /**
+     * Returns true if the matrix decomposed is singular
+     */
+    public boolean isSingular() {
+        return singular;
+    }
+
+    /**
+     * Returns the row pivots, where <code>p[k]</code> is the row chosen in
+     * step <code>k</code>
+     */
+    public int[] getRowPermutation() {
+        return p;
+    }
+
+    /**
+     * Returns the column ordering, where <code>q[k]</code> is the column
+     * factored in step <code>k</code>
+     */
+    public int[] getColumnPermutation() {
+        return q;
+    }
+
+    /**
+     * Returns the number of nonzeros in <code>L</code> and <code>U</code>,
+     * including the diagonal of <code>U</code>
+     */
+    public long getNonZeros() {
+        return factored ? (long) Lp[n] + Up[n] + n : 0;
+    }
+
+    private void check(int rows) {
+        if (singular)
+            throw new MatrixSingularException();
+        if (!factored)
+            throw new IllegalStateException("No matrix has been factored");
+        if (rows != n)
+            throw new IllegalArgumentException("B.numRows() != n");
+    }
+
+    /**
+     * Solves for <code>B</code>, overwriting it on return
+     */
+    public DenseMatrix solve(DenseMatrix B) throws MatrixSingularException {
+        check(B.numRows());
+        double[] Bd = B.getData(), c = new double[n];
+        for (int off = 0; off < Bd.length; off += n) {
+            for (int k = 0; k < n; ++k)
+                c[k] = Bd[off + p[k]];
+
+            // L y = P b
+            for (int k = 0; k < n; ++k) {
+                double ck = c[k];
+                if (ck != 0)
+                    for (int t = Lp[k]; t < Lp[k + 1]; ++t)
+                        c[Li[t]] -= Lx[t] * ck;
+            }
+
+            // U z = y
+            for (int k = n - 1; k >= 0; --k) {
+                double ck = c[k] /= Ud[k];
+                if (ck != 0)
+                    for (int t = Up[k]; t < Up[k + 1]; ++t)
+                        c[Ui[t]] -= Ux[t] * ck;
+            }
+
+            for (int k = 0; k < n; ++k)
+                Bd[off + q[k]] = c[k];
+        }
+        return B;
+    }
+
+    /**
+     * Solves the transpose system for <code>B</code>, overwriting it on
+     * return
+     */
+    public DenseMatrix transSolve(DenseMatrix B)
+            throws MatrixSingularException {
+        check(B.numRows());
+        double[] Bd = B.getData(), c = new double[n];
+        for (int off = 0; off < Bd.length; off += n) {
+            for (int k = 0; k < n; ++k)
+                c[k] = Bd[off + q[k]];
+
+            // U' w = Q' b
+            for (int k = 0; k < n; ++k) {
+                double ck = c[k];
+                for (int t = Up[k]; t < Up[k + 1]; ++t)
+                    ck -= Ux[t] * c[Ui[t]];
+                c[k] = ck / Ud[k];
+            }
+
+            // L' v = w
+            for (int k = n - 1; k >= 0; --k) {
+                double ck = c[k];
+                for (int t = Lp[k]; t < Lp[k + 1]; ++t)
+                    ck -= Lx[t] * c[Li[t]];
+                c[k] = ck;
+            }
+
+            for (int k = 0; k < n; ++k)
+                Bd[off + p[k]] = c[k];
+        }
+        return B;
+    }
+
+    /**
+     * Solves <code>Ax = b</code>
+     *
+     * @return x
+     */
+    public Vector solve(Vector b, Vector x) throws MatrixSingularException {
+        DenseVector y = new DenseVector(b);
+        solve(new DenseMatrix(y, false));
+        return x.set(y);
+    }
+
+    /**
+     * Solves <code>A<sup>T</sup>x = b</code>
+     *
+     * @return x
+     */
+    public Vector transSolve(Vector b, Vector x)
+            throws MatrixSingularException {
+        DenseVector y = new DenseVector(b);
+        transSolve(new DenseMatrix(y, false));
+        return x.set(y);
+    }
+
+}
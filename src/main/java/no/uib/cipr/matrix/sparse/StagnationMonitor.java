@@ -0,0 +1,96 @@
+package no.uib.cipr.matrix.sparse;
+
+import no.uib.cipr.matrix.NotConvergedException;
+import no.uib.cipr.matrix.Vector;
+
+/**
+ * Iteration monitor stopping solves which no longer make progress. The solve
+ * is stopped if the residual has not been reduced below a given fraction of
+ * the smallest residual seen in a given number of iterations.
+ */
+public class StagnationMonitor extends ForwardingIterationMonitor {
+
+    private final int window;
+
+    private final double factor;
+
+    /**
+     * Smallest residual, and the iteration it was seen in
+     */
+    private double best;
+
+    private int bestIter;
+
+    /**
+     * Constructor for StagnationMonitor
+     * 
+     * @param monitor
+     *            Monitor deciding convergence
+     * @param window
+     *            Number of iterations without progress allowed
+     * @param factor
+     *            Fraction of the smallest residual seen which counts as
+     *            progress, such as 0.99
+     */
+    public StagnationMonitor(IterationMonitor monitor, int window,
+            double factor) {
+        super(monitor);
+        if (window < 1)
+            throw new IllegalArgumentException("window < 1");
+        if (factor <= 0 || factor > 1)
+            throw new IllegalArgumentException("factor must be in (0, 1]");
+        this.window = window;
+        this.factor = factor;
+    }
+
+    /**
+     * Constructor for StagnationMonitor. Stops when the residual has not been
+     * reduced by 1% in 100 iterations
+     * 
+     * @param monitor
+     *            Monitor deciding convergence
+     */
+    public StagnationMonitor(IterationMonitor monitor) {
+        this(monitor, 100, 0.99);
+    }
+
+    private boolean check(boolean converged)
+            throws IterativeSolverNotConvergedException {
+        if (converged)
+            return true;
+
+        double r = residual();
+        if (isFirst() || r < factor * best) {
+            best = r;
+            bestIter = iterations();
+        } else if (iterations() - bestIter >= window)
+            throw new IterativeSolverNotConvergedException(
+                    NotConvergedException.Reason.Stagnation, this);
+        return false;
+    }
+
+    @Override
+    public boolean converged(Vector r, Vector x)
+            throws IterativeSolverNotConvergedException {
+        return check(monitor.converged(r, x));
+    }
+
+    @Override
+    public boolean converged(double r, Vector x)
+            throws IterativeSolverNotConvergedException {
+        return check(monitor.converged(r, x));
+    }
+
+    @Override
+    public boolean converged(double r)
+            throws IterativeSolverNotConvergedException {
+        return check(monitor.converged(r));
+    }
+
+    @Override
+    public boolean converged(Vector r)
+            throws IterativeSolverNotConvergedException {
+        return check(monitor.converged(r));
+    }
+
+}
@@ -0,0 +1,101 @@
+package no.uib.cipr.matrix.sparse;
+
+import no.uib.cipr.matrix.Matrix;
+import no.uib.cipr.matrix.Vector;
+
+/**
+ * Iteration monitor deciding convergence on the true residual
+ * <code>b - Ax</code> instead of the residual updated by the solver, which
+ * drifts from it in finite precision.
+ * <p>
+ * The true residual costs a matrix-vector product, so it is only computed
+ * every <code>k</code> iterations. In between, the residual of the solver is
+ * passed on to the wrapped monitor, so that its iteration limit, divergence
+ * check and reporter see every iteration. Convergence on the residual of the
+ * solver is always confirmed on the true residual, and only the residual
+ * which decides is reported.
+ * </p>
+ */
+public class TrueResidualMonitor extends ForwardingIterationMonitor {
+
+    private static final IterationReporter SILENT = new NoIterationReporter();
+
+    private final Matrix A;
+
+    private final Vector b;
+
+    private final int k;
+
+    private Vector t;
+
+    /**
+     * Constructor for TrueResidualMonitor
+     * 
+     * @param monitor
+     *            Monitor deciding convergence on the residuals given
+     * @param A
+     *            Matrix of the system solved
+     * @param b
+     *            Right hand side of the system solved
+     * @param k
+     *            Number of iterations between each true residual
+     */
+    public TrueResidualMonitor(IterationMonitor monitor, Matrix A, Vector b,
+            int k) {
+        super(monitor);
+        if (k < 1)
+            throw new IllegalArgumentException("k < 1");
+        this.A = A;
+        this.b = b;
+        this.k = k;
+    }
+
+    private Vector residual(Vector x) {
+        if (t == null)
+            t = b.copy();
+        return A.multAdd(-1, x, t.set(b));
+    }
+
+    /**
+     * Whether the wrapped monitor accepts the residual, without reporting it.
+     * A limit the residual breaks is left to the reported call to throw
+     */
+    private boolean accepts(double r, Vector x) {
+        IterationReporter reporter = monitor.getIterationReporter();
+        monitor.setIterationReporter(SILENT);
+        try {
+            return monitor.converged(r, x);
+        } catch (IterativeSolverNotConvergedException e) {
+            return false;
+        } finally {
+            monitor.setIterationReporter(reporter);
+        }
+    }
+
+    @Override
+    public boolean converged(Vector r, Vector x)
+            throws IterativeSolverNotConvergedException {
+        if (iterations() % k == 0)
+            return monitor.converged(residual(x), x);
+        return converged(r.norm(getNormType()), x);
+    }
+
+    @Override
+    public boolean converged(double r, Vector x)
+            throws IterativeSolverNotConvergedException {
+        if (iterations() % k == 0 || accepts(r, x))
+            return monitor.converged(residual(x), x);
+        return monitor.converged(r, x);
+    }
+
+    /**
+     * Without the state vector the true residual is not known, and the
+     * residual is passed on as is
+     */
+    @Override
+    public boolean converged(Vector r)
+            throws IterativeSolverNotConvergedException {
+        return monitor.converged(r);
+    }
+
+}
@@ -0,0 +1,101 @@
+package no.uib.cipr.matrix;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the batched dense Cholesky decomposition
+ */
+public class DenseCholeskyBatchTest {
+
+    private final int max = 20, maxCount = 50;
+
+    private int n, count;
+
+    private double[] A;
+
+    @Before
+    public void setUp() throws Exception {
+        n = Utilities.getInt(1, max);
+        count = Utilities.getInt(1, maxCount);
+        A = new double[n * n * count];
+        for (int k = 0; k < count; ++k) {
+            // A = R'R + n I is SPD
+            Matrix R = Matrices.random(n, n);
+            DenseMatrix Ak = new DenseMatrix(n, n);
+            R.transAmult(R, Ak);
+            for (int i = 0; i < n; ++i)
+                Ak.add(i, i, n);
+            System.arraycopy(Ak.getData(), 0, A, k * n * n, n * n);
+        }
+    }
+
+    @Test
+    public void testJavaSolve() {
+        check(Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void testNativeSolve() {
+        check(0);
+    }
+
+    @Test
+    public void testMatchesDenseCholesky() {
+        DenseCholeskyBatch batch = new DenseCholeskyBatch(n, count)
+                .setNativeThreshold(Integer.MAX_VALUE).factor(A.clone());
+        assertTrue(batch.isSPD());
+        for (int k = 0; k < count; ++k) {
+            UpperTriangDenseMatrix U = DenseCholesky.factorize(matrix(A, k))
+                    .getU();
+            for (int j = 0; j < n; ++j)
+                for (int i = 0; i <= j; ++i)
+                    assertEquals(U.get(i, j),
+                            batch.getData()[k * n * n + i + j * n], 1e-10);
+        }
+    }
+
+    @Test
+    public void testNotSPD() {
+        double[] S = A.clone();
+        int k = Utilities.getInt(count);
+        S[k * n * n] = -1;
+
+        DenseCholeskyBatch batch = DenseCholeskyBatch.factorize(n, S);
+        assertFalse(batch.isSPD(k));
+        assertFalse(batch.isSPD());
+        for (int j = 0; j < count; ++j)
+            if (j != k)
+                assertTrue(batch.isSPD(j));
+    }
+
+    private void check(int threshold) {
+        int nrhs = Utilities.getInt(1, 3);
+        double[] B = new double[n * nrhs * count];
+        for (int i = 0; i < B.length; ++i)
+            B[i] = Math.random();
+        double[] X = B.clone();
+
+        new DenseCholeskyBatch(n, count).setNativeThreshold(threshold)
+                .factor(A.clone()).solve(X, nrhs);
+
+        for (int k = 0; k < count; ++k) {
+            DenseMatrix Xk = new DenseMatrix(n, nrhs);
+            System.arraycopy(X, k * n * nrhs, Xk.getData(), 0, n * nrhs);
+            Matrix Bk = matrix(A, k).mult(Xk, new DenseMatrix(n, nrhs));
+            for (int i = 0; i < n * nrhs; ++i)
+                assertEquals(B[k * n * nrhs + i], Bk.get(i % n, i / n), 1e-8);
+        }
+    }
+
+    private DenseMatrix matrix(double[] A, int k) {
+        DenseMatrix Ak = new DenseMatrix(n, n);
+        System.arraycopy(A, k * n * n, Ak.getData(), 0, n * n);
+        return Ak;
+    }
+
+}
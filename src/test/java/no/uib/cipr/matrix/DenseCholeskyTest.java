@@ -121,4 +121,102 @@ public class DenseCholeskyTest {
 
         c.rcond(U);
     }
+
+    @Test
+    public void testUpdate() {
+        int n = U.numRows();
+        Vector x = Matrices.random(n);
+
+        DenseCholesky upper = new DenseCholesky(n, true).factor(U.copy());
+        DenseCholesky lower = new DenseCholesky(n, false).factor(L.copy());
+        upper.update(x);
+        lower.update(x);
+
+        U.rank1(x);
+        L.rank1(x);
+        assertFactor(U, upper.getU(), new DenseCholesky(n, true).factor(U
+                .copy()).getU());
+        assertFactor(L, lower.getL(), new DenseCholesky(n, false).factor(L
+                .copy()).getL());
+    }
+
+    @Test
+    public void testDowndate() {
+        int n = U.numRows();
+        Vector x = Matrices.random(n);
+        U.rank1(x);
+        L.rank1(x);
+
+        DenseCholesky upper = new DenseCholesky(n, true).factor(U.copy());
+        DenseCholesky lower = new DenseCholesky(n, false).factor(L.copy());
+        upper.downdate(x);
+        lower.downdate(x);
+
+        U.rank1(-1, x);
+        L.rank1(-1, x);
+        assertFactor(U, upper.getU(), new DenseCholesky(n, true).factor(U
+                .copy()).getU());
+        assertFactor(L, lower.getL(), new DenseCholesky(n, false).factor(L
+                .copy()).getL());
+    }
+
+    @Test
+    public void testDowndateNotSPD() {
+        int n = U.numRows();
+        DenseCholesky c = new DenseCholesky(n, true).factor(U.copy());
+        Matrix before = c.getU().copy();
+
+        // removes more than the first diagonal entry
+        Vector x = new DenseVector(n);
+        x.set(0, Math.sqrt(U.get(0, 0)) * 1.01);
+        try {
+            c.downdate(x);
+            throw new AssertionError("downdate should fail");
+        } catch (MatrixNotSPDException e) {
+            assertFactor(U, before, c.getU());
+        }
+    }
+
+    @Test
+    public void testRefactorInterval() {
+        int n = U.numRows();
+        DenseCholesky c = new DenseCholesky(n, true).setRefactorInterval(3);
+        c.factor(U.copy());
+        for (int i = 0; i < 7; ++i) {
+            Vector x = Matrices.random(n);
+            c.update(x);
+            U.rank1(x);
+            if (i % 2 == 1) {
+                c.downdate(x);
+                U.rank1(-1, x);
+            }
+        }
+        assertFactor(U, c.getU(), new DenseCholesky(n, true).factor(U.copy())
+                .getU());
+    }
+
+    @Test
+    public void testTiled() {
+        int n = U.numRows(), nb = Utilities.getInt(1, 10);
+        int threads = Parallel.getThreads();
+        try {
+            Parallel.setThreads(4);
+            assertFactor(U, new DenseCholesky(n, true).setTileSize(0).factor(
+                    U.copy()).getU(), new DenseCholesky(n, true).setTileSize(
+                    nb).factor(U.copy()).getU());
+            assertFactor(L, new DenseCholesky(n, false).setTileSize(0).factor(
+                    L.copy()).getL(), new DenseCholesky(n, false).setTileSize(
+                    nb).factor(L.copy()).getL());
+        } finally {
+            Parallel.setThreads(threads);
+        }
+    }
+
+    private void assertFactor(Matrix A, Matrix expected, Matrix actual) {
+        double tol = 1e-10 * A.norm(Matrix.Norm.Maxvalue);
+        for (int i = 0; i < A.numRows(); ++i)
+            for (int j = 0; j < A.numColumns(); ++j)
+                assertEquals(expected.get(i, j), actual.get(i, j), tol);
+    }
+
 }
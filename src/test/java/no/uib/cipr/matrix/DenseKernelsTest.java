@@ -0,0 +1,315 @@
+package no.uib.cipr.matrix;
+
+import au.com.bytecode.opencsv.CSVWriter;
+import com.google.common.base.Stopwatch;
+import lombok.Cleanup;
+import lombok.extern.java.Log;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that the pure Java small matrix paths of {@link DenseMatrix},
+ * {@link DenseLU} and {@link DenseCholesky} agree with BLAS and LAPACK
+ */
+@Log
+public class DenseKernelsTest {
+
+    private final int max = 2 * DenseMatrix.DEFAULT_NATIVE_THRESHOLD;
+
+    private final double tol = 1e-10;
+
+    private int threshold, productThreshold;
+
+    @Before
+    public void setUp() {
+        threshold = DenseMatrix.getNativeThreshold();
+        productThreshold = DenseMatrix.getProductThreshold();
+    }
+
+    @After
+    public void tearDown() {
+        DenseMatrix.setNativeThreshold(threshold);
+        DenseMatrix.setProductThreshold(productThreshold);
+    }
+
+    private static DenseMatrix random(int m, int n) {
+        DenseMatrix A = new DenseMatrix(m, n);
+        Utilities.populate(A);
+        return A;
+    }
+
+    private static DenseVector random(int n) {
+        DenseVector x = new DenseVector(n);
+        for (int i = 0; i < n; ++i)
+            x.set(i, Math.random() - 0.5);
+        return x;
+    }
+
+    private static DenseMatrix spd(int n) {
+        DenseMatrix A = random(n, n);
+        DenseMatrix S = new DenseMatrix(n, n);
+        A.transAmult(A, S);
+        for (int i = 0; i < n; ++i)
+            S.add(i, i, n);
+        return S;
+    }
+
+    @Test
+    public void testMult() {
+        int m = Utilities.getInt(1, max), n = Utilities.getInt(1, max), k = Utilities
+                .getInt(1, max);
+        DenseMatrix A = random(m, k), At = random(k, m);
+        DenseMatrix B = random(k, n), Bt = random(n, k);
+        DenseMatrix C = random(m, n);
+
+        for (int variant = 0; variant < 4; ++variant) {
+            DenseMatrix[] results = new DenseMatrix[2];
+            for (int r = 0; r < 2; ++r) {
+                DenseMatrix.setProductThreshold(r == 0 ? max : 0);
+                results[r] = C.copy();
+                switch (variant) {
+                case 0:
+                    A.multAdd(0.5, B, results[r]);
+                    break;
+                case 1:
+                    At.transAmultAdd(0.5, B, results[r]);
+                    break;
+                case 2:
+                    A.transBmultAdd(0.5, Bt, results[r]);
+                    break;
+                default:
+                    At.transABmultAdd(0.5, Bt, results[r]);
+                }
+            }
+            assertArrayEquals(results[1].getData(), results[0].getData(), tol);
+        }
+    }
+
+    @Test
+    public void testMultVector() {
+        int m = Utilities.getInt(1, max), n = Utilities.getInt(1, max);
+        DenseMatrix A = random(m, n);
+        DenseVector x = random(n), xt = random(m), y = random(m), yt = random(n);
+
+        DenseMatrix.setNativeThreshold(max);
+        DenseVector y0 = (DenseVector) A.multAdd(2, x, y.copy());
+        DenseVector yt0 = (DenseVector) A.transMultAdd(2, xt, yt.copy());
+
+        DenseMatrix.setNativeThreshold(0);
+        DenseVector y1 = (DenseVector) A.multAdd(2, x, y.copy());
+        DenseVector yt1 = (DenseVector) A.transMultAdd(2, xt, yt.copy());
+
+        assertArrayEquals(y1.getData(), y0.getData(), tol);
+        assertArrayEquals(yt1.getData(), yt0.getData(), tol);
+    }
+
+    @Test
+    public void testRank1() {
+        int n = Utilities.getInt(1, max);
+        DenseMatrix A = random(n, n);
+        DenseVector x = random(n), y = random(n);
+
+        DenseMatrix.setNativeThreshold(max);
+        DenseMatrix A0 = (DenseMatrix) A.copy().rank1(-1.5, x, y);
+        DenseMatrix.setNativeThreshold(0);
+        DenseMatrix A1 = (DenseMatrix) A.copy().rank1(-1.5, x, y);
+
+        assertArrayEquals(A1.getData(), A0.getData(), tol);
+    }
+
+    @Test
+    public void testSolve() {
+        int n = Utilities.getInt(1, max), nrhs = Utilities.getInt(1, 4);
+        DenseMatrix A = spd(n), B = random(n, nrhs);
+
+        DenseMatrix.setNativeThreshold(max);
+        DenseMatrix X0 = (DenseMatrix) A.solve(B, new DenseMatrix(n, nrhs));
+        DenseMatrix.setNativeThreshold(0);
+        DenseMatrix X1 = (DenseMatrix) A.solve(B, new DenseMatrix(n, nrhs));
+
+        assertArrayEquals(X1.getData(), X0.getData(), tol);
+    }
+
+    @Test(expected = MatrixSingularException.class)
+    public void testSolveSingular() {
+        DenseMatrix.setNativeThreshold(max);
+        new DenseMatrix(3, 3).solve(new DenseVector(3), new DenseVector(3));
+    }
+
+    @Test
+    public void testRectangularLU() {
+        int m = Utilities.getInt(1, max), n = Utilities.getInt(1, max);
+        DenseMatrix A = random(m, n);
+
+        DenseLU lu0 = new DenseLU(m, n).setNativeThreshold(max).factor(
+                A.copy());
+        DenseLU lu1 = new DenseLU(m, n).setNativeThreshold(0).factor(A.copy());
+
+        assertArrayEquals(lu1.getPivots(), lu0.getPivots());
+        assertArrayEquals(lu1.getLU().getData(), lu0.getLU().getData(), tol);
+        assertEquals(lu1.isSingular(), lu0.isSingular());
+    }
+
+    @Test
+    public void testLUTransSolve() {
+        int n = Utilities.getInt(1, max);
+        DenseMatrix A = spd(n), B = random(n, 2);
+        A.add(0, n - 1, 3);
+
+        DenseMatrix X0 = DenseLU.factorize(A).setNativeThreshold(max)
+                .transSolve(B.copy());
+        DenseMatrix X1 = DenseLU.factorize(A).setNativeThreshold(0)
+                .transSolve(B.copy());
+
+        assertArrayEquals(X1.getData(), X0.getData(), tol);
+    }
+
+    @Test
+    public void testUpperCholesky() {
+        checkCholesky(true);
+    }
+
+    @Test
+    public void testLowerCholesky() {
+        checkCholesky(false);
+    }
+
+    private void checkCholesky(boolean upper) {
+        int n = Utilities.getInt(1, max);
+        DenseMatrix A = spd(n), B = random(n, 3);
+
+        DenseMatrix[] X = new DenseMatrix[2];
+        double[][] factor = new double[2][];
+        for (int r = 0; r < 2; ++r) {
+            DenseCholesky c = new DenseCholesky(n, upper)
+                    .setNativeThreshold(r == 0 ? max : 0);
+            if (upper) {
+                c.factor(new UpperSPDDenseMatrix(A));
+                factor[r] = c.getU().getData();
+            } else {
+                c.factor(new LowerSPDDenseMatrix(A));
+                factor[r] = c.getL().getData();
+            }
+            X[r] = c.solve(B.copy());
+        }
+
+        assertArrayEquals(factor[1], factor[0], tol);
+        assertArrayEquals(X[1].getData(), X[0].getData(), tol);
+    }
+
+    @Test
+    public void testUnrolled() {
+        for (int n = 2; n <= 4; ++n) {
+            DenseMatrix A = random(n, n), S = spd(n), B = random(n, 3);
+
+            double[] lu0 = A.getData().clone(), lu1 = A.getData().clone();
+            int[] piv0 = new int[n], piv1 = new int[n];
+            assertEquals(DenseKernels.getrf(n, n, lu0, 0, piv0, 0),
+                    DenseKernels.getrf(n, lu1, 0, piv1, 0));
+            assertArrayEquals(piv0, piv1);
+            assertArrayEquals(lu0, lu1, 0);
+
+            DenseMatrix X0 = DenseLU.factorize(A).setNativeThreshold(0)
+                    .solve(B.copy());
+            DenseMatrix X1 = DenseLU.factorize(A).setNativeThreshold(n)
+                    .solve(B.copy());
+            assertArrayEquals(X1.getData(), X0.getData(), tol);
+
+            DenseCholesky[] c = new DenseCholesky[2];
+            for (int r = 0; r < 2; ++r)
+                c[r] = new DenseCholesky(n, true).setNativeThreshold(r * n)
+                        .factor(new UpperSPDDenseMatrix(S));
+            assertArrayEquals(c[1].getU().getData(), c[0].getU().getData(),
+                    tol);
+            assertArrayEquals(c[1].solve(B.copy()).getData(), c[0].solve(
+                    B.copy()).getData(), tol);
+
+            A.zero();
+            assertEquals(1, DenseKernels.getrf(n, A.getData(), 0, piv1, 0));
+            S.set(n - 1, n - 1, -1);
+            assertEquals(n, DenseKernels.potrf(n, S.getData(), 0));
+        }
+    }
+
+    @Test
+    public void testNotSPD() {
+        DenseMatrix A = spd(4);
+        A.set(2, 2, -1);
+        assertEquals(false,
+                new DenseCholesky(4, true).setNativeThreshold(max)
+                        .factor(new UpperSPDDenseMatrix(A)).isSPD());
+        assertEquals(false,
+                new DenseCholesky(4, false).setNativeThreshold(max)
+                        .factor(new LowerSPDDenseMatrix(A)).isSPD());
+    }
+
+    /**
+     * Creates a CSV file with the time per call of the pure Java and the
+     * native paths for square matrices of size <code>n</code>, to locate the
+     * crossover points for {@link DenseMatrix#setProductThreshold(int)} and
+     * {@link DenseMatrix#setNativeThreshold(int)}.
+     * Columns are <code>n, op, javaTime, nativeTime</code> in nanoseconds,
+     * for the operations <code>mult</code>, <code>rank1</code>,
+     * <code>solve</code>, <code>lu</code> and <code>cholesky</code>.
+     * <p/>
+     * -Djava.util.logging.config.file=logging.properties
+     *
+     * @param args
+     */
+    public static void main(String[] args) throws Exception {
+        File file = new File("DenseKernelsPerf.csv");
+        log.info("writing to " + file);
+        @Cleanup
+        CSVWriter csv = new CSVWriter(new FileWriter(file));
+
+        String[] ops = {"mult", "rank1", "solve", "lu", "cholesky"};
+        int reps = 20000;
+        for (int n = 2; n <= 48; n += 2) {
+            DenseMatrix A = random(n, n), B = random(n, n), C = new DenseMatrix(
+                    n, n), S = spd(n);
+            DenseVector x = random(n), y = random(n);
+
+            for (String op : ops) {
+                long[] times = new long[2];
+                for (int round = 0; round < 2; ++round) // first is warm up
+                    for (int r = 0; r < 2; ++r) {
+                        int t = r == 0 ? Integer.MAX_VALUE : 0;
+                        DenseMatrix.setNativeThreshold(t);
+                        DenseMatrix.setProductThreshold(t);
+                        Stopwatch timer = Stopwatch.createStarted();
+                        for (int rep = 0; rep < reps; ++rep)
+                            if (op.equals("mult"))
+                                A.mult(B, C);
+                            else if (op.equals("rank1"))
+                                C.rank1(1e-9, x, y);
+                            else if (op.equals("solve"))
+                                S.solve(B, C);
+                            else if (op.equals("lu"))
+                                new DenseLU(n, n).setNativeThreshold(t).factor(
+                                        A.copy());
+                            else
+                                new DenseCholesky(n, true)
+                                        .setNativeThreshold(t).factor(
+                                                new UpperSPDDenseMatrix(S));
+                        times[r] = timer.elapsed(TimeUnit.NANOSECONDS) / reps;
+                    }
+
+                String[] line = {Integer.toString(n), op,
+                        Long.toString(times[0]), Long.toString(times[1])};
+                log.info(java.util.Arrays.toString(line));
+                csv.writeNext(line);
+            }
+        }
+        DenseMatrix.setNativeThreshold(DenseMatrix.DEFAULT_NATIVE_THRESHOLD);
+        DenseMatrix.setProductThreshold(DenseMatrix.DEFAULT_PRODUCT_THRESHOLD);
+    }
+
+}
@@ -0,0 +1,118 @@
+package no.uib.cipr.matrix;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the batched dense LU decomposition
+ */
+public class DenseLUBatchTest {
+
+    private final int max = 20, maxCount = 50;
+
+    private int n, count;
+
+    private double[] A;
+
+    @Before
+    public void setUp() throws Exception {
+        n = Utilities.getInt(1, max);
+        count = Utilities.getInt(1, maxCount);
+        A = new double[n * n * count];
+        for (int i = 0; i < A.length; ++i)
+            A[i] = Math.random() - 0.5;
+    }
+
+    @Test
+    public void testJavaSolve() {
+        check(Integer.MAX_VALUE, false);
+    }
+
+    @Test
+    public void testNativeSolve() {
+        check(0, false);
+    }
+
+    @Test
+    public void testJavaTransSolve() {
+        check(Integer.MAX_VALUE, true);
+    }
+
+    @Test
+    public void testNativeTransSolve() {
+        check(0, true);
+    }
+
+    @Test
+    public void testMatchesDenseLU() {
+        DenseLUBatch batch = new DenseLUBatch(n, count).setNativeThreshold(
+                Integer.MAX_VALUE).factor(A.clone());
+        for (int k = 0; k < count; ++k) {
+            DenseLU lu = DenseLU.factorize(matrix(A, k));
+            assertEquals(lu.isSingular(), batch.isSingular(k));
+            int[] piv = new int[n];
+            System.arraycopy(batch.getPivots(), k * n, piv, 0, n);
+            assertArrayEquals(lu.getPivots(), piv);
+            double[] LU = lu.getLU().getData();
+            for (int i = 0; i < n * n; ++i)
+                assertEquals(LU[i], batch.getData()[k * n * n + i], 1e-10);
+        }
+    }
+
+    @Test
+    public void testSingular() {
+        double[] S = A.clone();
+        int k = Utilities.getInt(count);
+        for (int i = 0; i < n; ++i)
+            S[k * n * n + i] = 0;
+
+        DenseLUBatch batch = DenseLUBatch.factorize(n, S);
+        assertTrue(batch.isSingular(k));
+        assertTrue(batch.isSingular());
+        for (int j = 0; j < count; ++j)
+            if (j != k)
+                assertFalse(batch.isSingular(j));
+    }
+
+    private void check(int threshold, boolean trans) {
+        int nrhs = Utilities.getInt(1, 3);
+        double[] B = new double[n * nrhs * count];
+        for (int i = 0; i < B.length; ++i)
+            B[i] = Math.random();
+        double[] X = B.clone();
+
+        DenseLUBatch batch = new DenseLUBatch(n, count).setNativeThreshold(
+                threshold).factor(A.clone());
+        if (batch.isSingular())
+            return;
+        if (trans)
+            batch.transSolve(X, nrhs);
+        else
+            batch.solve(X, nrhs);
+
+        for (int k = 0; k < count; ++k) {
+            Matrix Ak = matrix(A, k);
+            DenseMatrix Xk = new DenseMatrix(n, nrhs);
+            System.arraycopy(X, k * n * nrhs, Xk.getData(), 0, n * nrhs);
+            DenseMatrix Bk = new DenseMatrix(n, nrhs);
+            if (trans)
+                Ak.transAmult(Xk, Bk);
+            else
+                Ak.mult(Xk, Bk);
+            for (int i = 0; i < n * nrhs; ++i)
+                assertEquals(B[k * n * nrhs + i], Bk.getData()[i], 1e-8);
+        }
+    }
+
+    private DenseMatrix matrix(double[] A, int k) {
+        DenseMatrix Ak = new DenseMatrix(n, n);
+        System.arraycopy(A, k * n * n, Ak.getData(), 0, n * n);
+        return Ak;
+    }
+
+}
@@ -24,6 +24,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 /**
@@ -118,4 +119,25 @@ public class DenseLUTest {
         MatrixTestAbstract.assertMatrixEquals(m, x);
     }
 
+    @Test
+    public void testTiled() {
+        int n = A.numRows();
+        DenseLU lu = new DenseLU(n, n).setTileSize(0).factor(A.copy());
+        DenseLU tiled = new DenseLU(n, n).setTileSize(Utilities.getInt(1, 10));
+
+        int threads = Parallel.getThreads();
+        try {
+            Parallel.setThreads(4);
+            tiled.factor(A.copy());
+        } finally {
+            Parallel.setThreads(threads);
+        }
+
+        assertArrayEquals(lu.getPivots(), tiled.getPivots());
+        for (int i = 0; i < n; ++i)
+            for (int j = 0; j < n; ++j)
+                assertEquals(lu.getLU().get(i, j), tiled.getLU().get(i, j),
+                        1e-8);
+    }
+
 }
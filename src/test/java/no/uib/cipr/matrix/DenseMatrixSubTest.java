@@ -0,0 +1,115 @@
+package no.uib.cipr.matrix;
+
+import org.junit.Test;
+
+/**
+ * Tests a view of a block of a dense matrix
+ */
+public class DenseMatrixSubTest extends MatrixTestAbstract {
+
+    /**
+     * Matrix holding the view
+     */
+    private DenseMatrix outer;
+
+    @Override
+    protected void createPrimary() throws Exception {
+        int n = Utilities.getInt(1, max);
+        int m = Utilities.getInt(1, max);
+        int row = Utilities.getInt(0, 10), column = Utilities.getInt(0, 10);
+        outer = new DenseMatrix(n + row + Utilities.getInt(0, 10), m + column
+                + Utilities.getInt(0, 10));
+        A = outer.getSubMatrix(row, column, n, m);
+        Ad = Utilities.populate(A);
+    }
+
+    @Test
+    @Override
+    public void testMatrixSolve() {
+        // Not applicable
+    }
+
+    @Test
+    @Override
+    public void testTransMatrixSolve() {
+        // Not applicable
+    }
+
+    @Test
+    @Override
+    public void testTransVectorSolve() {
+        // Not applicable
+    }
+
+    @Test
+    @Override
+    public void testVectorSolve() {
+        // Not applicable
+    }
+
+    @Test
+    public void testViewMult() {
+        int k = Utilities.getInt(1, max);
+        DenseMatrixSub B = new DenseMatrix(A.numColumns() + 2, k + 3)
+                .getSubMatrix(2, 1, A.numColumns(), k);
+        DenseMatrixSub C = new DenseMatrix(A.numRows() + 1, k + 1)
+                .getSubMatrix(1, 0, A.numRows(), k);
+        Matrices.random(B);
+        Matrices.random(C);
+
+        Matrix expected = new DenseMatrix(A).multAdd(2, B.copy(), C.copy());
+        assertMatrixEquals(expected, A.multAdd(2, B, C));
+
+        // a dense matrix with views as operands
+        C.zero();
+        expected = new DenseMatrix(A).mult(B.copy(), new DenseMatrix(
+                A.numRows(), k));
+        assertMatrixEquals(expected, new DenseMatrix(A).mult(B, C));
+        assertMatrixEquals(Ad, A);
+    }
+
+    @Test
+    public void testViewVectorMult() {
+        DenseVectorSub x = new DenseMatrix(3, A.numColumns()).getRow(1);
+        DenseVectorSub y = new DenseMatrix(A.numRows(), 2).getColumn(1);
+        Matrices.random(x);
+        Matrices.random(y);
+        Vector expected = new DenseMatrix(A).multAdd(2, x.copy(), y.copy());
+        assertVectorEquals(expected, A.multAdd(2, x, y));
+
+        x = new DenseMatrix(A.numRows() + 1, 1).getColumn(0);
+        y = new DenseMatrix(2, A.numColumns()).getRow(0);
+        Matrices.random(x);
+        Matrices.random(y);
+        x = new DenseVectorSub(x.getData(), 1, 1, A.numRows());
+        expected = new DenseMatrix(A).transMultAdd(2, x.copy(), y.copy());
+        assertVectorEquals(expected, A.transMultAdd(2, x, y));
+        assertMatrixEquals(Ad, A);
+    }
+
+    @Test
+    public void testSolveTriangular() {
+        if (!A.isSquare())
+            return;
+        int n = A.numRows();
+        for (int i = 0; i < n; ++i)
+            A.add(i, i, n);
+
+        DenseMatrixSub B = new DenseMatrix(n + 3, 2).getSubMatrix(3, 0, n, 2);
+        Matrices.random(B);
+        for (boolean upper : new boolean[] { false, true })
+            for (boolean transpose : new boolean[] { false, true }) {
+                Matrix T = upper ? new UpperTriangDenseMatrix(A)
+                        : new LowerTriangDenseMatrix(A);
+                DenseMatrixSub X = new DenseMatrix(n + 1, 2).getSubMatrix(
+                        1, 0, n, 2);
+                X.set(B);
+                ((DenseMatrixSub) A).solveTriangular(upper, transpose, false,
+                        X);
+                Matrix TX = transpose ? T.transAmult(X, new DenseMatrix(n, 2))
+                        : T.mult(X, new DenseMatrix(n, 2));
+                assertMatrixEquals(B, TX);
+            }
+    }
+
+}
@@ -0,0 +1,17 @@
+package no.uib.cipr.matrix;
+
+/**
+ * Tests a row of a dense matrix, as a strided vector
+ */
+public class DenseVectorSubStridedTest extends VectorTestAbstract {
+
+    @Override
+    protected void createPrimary() throws Exception {
+        int n = Utilities.getInt(1, max);
+        DenseMatrix A = new DenseMatrix(Utilities.getInt(1, 10), n + 2);
+        x = A.getSubMatrix(0, 1, A.numRows(), n).getRow(
+                Utilities.getInt(A.numRows()));
+        xd = Utilities.populate(x);
+    }
+
+}
@@ -20,6 +20,8 @@
 
 package no.uib.cipr.matrix;
 
+import org.junit.Test;
+
 /**
  * Test of DenseVector
  */
@@ -32,4 +34,26 @@ public class DenseVectorTest extends VectorTestAbstract {
         xd = Utilities.populate(x);
     }
 
+    @Test
+    public void testScaleAdd() {
+        double beta = Math.random(), alpha = Math.random();
+        for (int i = 0; i < xd.length; ++i)
+            xd[i] = beta * xd[i] + alpha * yd[i];
+        ((DenseVector) x).scaleAdd(beta, alpha, yDense);
+        assertVectorEquals(xd, x);
+
+        for (int i = 0; i < xd.length; ++i)
+            xd[i] = beta * xd[i] + alpha * zd[i];
+        ((DenseVector) x).scaleAdd(beta, alpha, z);
+        assertVectorEquals(xd, x);
+
+        // x is not read for a zero beta
+        for (int i = 0; i < xd.length; ++i) {
+            xd[i] = alpha * zd[i];
+            x.set(i, Double.NaN);
+        }
+        ((DenseVector) x).scaleAdd(0, alpha, z);
+        assertVectorEquals(xd, x);
+    }
+
 }
@@ -0,0 +1,280 @@
+package no.uib.cipr.matrix;
+
+import au.com.bytecode.opencsv.CSVWriter;
+import com.google.common.base.Stopwatch;
+import lombok.Cleanup;
+import lombok.extern.java.Log;
+import no.uib.cipr.matrix.sparse.CompRowMatrix;
+import no.uib.cipr.matrix.sparse.LinearOperators;
+import no.uib.cipr.matrix.sparse.LinkedSparseMatrix;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests the factorizations cached by the solvers of dense, band and packed
+ * matrices
+ */
+@Log
+public class FactorizationCacheTest {
+
+    private static void assertSolves(Matrix A, Matrix cached, boolean trans) {
+        int n = A.numRows();
+        Vector b = Matrices.random(n);
+        Vector x = trans ? cached.transSolve(b, new DenseVector(n)) : cached
+                .solve(b, new DenseVector(n));
+        Vector r = trans ? A.transMultAdd(-1, x, b.copy()) : A.multAdd(-1, x,
+                b.copy());
+        assertEquals(0, r.norm(Vector.Norm.Two), 1e-8 * b
+                .norm(Vector.Norm.Two));
+    }
+
+    /**
+     * Diagonally dominant, so nonsingular and, if symmetric, positive
+     * definite
+     */
+    private static void dominant(Matrix A) {
+        for (MatrixEntry e : A)
+            e.set(e.row() == e.column() ? 2 * A.numRows() : Math.random());
+    }
+
+    @Test
+    public void testDense() {
+        int n = Utilities.getInt(50, 100);
+        DenseMatrix A = new DenseMatrix(n, n);
+        dominant(A);
+        A.setCacheFactorization(true);
+
+        assertSolves(A, A, false);
+        Object lu = A.factorization.get(DenseLU.class);
+        assertSolves(A, A, false);
+        assertSolves(A, A, true);
+        assertSame(lu, A.factorization.get(DenseLU.class));
+
+        A.add(0, 1, 1);
+        assertSolves(A, A, false);
+        assertNotSame(lu, A.factorization.get(DenseLU.class));
+
+        // writes through the array
+        A.getData()[1] += 1;
+        assertSolves(A, A, true);
+
+        A.rank1(Matrices.random(n), Matrices.random(n));
+        assertSolves(A, A, false);
+
+        A.setCacheFactorization(false);
+        assertSolves(A, A, false);
+    }
+
+    @Test
+    public void testReadsKeepFactorization() {
+        int n = Utilities.getInt(50, 100);
+        DenseMatrix A = new DenseMatrix(n, n);
+        dominant(A);
+        A.setCacheFactorization(true);
+        assertSolves(A, A, false);
+        Object lu = A.factorization.get(DenseLU.class);
+
+        // A only as an operand, or copied from
+        DenseMatrix B = new DenseMatrix(Matrices.random(n, n)), C = new DenseMatrix(
+                n, n);
+        B.mult(A, C);
+        B.transAmult(A, C);
+        B.transBmult(A, C);
+        B.transABmult(A, C);
+        A.mult(B, C);
+        A.mult(Matrices.random(n), new DenseVector(n));
+        C.set(A);
+        A.copy();
+        new DenseMatrix(A);
+        DenseLU.factorize(A);
+        new UpperSymmDenseMatrix(n).set(new UpperSymmDenseMatrix(A)).mult(A,
+                C);
+        assertSame(lu, A.factorization.get(DenseLU.class));
+        assertSolves(A, A, false);
+    }
+
+    @Test
+    public void testPublicReadsKeepFactorization() {
+        int n = Utilities.getInt(50, 100);
+        DenseMatrix A = new DenseMatrix(n, n);
+        dominant(A);
+        A.setCacheFactorization(true);
+        assertSolves(A, A, false);
+        Object lu = A.factorization.get(DenseLU.class);
+
+        // every public way of reading A, including from the sparse package
+        A.get(1, 2);
+        A.norm(Matrix.Norm.Frobenius);
+        for (MatrixEntry e : A)
+            e.get();
+        A.getDataUnchecked();
+        A.getColumn(0).norm(Vector.Norm.Two);
+        A.getRow(1).get(1);
+        A.getSubMatrix(1, 1, 2, 2).get(1, 1);
+        DenseMatrix C = new DenseMatrix(n, n);
+        A.transpose(C);
+        Matrices.getArray(A);
+        new CompRowMatrix(new DenseMatrix(Matrices.random(n, n))).multAdd(1,
+                A, C);
+        new CompRowMatrix(new DenseMatrix(Matrices.random(n, n)))
+                .transAmultAdd(1, A, C);
+        new LinkedSparseMatrix(new DenseMatrix(Matrices.random(n, n)))
+                .multAdd(1, A, C);
+        LinearOperators.of(A).apply(Matrices.random(n), new DenseVector(n));
+        assertSolves(A, A, true);
+        assertSame(lu, A.factorization.get(DenseLU.class));
+
+        // writes to an array obtained before, then made known
+        double[] data = A.getData();
+        assertSolves(A, A, false);
+        data[n + 1] += n;
+        A.invalidateFactorization();
+        assertSolves(A, A, false);
+    }
+
+    @Test
+    public void testWritesThroughViews() {
+        int n = Utilities.getInt(50, 100);
+        DenseMatrix A = new DenseMatrix(n, n);
+        dominant(A);
+        A.setCacheFactorization(true);
+        assertSolves(A, A, false);
+
+        // views taken before the factorization, written after it
+        DenseVectorSub column = A.getColumn(3), row = A.getRow(2);
+        DenseMatrixSub block = A.getSubMatrix(1, 1, 3, 3);
+        assertSolves(A, A, false);
+
+        column.set(0, n);
+        assertSolves(A, A, false);
+        row.add(5, -n);
+        assertSolves(A, A, true);
+        column.scale(0.5);
+        assertSolves(A, A, false);
+        row.add(2, column);
+        assertSolves(A, A, false);
+        block.set(0, 2, 1);
+        assertSolves(A, A, false);
+        block.getColumn(1).set(2, n);
+        assertSolves(A, A, true);
+        block.set(new DenseMatrix(Matrices.random(3, 3)));
+        assertSolves(A, A, false);
+
+        // products into a view
+        new DenseMatrix(Matrices.random(3, 2)).multAdd(n, new DenseMatrix(
+                Matrices.random(2, 3)), block);
+        assertSolves(A, A, false);
+        block.multAdd(n, Matrices.random(3), block.getColumn(0));
+        assertSolves(A, A, false);
+    }
+
+    @Test
+    public void testTransSolveNotDense() {
+        int n = Utilities.getInt(10, 30);
+        DenseMatrix A = new DenseMatrix(n, n);
+        dominant(A);
+        Matrix B = Matrices.random(n, 2);
+        Matrix expected = A.transSolve(B, new DenseMatrixSub(new DenseMatrix(
+                n, 2), 0, 0, n, 2));
+
+        A.setCacheFactorization(true);
+        Matrix X = A.transSolve(B, new DenseMatrixSub(new DenseMatrix(
+                n, 2), 0, 0, n, 2));
+        for (int i = 0; i < n; ++i)
+            for (int j = 0; j < 2; ++j)
+                assertEquals(expected.get(i, j), X.get(i, j), 1e-12);
+    }
+
+    @Test
+    public void testSPD() {
+        int n = Utilities.getInt(50, 100);
+        int kd = Utilities.getInt(1, 5);
+        Matrix[] matrices = {new UpperSPDDenseMatrix(n),
+                new LowerSPDDenseMatrix(n), new UpperSPDBandMatrix(n, kd),
+                new LowerSPDBandMatrix(n, kd), new UpperSPDPackMatrix(n),
+                new LowerSPDPackMatrix(n)};
+        for (Matrix A : matrices) {
+            dominant(A);
+            setCacheFactorization(A);
+            assertSolves(A, A, false);
+            assertSolves(A, A, false);
+
+            A.add(n - 1, n - 1, 1);
+            assertSolves(A, A, false);
+            A.scale(2);
+            assertSolves(A, A, false);
+        }
+    }
+
+    @Test
+    public void testBand() {
+        int n = Utilities.getInt(50, 100);
+        BandMatrix A = new BandMatrix(n, Utilities.getInt(0, 4), Utilities
+                .getInt(0, 4));
+        dominant(A);
+        A.setCacheFactorization(true);
+        assertSolves(A, A, false);
+        Object lu = A.factorization.get(BandLU.class);
+        assertSolves(A, A, false);
+        assertSame(lu, A.factorization.get(BandLU.class));
+
+        A.set(n - 1, n - 1, 3 * n);
+        assertSolves(A, A, false);
+        assertNotSame(lu, A.factorization.get(BandLU.class));
+    }
+
+    private static void setCacheFactorization(Matrix A) {
+        if (A instanceof AbstractDenseMatrix)
+            ((AbstractDenseMatrix) A).setCacheFactorization(true);
+        else if (A instanceof AbstractBandMatrix)
+            ((AbstractBandMatrix) A).setCacheFactorization(true);
+        else
+            ((AbstractPackMatrix) A).setCacheFactorization(true);
+    }
+
+    /**
+     * Creates a CSV file with the time taken by repeated single right hand
+     * side solves of a dense matrix, with and without the cached
+     * factorization. Columns are <code>n</code>, the uncached and the cached
+     * time per solve, in nanoseconds.
+     * <p/>
+     * -Xms2g -Xmx2g -Djava.util.logging.config.file=logging.properties
+     *
+     * @param args
+     */
+    public static void main(String[] args) throws Exception {
+        File file = new File("FactorizationCachePerf.csv");
+        log.info("writing to " + file);
+        @Cleanup
+        CSVWriter csv = new CSVWriter(new FileWriter(file));
+
+        for (int n : new int[]{100, 200, 400}) {
+            DenseMatrix A = new DenseMatrix(n, n);
+            dominant(A);
+            Vector b = Matrices.random(n), x = new DenseVector(n);
+            int reps = 50;
+            long[] times = new long[2];
+            for (int r = 0; r < 2; ++r) // first round is warm up
+                for (int cache = 0; cache < 2; ++cache) {
+                    A.setCacheFactorization(cache == 1);
+                    Stopwatch timer = Stopwatch.createStarted();
+                    for (int i = 0; i < reps; ++i)
+                        A.solve(b, x);
+                    times[cache] = timer.elapsed(TimeUnit.NANOSECONDS) / reps;
+                }
+
+            String[] line = { Integer.toString(n), Long.toString(times[0]),
+                    Long.toString(times[1]) };
+            log.info(java.util.Arrays.toString(line));
+            csv.writeNext(line);
+        }
+    }
+
+}
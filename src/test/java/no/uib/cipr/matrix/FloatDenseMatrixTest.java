@@ -0,0 +1,63 @@
+package no.uib.cipr.matrix;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class FloatDenseMatrixTest extends MatrixTestAbstract {
+
+    @Override
+    protected void createPrimary() throws Exception {
+        matrixTol = 1e-4;
+        int n = Utilities.getInt(1, max);
+        int m = Utilities.getInt(1, max);
+        A = new FloatDenseMatrix(n, m);
+        Ad = Utilities.populate(A);
+    }
+
+    @Test
+    @Override
+    public void testMatrixSolve() {
+        // Not applicable
+    }
+
+    @Test
+    @Override
+    public void testTransMatrixSolve() {
+        // Not applicable
+    }
+
+    @Test
+    @Override
+    public void testTransVectorSolve() {
+        // Not applicable
+    }
+
+    @Test
+    @Override
+    public void testVectorSolve() {
+        // Not applicable
+    }
+
+    @Test
+    public void testSinglePrecisionMult() {
+        int k = Utilities.getInt(1, max);
+        Matrix B = new FloatDenseMatrix(Matrices.random(A.numColumns(), k));
+        Matrix C = new FloatDenseMatrix(A.numRows(), k);
+        A.mult(B, C);
+
+        Matrix Cd = new DenseMatrix(A).mult(new DenseMatrix(B),
+                new DenseMatrix(A.numRows(), k));
+        for (int i = 0; i < C.numRows(); ++i)
+            for (int j = 0; j < C.numColumns(); ++j)
+                assertEquals(Cd.get(i, j), C.get(i, j), tol);
+
+        Vector x = new FloatDenseVector(Matrices.random(A.numColumns()));
+        Vector y = A.mult(x, new FloatDenseVector(A.numRows()));
+        Vector yd = new DenseMatrix(A).mult(new DenseVector(x),
+                new DenseVector(A.numRows()));
+        for (int i = 0; i < y.size(); ++i)
+            assertEquals(yd.get(i), y.get(i), tol);
+    }
+
+}
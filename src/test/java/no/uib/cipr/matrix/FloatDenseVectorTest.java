@@ -0,0 +1,12 @@
+package no.uib.cipr.matrix;
+
+public class FloatDenseVectorTest extends VectorTestAbstract {
+
+    @Override
+    protected void createPrimary() throws Exception {
+        int n = Utilities.getInt(1, max);
+        x = new FloatDenseVector(n);
+        xd = Utilities.populate(x);
+    }
+
+}
@@ -0,0 +1,256 @@
+package no.uib.cipr.matrix;
+
+import au.com.bytecode.opencsv.CSVWriter;
+import com.github.fommil.netlib.BLAS;
+import com.github.fommil.netlib.F2jBLAS;
+import com.google.common.base.Stopwatch;
+import lombok.Cleanup;
+import lombok.extern.java.Log;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the pure Java dgemm and dgemv against the F2J reference
+ */
+@Log
+public class JavaBLASTest {
+
+    private final BLAS ref = new F2jBLAS();
+
+    private final BLAS blas = new JavaBLAS();
+
+    private final Random random = new Random(4);
+
+    private int threads;
+
+    @Before
+    public void setUp() {
+        threads = Parallel.getThreads();
+    }
+
+    @After
+    public void tearDown() {
+        Parallel.setThreads(threads);
+    }
+
+    private double[] random(int n) {
+        double[] x = new double[n];
+        for (int i = 0; i < n; ++i)
+            x[i] = random.nextDouble() - 0.5;
+        return x;
+    }
+
+    private void checkGemm(String ta, String tb, int m, int n, int k,
+            double alpha, double beta) {
+        int offa = random.nextInt(3), offb = random.nextInt(3), offc = random
+                .nextInt(3);
+        int rowsA = ta.equals("N") ? m : k, rowsB = tb.equals("N") ? k : n;
+        int lda = Math.max(1, rowsA + random.nextInt(3)), ldb = Math.max(1,
+                rowsB + random.nextInt(3)), ldc = Math.max(1, m
+                + random.nextInt(3));
+        double[] a = random(offa + lda * (ta.equals("N") ? k : m));
+        double[] b = random(offb + ldb * (tb.equals("N") ? n : k));
+        double[] c = random(offc + ldc * n);
+        double[] expected = c.clone();
+
+        ref.dgemm(ta, tb, m, n, k, alpha, a, offa, lda, b, offb, ldb, beta,
+                expected, offc, ldc);
+        blas.dgemm(ta, tb, m, n, k, alpha, a, offa, lda, b, offb, ldb, beta,
+                c, offc, ldc);
+
+        assertArrayEquals(ta + tb + " " + m + "x" + n + "x" + k, expected, c,
+                1e-10 * Math.max(1, k));
+    }
+
+    private void checkGemv(String t, int m, int n, double alpha, double beta) {
+        int offa = random.nextInt(3), offx = random.nextInt(3), offy = random
+                .nextInt(3);
+        int lda = Math.max(1, m + random.nextInt(3));
+        double[] a = random(offa + lda * n);
+        double[] x = random(offx + (t.equals("N") ? n : m));
+        double[] y = random(offy + (t.equals("N") ? m : n));
+        double[] expected = y.clone();
+
+        ref.dgemv(t, m, n, alpha, a, offa, lda, x, offx, 1, beta, expected,
+                offy, 1);
+        blas.dgemv(t, m, n, alpha, a, offa, lda, x, offx, 1, beta, y, offy, 1);
+
+        assertArrayEquals(t + " " + m + "x" + n, expected, y,
+                1e-10 * Math.max(1, Math.max(m, n)));
+    }
+
+    @Test
+    public void testGemmSmall() {
+        String[] trans = {"N", "T"};
+        for (String ta : trans)
+            for (String tb : trans)
+                for (int m = 0; m < 7; ++m)
+                    for (int n = 0; n < 7; ++n)
+                        for (int k = 0; k < 7; ++k)
+                            checkGemm(ta, tb, m, n, k, 1.5, 0.5);
+    }
+
+    @Test
+    public void testGemmBlocked() {
+        // Crosses the cache block and register tile edges
+        String[] trans = {"N", "T"};
+        for (String ta : trans)
+            for (String tb : trans) {
+                checkGemm(ta, tb, 131, 67, 263, -0.7, 1);
+                checkGemm(ta, tb, 65, 1030, 9, 2, 0);
+            }
+    }
+
+    @Test
+    public void testGemmAlphaBeta() {
+        checkGemm("N", "N", 20, 30, 40, 0, 2);
+        checkGemm("N", "N", 20, 30, 40, 0, 0);
+        checkGemm("N", "N", 20, 30, 40, 1, 1);
+
+        // beta = 0 must not propagate NaN from C
+        double[] a = random(4), b = random(4), c = {Double.NaN, 1, 2, 3};
+        blas.dgemm("N", "N", 2, 2, 2, 1, a, 2, b, 2, 0, c, 2);
+        for (double v : c)
+            assertTrue(!Double.isNaN(v));
+    }
+
+    @Test
+    public void testGemmBuffersReused() {
+        // The packing buffers of a larger product are reused by smaller ones
+        checkGemm("N", "N", 131, 1030, 263, 1, 0);
+        checkGemm("T", "T", 5, 3, 7, 1, 0.5);
+        checkGemm("N", "T", 70, 20, 300, -1, 1);
+    }
+
+    @Test
+    public void testGemmParallel() {
+        Parallel.setThreads(4);
+        checkGemm("N", "N", 150, 170, 120, 1, 0);
+        checkGemm("T", "N", 170, 30, 160, 1, 1);
+        checkGemm("N", "T", 300, 40, 100, -1, 0.5);
+    }
+
+    @Test
+    public void testGemv() {
+        for (String t : new String[]{"N", "T"}) {
+            for (int m = 0; m < 9; ++m)
+                for (int n = 0; n < 9; ++n)
+                    checkGemv(t, m, n, 1.5, 0.5);
+            checkGemv(t, 300, 200, -1, 0);
+            checkGemv(t, 100, 70, 0, 2);
+        }
+    }
+
+    @Test
+    public void testGemvParallel() {
+        Parallel.setThreads(4);
+        checkGemv("N", 2000, 300, 1, 0.5);
+        checkGemv("T", 300, 2000, 1, 0.5);
+    }
+
+    @Test
+    public void testStridedGemv() {
+        // Non-unit increments are left to the reference implementation
+        double[] a = random(12), x = random(8), y = random(6);
+        double[] expected = y.clone();
+        ref.dgemv("N", 3, 4, 1, a, 3, x, 2, 1, expected, 2);
+        blas.dgemv("N", 3, 4, 1, a, 3, x, 2, 1, y, 2);
+        assertArrayEquals(expected, y, 1e-12);
+    }
+
+    /**
+     * Exits with zero if <code>netlib-java</code> loaded {@link JavaBLAS}
+     */
+    public static class Backend {
+
+        public static void main(String[] args) {
+            System.exit(BLAS.getInstance() instanceof JavaBLAS
+                    && JavaBLAS.getInstance() instanceof JavaBLAS ? 0 : 1);
+        }
+
+    }
+
+    @Test
+    public void testSelectedAsBackend() throws Exception {
+        // netlib-java picks its backend once per JVM
+        String java = System.getProperty("java.home") + File.separator
+                + "bin" + File.separator + "java";
+        Process process = new ProcessBuilder(java, "-cp", System
+                .getProperty("java.class.path"),
+                "-Dcom.github.fommil.netlib.BLAS=" + JavaBLAS.class.getName(),
+                Backend.class.getName()).redirectErrorStream(true).start();
+        InputStream output = process.getInputStream();
+        StringBuilder out = new StringBuilder();
+        for (int c = output.read(); c != -1; c = output.read())
+            out.append((char) c);
+        assertEquals(out.toString(), 0, process.waitFor());
+    }
+
+    /**
+     * Creates a CSV file with the time taken for dgemm and dgemv by the F2J
+     * reference and by {@link JavaBLAS}, single and multi-threaded. Columns
+     * are <code>n, f2jGemm, javaGemm, javaGemmParallel, f2jGemv, javaGemv,
+     * javaGemvParallel</code> in nanoseconds for square matrices of size
+     * <code>n</code>.
+     * <p/>
+     * -Xms2g -Xmx2g -Djava.util.logging.config.file=logging.properties
+     *
+     * @param args
+     */
+    public static void main(String[] args) throws Exception {
+        File file = new File("JavaBLASPerf.csv");
+        log.info("writing to " + file);
+        @Cleanup
+        CSVWriter csv = new CSVWriter(new FileWriter(file));
+
+        BLAS f2j = new F2jBLAS(), pure = new JavaBLAS();
+        int cores = Runtime.getRuntime().availableProcessors();
+        Random random = new Random();
+
+        for (int n = 50; n <= 1000; n += 50) {
+            double[] a = new double[n * n], b = new double[n * n], c = new double[n * n];
+            double[] x = new double[n], y = new double[n];
+            for (int i = 0; i < a.length; ++i) {
+                a[i] = random.nextDouble();
+                b[i] = random.nextDouble();
+            }
+            for (int i = 0; i < n; ++i)
+                x[i] = random.nextDouble();
+
+            long[] times = new long[6];
+            BLAS[] impls = {f2j, pure, pure};
+            int[] threads = {1, 1, cores};
+            for (int r = 0; r < 2; ++r) // first round is warm up
+                for (int i = 0; i < impls.length; ++i) {
+                    Parallel.setThreads(threads[i]);
+                    Stopwatch timer = Stopwatch.createStarted();
+                    impls[i].dgemm("N", "N", n, n, n, 1, a, n, b, n, 0, c, n);
+                    times[i] = timer.elapsed(TimeUnit.NANOSECONDS);
+
+                    timer = Stopwatch.createStarted();
+                    for (int rep = 0; rep < 10; ++rep)
+                        impls[i].dgemv("N", n, n, 1, a, n, x, 1, 0, y, 1);
+                    times[3 + i] = timer.elapsed(TimeUnit.NANOSECONDS) / 10;
+                }
+
+            String[] line = new String[7];
+            line[0] = Integer.toString(n);
+            for (int i = 0; i < times.length; ++i)
+                line[i + 1] = Long.toString(times[i]);
+            log.info(java.util.Arrays.toString(line));
+            csv.writeNext(line);
+        }
+    }
+
+}
@@ -79,6 +79,13 @@ public class LQTest extends OrthogonalTestAbstract {
         assertLQEquals(Ac, lq);
     }
 
+    @Test
+    public void testApplyQ() {
+        LQ lq = new LQ(Ac.numRows(), Ac.numColumns());
+        lq.factor(new DenseMatrix(Ac));
+        assertApplyQ(lq, 0, 0);
+    }
+
     private void assertLQEquals(Matrix A, LQ lq) {
         assertMatrixEquals(A, lq.getL().mult(lq.getQ(), A.copy().zero()));
     }
@@ -81,6 +81,11 @@ public abstract class MatrixTestAbstract {
      */
     protected double tol = 1e-4;
 
+    /**
+     * Tolerance for comparing matrix contents
+     */
+    protected double matrixTol = 1e-12;
+
     /**
      * Maximum matrix size, to avoid too slow tests
      */
@@ -1228,7 +1233,7 @@ public abstract class MatrixTestAbstract {
         for (int i = 0; i < A.numRows(); ++i) {
             assertTrue(A.numColumns() == Ad[i].length);
             for (int j = 0; j < A.numColumns(); ++j)
-                assertEquals(Ad[i][j], A.get(i, j), 1e-12);
+                assertEquals(Ad[i][j], A.get(i, j), matrixTol);
         }
     }
 
@@ -1240,7 +1245,7 @@ public abstract class MatrixTestAbstract {
         for (int i = 0; i < A.numRows(); ++i) {
             assertTrue(Ac[i].length == Ad[i].length);
             for (int j = 0; j < A.numColumns(); ++j)
-                assertEquals(Ad[i][j], Ac[i][j], 1e-12);
+                assertEquals(Ad[i][j], Ac[i][j], matrixTol);
         }
     }
 
@@ -0,0 +1,14 @@
+package no.uib.cipr.matrix;
+
+/**
+ * Tests the tiled dense matrix, with tiles off the heap
+ */
+public class OffHeapTiledDenseMatrixTest extends TiledDenseMatrixTest {
+
+    @Override
+    protected void createPrimary() throws Exception {
+        offHeap = true;
+        super.createPrimary();
+    }
+
+}
@@ -60,4 +60,21 @@ public abstract class OrthogonalTestAbstract {
                 assertEquals(A.get(i, j), B.get(i, j), 1e-12);
     }
 
+    /**
+     * Checks that applying the reflectors to the identity gives the full
+     * orthogonal matrix, holding the explicit factor at the given offsets
+     */
+    protected void assertApplyQ(OrthogonalComputer oc, int row, int column) {
+        int order = Math.max(oc.m, oc.n);
+        DenseMatrix Qfull = oc.applyQ(new DenseMatrix(Matrices
+                .identity(order)));
+        DenseMatrix Q = oc.getQ();
+        for (int i = 0; i < Q.numRows(); ++i)
+            for (int j = 0; j < Q.numColumns(); ++j)
+                assertEquals(Q.get(i, j), Qfull.get(row + i, column + j),
+                        1e-12);
+        assertMatrixEquals(Matrices.identity(order), oc
+                .applyQTranspose(Qfull));
+    }
+
 }
@@ -0,0 +1,118 @@
+package no.uib.cipr.matrix;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the shared parallel range splitting
+ */
+public class ParallelTest {
+
+    private int threads;
+
+    @Before
+    public void setUp() {
+        threads = Parallel.getThreads();
+        Parallel.setThreads(4);
+    }
+
+    @After
+    public void tearDown() {
+        Parallel.setThreads(threads);
+    }
+
+    @Test
+    public void testCoversRangeOnce() {
+        for (int n = 0; n < 50; ++n) {
+            final AtomicIntegerArray hits = new AtomicIntegerArray(n);
+            Parallel.forRange(n, 1, new Parallel.RangeTask() {
+                public void run(int from, int to) {
+                    for (int i = from; i < to; ++i)
+                        hits.incrementAndGet(i);
+                }
+            });
+            for (int i = 0; i < n; ++i)
+                assertEquals(1, hits.get(i));
+        }
+    }
+
+    @Test
+    public void testNested() {
+        final AtomicIntegerArray hits = new AtomicIntegerArray(100);
+        Parallel.forRange(10, 1, new Parallel.RangeTask() {
+            public void run(int from, int to) {
+                for (int i = from; i < to; ++i) {
+                    final int offset = 10 * i;
+                    Parallel.forRange(10, 1, new Parallel.RangeTask() {
+                        public void run(int from, int to) {
+                            for (int j = from; j < to; ++j)
+                                hits.incrementAndGet(offset + j);
+                        }
+                    });
+                }
+            }
+        });
+        for (int i = 0; i < 100; ++i)
+            assertEquals(1, hits.get(i));
+    }
+
+    @Test
+    public void testFailurePropagates() {
+        try {
+            Parallel.forRange(100, 1, new Parallel.RangeTask() {
+                public void run(int from, int to) {
+                    if (to == 100)
+                        throw new IllegalStateException("last chunk");
+                }
+            });
+            fail("exception not propagated");
+        } catch (IllegalStateException e) {
+            assertEquals("last chunk", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testGrowWhileInUse() throws InterruptedException {
+        final AtomicInteger failures = new AtomicInteger();
+        Thread[] callers = new Thread[4];
+        for (int t = 0; t < callers.length; ++t) {
+            callers[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int r = 0; r < 200; ++r)
+                            Parallel.forRange(64, 1, new Parallel.RangeTask() {
+                                public void run(int from, int to) {
+                                    // nothing
+                                }
+                            });
+                    } catch (RuntimeException e) {
+                        failures.incrementAndGet();
+                    }
+                }
+            };
+            callers[t].start();
+        }
+
+        // growing the pool must not reject the tasks of the callers
+        for (int threads = 2; threads <= 32; ++threads) {
+            Parallel.setThreads(threads);
+            Parallel.forRange(threads, 1, new Parallel.RangeTask() {
+                public void run(int from, int to) {
+                    // nothing
+                }
+            });
+        }
+        for (Thread caller : callers)
+            caller.join();
+        assertEquals(0, failures.get());
+    }
+
+}
@@ -3,6 +3,8 @@ package no.uib.cipr.matrix;
 import no.uib.cipr.matrix.sparse.CompRowMatrix;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
+
 /**
  * @author Sam Halliday
  */
@@ -68,4 +70,22 @@ public class PermutationMatrixTest {
         MatrixTestAbstract.assertMatrixEquals(eI, c);
     }
 
+    @Test
+    public void testMultiplyVector() {
+        Matrix p = PermutationMatrix.fromPartialPivots(piv);
+        Vector x = new DenseVector(new double[]{1, 2, 3});
+        for (int t = 0; t < 2; t++) {
+            DenseMatrix d = new DenseMatrix(p);
+            Vector y = p.mult(x, new DenseVector(3)), yd = d.mult(x,
+                    new DenseVector(3));
+            Vector z = p.transMult(x, new DenseVector(3)), zd = d.transMult(
+                    x, new DenseVector(3));
+            for (int i = 0; i < 3; i++) {
+                assertEquals(yd.get(i), y.get(i), 0);
+                assertEquals(zd.get(i), z.get(i), 0);
+            }
+            p.transpose();
+        }
+    }
+
 }
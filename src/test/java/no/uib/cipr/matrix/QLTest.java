@@ -79,6 +79,13 @@ public class QLTest extends OrthogonalTestAbstract {
         assertEqualsQL(Ar, ql);
     }
 
+    @Test
+    public void testApplyQ() {
+        QL ql = new QL(Ar.numRows(), Ar.numColumns());
+        ql.factor(new DenseMatrix(Ar));
+        assertApplyQ(ql, 0, Ar.numRows() - Ar.numColumns());
+    }
+
     private void assertEqualsQL(Matrix A, QL ql) {
         assertMatrixEquals(A, ql.getQ().mult(ql.getL(), A.copy().zero()));
     }
@@ -164,6 +164,35 @@ public class QRPTest {
         assertEquals(Math.min(rand.numRows(), rand.numColumns()), qrp.getRank());
     }
 
+    @Test
+    public void testApplyQ() {
+        Matrix A = Matrices.random(6, 4);
+
+        QRP qrp = QRP.factorize(A);
+        DenseMatrix Q = qrp.applyQ(new DenseMatrix(Matrices.identity(6)));
+
+        assertMatrixEquals(qrp.getQ(), Q);
+        assertMatrixEquals(Matrices.identity(6), qrp.applyQTranspose(Q));
+    }
+
+    @Test
+    public void testSolveRankDeficient() {
+        // the last column repeats the first
+        Matrix A = Matrices.random(8, 4);
+        for (int i = 0; i < 8; ++i)
+            A.set(i, 3, A.get(i, 0));
+        DenseMatrix B = new DenseMatrix(Matrices.random(8, 2));
+
+        QRP qrp = QRP.factorize(A);
+        assertEquals(3, qrp.getRank());
+        DenseMatrix X = qrp.solve(B.copy());
+
+        // the residual is orthogonal to the columns of A
+        Matrix r = A.multAdd(-1, X, B.copy());
+        assertMatrixEquals(new DenseMatrix(4, 2), A.transAmult(r,
+                new DenseMatrix(4, 2)));
+    }
+
     /**
      * Executes the multiplication C = Q*P*R
      * 
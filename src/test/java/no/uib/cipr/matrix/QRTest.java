@@ -22,6 +22,9 @@ package no.uib.cipr.matrix;
 
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
 /**
  * QR test
  */
@@ -79,6 +82,30 @@ public class QRTest extends OrthogonalTestAbstract {
         assertEqualsQR(Ar, qr);
     }
 
+    @Test
+    public void testApplyQ() {
+        QR qr = new QR(Ar.numRows(), Ar.numColumns());
+        qr.factor(new DenseMatrix(Ar));
+        assertApplyQ(qr, 0, 0);
+    }
+
+    @Test
+    public void testLeastSquares() {
+        int m = Ar.numRows(), n = Ar.numColumns(), nrhs = Utilities.getInt(1,
+                5);
+        DenseMatrix B = new DenseMatrix(Matrices.random(m, nrhs));
+        QR qr = QR.factorize(Ar);
+        DenseMatrix X = qr.solve(B.copy());
+        // the reflectors suffice, Q is never formed
+        assertNull(qr.Q);
+        DenseMatrix expected = (DenseMatrix) new DenseMatrix(Ar).solve(B,
+                new DenseMatrix(n, nrhs));
+        for (int i = 0; i < n; ++i)
+            for (int j = 0; j < nrhs; ++j)
+                assertEquals(expected.get(i, j), X.get(i, j), 1e-8 * Math
+                        .max(1, Math.abs(expected.get(i, j))));
+    }
+
     private void assertEqualsQR(Matrix A, QR qr) {
         assertMatrixEquals(A, qr.getQ().mult(qr.getR(), A.copy().zero()));
     }
@@ -79,6 +79,13 @@ public class RQTest extends OrthogonalTestAbstract {
         assertEqualsRQ(Ac, rq);
     }
 
+    @Test
+    public void testApplyQ() {
+        RQ rq = new RQ(Ac.numRows(), Ac.numColumns());
+        rq.factor(new DenseMatrix(Ac));
+        assertApplyQ(rq, Ac.numColumns() - Ac.numRows(), 0);
+    }
+
     private void assertEqualsRQ(Matrix A, RQ rq) {
         assertMatrixEquals(A, rq.getR().mult(rq.getQ(), A.copy().zero()));
     }
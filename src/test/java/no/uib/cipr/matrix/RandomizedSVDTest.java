@@ -0,0 +1,100 @@
+package no.uib.cipr.matrix;
+
+import no.uib.cipr.matrix.sparse.CompRowMatrix;
+import no.uib.cipr.matrix.sparse.FlexCompRowMatrix;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the randomized truncated SVD
+ */
+public class RandomizedSVDTest {
+
+    /**
+     * Matrix with the given singular values and random singular vectors
+     */
+    private static DenseMatrix spectrum(int m, int n, double[] s) {
+        DenseMatrix U = QR.factorize(Matrices.random(m, s.length)).getQ();
+        DenseMatrix V = QR.factorize(Matrices.random(n, s.length)).getQ();
+        DenseMatrix US = U.copy();
+        for (int j = 0; j < s.length; ++j)
+            for (int i = 0; i < m; ++i)
+                US.set(i, j, s[j] * U.get(i, j));
+        return (DenseMatrix) US.transBmult(V, new DenseMatrix(m, n));
+    }
+
+    private static void assertOrthonormal(DenseMatrix Q) {
+        Matrix I = Q.transAmult(Q, new DenseMatrix(Q.numColumns(), Q
+                .numColumns()));
+        for (MatrixEntry e : I)
+            assertEquals(e.row() == e.column() ? 1 : 0, e.get(), 1e-10);
+    }
+
+    @Test
+    public void testLowRank() throws NotConvergedException {
+        int m = Utilities.getInt(20, 80), n = Utilities.getInt(20, 80);
+        DenseMatrix A = (DenseMatrix) Matrices.random(m, 5).transBmult(
+                Matrices.random(n, 5), new DenseMatrix(m, n));
+
+        RandomizedSVD svd = new RandomizedSVD(5).setOversampling(3)
+                .setPowerIterations(0).factor(A);
+        double[] S = SVD.factorize(A).getS();
+        for (int i = 0; i < 5; ++i)
+            assertEquals(S[i], svd.getS()[i], 1e-10 * S[0]);
+
+        // U * S * Vt reproduces the matrix
+        DenseMatrix US = svd.getU().copy();
+        for (int j = 0; j < 5; ++j)
+            for (int i = 0; i < m; ++i)
+                US.set(i, j, svd.getS()[j] * US.get(i, j));
+        Matrix B = US.mult(svd.getVt(), new DenseMatrix(m, n));
+        for (MatrixEntry e : A)
+            assertEquals(e.get(), B.get(e.row(), e.column()), 1e-10 * S[0]);
+
+        assertOrthonormal(svd.getU());
+        assertOrthonormal((DenseMatrix) svd.getVt().transpose(new DenseMatrix(
+                n, 5)));
+    }
+
+    @Test
+    public void testDecayingSpectrum() throws NotConvergedException {
+        double[] s = new double[40];
+        for (int i = 0; i < s.length; ++i)
+            s[i] = Math.pow(0.7, i);
+        DenseMatrix A = spectrum(90, 60, s);
+
+        RandomizedSVD svd = RandomizedSVD.factorize(A, 8);
+        for (int i = 0; i < 8; ++i)
+            assertEquals(s[i], svd.getS()[i], 1e-6);
+    }
+
+    @Test
+    public void testSparse() throws NotConvergedException {
+        int m = 300, n = 200;
+        FlexCompRowMatrix F = new FlexCompRowMatrix(m, n);
+        Random random = new Random(1);
+        for (int i = 0; i < m; ++i)
+            for (int j = 0; j < 5; ++j)
+                F.set(i, random.nextInt(n), random.nextGaussian());
+        CompRowMatrix A = new CompRowMatrix(F);
+
+        RandomizedSVD sparse = new RandomizedSVD(10).setRandom(new Random(2))
+                .factor(A);
+        RandomizedSVD dense = new RandomizedSVD(10).setRandom(new Random(2))
+                .factor(new DenseMatrix(A));
+        for (int i = 0; i < 10; ++i)
+            assertEquals(dense.getS()[i], sparse.getS()[i], 1e-10);
+        assertOrthonormal(sparse.getU());
+
+        // projections underestimate, but are close on the leading singular
+        // value even for a flat spectrum
+        double[] S = SVD.factorize(A).getS();
+        assertTrue(sparse.getS()[0] <= S[0] * (1 + 1e-12));
+        assertTrue(sparse.getS()[0] >= 0.95 * S[0]);
+    }
+
+}
@@ -0,0 +1,73 @@
+package no.uib.cipr.matrix;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the tiled Cholesky decomposition
+ */
+public class TiledCholeskyTest {
+
+    static DenseMatrix spd(int n) {
+        DenseMatrix A = new DenseMatrix(n, n);
+        Utilities.populate(A);
+        DenseMatrix S = (DenseMatrix) A.transAmult(A, new DenseMatrix(n, n));
+        Utilities.addDiagonal(S, 1);
+        return S;
+    }
+
+    private void assertFactor(int n, int nb, boolean offHeap, int threads) {
+        DenseMatrix A = spd(n);
+        TiledCholesky c;
+        int saved = Parallel.getThreads();
+        try {
+            Parallel.setThreads(threads);
+            c = TiledCholesky.factorize(new TiledDenseMatrix(A, nb, offHeap));
+        } finally {
+            Parallel.setThreads(saved);
+        }
+        assertTrue(c.isSPD());
+
+        // L L^T = A
+        DenseMatrix L = new DenseMatrix(c.getL());
+        Matrix LLt = L.transBmult(L, new DenseMatrix(n, n));
+        for (int i = 0; i < n; ++i)
+            for (int j = 0; j < n; ++j)
+                assertEquals(A.get(i, j), LLt.get(i, j), 1e-10 * n);
+
+        DenseMatrix B = new DenseMatrix(Matrices.random(n, 3));
+        DenseMatrix X = c.solve(B.copy());
+        Matrix R = A.multAdd(-1, X, B.copy());
+        assertEquals(0, R.norm(Matrix.Norm.Maxvalue), 1e-8);
+    }
+
+    @Test
+    public void testFactor() {
+        assertFactor(Utilities.getInt(1, 100), Utilities.getInt(1, 20),
+                false, 1);
+    }
+
+    @Test
+    public void testParallelFactor() {
+        assertFactor(Utilities.getInt(50, 150), Utilities.getInt(4, 20),
+                false, 4);
+    }
+
+    @Test
+    public void testOffHeapFactor() {
+        assertFactor(Utilities.getInt(50, 150), Utilities.getInt(4, 20),
+                true, 4);
+    }
+
+    @Test
+    public void testNotSPD() {
+        DenseMatrix A = spd(40);
+        A.set(30, 30, -1);
+        assertFalse(TiledCholesky.factorize(new TiledDenseMatrix(A, 8, false))
+                .isSPD());
+    }
+
+}
@@ -0,0 +1,79 @@
+package no.uib.cipr.matrix;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the tiled dense matrix, with tiles on the heap
+ */
+public class TiledDenseMatrixTest extends MatrixTestAbstract {
+
+    protected boolean offHeap;
+
+    @Override
+    protected void createPrimary() throws Exception {
+        int n = Utilities.getInt(1, max);
+        int m = Utilities.getInt(1, max);
+        A = new TiledDenseMatrix(n, m, Utilities.getInt(1, 20), offHeap);
+        Ad = Utilities.populate(A);
+    }
+
+    @Test
+    @Override
+    public void testMatrixSolve() {
+        // Not applicable
+    }
+
+    @Test
+    @Override
+    public void testTransMatrixSolve() {
+        // Not applicable
+    }
+
+    @Test
+    @Override
+    public void testTransVectorSolve() {
+        // Not applicable
+    }
+
+    @Test
+    @Override
+    public void testVectorSolve() {
+        // Not applicable
+    }
+
+    @Test
+    public void testTiledMult() {
+        int nb = ((TiledDenseMatrix) A).getTileSize(), k = Utilities.getInt(1,
+                max);
+        // B in the other storage, so that only some tiles are copied
+        Matrix B = new TiledDenseMatrix(Matrices.random(A.numColumns(), k), nb,
+                !offHeap);
+        Matrix C = new TiledDenseMatrix(Matrices.random(A.numRows(), k), nb,
+                offHeap);
+        Matrix expected = new DenseMatrix(A).multAdd(2, new DenseMatrix(B),
+                new DenseMatrix(C));
+
+        int threads = Parallel.getThreads();
+        try {
+            Parallel.setThreads(4);
+            A.multAdd(2, B, C);
+        } finally {
+            Parallel.setThreads(threads);
+        }
+        for (int i = 0; i < C.numRows(); ++i)
+            for (int j = 0; j < k; ++j)
+                assertEquals(expected.get(i, j), C.get(i, j), 1e-10);
+    }
+
+    @Test
+    public void testTiledSet() {
+        TiledDenseMatrix T = (TiledDenseMatrix) A;
+        Matrix B = new TiledDenseMatrix(A.numRows(), A.numColumns(), T
+                .getTileSize(), !offHeap).set(A);
+        assertMatrixEquals(Ad, B);
+        assertMatrixEquals(Ad, T.copy());
+    }
+
+}
@@ -0,0 +1,129 @@
+package no.uib.cipr.matrix;
+
+import au.com.bytecode.opencsv.CSVWriter;
+import com.google.common.base.Stopwatch;
+import lombok.Cleanup;
+import lombok.extern.java.Log;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the tiled LU decomposition
+ */
+@Log
+public class TiledLUTest {
+
+    private void assertFactor(int n, int nb, boolean offHeap, int threads) {
+        DenseMatrix A = new DenseMatrix(Matrices.random(n, n));
+        TiledLU lu;
+        int saved = Parallel.getThreads();
+        try {
+            Parallel.setThreads(threads);
+            lu = TiledLU.factorize(new TiledDenseMatrix(A, nb, offHeap));
+        } finally {
+            Parallel.setThreads(saved);
+        }
+
+        // the same factorization as LAPACK
+        DenseLU expected = DenseLU.factorize(A);
+        assertArrayEquals(expected.getPivots(), lu.getPivots());
+        DenseMatrix LU = new DenseMatrix(lu.getLU());
+        for (int i = 0; i < n; ++i)
+            for (int j = 0; j < n; ++j)
+                assertEquals(expected.getLU().get(i, j), LU.get(i, j), 1e-8);
+
+        DenseMatrix B = new DenseMatrix(Matrices.random(n, 3));
+        DenseMatrix X = lu.solve(B.copy());
+        Matrix R = A.multAdd(-1, X, B.copy());
+        assertEquals(0, R.norm(Matrix.Norm.Maxvalue), 1e-8 * A
+                .norm(Matrix.Norm.Maxvalue)
+                * n);
+    }
+
+    @Test
+    public void testFactor() {
+        assertFactor(Utilities.getInt(1, 100), Utilities.getInt(1, 20),
+                false, 1);
+    }
+
+    @Test
+    public void testParallelFactor() {
+        assertFactor(Utilities.getInt(50, 150), Utilities.getInt(4, 20),
+                false, 4);
+    }
+
+    @Test
+    public void testOffHeapFactor() {
+        assertFactor(Utilities.getInt(50, 150), Utilities.getInt(4, 20),
+                true, 4);
+    }
+
+    @Test
+    public void testSingular() {
+        DenseMatrix A = new DenseMatrix(Matrices.random(30, 30));
+        for (int i = 0; i < 30; ++i)
+            A.set(i, 17, 0);
+        assertTrue(TiledLU.factorize(new TiledDenseMatrix(A, 7, false))
+                .isSingular());
+    }
+
+    /**
+     * Creates a CSV file with the time taken by the dense LU and Cholesky
+     * decompositions as single LAPACK calls, and tiled on an increasing
+     * number of threads. Columns are the number of threads (zero for the
+     * single LAPACK call), the tile size, and the LU and Cholesky times in
+     * nanoseconds. The arguments are the matrix size (default 2000) and the
+     * tile size.
+     * <p/>
+     * -Xms2g -Xmx2g -Djava.util.logging.config.file=logging.properties
+     *
+     * @param args
+     */
+    public static void main(String[] args) throws Exception {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int nb = args.length > 1 ? Integer.parseInt(args[1])
+                : TiledDenseMatrix.DEFAULT_TILE_SIZE;
+        File file = new File("TiledLUPerf.csv");
+        log.info("writing to " + file);
+        @Cleanup
+        CSVWriter csv = new CSVWriter(new FileWriter(file));
+
+        DenseMatrix A = TiledCholeskyTest.spd(n);
+        int saved = Parallel.getThreads();
+        int cores = Math.max(2, Runtime.getRuntime().availableProcessors());
+        try {
+            for (int threads = 0; threads <= cores; threads = Math.max(2,
+                    2 * threads)) {
+                Parallel.setThreads(Math.max(1, threads));
+                int tileSize = threads == 0 ? 0 : nb;
+                long lu = 0, chol = 0;
+                for (int r = 0; r < 2; ++r) { // first round is warm up
+                    Stopwatch timer = Stopwatch.createStarted();
+                    new DenseLU(n, n).setTileSize(tileSize).factor(A.copy());
+                    lu = timer.elapsed(TimeUnit.NANOSECONDS);
+
+                    timer = Stopwatch.createStarted();
+                    new DenseCholesky(n, false).setTileSize(tileSize).factor(
+                            new LowerSPDDenseMatrix(A));
+                    chol = timer.elapsed(TimeUnit.NANOSECONDS);
+                }
+
+                String[] line = { Integer.toString(threads),
+                        Integer.toString(tileSize), Long.toString(lu),
+                        Long.toString(chol) };
+                log.info(java.util.Arrays.toString(line));
+                csv.writeNext(line);
+            }
+        } finally {
+            Parallel.setThreads(saved);
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+package no.uib.cipr.matrix;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the column updates of the QR decomposition
+ */
+public class UpdatableQRTest {
+
+    /**
+     * Checks that Q has orthonormal columns, R is upper triangular, and their
+     * product is the given matrix
+     */
+    private static void assertQR(Matrix A, UpdatableQR qr) {
+        int n = A.numColumns();
+        assertEquals(n, qr.numColumns());
+        DenseMatrix Q = qr.getQ();
+        Matrix QtQ = Q.transAmult(Q, new DenseMatrix(n, n));
+        Matrix QR = Q.mult(qr.getR(), new DenseMatrix(A.numRows(), n));
+        for (int i = 0; i < n; ++i)
+            for (int j = 0; j < n; ++j)
+                assertEquals(i == j ? 1 : 0, QtQ.get(i, j), 1e-12);
+        for (int i = 0; i < A.numRows(); ++i)
+            for (int j = 0; j < n; ++j)
+                assertEquals(A.get(i, j), QR.get(i, j), 1e-12);
+    }
+
+    /**
+     * The given columns of A
+     */
+    private static DenseMatrix columns(Matrix A, int[] columns) {
+        DenseMatrix B = new DenseMatrix(A.numRows(), columns.length);
+        for (int j = 0; j < columns.length; ++j)
+            for (int i = 0; i < A.numRows(); ++i)
+                B.set(i, j, A.get(i, columns[j]));
+        return B;
+    }
+
+    @Test
+    public void testAppend() {
+        int m = Utilities.getInt(10, 60), n = Utilities.getInt(1, m);
+        Matrix A = Matrices.random(m, n);
+        UpdatableQR qr = new UpdatableQR(m);
+        for (int j = 0; j < n; ++j)
+            qr.appendColumn(Matrices.getColumn(A, j));
+        assertQR(A, qr);
+    }
+
+    @Test
+    public void testRemove() {
+        int m = Utilities.getInt(10, 60);
+        Matrix A = Matrices.random(m, 5);
+        UpdatableQR qr = new UpdatableQR(m).factor(A);
+
+        qr.removeColumn(1);
+        assertQR(columns(A, new int[]{0, 2, 3, 4}), qr);
+        qr.removeColumn(3);
+        assertQR(columns(A, new int[]{0, 2, 3}), qr);
+        qr.removeColumn(0);
+        assertQR(columns(A, new int[]{2, 3}), qr);
+
+        qr.appendColumn(Matrices.getColumn(A, 1));
+        assertQR(columns(A, new int[]{2, 3, 1}), qr);
+    }
+
+    @Test
+    public void testRefactorInterval() {
+        int m = 40;
+        Matrix A = Matrices.random(m, 8);
+        UpdatableQR qr = new UpdatableQR(m).setRefactorInterval(2).factor(
+                columns(A, new int[]{0, 1, 2}));
+        for (int j = 3; j < 8; ++j) {
+            qr.appendColumn(Matrices.getColumn(A, j));
+            qr.removeColumn(0);
+        }
+        assertQR(columns(A, new int[]{5, 6, 7}), qr);
+    }
+
+    @Test
+    public void testSolve() {
+        int m = Utilities.getInt(10, 60), n = Utilities.getInt(1, m);
+        DenseMatrix A = new DenseMatrix(Matrices.random(m, n));
+        DenseMatrix B = new DenseMatrix(Matrices.random(m, 2));
+        DenseMatrix X = new UpdatableQR(m).factor(A).solve(B);
+        DenseMatrix expected = QR.factorize(A).solve(B.copy());
+        for (int i = 0; i < n; ++i)
+            for (int j = 0; j < 2; ++j)
+                assertEquals(expected.get(i, j), X.get(i, j), 1e-8 * Math
+                        .max(1, Math.abs(expected.get(i, j))));
+    }
+
+    @Test(expected = MatrixSingularException.class)
+    public void testDependentColumn() {
+        Matrix A = Matrices.random(10, 2);
+        UpdatableQR qr = new UpdatableQR(10).factor(A);
+        Vector a = Matrices.getColumn(A, 0).add(2, Matrices.getColumn(A, 1));
+        qr.appendColumn(a);
+    }
+
+}
@@ -0,0 +1,230 @@
+package no.uib.cipr.matrix;
+
+import au.com.bytecode.opencsv.CSVWriter;
+import com.github.fommil.netlib.BLAS;
+import com.github.fommil.netlib.F2jBLAS;
+import com.google.common.base.Stopwatch;
+import lombok.Cleanup;
+import lombok.extern.java.Log;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the pure Java level 1 kernels against the F2J reference, on short
+ * vectors and on vectors long enough to run in parallel
+ */
+@Log
+public class VectorKernelsTest {
+
+    private final BLAS ref = new F2jBLAS();
+
+    private final Random random = new Random(5);
+
+    private int threads;
+
+    @Before
+    public void setUp() {
+        threads = Parallel.getThreads();
+        Parallel.setThreads(4);
+    }
+
+    @After
+    public void tearDown() {
+        Parallel.setThreads(threads);
+    }
+
+    private int[] sizes() {
+        return new int[] { 0, 1, 3, 7, 100, 2 * VectorKernels.GRAIN
+                * VectorKernels.BLOCK + 13 };
+    }
+
+    private double[] random(int n) {
+        double[] x = new double[n];
+        for (int i = 0; i < n; ++i)
+            x[i] = random.nextDouble() - 0.5;
+        return x;
+    }
+
+    @Test
+    public void testAxpy() {
+        for (int n : sizes()) {
+            double[] x = random(n), y = random(n), expected = y.clone();
+            ref.daxpy(n, 1.5, x, 1, expected, 1);
+            VectorKernels.axpy(n, 1.5, x, y);
+            assertArrayEquals(expected, y, 1e-14);
+        }
+    }
+
+    @Test
+    public void testAxpby() {
+        for (int n : sizes()) {
+            double[] x = random(n), y = random(n), expected = y.clone();
+            ref.dscal(n, -0.5, expected, 1);
+            ref.daxpy(n, 1.5, x, 1, expected, 1);
+            VectorKernels.axpby(n, 1.5, x, -0.5, y);
+            assertArrayEquals(expected, y, 1e-14);
+
+            // beta of zero ignores y
+            java.util.Arrays.fill(y, Double.NaN);
+            VectorKernels.axpby(n, 2, x, 0, y);
+            for (int i = 0; i < n; ++i)
+                assertEquals(2 * x[i], y[i], 0);
+        }
+    }
+
+    @Test
+    public void testScal() {
+        for (int n : sizes()) {
+            double[] x = random(n), expected = x.clone();
+            ref.dscal(n, 3, expected, 1);
+            VectorKernels.scal(n, 3, x);
+            assertArrayEquals(expected, x, 1e-14);
+        }
+    }
+
+    @Test
+    public void testReductions() {
+        for (int n : sizes()) {
+            double[] x = random(n), y = random(n);
+            double tol = 1e-12 * Math.max(1, n);
+            assertEquals(ref.ddot(n, x, 1, y, 1), VectorKernels.dot(n, x, y),
+                    tol);
+            assertEquals(ref.dasum(n, x, 1), VectorKernels.asum(n, x), tol);
+            assertEquals(ref.dnrm2(n, x, 1), VectorKernels.nrm2(n, x), tol);
+            if (n > 0)
+                assertEquals(Math.abs(x[ref.idamax(n, x, 1) - 1]),
+                        VectorKernels.amax(n, x), 0);
+        }
+    }
+
+    @Test
+    public void testReductionsIndependentOfThreads() {
+        int n = 4 * VectorKernels.GRAIN * VectorKernels.BLOCK + 5;
+        double[] x = random(n), y = random(n);
+        Parallel.setThreads(1);
+        double dot = VectorKernels.dot(n, x, y), asum = VectorKernels.asum(n,
+                x), nrm2 = VectorKernels.nrm2(n, x);
+        for (int t = 2; t <= 8; ++t) {
+            Parallel.setThreads(t);
+            assertEquals(dot, VectorKernels.dot(n, x, y), 0);
+            assertEquals(asum, VectorKernels.asum(n, x), 0);
+            assertEquals(nrm2, VectorKernels.nrm2(n, x), 0);
+        }
+    }
+
+    @Test
+    public void testNrm2Scaling() {
+        for (int n : sizes()) {
+            if (n == 0)
+                continue;
+            double[] x = random(n);
+            double norm = ref.dnrm2(n, x, 1);
+            for (double scale : new double[] { 1e300, 1e-300 }) {
+                double[] y = x.clone();
+                ref.dscal(n, scale, y, 1);
+                assertEquals(1, VectorKernels.nrm2(n, y) / (norm * scale),
+                        1e-12);
+            }
+        }
+
+        double[] x = { 1, Double.POSITIVE_INFINITY, 2 };
+        assertEquals(Double.POSITIVE_INFINITY, VectorKernels.nrm2(3, x), 0);
+        x[1] = Double.NaN;
+        assertEquals(Double.NaN, VectorKernels.nrm2(3, x), 0);
+    }
+
+    /**
+     * Creates a CSV file with the time taken for axpy, dot and nrm2 by the F2J
+     * reference, by the plain loops <code>DenseVector</code> used before, and
+     * by {@link VectorKernels}, single and multi-threaded. Columns are
+     * <code>n</code> followed by those four timings for each operation, in
+     * nanoseconds per call.
+     * <p/>
+     * -Xms2g -Xmx2g -Djava.util.logging.config.file=logging.properties
+     *
+     * @param args
+     */
+    public static void main(String[] args) throws Exception {
+        File file = new File("VectorKernelsPerf.csv");
+        log.info("writing to " + file);
+        @Cleanup
+        CSVWriter csv = new CSVWriter(new FileWriter(file));
+
+        BLAS f2j = new F2jBLAS();
+        int cores = Runtime.getRuntime().availableProcessors();
+        Random random = new Random();
+        double sink = 0;
+
+        for (int n = 1000; n <= 10000000; n *= 10) {
+            double[] x = new double[n], y = new double[n];
+            for (int i = 0; i < n; ++i) {
+                x[i] = random.nextDouble();
+                y[i] = random.nextDouble();
+            }
+            int reps = Math.max(10, 100000000 / n);
+
+            long[] times = new long[12];
+            for (int r = 0; r < 2; ++r) // first round is warm up
+                for (int impl = 0; impl < 4; ++impl) {
+                    Parallel.setThreads(impl == 3 ? cores : 1);
+
+                    Stopwatch timer = Stopwatch.createStarted();
+                    for (int rep = 0; rep < reps; ++rep)
+                        if (impl == 0)
+                            f2j.daxpy(n, 1e-9, x, 1, y, 1);
+                        else if (impl == 1)
+                            for (int i = 0; i < n; i++)
+                                y[i] += 1e-9 * x[i];
+                        else
+                            VectorKernels.axpy(n, 1e-9, x, y);
+                    times[impl] = timer.elapsed(TimeUnit.NANOSECONDS) / reps;
+
+                    timer = Stopwatch.createStarted();
+                    for (int rep = 0; rep < reps; ++rep)
+                        if (impl == 0)
+                            sink += f2j.ddot(n, x, 1, y, 1);
+                        else if (impl == 1) {
+                            double dot = 0.;
+                            for (int i = 0; i < n; ++i)
+                                dot += x[i] * y[i];
+                            sink += dot;
+                        } else
+                            sink += VectorKernels.dot(n, x, y);
+                    times[4 + impl] = timer.elapsed(TimeUnit.NANOSECONDS)
+                            / reps;
+
+                    timer = Stopwatch.createStarted();
+                    for (int rep = 0; rep < reps; ++rep)
+                        if (impl == 0)
+                            sink += f2j.dnrm2(n, x, 1);
+                        else if (impl == 1) {
+                            double norm = 0;
+                            for (int i = 0; i < n; ++i)
+                                norm += x[i] * x[i];
+                            sink += Math.sqrt(norm);
+                        } else
+                            sink += VectorKernels.nrm2(n, x);
+                    times[8 + impl] = timer.elapsed(TimeUnit.NANOSECONDS)
+                            / reps;
+                }
+
+            String[] line = new String[13];
+            line[0] = Integer.toString(n);
+            for (int i = 0; i < times.length; ++i)
+                line[i + 1] = Long.toString(times[i]);
+            log.info(java.util.Arrays.toString(line));
+            csv.writeNext(line);
+        }
+        log.fine("checksum " + sink);
+    }
+
+}
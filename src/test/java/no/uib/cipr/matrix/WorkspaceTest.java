@@ -0,0 +1,256 @@
+package no.uib.cipr.matrix;
+
+import au.com.bytecode.opencsv.CSVWriter;
+import lombok.Cleanup;
+import lombok.extern.java.Log;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests decompositions borrowing their work arrays from a workspace
+ */
+@Log
+public class WorkspaceTest {
+
+    private static DenseMatrix symmetric(int n) {
+        DenseMatrix A = (DenseMatrix) Matrices.random(n, n);
+        return (DenseMatrix) A.add(A.transpose(new DenseMatrix(n, n)));
+    }
+
+    private static void assertMatrixEquals(Matrix A, Matrix B) {
+        assertArrayEquals(((AbstractDenseMatrix) A).getData(),
+                ((AbstractDenseMatrix) B).getData(), 0);
+    }
+
+    @Test
+    public void testArrays() {
+        Workspace ws = new Workspace();
+        double[] d = ws.getDoubles(10);
+        assertSame(d, ws.getDoubles(5));
+        assertEquals(20, ws.getDoubles(20).length);
+        int[] i = ws.getInts(3);
+        assertSame(i, ws.getInts(3));
+
+        DenseMatrix A = (DenseMatrix) Matrices.random(3, 4);
+        DenseMatrix C = ws.copy(A);
+        assertMatrixEquals(A, C);
+        assertSame(C, ws.copy(Matrices.random(3, 4)));
+        assertSame(Workspace.local(), Workspace.local());
+    }
+
+    @Test
+    public void testSVD() throws NotConvergedException {
+        Workspace ws = new Workspace();
+        for (int r = 0; r < 3; ++r) {
+            DenseMatrix A = (DenseMatrix) Matrices.random(Utilities.getInt(1,
+                    40), Utilities.getInt(1, 40));
+            SVD svd = SVD.factorize(A);
+            SVD pooled = SVD.factorize(A, ws);
+            assertArrayEquals(svd.getS(), pooled.getS(), 0);
+            assertMatrixEquals(svd.getU(), pooled.getU());
+            assertMatrixEquals(svd.getVt(), pooled.getVt());
+        }
+    }
+
+    @Test
+    public void testEVD() throws NotConvergedException {
+        Workspace ws = new Workspace();
+        for (int r = 0; r < 3; ++r) {
+            int n = Utilities.getInt(1, 40);
+            DenseMatrix A = (DenseMatrix) Matrices.random(n, n);
+            EVD evd = EVD.factorize(A);
+            EVD pooled = EVD.factorize(A, ws);
+            assertArrayEquals(evd.getRealEigenvalues(),
+                    pooled.getRealEigenvalues(), 0);
+            assertArrayEquals(evd.getImaginaryEigenvalues(),
+                    pooled.getImaginaryEigenvalues(), 0);
+            assertMatrixEquals(evd.getRightEigenvectors(),
+                    pooled.getRightEigenvectors());
+        }
+    }
+
+    @Test
+    public void testSymmDenseEVD() throws NotConvergedException {
+        Workspace ws = new Workspace();
+        int n = Utilities.getInt(1, 40);
+        DenseMatrix A = symmetric(n);
+        SymmDenseEVD evd = SymmDenseEVD.factorize(A);
+        SymmDenseEVD pooled = SymmDenseEVD.factorize(A, ws);
+        assertArrayEquals(evd.getEigenvalues(), pooled.getEigenvalues(), 0);
+        assertMatrixEquals(evd.getEigenvectors(), pooled.getEigenvectors());
+
+        // in place, without the copy into a symmetrical matrix
+        SymmDenseEVD inPlace = new SymmDenseEVD(n, true).factor(A.copy());
+        assertArrayEquals(evd.getEigenvalues(), inPlace.getEigenvalues(), 0);
+        assertMatrixEquals(evd.getEigenvectors(), inPlace.getEigenvectors());
+    }
+
+    @Test
+    public void testQRP() {
+        Workspace ws = new Workspace();
+        int m = Utilities.getInt(1, 40), n = Utilities.getInt(1, 40);
+        DenseMatrix A = (DenseMatrix) Matrices.random(m, n);
+        DenseMatrix B = (DenseMatrix) Matrices.random(m, n);
+        QRP qrp = QRP.factorize(B);
+
+        // reused decomposition must not keep the pivots of its last matrix
+        QRP pooled = new QRP(m, n, ws);
+        pooled.factor(A);
+        pooled.factor(B);
+        assertArrayEquals(qrp.getPVector(), pooled.getPVector());
+        assertMatrixEquals(qrp.getQ(), pooled.getQ());
+        assertMatrixEquals(qrp.getR(), pooled.getR());
+        assertEquals(qrp.getRank(), pooled.getRank());
+    }
+
+    @Test
+    public void testOrthogonal() {
+        Workspace ws = new Workspace();
+        int k = Utilities.getInt(1, 20), l = k + Utilities.getInt(0, 20);
+        DenseMatrix tall = (DenseMatrix) Matrices.random(l, k);
+        DenseMatrix wide = (DenseMatrix) Matrices.random(k, l);
+
+        QR qr = QR.factorize(tall), qrPooled = QR.factorize(tall, ws);
+        assertMatrixEquals(qr.getR(), qrPooled.getR());
+        assertMatrixEquals(qr.getQ(), qrPooled.getQ());
+
+        QL ql = QL.factorize(tall), qlPooled = QL.factorize(tall, ws);
+        assertMatrixEquals(ql.getL(), qlPooled.getL());
+        assertMatrixEquals(ql.getQ(), qlPooled.getQ());
+
+        LQ lq = LQ.factorize(wide), lqPooled = LQ.factorize(wide, ws);
+        assertMatrixEquals(lq.getL(), lqPooled.getL());
+        assertMatrixEquals(lq.getQ(), lqPooled.getQ());
+
+        RQ rq = RQ.factorize(wide), rqPooled = RQ.factorize(wide, ws);
+        assertMatrixEquals(rq.getR(), rqPooled.getR());
+        assertMatrixEquals(rq.getQ(), rqPooled.getQ());
+
+        DenseMatrix C = (DenseMatrix) Matrices.random(l, 3);
+        assertMatrixEquals(qr.applyQTranspose(C.copy()),
+                qrPooled.applyQTranspose(C.copy()));
+    }
+
+    @Test
+    public void testLU() {
+        Workspace ws = new Workspace();
+        int n = Utilities.getInt(1, 40);
+        DenseMatrix A = (DenseMatrix) Matrices.random(n, n);
+        DenseLU lu = DenseLU.factorize(A), pooled = DenseLU.factorize(A, ws);
+        assertArrayEquals(lu.getPivots(), pooled.getPivots());
+        assertMatrixEquals(lu.getLU(), pooled.getLU());
+        assertEquals(lu.rcond(A, Matrix.Norm.One),
+                pooled.rcond(A, Matrix.Norm.One), 0);
+    }
+
+    @Test
+    public void testCholesky() {
+        Workspace ws = new Workspace();
+        int n = Utilities.getInt(1, 40);
+        DenseMatrix A = symmetric(n);
+        for (int i = 0; i < n; ++i)
+            A.add(i, i, 2 * n);
+        DenseCholesky chol = DenseCholesky.factorize(A);
+        DenseCholesky pooled = DenseCholesky.factorize(A, ws);
+        assertArrayEquals(chol.getU().getData(), pooled.getU().getData(), 0);
+        assertEquals(chol.rcond(A), pooled.rcond(A), 0);
+
+        DenseVector x = new DenseVector(n);
+        x.set(0, 1);
+        chol.downdate(x);
+        pooled.downdate(x);
+        assertArrayEquals(chol.getU().getData(), pooled.getU().getData(), 0);
+    }
+
+    @Test
+    public void testSymmStructuredEVD() throws NotConvergedException {
+        Workspace ws = new Workspace();
+        int n = Utilities.getInt(1, 40);
+        DenseMatrix A = symmetric(n);
+
+        SymmBandEVD band = SymmBandEVD.factorize(A, 2);
+        SymmBandEVD bandPooled = SymmBandEVD.factorize(A, 2, ws);
+        assertArrayEquals(band.getEigenvalues(), bandPooled.getEigenvalues(),
+                0);
+        assertMatrixEquals(band.getEigenvectors(),
+                bandPooled.getEigenvectors());
+
+        SymmPackEVD pack = SymmPackEVD.factorize(A);
+        SymmPackEVD packPooled = SymmPackEVD.factorize(A, ws);
+        assertArrayEquals(pack.getEigenvalues(), packPooled.getEigenvalues(),
+                0);
+        assertMatrixEquals(pack.getEigenvectors(),
+                packPooled.getEigenvectors());
+
+        SymmTridiagEVD tridiag = SymmTridiagEVD.factorize(A);
+        SymmTridiagEVD tridiagPooled = SymmTridiagEVD.factorize(A, ws);
+        assertArrayEquals(tridiag.getEigenvalues(),
+                tridiagPooled.getEigenvalues(), 0);
+        assertMatrixEquals(tridiag.getEigenvectors(),
+                tridiagPooled.getEigenvectors());
+    }
+
+    private static long allocated() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean()).getThreadAllocatedBytes(Thread
+                .currentThread().getId());
+    }
+
+    /**
+     * Measures the bytes allocated per decomposition by the static
+     * <code>factorize</code> methods, with and without the thread's workspace,
+     * writing CSV
+     */
+    public static void main(String[] args) throws Exception {
+        File file = new File("WorkspacePerf.csv");
+        log.info("writing to " + file);
+        @Cleanup
+        CSVWriter csv = new CSVWriter(new FileWriter(file));
+
+        int reps = 10;
+        for (int n = 25; n <= 200; n *= 2) {
+            DenseMatrix A = symmetric(n);
+            Workspace ws = Workspace.local();
+            long[] bytes = new long[6];
+            for (int pass = 0; pass < 2; ++pass) {
+                Arrays.fill(bytes, 0);
+                for (int r = 0; r < reps; ++r) {
+                    long a = allocated();
+                    SVD.factorize(A);
+                    long b = allocated();
+                    SVD.factorize(A, ws);
+                    long c = allocated();
+                    SymmDenseEVD.factorize(A);
+                    long d = allocated();
+                    SymmDenseEVD.factorize(A, ws);
+                    long e = allocated();
+                    EVD.factorize(A);
+                    long f = allocated();
+                    EVD.factorize(A, ws);
+                    long g = allocated();
+                    bytes[0] += b - a;
+                    bytes[1] += c - b;
+                    bytes[2] += d - c;
+                    bytes[3] += e - d;
+                    bytes[4] += f - e;
+                    bytes[5] += g - f;
+                }
+            }
+            String[] line = new String[7];
+            line[0] = Integer.toString(n);
+            for (int k = 0; k < 6; ++k)
+                line[k + 1] = Long.toString(bytes[k] / reps);
+            log.info(Arrays.toString(line));
+            csv.writeNext(line);
+        }
+    }
+
+}
@@ -0,0 +1,125 @@
+package no.uib.cipr.matrix.sparse;
+
+import no.uib.cipr.matrix.DenseLU;
+import no.uib.cipr.matrix.DenseMatrix;
+import no.uib.cipr.matrix.DenseVector;
+import no.uib.cipr.matrix.Matrices;
+import no.uib.cipr.matrix.Matrix;
+import no.uib.cipr.matrix.QR;
+import no.uib.cipr.matrix.Vector;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the nonsymmetric ARPACK driver
+ */
+public class ArpackGenTest {
+
+    private final Random random = new Random(7);
+
+    /**
+     * Nonsymmetric matrix with the eigenvalues <code>1, 2, ..., n-2</code>
+     * and the pair <code>n+5 &plusmn; 2i</code>
+     */
+    private DenseMatrix matrix(int n) {
+        DenseMatrix T = new DenseMatrix(n, n), R = new DenseMatrix(n, n);
+        for (int j = 0; j < n; ++j)
+            for (int i = 0; i < n; ++i) {
+                R.set(i, j, random.nextDouble());
+                if (i < j)
+                    T.set(i, j, 0.1 * random.nextDouble());
+            }
+        for (int i = 0; i < n - 2; ++i)
+            T.set(i, i, i + 1);
+        T.set(n - 2, n - 2, n + 5);
+        T.set(n - 1, n - 1, n + 5);
+        T.set(n - 2, n - 1, 2);
+        T.set(n - 1, n - 2, -2);
+
+        DenseMatrix Q = QR.factorize(R).getQ();
+        DenseMatrix QT = (DenseMatrix) Q.mult(T, new DenseMatrix(n, n));
+        return (DenseMatrix) QT.transBmult(Q, new DenseMatrix(n, n));
+    }
+
+    /**
+     * Checks the eigenpairs, including complex conjugate ones
+     */
+    private static void assertEigenpairs(Matrix A, ArpackGen solver) {
+        double[] wr = solver.getRealEigenvalues();
+        double[] wi = solver.getImaginaryEigenvalues();
+        DenseMatrix V = solver.getEigenvectors();
+        int n = A.numRows();
+        for (int j = 0; j < wr.length; ++j) {
+            Vector vr = Matrices.getColumn(V, j);
+            if (wi[j] == 0) {
+                Vector r = A.mult(vr, new DenseVector(n)).add(-wr[j], vr);
+                assertEquals(0, r.norm(Vector.Norm.Two), 1e-3 * Math
+                        .abs(wr[j]));
+            } else if (wi[j] > 0 && j + 1 < wr.length) {
+                // A (vr + i vi) = (wr + i wi)(vr + i vi)
+                Vector vi = Matrices.getColumn(V, j + 1);
+                Vector r = A.mult(vr, new DenseVector(n)).add(-wr[j], vr).add(
+                        wi[j], vi);
+                Vector s = A.mult(vi, new DenseVector(n)).add(-wr[j], vi).add(
+                        -wi[j], vr);
+                assertEquals(0, r.norm(Vector.Norm.Two), 1e-3 * wr[j]);
+                assertEquals(0, s.norm(Vector.Norm.Two), 1e-3 * wr[j]);
+            }
+        }
+    }
+
+    private static boolean contains(ArpackGen solver, double re, double im) {
+        for (int j = 0; j < solver.getRealEigenvalues().length; ++j)
+            if (Math.abs(solver.getRealEigenvalues()[j] - re) < 1e-4 * Math
+                    .abs(re)
+                    && Math.abs(solver.getImaginaryEigenvalues()[j] - im) < 1e-4)
+                return true;
+        return false;
+    }
+
+    @Test
+    public void testLargestMagnitude() {
+        int n = 80;
+        DenseMatrix A = matrix(n);
+        ArpackGen solver = new ArpackGen(A).solve(3, ArpackGen.Ritz.LM);
+
+        assertTrue(contains(solver, n + 5, 2));
+        assertTrue(contains(solver, n + 5, -2));
+        assertTrue(contains(solver, n - 2, 0));
+        assertEigenpairs(A, solver);
+    }
+
+    @Test
+    public void testShiftInvert() {
+        int n = 80;
+        DenseMatrix A = matrix(n);
+        double sigma = 10.3;
+        DenseMatrix S = A.copy();
+        for (int i = 0; i < n; ++i)
+            S.add(i, i, -sigma);
+
+        ArpackGen solver = new ArpackGen(A);
+        solver.setShiftInvert(sigma, LinearOperators.inverse(DenseLU
+                .factorize(S)));
+        solver.solve(2, ArpackGen.Ritz.LM);
+
+        assertEquals(2, solver.getRealEigenvalues().length);
+        assertTrue(contains(solver, 10, 0));
+        assertTrue(contains(solver, 11, 0));
+        assertEigenpairs(A, solver);
+
+        // dense vectors are solved in place, others in the work vector
+        LinearOperator inverse = LinearOperators.inverse(DenseLU.factorize(S));
+        for (Vector b : new Vector[] { Matrices.random(n),
+                new SparseVector(Matrices.random(n)) }) {
+            Vector x = inverse.apply(b, new DenseVector(n));
+            Vector r = S.multAdd(-1, x, new DenseVector(b));
+            assertEquals(0, r.norm(Vector.Norm.Two), 1e-10);
+        }
+    }
+
+}
@@ -9,6 +9,7 @@ import java.io.File;
 import java.io.FileReader;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Random;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
@@ -53,6 +54,203 @@ public class ArpackSymTest {
         }
     }
 
+    /**
+     * One dimensional Laplacian, with eigenvalues
+     * <code>2 - 2 cos(j pi / (n + 1))</code>
+     */
+    static CompRowMatrix laplacian(int n) {
+        int[][] nz = new int[n][];
+        for (int i = 0; i < n; ++i)
+            nz[i] = i == 0 ? new int[]{0, 1} : i == n - 1 ? new int[]{i - 1,
+                    i} : new int[]{i - 1, i, i + 1};
+        CompRowMatrix A = new CompRowMatrix(n, n, nz);
+        for (int i = 0; i < n; ++i)
+            for (int j : nz[i])
+                A.set(i, j, i == j ? 2 : -1);
+        return A;
+    }
+
+    private static CompRowMatrix diagonal(double[] d) {
+        int[][] nz = new int[d.length][];
+        for (int i = 0; i < d.length; ++i)
+            nz[i] = new int[]{i};
+        CompRowMatrix D = new CompRowMatrix(d.length, d.length, nz);
+        for (int i = 0; i < d.length; ++i)
+            D.set(i, i, d[i]);
+        return D;
+    }
+
+    /**
+     * Checks that <code>Av = &lambda;v</code> to the tolerance of ARPACK
+     */
+    private static void assertEigenpairs(Matrix A,
+            Map<Double, DenseVectorSub> results) {
+        assertEigenpairs(A, null, null, results);
+    }
+
+    /**
+     * Checks that <code>Av = &lambda;Mv</code> to the tolerance of ARPACK.
+     * With a mass matrix, ARPACK bounds the residual of
+     * <code>M<sup>-1</sup>A</code> in the <code>M</code> inner product, which
+     * is the residual below in the <code>M<sup>-1</sup></code> inner
+     * product, relative to the <code>M</code>-norm of <code>v</code>
+     */
+    private static void assertEigenpairs(Matrix A, Matrix M, Matrix Minv,
+            Map<Double, DenseVectorSub> results) {
+        for (Map.Entry<Double, DenseVectorSub> e : results.entrySet()) {
+            Vector v = e.getValue(), Mv = v.copy();
+            if (M != null)
+                M.mult(v, Mv);
+            Vector r = A.mult(v, Mv.copy()).add(-e.getKey(), Mv);
+            double norm = r.norm(Vector.Norm.Two), vnorm = v
+                    .norm(Vector.Norm.Two);
+            if (M != null) {
+                norm = Math.sqrt(r.dot(Minv.mult(r, r.copy())));
+                vnorm = Math.sqrt(v.dot(Mv));
+            }
+            assertEquals(0, norm, 1e-4 * vnorm
+                    * Math.max(1, Math.abs(e.getKey())));
+        }
+    }
+
+    @Test
+    public void testShiftInvert() {
+        int n = 500;
+        CompRowMatrix A = laplacian(n);
+        ArpackSym solver = new ArpackSym(A);
+        solver.setShiftInvert(0, LinearOperators.inverse(new SparseCholesky(A)
+                .factor(A)));
+
+        Map<Double, DenseVectorSub> results = solver.solve(5,
+                ArpackSym.Ritz.LM);
+        assertEquals(5, results.size());
+        int j = 5;
+        for (double lambda : results.keySet())
+            assertEquals(2 - 2 * Math.cos(j-- * Math.PI / (n + 1)), lambda,
+                    1e-10);
+        assertEigenpairs(A, results);
+    }
+
+    @Test
+    public void testGeneralized() throws NotConvergedException {
+        int n = 200;
+        CompRowMatrix K = laplacian(n);
+        double[] d = new double[n], dinv = new double[n];
+        for (int i = 0; i < n; ++i) {
+            d[i] = 1 + i / (double) n;
+            dinv[i] = 1 / d[i];
+        }
+        CompRowMatrix M = diagonal(d), Minv = diagonal(dinv);
+
+        // reference from D^-1/2 K D^-1/2
+        UpperSymmDenseMatrix B = new UpperSymmDenseMatrix(n);
+        for (MatrixEntry e : K)
+            if (e.row() <= e.column())
+                B.set(e.row(), e.column(), e.get()
+                        / Math.sqrt(d[e.row()] * d[e.column()]));
+        double[] exact = SymmDenseEVD.factorize(B).getEigenvalues();
+
+        // regular mode, largest. These cluster near 4, and are solved to
+        // below the accuracy checked, whose true residuals would otherwise be
+        // as large as the Ritz estimates ARPACK stops on
+        ArpackSym solver = new ArpackSym(K);
+        solver.setTolerance(1e-6);
+        solver.setMass(LinearOperators.of(M), LinearOperators.of(Minv));
+        Map<Double, DenseVectorSub> results = solver.solve(4,
+                ArpackSym.Ritz.LA);
+        int j = n;
+        for (double lambda : results.keySet())
+            assertEquals(exact[--j], lambda, 1e-6);
+        assertEigenpairs(K, M, Minv, results);
+
+        // shift-invert mode, nearest zero
+        solver = new ArpackSym(K);
+        solver.setMass(LinearOperators.of(M), null);
+        solver.setShiftInvert(0, LinearOperators.inverse(new SparseCholesky(K)
+                .factor(K)));
+        results = solver.solve(4, ArpackSym.Ritz.LM);
+        j = 4;
+        for (double lambda : results.keySet())
+            assertEquals(exact[--j], lambda, 1e-10);
+        assertEigenpairs(K, M, Minv, results);
+    }
+
+    @Test
+    public void testOperator() {
+        final int n = 100;
+        ArpackSym solver = new ArpackSym(new LinearOperator() {
+            public int size() {
+                return n;
+            }
+
+            public Vector apply(Vector x, Vector y) {
+                for (int i = 0; i < n; ++i)
+                    y.set(i, (i + 1) * x.get(i));
+                return y;
+            }
+        });
+        int j = n;
+        for (double lambda : solver.solve(3, ArpackSym.Ritz.LA).keySet())
+            assertEquals(j--, lambda, 1e-4);
+    }
+
+    @Test
+    public void testSymmetryCheck() {
+        CompRowMatrix A = laplacian(50);
+        A.set(0, 1, -2);
+        try {
+            new ArpackSym(A);
+            fail("nonsymmetric matrix accepted");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        new ArpackSym(A, false);
+    }
+
+    /**
+     * Laplacian with three well separated largest eigenvalues
+     */
+    private static CompRowMatrix separated(int n) {
+        CompRowMatrix A = laplacian(n);
+        for (int i = 1; i <= 3; ++i)
+            A.add(n - i, n - i, 10 * i);
+        return A;
+    }
+
+    @Test
+    public void testMatrixOperators() {
+        int threads = Parallel.getThreads();
+        Parallel.setThreads(4);
+        try {
+            // products on the ARPACK work array, sparse in parallel
+            CompRowMatrix A = separated(20000);
+            ArpackSym solver = new ArpackSym(A, false);
+            solver.setTolerance(1e-6);
+            Map<Double, DenseVectorSub> results = solver.solve(3,
+                    ArpackSym.Ritz.LA);
+            assertEquals(3, results.size());
+            assertEigenpairs(A, results);
+
+            // the operator splits the rows, the matrix itself does not
+            DenseVector x = new DenseVector(A.numColumns());
+            for (int i = 0; i < x.size(); ++i)
+                x.set(i, Math.sin(i));
+            Vector y = LinearOperators.of(A).apply(x,
+                    new DenseVector(A.numRows()));
+            Vector z = A.mult(x, new DenseVector(A.numRows()));
+            assertEquals(0, y.add(-1, z).norm(Vector.Norm.Infinity), 1e-12);
+
+            DenseMatrix B = new DenseMatrix(separated(200));
+            solver = new ArpackSym(B);
+            solver.setTolerance(1e-6);
+            results = solver.solve(3, ArpackSym.Ritz.LA);
+            assertEquals(3, results.size());
+            assertEigenpairs(B, results);
+        } finally {
+            Parallel.setThreads(threads);
+        }
+    }
+
     private Map<Double, DenseVector> evdSolve(UpperSymmDenseMatrix matrix)
             throws NotConvergedException {
         SymmDenseEVD evd = new SymmDenseEVD(matrix.numColumns(), true);
@@ -20,7 +20,14 @@
 
 package no.uib.cipr.matrix.sparse;
 
+import no.uib.cipr.matrix.DenseMatrix;
+import no.uib.cipr.matrix.Matrices;
+import no.uib.cipr.matrix.Matrix;
 import no.uib.cipr.matrix.Utilities;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 /**
  * Test of CompRowMatrix
@@ -37,4 +44,38 @@ public class CompRowMatrixTest extends SparseStructImmutableMatrixTestAbstract {
         Ad = Utilities.rowPopulate(A, nz);
     }
 
+    @Test
+    public void testDenseMultSizeMismatch() {
+        DenseMatrix B = new DenseMatrix(A.numColumns() + 1, 2);
+        DenseMatrix C = new DenseMatrix(A.numRows(), 2);
+        C.set(0, 0, 1);
+        try {
+            A.mult(B, C);
+            fail("size mismatch accepted");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+        assertEquals(1, C.get(0, 0), 0);
+    }
+
+    @Test
+    public void testParallelDenseMultAdd() {
+        int k = Utilities.getInt(1, 20);
+        DenseMatrix B = new DenseMatrix(Matrices.random(A.numColumns(), k));
+        DenseMatrix C = new DenseMatrix(Matrices.random(A.numRows(), k));
+        CompRowMatrix Ac = (CompRowMatrix) A;
+
+        Matrix expected = A.multAdd(2, B, C.copy());
+        Matrix actual = Ac.parallelMultAdd(2, B, C.copy());
+        assertEquals(0, expected.add(-1, actual).norm(Matrix.Norm.Maxvalue),
+                1e-12);
+
+        B = new DenseMatrix(Matrices.random(A.numRows(), k));
+        C = new DenseMatrix(Matrices.random(A.numColumns(), k));
+        expected = A.transAmultAdd(2, B, C.copy());
+        actual = Ac.parallelTransAmultAdd(2, B, C.copy());
+        assertEquals(0, expected.add(-1, actual).norm(Matrix.Norm.Maxvalue),
+                1e-12);
+    }
+
 }
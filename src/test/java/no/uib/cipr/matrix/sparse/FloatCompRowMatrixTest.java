@@ -0,0 +1,44 @@
+package no.uib.cipr.matrix.sparse;
+
+import no.uib.cipr.matrix.DenseVector;
+import no.uib.cipr.matrix.FloatDenseVector;
+import no.uib.cipr.matrix.Matrices;
+import no.uib.cipr.matrix.Utilities;
+import no.uib.cipr.matrix.Vector;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class FloatCompRowMatrixTest
+        extends
+            SparseStructImmutableMatrixTestAbstract {
+
+    @Override
+    protected void createPrimary() throws Exception {
+        matrixTol = 1e-4;
+        int n = Utilities.getInt(1, max);
+        int m = Utilities.getInt(1, max);
+        int b = Utilities.getInt(Math.min(bmax, m));
+        int[][] nz = Utilities.getRowPattern(n, m, b);
+        A = new FloatCompRowMatrix(n, m, nz);
+        Ad = Utilities.rowPopulate(A, nz);
+    }
+
+    @Test
+    public void testFloatVectors() {
+        Vector x = new FloatDenseVector(Matrices.random(A.numColumns()));
+        Vector y = new FloatDenseVector(Matrices.random(A.numRows()));
+
+        assertFloat(A.multAdd(2, x, new DenseVector(y)),
+                A.multAdd(2, x, new FloatDenseVector(y)));
+        assertFloat(A.transMultAdd(2, y, new DenseVector(x)),
+                A.transMultAdd(2, y, new FloatDenseVector(x)));
+    }
+
+    private void assertFloat(Vector expected, Vector actual) {
+        for (int i = 0; i < expected.size(); ++i)
+            assertEquals(expected.get(i), actual.get(i), matrixTol
+                    * Math.max(1, Math.abs(expected.get(i))));
+    }
+
+}
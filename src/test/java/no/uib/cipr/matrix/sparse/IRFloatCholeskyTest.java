@@ -0,0 +1,15 @@
+package no.uib.cipr.matrix.sparse;
+
+/**
+ * Test of mixed precision iterative refinement, IR with FloatCholesky
+ */
+public class IRFloatCholeskyTest extends SPDIterativeSolverTestAbstract {
+
+    @Override
+    protected void createSolver() throws Exception {
+        solver = new IR(x);
+        M = new FloatCholesky(A.numRows());
+        solver.setPreconditioner(M);
+    }
+
+}
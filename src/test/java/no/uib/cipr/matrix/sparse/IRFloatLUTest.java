@@ -0,0 +1,15 @@
+package no.uib.cipr.matrix.sparse;
+
+/**
+ * Test of mixed precision iterative refinement, IR with FloatLU
+ */
+public class IRFloatLUTest extends IterativeSolverTestAbstract {
+
+    @Override
+    protected void createSolver() throws Exception {
+        solver = new IR(x);
+        M = new FloatLU(A.numRows());
+        solver.setPreconditioner(M);
+    }
+
+}
@@ -0,0 +1,176 @@
+package no.uib.cipr.matrix.sparse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import no.uib.cipr.matrix.DenseVector;
+import no.uib.cipr.matrix.NotConvergedException;
+import no.uib.cipr.matrix.Vector;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the iteration monitors, and the residual norms passed to them
+ */
+public class IterationMonitorTest {
+
+    /**
+     * Counts the residual norms computed by the monitor itself
+     */
+    private static class CountingMonitor extends DefaultIterationMonitor {
+
+        int norms;
+
+        @Override
+        public boolean converged(Vector r, Vector x)
+                throws IterativeSolverNotConvergedException {
+            norms++;
+            return super.converged(r, x);
+        }
+    }
+
+    private Vector rhs(int n) {
+        Vector b = new DenseVector(n);
+        for (int i = 0; i < n; ++i)
+            b.set(i, i % 5 - 2);
+        return b;
+    }
+
+    private double trueResidual(CompRowMatrix A, Vector b, Vector x) {
+        return A.multAdd(-1, x, b.copy()).norm(Vector.Norm.Two);
+    }
+
+    @Test
+    public void testResidualNormPassed()
+            throws IterativeSolverNotConvergedException {
+        CompRowMatrix A = SparseCholeskyTest.laplacian(15);
+        int n = A.numRows();
+        Vector b = rhs(n);
+        for (AbstractIterativeSolver solver : new AbstractIterativeSolver[]{
+                new CG(b), new BiCGstab(b)}) {
+            CountingMonitor monitor = new CountingMonitor();
+            solver.setIterationMonitor(monitor);
+            Vector x = solver.solve(A, b, new DenseVector(n));
+
+            // only the initial residual norm is computed by the monitor
+            assertEquals(1, monitor.norms);
+            assertTrue(monitor.iterations() > 1);
+            assertTrue(trueResidual(A, b, x) < 1e-4 * b.norm(Vector.Norm.Two));
+        }
+    }
+
+    @Test
+    public void testOtherNorm() throws IterativeSolverNotConvergedException {
+        CompRowMatrix A = SparseCholeskyTest.laplacian(15);
+        int n = A.numRows();
+        Vector b = rhs(n);
+        CG solver = new CG(b);
+        CountingMonitor monitor = new CountingMonitor();
+        monitor.setNormType(Vector.Norm.Infinity);
+        solver.setIterationMonitor(monitor);
+        solver.solve(A, b, new DenseVector(n));
+        assertEquals(monitor.iterations() + 1, monitor.norms);
+    }
+
+    @Test
+    public void testTrueResidual() throws IterativeSolverNotConvergedException {
+        CompRowMatrix A = SparseCholeskyTest.laplacian(15);
+        int n = A.numRows();
+        Vector b = rhs(n);
+        double rtol = 1e-8;
+        for (int k : new int[]{1, 5}) {
+            for (AbstractIterativeSolver solver : new AbstractIterativeSolver[]{
+                    new CG(b), new BiCGstab(b), new GMRES(b)}) {
+                DefaultIterationMonitor monitor = new DefaultIterationMonitor();
+                monitor.setRelativeTolerance(rtol);
+                solver.setIterationMonitor(new TrueResidualMonitor(monitor, A,
+                        b, k));
+                Vector x = solver.solve(A, b, new DenseVector(n));
+                assertTrue(trueResidual(A, b, x) < rtol
+                        * b.norm(Vector.Norm.Two));
+            }
+        }
+    }
+
+    @Test
+    public void testTrueResidualReportedOnce()
+            throws IterativeSolverNotConvergedException {
+        CompRowMatrix A = SparseCholeskyTest.laplacian(15);
+        int n = A.numRows();
+        Vector b = rhs(n);
+        CG solver = new CG(b);
+        final List<Integer> reported = new ArrayList<Integer>();
+        DefaultIterationMonitor monitor = new DefaultIterationMonitor();
+        monitor.setIterationReporter(new NoIterationReporter() {
+            @Override
+            public void monitor(double r, Vector x, int i) {
+                reported.add(i);
+            }
+        });
+        solver.setIterationMonitor(new TrueResidualMonitor(monitor, A, b, 1000));
+        solver.solve(A, b, new DenseVector(n));
+
+        // the converged iteration is not reported a second time
+        assertEquals(monitor.iterations() + 1, reported.size());
+        for (int i = 0; i < reported.size(); ++i)
+            assertEquals(i, reported.get(i).intValue());
+    }
+
+    @Test
+    public void testTrueResidualForwarded() {
+        CompRowMatrix A = SparseCholeskyTest.laplacian(15);
+        int n = A.numRows();
+        Vector b = rhs(n);
+        CG solver = new CG(b);
+        DefaultIterationMonitor monitor = new DefaultIterationMonitor(3,
+                1e-12, 1e-50, 1e5);
+        solver.setIterationMonitor(new TrueResidualMonitor(monitor, A, b, 10));
+        try {
+            solver.solve(A, b, new DenseVector(n));
+            fail();
+        } catch (IterativeSolverNotConvergedException e) {
+            // the limit of the wrapped monitor holds between true residuals
+            assertEquals(NotConvergedException.Reason.Iterations,
+                    e.getReason());
+            assertTrue(monitor.iterations() < 10);
+        }
+    }
+
+    @Test
+    public void testAddNormScaled() {
+        for (double scale : new double[]{1e200, 1e-200}) {
+            Vector y = rhs(50).scale(scale), x = rhs(50).scale(scale);
+            Vector r = new DenseVector(50);
+            double norm = AbstractIterativeSolver.addNorm(y, 0.5, x, r);
+
+            // the squares overflow or underflow, but the norm does not
+            assertEquals(1.5 * rhs(50).norm(Vector.Norm.Two) * scale, norm,
+                    1e-12 * norm);
+            assertEquals(r.norm(Vector.Norm.Two), norm, 1e-12 * norm);
+        }
+    }
+
+    @Test
+    public void testStagnation() throws IterativeSolverNotConvergedException {
+        StagnationMonitor monitor = new StagnationMonitor(
+                new DefaultIterationMonitor(), 10, 0.9);
+        monitor.setFirst();
+        double r = 1;
+        for (; monitor.iterations() < 10; monitor.next())
+            assertTrue(!monitor.converged(r *= 0.5));
+
+        try {
+            for (; monitor.iterations() < 100; monitor.next())
+                monitor.converged(r *= 0.999);
+            fail();
+        } catch (IterativeSolverNotConvergedException e) {
+            assertEquals(NotConvergedException.Reason.Stagnation,
+                    e.getReason());
+            assertEquals(19, monitor.iterations());
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+package no.uib.cipr.matrix.sparse;
+
+import no.uib.cipr.matrix.DenseMatrix;
+import no.uib.cipr.matrix.DenseVectorSub;
+import no.uib.cipr.matrix.NotConvergedException;
+import no.uib.cipr.matrix.SymmDenseEVD;
+import no.uib.cipr.matrix.Utilities;
+import no.uib.cipr.matrix.Vector;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the LOBPCG eigensolver
+ */
+public class LOBPCGTest {
+
+    private static void assertEigenpairs(CompRowMatrix A,
+            Map<Double, DenseVectorSub> results, double tol) {
+        for (Map.Entry<Double, DenseVectorSub> e : results.entrySet()) {
+            Vector v = e.getValue();
+            assertEquals(1, v.norm(Vector.Norm.Two), 1e-10);
+            Vector r = A.mult(v, v.copy()).add(-e.getKey(), v);
+            assertEquals(0, r.norm(Vector.Norm.Two), tol
+                    * Math.max(Math.abs(e.getKey()), 1));
+        }
+    }
+
+    @Test
+    public void testLargest() throws NotConvergedException {
+        int n = Utilities.getInt(100, 300);
+        CompRowMatrix A = ArpackSymTest.laplacian(n);
+        for (int i = 0; i < n; ++i)
+            A.add(i, i, i % 7 == 0 ? 10 * (double) i / n : 0);
+        double[] exact = SymmDenseEVD.factorize(new DenseMatrix(A))
+                .getEigenvalues();
+
+        Map<Double, DenseVectorSub> results = new LOBPCG(A).setRandom(
+                new Random(1)).solve(4, ArpackSym.Ritz.LA);
+        assertEquals(4, results.size());
+        int j = n;
+        for (double lambda : results.keySet())
+            assertEquals(exact[--j], lambda, 1e-8);
+        assertEigenpairs(A, results, 1e-6);
+    }
+
+    @Test
+    public void testSmallestPreconditioned() {
+        int k = 40, n = k * k;
+        CompRowMatrix A = SparseCholeskyTest.laplacian(k);
+
+        double[] exact = new double[n];
+        for (int i = 0; i < k; ++i)
+            for (int j = 0; j < k; ++j)
+                exact[i * k + j] = 4 - 2 * Math.cos((i + 1) * Math.PI / (k + 1))
+                        - 2 * Math.cos((j + 1) * Math.PI / (k + 1));
+        java.util.Arrays.sort(exact);
+
+        ICC M = new ICC(A.copy());
+        M.setMatrix(A);
+        Map<Double, DenseVectorSub> results = new LOBPCG(A)
+                .setPreconditioner(M).setRandom(new Random(3))
+                .solve(4, ArpackSym.Ritz.SA);
+        assertEquals(4, results.size());
+        int j = 4;
+        for (double lambda : results.keySet())
+            assertEquals(exact[--j], lambda, 1e-8);
+        assertEigenpairs(A, results, 1e-6);
+    }
+
+    @Test
+    public void testZeroEigenvalue() {
+        // Laplacian of a path graph, singular with the constant vector in its
+        // null space
+        int n = Utilities.getInt(20, 60);
+        CompRowMatrix A = ArpackSymTest.laplacian(n);
+        A.set(0, 0, 1);
+        A.set(n - 1, n - 1, 1);
+
+        Map<Double, DenseVectorSub> results = new LOBPCG(A).setRandom(
+                new Random(2)).solve(2, ArpackSym.Ritz.SA);
+        assertEquals(2, results.size());
+        int j = 2;
+        for (double lambda : results.keySet())
+            assertEquals(2 - 2 * Math.cos(--j * Math.PI / n), lambda, 1e-8);
+        assertEigenpairs(A, results, 1e-6);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedRitz() {
+        new LOBPCG(ArpackSymTest.laplacian(30)).solve(2, ArpackSym.Ritz.LM);
+    }
+
+}
@@ -6,9 +6,12 @@ import com.google.common.collect.Lists;
 import lombok.Cleanup;
 import lombok.extern.java.Log;
 import no.uib.cipr.matrix.DenseMatrix;
+import no.uib.cipr.matrix.DenseVector;
+import no.uib.cipr.matrix.Matrices;
 import no.uib.cipr.matrix.Matrix;
 import no.uib.cipr.matrix.MatrixEntry;
 import no.uib.cipr.matrix.Utilities;
+import no.uib.cipr.matrix.Vector;
 import org.junit.Test;
 
 import java.io.File;
@@ -117,6 +120,78 @@ public class LinkedSparseMatrixTest extends SparseMatrixTestAbstract {
         }
     }
 
+    @Test
+    public void testRandomSetDelete() {
+        int n = Utilities.getInt(1, max), m = Utilities.getInt(1, max);
+        LinkedSparseMatrix L = new LinkedSparseMatrix(n, m);
+        double[][] expected = new double[n][m];
+        for (int k = 0; k < 4 * n * m; k++) {
+            int i = Utilities.getInt(n), j = Utilities.getInt(m);
+            double v = k % 3 == 0 ? 0 : Math.random();
+            L.set(i, j, v);
+            expected[i][j] = v;
+        }
+
+        for (int i = 0; i < n; i++)
+            for (int j = 0; j < m; j++)
+                assertEquals(expected[i][j], L.get(i, j), 0);
+
+        // both linkages must be ordered and hold exactly the stored nodes
+        int count = 0;
+        LinkedSparseMatrix.Node node = L.links.head, last = null;
+        for (; node != null; last = node, node = node.rowTail, count++) {
+            assertEquals(expected[node.row][node.col], node.val, 0);
+            if (last != null)
+                assertEquals(true, last.row < node.row || last.row == node.row
+                        && last.col < node.col);
+        }
+        node = L.links.head;
+        last = null;
+        for (; node != null; last = node, node = node.colTail, count--)
+            if (last != null)
+                assertEquals(true, last.col < node.col || last.col == node.col
+                        && last.row < node.row);
+        assertEquals(0, count);
+
+        // the head node at (0, 0) is always present
+        for (int i = 1; i < n; i++) {
+            int first = 0;
+            while (first < m && expected[i][first] == 0)
+                first++;
+            LinkedSparseMatrix.Node start = L.links.startOfRow(i);
+            if (first == m)
+                assertEquals(null, start);
+            else
+                assertEquals(first, start.col);
+        }
+    }
+
+    @Test
+    public void testCompressedInvalidation() {
+        int n = Utilities.getInt(2, max);
+        LinkedSparseMatrix L = new LinkedSparseMatrix(n, n);
+        DenseMatrix D = new DenseMatrix(n, n);
+        Vector x = Matrices.random(n);
+        for (int k = 0; k < 3; k++) {
+            // products must see every modification since the last one
+            int i = Utilities.getInt(n), j = Utilities.getInt(n);
+            double v = k == 2 ? 0 : Math.random();
+            L.set(i, j, v);
+            D.set(i, j, v);
+            L.add(j, i, 1);
+            D.add(j, i, 1);
+
+            Vector y = L.mult(x, new DenseVector(n)), yd = D.mult(x,
+                    new DenseVector(n));
+            Vector z = L.transMult(x, new DenseVector(n)), zd = D.transMult(
+                    x, new DenseVector(n));
+            for (int r = 0; r < n; r++) {
+                assertEquals(yd.get(r), y.get(r), 1e-12);
+                assertEquals(zd.get(r), z.get(r), 1e-12);
+            }
+        }
+    }
+
     @Test
     @Override
     public void testIteratorSet() {
@@ -127,6 +202,33 @@ public class LinkedSparseMatrixTest extends SparseMatrixTestAbstract {
     public void testIteratorSetGet() {
     }
 
+    /**
+     * Estimated size of the matrix with compressed oops: 36 byte nodes, 4
+     * bytes per slot of the row and column index arrays, which grow by
+     * doubling, 8 bytes per row and per column, and for every non-empty row
+     * and column a 16 byte array header and 56 bytes for its boxed entry in
+     * the {@code TreeSet}
+     */
+    static long memory(LinkedSparseMatrix A) {
+        LinkedSparseMatrix.Linked links = A.links;
+        long bytes = 8L * (A.numRows() + A.numColumns());
+        bytes += memory(links.rows, links.rowSize) + memory(links.cols, null);
+        bytes += 56L * (links.usedRows.size() + links.usedCols.size());
+        return bytes;
+    }
+
+    // index arrays of the rows or columns, and the nodes if sizes are given
+    private static long memory(LinkedSparseMatrix.Node[][] lines, int[] sizes) {
+        long bytes = 0;
+        for (int i = 0; i < lines.length; i++) {
+            if (lines[i] != null)
+                bytes += 16 + 4L * lines[i].length;
+            if (sizes != null)
+                bytes += 36L * sizes[i];
+        }
+        return bytes;
+    }
+
     /**
      * Does a naive perf test against DenseMatrix, outputting CSV that we plot
      * in R.
@@ -184,8 +286,7 @@ public class LinkedSparseMatrixTest extends SparseMatrixTestAbstract {
                         timer.start();
                         LinkedSparseMatrix A = new LinkedSparseMatrix(origA);
                         timer.stop();
-                        // using compressedooms
-                        sparseMem = m * 28 + 16 * n;
+                        sparseMem = memory(A);
                         sparseInitTime = timer.elapsed(TimeUnit.NANOSECONDS);
                         timer.reset();
 
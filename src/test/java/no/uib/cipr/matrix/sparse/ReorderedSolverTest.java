@@ -0,0 +1,142 @@
+package no.uib.cipr.matrix.sparse;
+
+import au.com.bytecode.opencsv.CSVWriter;
+import com.google.common.base.Stopwatch;
+import lombok.Cleanup;
+import lombok.extern.java.Log;
+import no.uib.cipr.matrix.DenseVector;
+import no.uib.cipr.matrix.MatrixEntry;
+import no.uib.cipr.matrix.Vector;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests iterative solvers on reordered systems
+ */
+@Log
+public class ReorderedSolverTest {
+
+    private void assertSolves(CompRowMatrix A, IterativeSolver solver)
+            throws IterativeSolverNotConvergedException {
+        int n = A.numRows();
+        Vector x = new DenseVector(n), b = new DenseVector(n);
+        for (int i = 0; i < n; ++i)
+            b.set(i, i % 7 - 3);
+        solver.solve(A, b, x);
+
+        Vector r = A.multAdd(-1, x, b.copy());
+        assertTrue(r.norm(Vector.Norm.Two) <= 1e-4 * b.norm(Vector.Norm.Two));
+    }
+
+    @Test
+    public void testCG() throws IterativeSolverNotConvergedException {
+        CompRowMatrix A = ReorderingTest.shuffled(20);
+        ReorderedSolver solver = new ReorderedSolver(new CG(new DenseVector(
+                A.numRows())), A);
+        assertSolves(A, solver);
+
+        Preconditioner M = new DiagonalPreconditioner(A.numRows());
+        M.setMatrix(solver.getMatrix());
+        solver.setPreconditioner(M);
+        assertSolves(A, solver);
+    }
+
+    @Test
+    public void testGMRES() throws IterativeSolverNotConvergedException {
+        CompRowMatrix A = ReorderingTest.shuffled(15);
+        assertSolves(A, new ReorderedSolver(new GMRES(new DenseVector(A
+                .numRows())), Reordering.nestedDissection(A)));
+    }
+
+    @Test
+    public void testModifiedValues() throws IterativeSolverNotConvergedException {
+        CompRowMatrix A = ReorderingTest.shuffled(15);
+        ReorderedSolver solver = new ReorderedSolver(new CG(new DenseVector(
+                A.numRows())), A);
+        assertSolves(A, solver);
+        for (MatrixEntry e : A)
+            if (e.row() == e.column())
+                e.set(2 * e.get());
+        assertSolves(A, solver);
+
+        int[] perm = solver.getReordering().getPermutation();
+        for (MatrixEntry e : solver.getMatrix())
+            assertEquals(A.get(perm[e.row()], perm[e.column()]), e.get(), 0);
+    }
+
+    /**
+     * Misses of an 8-way set associative LRU cache of 256kb with 64 byte lines
+     * on the gathers of the vector in <code>y = Ax</code>
+     */
+    private static long misses(CompRowMatrix A) {
+        int sets = 512, ways = 8;
+        long[][] tag = new long[sets][ways], used = new long[sets][ways];
+        for (long[] t : tag)
+            java.util.Arrays.fill(t, -1);
+        long clock = 0, misses = 0;
+        for (int j : A.getColumnIndices()) {
+            long line = j >> 3;
+            int set = (int) (line % sets), lru = 0;
+            boolean hit = false;
+            for (int w = 0; w < ways && !hit; ++w) {
+                if (tag[set][w] == line) {
+                    used[set][w] = ++clock;
+                    hit = true;
+                }
+                if (used[set][w] < used[set][lru])
+                    lru = w;
+            }
+            if (!hit) {
+                misses++;
+                tag[set][lru] = line;
+                used[set][lru] = ++clock;
+            }
+        }
+        return misses;
+    }
+
+    private static double mflops(CompRowMatrix A, int reps) {
+        int n = A.numRows();
+        Vector x = new DenseVector(n), y = new DenseVector(n);
+        for (int i = 0; i < n; ++i)
+            x.set(i, 1);
+        for (int r = 0; r < reps; ++r)
+            A.mult(x, y);
+        Stopwatch timer = Stopwatch.createStarted();
+        for (int r = 0; r < reps; ++r)
+            A.mult(x, y);
+        long ns = timer.elapsed(TimeUnit.NANOSECONDS);
+        return 2e3 * A.getData().length * reps / ns;
+    }
+
+    /**
+     * Compares sparse matrix-vector products on randomly numbered grid
+     * Laplacians against their reverse Cuthill-McKee reordering: throughput
+     * in Mflop/s, and simulated L2 misses of the vector gathers, writing CSV
+     */
+    public static void main(String[] args) throws Exception {
+        File file = new File("ReorderedSolverPerf.csv");
+        log.info("writing to " + file);
+        @Cleanup
+        CSVWriter csv = new CSVWriter(new FileWriter(file));
+
+        for (int k = 100; k <= 1000; k += 100) {
+            CompRowMatrix A = ReorderingTest.shuffled(k);
+            CompRowMatrix B = Reordering.reverseCuthillMcKee(A).permute(A);
+            int reps = Math.max(1, 20000000 / A.getData().length);
+            String[] line = new String[]{Integer.toString(A.numRows()),
+                    Long.toString(misses(A)), Long.toString(misses(B)),
+                    Double.toString(mflops(A, reps)),
+                    Double.toString(mflops(B, reps))};
+            log.info(java.util.Arrays.toString(line));
+            csv.writeNext(line);
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+package no.uib.cipr.matrix.sparse;
+
+import no.uib.cipr.matrix.BandMatrix;
+import no.uib.cipr.matrix.DenseVector;
+import no.uib.cipr.matrix.Matrices;
+import no.uib.cipr.matrix.PermutationMatrix;
+import no.uib.cipr.matrix.UpperSPDBandMatrix;
+import no.uib.cipr.matrix.Utilities;
+import no.uib.cipr.matrix.Vector;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the symmetric reorderings
+ */
+public class ReorderingTest {
+
+    /**
+     * Grid Laplacian with shuffled numbering, and a few isolated nodes
+     */
+    static CompRowMatrix shuffled(int k) {
+        CompRowMatrix L = SparseCholeskyTest.laplacian(k);
+        int n = L.numRows() + 3;
+        int[] shuffle = Matrices.index(0, n);
+        for (int i = n - 1; i > 0; --i) {
+            int j = Utilities.getInt(i + 1), t = shuffle[i];
+            shuffle[i] = shuffle[j];
+            shuffle[j] = t;
+        }
+        FlexCompRowMatrix A = new FlexCompRowMatrix(n, n);
+        for (no.uib.cipr.matrix.MatrixEntry e : L)
+            A.set(shuffle[e.row()], shuffle[e.column()], e.get());
+        for (int i = L.numRows(); i < n; ++i)
+            A.set(shuffle[i], shuffle[i], 1);
+        return new CompRowMatrix(A);
+    }
+
+    private void assertReordering(CompRowMatrix A, Reordering r) {
+        int n = A.numRows();
+        int[] perm = r.getPermutation();
+        CompRowMatrix B = r.permute(A);
+        for (int i = 0; i < n; ++i)
+            for (int j = 0; j < n; ++j)
+                assertEquals(A.get(perm[i], perm[j]), B.get(i, j), 0);
+
+        // B P x = P A x
+        PermutationMatrix P = r.getPermutationMatrix();
+        Vector x = Matrices.random(n);
+        Vector y = B.mult(P.mult(x, new DenseVector(n)), new DenseVector(n));
+        Vector z = P.mult(A.mult(x, new DenseVector(n)), new DenseVector(n));
+        for (int i = 0; i < n; ++i)
+            assertEquals(z.get(i), y.get(i), 1e-12);
+
+        assertEquals(Matrices.getNumSubDiagonals(B), r.getNumSubDiagonals(A));
+        assertEquals(Matrices.getNumSuperDiagonals(B),
+                r.getNumSuperDiagonals(A));
+    }
+
+    @Test
+    public void testReverseCuthillMcKee() {
+        int k = Utilities.getInt(2, 20);
+        CompRowMatrix A = shuffled(k);
+        Reordering r = Reordering.reverseCuthillMcKee(A);
+        assertReordering(A, r);
+        assertTrue(r.getNumSubDiagonals(A) <= k + 1);
+    }
+
+    @Test
+    public void testApproximateMinimumDegree() {
+        CompRowMatrix A = shuffled(Utilities.getInt(2, 20));
+        assertReordering(A, Reordering.approximateMinimumDegree(A));
+    }
+
+    @Test
+    public void testNestedDissection() {
+        CompRowMatrix A = shuffled(Utilities.getInt(2, 20));
+        assertReordering(A, Reordering.nestedDissection(A));
+    }
+
+    @Test
+    public void testFill() {
+        CompRowMatrix A = SparseCholeskyTest.laplacian(40);
+        long natural = new SparseCholesky(A, Matrices.index(0, A.numRows()))
+                .getNonZeros();
+        long rcm = fill(A, Reordering.reverseCuthillMcKee(A));
+        long amd = fill(A, Reordering.approximateMinimumDegree(A));
+        long nd = fill(A, Reordering.nestedDissection(A));
+        assertTrue(rcm <= natural);
+        assertTrue(amd < rcm);
+        assertTrue(nd < rcm);
+    }
+
+    private long fill(CompRowMatrix A, Reordering r) {
+        return new SparseCholesky(A, r.getPermutation()).getNonZeros();
+    }
+
+    @Test
+    public void testBand() {
+        CompRowMatrix A = shuffled(Utilities.getInt(2, 20));
+        Reordering r = Reordering.reverseCuthillMcKee(A);
+        CompRowMatrix B = r.permute(A);
+        BandMatrix band = r.toBandMatrix(A);
+        UpperSPDBandMatrix spd = r.toUpperSPDBandMatrix(A);
+        for (int i = 0; i < B.numRows(); ++i)
+            for (int j = 0; j < B.numColumns(); ++j) {
+                assertEquals(B.get(i, j), band.get(i, j), 0);
+                assertEquals(B.get(i, j), spd.get(i, j), 0);
+            }
+    }
+
+}
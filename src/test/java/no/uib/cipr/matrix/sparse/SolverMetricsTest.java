@@ -0,0 +1,121 @@
+package no.uib.cipr.matrix.sparse;
+
+import no.uib.cipr.matrix.DenseVector;
+import no.uib.cipr.matrix.Vector;
+import no.uib.cipr.matrix.sparse.SolverMetrics.Counters;
+import no.uib.cipr.matrix.sparse.SolverMetrics.Phase;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the solver instrumentation
+ */
+public class SolverMetricsTest {
+
+    private Vector rhs(int n) {
+        Vector b = new DenseVector(n);
+        for (int i = 0; i < n; ++i)
+            b.set(i, i % 5 - 2);
+        return b;
+    }
+
+    @Test
+    public void testCG() throws IterativeSolverNotConvergedException {
+        CompRowMatrix A = SparseCholeskyTest.laplacian(20);
+        int n = A.numRows();
+        Vector b = rhs(n);
+
+        // uninstrumented reference
+        Vector y = new DenseVector(n);
+        CG plain = new CG(y);
+        Preconditioner D = new ICC(A.copy());
+        D.setMatrix(A);
+        plain.setPreconditioner(D);
+        plain.solve(A, b, y);
+
+        SolverMetrics metrics = new SolverMetrics();
+        Vector x = new DenseVector(n);
+        Preconditioner M = metrics.instrument(new ICC(A.copy()));
+        M.setMatrix(A);
+        IterativeSolver solver = metrics.instrument(new CG(metrics
+                .instrument(x)));
+        solver.setPreconditioner(M);
+        solver.solve(A, b, x);
+
+        for (int i = 0; i < n; ++i)
+            assertEquals(y.get(i), x.get(i), 0);
+
+        int iters = solver.getIterationMonitor().iterations();
+        assertEquals(plain.getIterationMonitor().iterations(), iters);
+        Map<Phase, Counters> snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.get(Phase.SOLVE).getCalls());
+        assertEquals(1, snapshot.get(Phase.SETUP).getCalls());
+        assertEquals(iters + 1, snapshot.get(Phase.SPMV).getCalls());
+        assertEquals(2L * A.getData().length * (iters + 1), snapshot.get(
+                Phase.SPMV).getFlops());
+        assertEquals(iters, snapshot.get(Phase.PRECONDITIONER).getCalls());
+        assertEquals(2 * iters, snapshot.get(Phase.DOT).getCalls());
+        assertTrue(snapshot.get(Phase.UPDATE).getCalls() > 0);
+        assertEquals(0, snapshot.get(Phase.TRANS_SPMV).getCalls());
+
+        long total = snapshot.get(Phase.SOLVE).getNanos(), parts = 0;
+        for (Phase phase : Phase.values())
+            if (phase != Phase.SOLVE && phase != Phase.SETUP)
+                parts += snapshot.get(phase).getNanos();
+        assertTrue(parts <= total);
+
+        metrics.reset();
+        assertEquals(0, metrics.snapshot().get(Phase.SOLVE).getCalls());
+    }
+
+    @Test
+    public void testSolverLeftUnchanged()
+            throws IterativeSolverNotConvergedException {
+        CompRowMatrix A = SparseCholeskyTest.laplacian(10);
+        int n = A.numRows();
+        CG cg = new CG(new DenseVector(n));
+        Preconditioner M = new DiagonalPreconditioner(n);
+        M.setMatrix(A);
+        cg.setPreconditioner(M);
+
+        SolverMetrics metrics = new SolverMetrics();
+        IterativeSolver solver = metrics.instrument(cg);
+        assertSame(M, cg.getPreconditioner());
+        solver.solve(A, rhs(n), new DenseVector(n));
+        assertSame(M, cg.getPreconditioner());
+        assertTrue(metrics.snapshot().get(Phase.PRECONDITIONER).getCalls() > 0);
+    }
+
+    @Test
+    public void testMatrixCopyMetered() {
+        CompRowMatrix A = SparseCholeskyTest.laplacian(5);
+        int n = A.numRows();
+        SolverMetrics metrics = new SolverMetrics();
+        metrics.instrument(A).copy().mult(rhs(n), new DenseVector(n));
+        Counters spmv = metrics.snapshot().get(Phase.SPMV);
+        assertEquals(1, spmv.getCalls());
+        assertEquals(2L * A.getData().length, spmv.getFlops());
+    }
+
+    @Test
+    public void testTranspose() throws IterativeSolverNotConvergedException {
+        CompRowMatrix A = SparseCholeskyTest.laplacian(10);
+        int n = A.numRows();
+        SolverMetrics metrics = new SolverMetrics();
+        IterativeSolver solver = metrics.instrument(new BiCG(metrics
+                .instrument(new DenseVector(n))));
+        Vector x = solver.solve(A, rhs(n), new DenseVector(n));
+
+        Vector r = A.multAdd(-1, x, rhs(n));
+        assertTrue(r.norm(Vector.Norm.Two) < 1e-3);
+        Map<Phase, Counters> snapshot = metrics.snapshot();
+        assertTrue(snapshot.get(Phase.TRANS_SPMV).getCalls() > 0);
+        assertTrue(snapshot.get(Phase.TRANS_PRECONDITIONER).getCalls() > 0);
+    }
+
+}
@@ -0,0 +1,157 @@
+package no.uib.cipr.matrix.sparse;
+
+import no.uib.cipr.matrix.DenseMatrix;
+import no.uib.cipr.matrix.DenseVector;
+import no.uib.cipr.matrix.Matrices;
+import no.uib.cipr.matrix.Matrix;
+import no.uib.cipr.matrix.MatrixEntry;
+import no.uib.cipr.matrix.MatrixNotSPDException;
+import no.uib.cipr.matrix.Utilities;
+import no.uib.cipr.matrix.Vector;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the sparse supernodal Cholesky decomposition
+ */
+public class SparseCholeskyTest {
+
+    private final double tol = 1e-8;
+
+    /**
+     * Random diagonally dominant symmetric matrix
+     */
+    static CompRowMatrix randomSPD(int n, int b) {
+        FlexCompRowMatrix A = new FlexCompRowMatrix(n, n);
+        Utilities.symmetryPopulate(A, b);
+        for (int i = 0; i < n; ++i)
+            A.add(i, i, 2 * b + 1);
+        return new CompRowMatrix(A);
+    }
+
+    /**
+     * Five point Laplacian on a <code>k x k</code> grid
+     */
+    static CompRowMatrix laplacian(int k) {
+        int n = k * k;
+        int[][] nz = new int[n][];
+        for (int i = 0; i < k; ++i)
+            for (int j = 0; j < k; ++j) {
+                int r = i * k + j, c = 0;
+                int[] cols = new int[5];
+                if (i > 0)
+                    cols[c++] = r - k;
+                if (j > 0)
+                    cols[c++] = r - 1;
+                cols[c++] = r;
+                if (j < k - 1)
+                    cols[c++] = r + 1;
+                if (i < k - 1)
+                    cols[c++] = r + k;
+                nz[r] = java.util.Arrays.copyOf(cols, c);
+            }
+        CompRowMatrix A = new CompRowMatrix(n, n, nz);
+        for (int r = 0; r < n; ++r)
+            for (int c : nz[r])
+                A.set(r, c, r == c ? 4 : -1);
+        return A;
+    }
+
+    private void assertSolves(Matrix A, SparseCholesky chol) {
+        int n = A.numRows();
+        Vector x = Matrices.random(n), b = A.mult(x, new DenseVector(n));
+        Vector y = chol.solve(b, new DenseVector(n));
+        for (int i = 0; i < n; ++i)
+            assertEquals(x.get(i), y.get(i), tol);
+    }
+
+    @Test
+    public void testRandom() {
+        int n = Utilities.getInt(1, 100);
+        CompRowMatrix A = randomSPD(n, Utilities.getInt(1, 10));
+        SparseCholesky chol = SparseCholesky.factorize(A);
+        assertTrue(chol.isSPD());
+        assertSolves(A, chol);
+    }
+
+    @Test
+    public void testLaplacian() {
+        CompRowMatrix A = laplacian(20);
+        SparseCholesky amd = SparseCholesky.factorize(A);
+        assertSolves(A, amd);
+
+        int[] natural = new int[A.numRows()];
+        for (int i = 0; i < natural.length; ++i)
+            natural[i] = i;
+        SparseCholesky banded = new SparseCholesky(A, natural).factor(A);
+        assertSolves(A, banded);
+
+        assertTrue(amd.getNonZeros() < banded.getNonZeros());
+        assertTrue(banded.getNumSupernodes() < A.numRows());
+    }
+
+    @Test
+    public void testMultipleRightHandSides() {
+        CompRowMatrix A = laplacian(Utilities.getInt(1, 15));
+        int n = A.numRows(), nrhs = Utilities.getInt(1, 5);
+        Matrix X = Matrices.random(n, nrhs);
+        DenseMatrix B = new DenseMatrix(n, nrhs);
+        A.mult(X, B);
+
+        SparseCholesky.factorize(A).solve(B);
+        for (int i = 0; i < n; ++i)
+            for (int j = 0; j < nrhs; ++j)
+                assertEquals(X.get(i, j), B.get(i, j), tol);
+    }
+
+    @Test
+    public void testRefactor() {
+        int n = Utilities.getInt(1, 100);
+        CompRowMatrix A = randomSPD(n, Utilities.getInt(1, 10));
+        SparseCholesky chol = new SparseCholesky(A);
+        for (int r = 0; r < 3; ++r) {
+            // same pattern, new values
+            for (MatrixEntry e : A)
+                if (e.row() != e.column())
+                    e.set(e.get() * 0.5);
+            assertSolves(A, chol.factor(A));
+        }
+    }
+
+    @Test
+    public void testUpperTriangle() {
+        int n = Utilities.getInt(1, 100);
+        CompRowMatrix A = randomSPD(n, Utilities.getInt(1, 10));
+        FlexCompRowMatrix U = new FlexCompRowMatrix(n, n);
+        for (MatrixEntry e : A)
+            if (e.row() <= e.column())
+                U.set(e.row(), e.column(), e.get());
+
+        Vector b = Matrices.random(n);
+        Vector x = SparseCholesky.factorize(A).solve(b, new DenseVector(n));
+        Vector y = SparseCholesky.factorize(U).solve(b, new DenseVector(n));
+        for (int i = 0; i < n; ++i)
+            assertEquals(x.get(i), y.get(i), tol);
+    }
+
+    @Test(expected = MatrixNotSPDException.class)
+    public void testNotSPD() {
+        CompRowMatrix A = laplacian(5);
+        A.set(12, 12, -4);
+        SparseCholesky chol = SparseCholesky.factorize(A);
+        assertFalse(chol.isSPD());
+        chol.solve(new DenseVector(25), new DenseVector(25));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPatternMismatch() {
+        SparseCholesky chol = new SparseCholesky(laplacian(4));
+        DenseMatrix D = new DenseMatrix(16, 16);
+        D.set(0, 15, 1);
+        chol.factor(D);
+    }
+
+}
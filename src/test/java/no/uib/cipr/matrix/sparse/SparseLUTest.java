@@ -0,0 +1,155 @@
+package no.uib.cipr.matrix.sparse;
+
+import no.uib.cipr.matrix.DenseMatrix;
+import no.uib.cipr.matrix.DenseVector;
+import no.uib.cipr.matrix.Matrices;
+import no.uib.cipr.matrix.Matrix;
+import no.uib.cipr.matrix.MatrixEntry;
+import no.uib.cipr.matrix.MatrixSingularException;
+import no.uib.cipr.matrix.Utilities;
+import no.uib.cipr.matrix.Vector;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the sparse Gilbert-Peierls LU decomposition
+ */
+public class SparseLUTest {
+
+    private final double tol = 1e-8;
+
+    /**
+     * Random unsymmetric matrix with <code>b</code> entries per column. If
+     * <code>pivot</code>, the diagonal is zero and every column has a large
+     * entry in a random row instead
+     */
+    static CompColMatrix random(int n, int b, boolean pivot) {
+        int[] shuffle = Matrices.index(0, n);
+        for (int i = n - 1; i > 0; --i) {
+            int j = Utilities.getInt(i + 1), t = shuffle[i];
+            shuffle[i] = shuffle[j];
+            shuffle[j] = t;
+        }
+
+        FlexCompColMatrix A = new FlexCompColMatrix(n, n);
+        for (int j = 0; j < n; ++j) {
+            for (int c = 0; c < b; ++c)
+                A.set(Utilities.getInt(n), j, Math.random() - 0.5);
+            if (pivot) {
+                A.set(j, j, 0);
+                A.set(shuffle[j], j, 2 * b + 1);
+            } else
+                A.set(j, j, 2 * b + 1);
+        }
+        return new CompColMatrix(A);
+    }
+
+    private void assertSolves(Matrix A, SparseLU lu) {
+        int n = A.numRows();
+        Vector x = Matrices.random(n);
+        Vector b = A.mult(x, new DenseVector(n));
+        Vector y = lu.solve(b, new DenseVector(n));
+        for (int i = 0; i < n; ++i)
+            assertEquals(x.get(i), y.get(i), tol);
+
+        b = A.transMult(x, new DenseVector(n));
+        y = lu.transSolve(b, new DenseVector(n));
+        for (int i = 0; i < n; ++i)
+            assertEquals(x.get(i), y.get(i), tol);
+    }
+
+    private int[] natural(int n) {
+        return Matrices.index(0, n);
+    }
+
+    @Test
+    public void testRandom() {
+        int n = Utilities.getInt(1, 100);
+        CompColMatrix A = random(n, Utilities.getInt(1, 10), false);
+        SparseLU lu = SparseLU.factorize(A);
+        assertFalse(lu.isSingular());
+        assertSolves(A, lu);
+    }
+
+    @Test
+    public void testPivoting() {
+        int n = Utilities.getInt(2, 100);
+        CompColMatrix A = random(n, Utilities.getInt(1, 10), true);
+        assertSolves(A, SparseLU.factorize(A));
+        assertSolves(A, new SparseLU(A, natural(n)).setPivotThreshold(1)
+                .factor(A));
+    }
+
+    @Test
+    public void testOrdering() {
+        CompColMatrix A = new CompColMatrix(SparseCholeskyTest.laplacian(20));
+        SparseLU colamd = SparseLU.factorize(A);
+        assertSolves(A, colamd);
+
+        SparseLU banded = new SparseLU(A, natural(A.numColumns())).factor(A);
+        assertSolves(A, banded);
+
+        assertTrue(colamd.getNonZeros() < banded.getNonZeros());
+    }
+
+    @Test
+    public void testMultipleRightHandSides() {
+        int n = Utilities.getInt(1, 100), nrhs = Utilities.getInt(1, 5);
+        CompColMatrix A = random(n, Utilities.getInt(1, 10), true);
+        SparseLU lu = SparseLU.factorize(A);
+        Matrix X = Matrices.random(n, nrhs);
+
+        DenseMatrix B = new DenseMatrix(n, nrhs);
+        A.mult(X, B);
+        lu.solve(B);
+        for (int i = 0; i < n; ++i)
+            for (int j = 0; j < nrhs; ++j)
+                assertEquals(X.get(i, j), B.get(i, j), tol);
+
+        A.transAmult(X, B);
+        lu.transSolve(B);
+        for (int i = 0; i < n; ++i)
+            for (int j = 0; j < nrhs; ++j)
+                assertEquals(X.get(i, j), B.get(i, j), tol);
+    }
+
+    @Test
+    public void testRefactor() {
+        int n = Utilities.getInt(1, 100);
+        CompColMatrix A = random(n, Utilities.getInt(1, 10), true);
+        SparseLU lu = SparseLU.factorize(A);
+        int[] p = lu.getRowPermutation().clone();
+        for (int r = 0; r < 3; ++r) {
+            // same pattern, new values
+            for (MatrixEntry e : A)
+                e.set(e.get() * (0.9 + 0.2 * Math.random()));
+            assertSolves(A, lu.refactor(A));
+            assertTrue(java.util.Arrays.equals(p, lu.getRowPermutation()));
+        }
+    }
+
+    @Test(expected = MatrixSingularException.class)
+    public void testSingular() {
+        int n = Utilities.getInt(2, 100);
+        CompColMatrix A = random(n, Utilities.getInt(1, 10), false);
+        int j = Utilities.getInt(n);
+        for (MatrixEntry e : A)
+            if (e.column() == j)
+                e.set(0);
+        SparseLU lu = SparseLU.factorize(A);
+        assertTrue(lu.isSingular());
+        lu.solve(new DenseVector(n), new DenseVector(n));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPatternMismatch() {
+        CompColMatrix A = random(10, 2, false);
+        SparseLU lu = new SparseLU(A);
+        CompColMatrix B = new CompColMatrix(new DenseMatrix(10, 10));
+        lu.factor(B);
+    }
+
+}